@@ -0,0 +1,75 @@
+package workshop.quarkus.reactive.benchmark;
+
+import io.quarkus.bootstrap.app.CuratedApplication;
+import io.quarkus.bootstrap.app.QuarkusBootstrap;
+import io.quarkus.bootstrap.app.RunningQuarkusApplication;
+import io.quarkus.paths.PathList;
+import io.quarkus.test.common.PathTestHelper;
+import workshop.quarkus.reactive.InMemoryChannelsTestResource;
+
+import java.nio.file.Path;
+
+/**
+ * Boots the application under test inside a JMH fork, the way {@code @QuarkusTest} does, with the
+ * in-memory channels of {@link InMemoryChannelsTestResource}. The application has a class loader of
+ * its own, so benchmarks do not look up its beans directly but run drivers that are loaded by that
+ * class loader and only expose JDK interfaces. Threads that call into a driver have to
+ * {@link #enter()} the application first.
+ */
+final class BenchmarkApplication implements AutoCloseable {
+
+    private final InMemoryChannelsTestResource channels;
+
+    private final CuratedApplication application;
+
+    private final RunningQuarkusApplication running;
+
+    private BenchmarkApplication(final InMemoryChannelsTestResource channels, final CuratedApplication application, final RunningQuarkusApplication running) {
+        this.channels = channels;
+        this.application = application;
+        this.running = running;
+    }
+
+    static BenchmarkApplication start() throws Exception {
+        final InMemoryChannelsTestResource channels = new InMemoryChannelsTestResource();
+        channels.start();
+        final Path testClasses = PathTestHelper.getTestClassesLocation(BenchmarkApplication.class);
+        final Path appClasses = PathTestHelper.getAppClassLocationForTestLocation(testClasses.toString());
+        final CuratedApplication application = QuarkusBootstrap.builder()
+                .setApplicationRoot(PathList.of(appClasses, testClasses))
+                .setProjectRoot(Path.of("").toAbsolutePath())
+                .setTargetDirectory(PathTestHelper.getProjectBuildDir(Path.of("").toAbsolutePath(), testClasses))
+                .setMode(QuarkusBootstrap.Mode.TEST)
+                .setTest(true)
+                .setIsolateDeployment(true)
+                .build()
+                .bootstrap();
+        return new BenchmarkApplication(channels, application, application.createAugmentor().createInitialRuntimeApplication().run());
+    }
+
+    /**
+     * Creates an instance of the given driver within the application's class loader.
+     */
+    <T> T driver(final Class<?> driverType, final Class<T> api) throws ReflectiveOperationException {
+        enter();
+        return api.cast(running.getClassLoader().loadClass(driverType.getName()).getConstructor().newInstance());
+    }
+
+    /**
+     * Makes the application's class loader the context class loader of the current thread, which
+     * the application relies on to discover its services.
+     */
+    void enter() {
+        Thread.currentThread().setContextClassLoader(running.getClassLoader());
+    }
+
+    @Override
+    public void close() throws Exception {
+        try {
+            running.close();
+        } finally {
+            application.close();
+            channels.stop();
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package workshop.quarkus.reactive.benchmark;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs all JMH benchmarks, each in a JVM of its own. Benchmarks that need the running application
+ * boot it within their fork (see {@link BenchmarkApplication}). Use
+ * {@code mvn test -Pbenchmark -Dbenchmark.include=<regex>} to select a subset of the benchmarks.
+ */
+public class BenchmarkRunner {
+
+    @Test
+    @DisplayName("Run JMH benchmarks")
+    void runBenchmarks() throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(System.getProperty("benchmark.include", ".*"))
+                .forks(1)
+                .addProfiler(GCProfiler.class)
+                .result(System.getProperty("benchmark.result", "target/jmh-result.json"))
+                .resultFormat(ResultFormatType.JSON)
+                .build();
+        new Runner(options).run();
+    }
+}
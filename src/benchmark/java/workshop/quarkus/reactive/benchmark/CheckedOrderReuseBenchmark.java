@@ -0,0 +1,68 @@
+package workshop.quarkus.reactive.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import workshop.quarkus.reactive.TestDataGenerator;
+import workshop.quarkus.reactive.event.CheckedOrder;
+import workshop.quarkus.reactive.event.Event;
+import workshop.quarkus.reactive.event.EventDeserializer;
+import workshop.quarkus.reactive.event.EventFormat;
+import workshop.quarkus.reactive.event.EventSerializer;
+import workshop.quarkus.reactive.event.OrderApprovedEvent;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decodes records of the {@code checked-orders} topic and reads the decision, the order ID and
+ * {@code checkedOn} from them, once into a freshly allocated event and once into a reused
+ * {@link CheckedOrder}. The GC profiler of the {@link BenchmarkRunner} reports the bytes allocated
+ * per record ({@code gc.alloc.rate.norm}).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class CheckedOrderReuseBenchmark {
+
+    @Param({"JSON", "BINARY"})
+    String codec;
+
+    private final EventDeserializer deserializer = new EventDeserializer();
+
+    private final CheckedOrder checkedOrder = new CheckedOrder();
+
+    private byte[] record;
+
+    @Setup
+    public void setUp() {
+        EventSerializer serializer = new EventSerializer(EventFormat.valueOf(codec));
+        record = serializer.serialize("checked-orders", TestDataGenerator.toOrderApprovedEvent(TestDataGenerator.randomOrderGen.sample()));
+    }
+
+    @Benchmark
+    public void decodeEvent(final Blackhole blackhole) {
+        Event event = deserializer.deserialize("checked-orders", record);
+        if (event instanceof OrderApprovedEvent approved) {
+            blackhole.consume(approved.getOrderId());
+            blackhole.consume(approved.getCheckedOn());
+        }
+    }
+
+    @Benchmark
+    public void decodeIntoReusedInstance(final Blackhole blackhole) {
+        if (deserializer.deserializeInto(record, checkedOrder) && checkedOrder.isApproved()) {
+            blackhole.consume(checkedOrder.orderId());
+            blackhole.consume(checkedOrder.checkedOn());
+        }
+    }
+}
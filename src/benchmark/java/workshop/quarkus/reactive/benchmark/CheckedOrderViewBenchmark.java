@@ -0,0 +1,78 @@
+package workshop.quarkus.reactive.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import workshop.quarkus.reactive.TestDataGenerator;
+import workshop.quarkus.reactive.command.PlaceOrder;
+import workshop.quarkus.reactive.event.Event;
+import workshop.quarkus.reactive.event.EventDeserializer;
+import workshop.quarkus.reactive.event.EventFormat;
+import workshop.quarkus.reactive.event.EventSerializer;
+import workshop.quarkus.reactive.event.EventView;
+import workshop.quarkus.reactive.event.OrderApprovedEvent;
+import workshop.quarkus.reactive.event.OrderDeniedEvent;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decodes records of the {@code checked-orders} topic and reads what the notification service needs
+ * from them (the type, the order ID and {@code checkedOn}), once with a fully decoded event and once
+ * with a lazy view. The GC profiler of the {@link BenchmarkRunner} reports the allocation rates.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class CheckedOrderViewBenchmark {
+
+    @Param({"JSON", "BINARY"})
+    String codec;
+
+    @Param({"EAGER", "LAZY"})
+    String view;
+
+    private EventDeserializer deserializer;
+
+    private byte[] approved;
+
+    private byte[] denied;
+
+    @Setup
+    public void setUp() {
+        EventSerializer serializer = new EventSerializer(EventFormat.valueOf(codec));
+        deserializer = new EventDeserializer(EventView.valueOf(view));
+        approved = serializer.serialize("checked-orders", TestDataGenerator.toOrderApprovedEvent(TestDataGenerator.randomOrderGen.sample()));
+        PlaceOrder unavailable = TestDataGenerator.randomUnavailableOrderGen.sample();
+        denied = serializer.serialize("checked-orders", TestDataGenerator.toOrderDeniedEvent(unavailable));
+    }
+
+    @Benchmark
+    public void notifyApproved(final Blackhole blackhole) {
+        consume(deserializer.deserialize("checked-orders", approved), blackhole);
+    }
+
+    @Benchmark
+    public void notifyDenied(final Blackhole blackhole) {
+        consume(deserializer.deserialize("checked-orders", denied), blackhole);
+    }
+
+    private static void consume(final Event event, final Blackhole blackhole) {
+        if (event instanceof OrderApprovedEvent approved) {
+            blackhole.consume(approved.getOrderId());
+            blackhole.consume(approved.getCheckedOn());
+        } else if (event instanceof OrderDeniedEvent denied) {
+            blackhole.consume(denied.getOrderId());
+            blackhole.consume(denied.getCheckedOn());
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package workshop.quarkus.reactive.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.jsontype.BasicPolymorphicTypeValidator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import workshop.quarkus.reactive.TestDataGenerator;
+import workshop.quarkus.reactive.event.Event;
+import workshop.quarkus.reactive.event.JsonEventCodec;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the latency of the first message that a freshly created codec encodes and decodes. Jackson
+ * data binding introspects the event classes and builds its (de)serializers on first use per
+ * {@code ObjectMapper}, whereas the streaming codec has no such state. Every iteration starts from a
+ * new codec, so this isolates the per-instance warm-up from class loading and JIT compilation, which
+ * only the first iteration of an in-process run pays.
+ * <p>
+ * The cost of class loading and of the JIT is what a native build removes. Compare the
+ * {@code pipeline.startup.first-message} gauge of a JVM build and a native build for that
+ * end-to-end view.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 200)
+public class ColdCodecBenchmark {
+
+    @Param({"DATA_BINDING", "STREAMING"})
+    String codec;
+
+    private Event event;
+
+    private ObjectMapper mapper;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        event = TestDataGenerator.toOrderApprovedEvent(TestDataGenerator.randomOrderGen.sample());
+        mapper = new ObjectMapper();
+        mapper.activateDefaultTyping(BasicPolymorphicTypeValidator.builder().build(), ObjectMapper.DefaultTyping.NON_FINAL);
+    }
+
+    @Benchmark
+    public Event firstMessage() throws Exception {
+        if (codec.equals("STREAMING")) {
+            return JsonEventCodec.decode(JsonEventCodec.encode(event));
+        }
+        return mapper.readValue(mapper.writeValueAsBytes(event), Event.class);
+    }
+}
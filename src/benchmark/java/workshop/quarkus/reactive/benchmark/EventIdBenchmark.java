@@ -0,0 +1,53 @@
+package workshop.quarkus.reactive.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import workshop.quarkus.reactive.event.Event;
+import workshop.quarkus.reactive.event.EventIdGenerator;
+import workshop.quarkus.reactive.event.OrderSubmittedEvent;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Creates events through the constructor that generates their ID and timestamp, from several
+ * threads at once.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Threads(4)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class EventIdBenchmark {
+
+    @Param({"ULID", "UUID"})
+    String generator;
+
+    private EventIdGenerator previous;
+
+    @Setup
+    public void setUp() {
+        previous = Event.idGenerator();
+        Event.useIdGenerator(EventIdGenerator.valueOf(generator));
+    }
+
+    @TearDown
+    public void tearDown() {
+        Event.useIdGenerator(previous);
+    }
+
+    @Benchmark
+    public Event createEvent() {
+        return new OrderSubmittedEvent("o-1", "c-1", "p-1", 1);
+    }
+}
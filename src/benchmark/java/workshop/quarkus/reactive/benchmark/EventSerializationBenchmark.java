@@ -0,0 +1,66 @@
+package workshop.quarkus.reactive.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import workshop.quarkus.reactive.TestDataGenerator;
+import workshop.quarkus.reactive.command.PlaceOrder;
+import workshop.quarkus.reactive.event.Event;
+import workshop.quarkus.reactive.event.EventDeserializer;
+import workshop.quarkus.reactive.event.EventFormat;
+import workshop.quarkus.reactive.event.EventSerializer;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class EventSerializationBenchmark {
+
+    @Param({"order-submitted-event", "order-approved-event", "order-denied-event"})
+    String eventType;
+
+    @Param({"JSON", "BINARY"})
+    String codec;
+
+    private EventSerializer serializer;
+
+    private EventDeserializer deserializer;
+
+    private Event event;
+
+    private byte[] bytes;
+
+    @Setup
+    public void setUp() {
+        serializer = new EventSerializer(EventFormat.valueOf(codec));
+        deserializer = new EventDeserializer();
+        PlaceOrder order = TestDataGenerator.randomOrderGen.sample();
+        event = switch (eventType) {
+            case "order-submitted-event" -> TestDataGenerator.toOrderSubmittedEvent(order);
+            case "order-approved-event" -> TestDataGenerator.toOrderApprovedEvent(order);
+            case "order-denied-event" -> TestDataGenerator.toOrderDeniedEvent(order);
+            default -> throw new IllegalArgumentException("Unsupported event type " + eventType + ".");
+        };
+        bytes = serializer.serialize("benchmark", event);
+    }
+
+    @Benchmark
+    public byte[] serialize() {
+        return serializer.serialize("benchmark", event);
+    }
+
+    @Benchmark
+    public Event deserialize() {
+        return deserializer.deserialize("benchmark", bytes);
+    }
+}
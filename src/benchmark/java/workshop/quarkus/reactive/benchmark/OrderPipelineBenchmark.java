@@ -0,0 +1,53 @@
+package workshop.quarkus.reactive.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Measures the path OrderService -> InventoryService -> NotificationService over the in-memory
+ * connector, see {@link OrderPipelineDriver}. Every fork boots the application on its own.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class OrderPipelineBenchmark {
+
+    private BenchmarkApplication application;
+
+    private BooleanSupplier pipeline;
+
+    @Setup
+    public void setUp() throws Exception {
+        application = BenchmarkApplication.start();
+        pipeline = application.driver(OrderPipelineDriver.class, BooleanSupplier.class);
+    }
+
+    @Setup(Level.Iteration)
+    public void enterApplication() {
+        application.enter();
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        application.close();
+    }
+
+    @Benchmark
+    public boolean submitCheckAndNotify() {
+        return pipeline.getAsBoolean();
+    }
+}
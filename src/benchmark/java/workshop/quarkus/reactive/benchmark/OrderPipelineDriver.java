@@ -0,0 +1,77 @@
+package workshop.quarkus.reactive.benchmark;
+
+import io.quarkus.arc.Arc;
+import io.smallrye.reactive.messaging.memory.InMemoryConnector;
+import io.smallrye.reactive.messaging.memory.InMemorySink;
+import io.smallrye.reactive.messaging.memory.InMemorySource;
+import jakarta.enterprise.inject.Any;
+import org.eclipse.microprofile.reactive.messaging.Message;
+import workshop.quarkus.reactive.NotificationService;
+import workshop.quarkus.reactive.OrderService;
+import workshop.quarkus.reactive.TestDataGenerator;
+import workshop.quarkus.reactive.command.PlaceOrder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Drives the path OrderService -> InventoryService -> NotificationService over the in-memory
+ * connector for the {@link OrderPipelineBenchmark}. The in-memory sinks are not wired to their
+ * sources, so every order relays the messages that arrived at a sink to the corresponding source by
+ * hand, which mirrors what the Kafka topics would do in production. Runs within the class loader of
+ * the {@link BenchmarkApplication}.
+ */
+public class OrderPipelineDriver implements BooleanSupplier {
+
+    private static final int NUMBER_OF_ORDERS = 1 << 12;
+
+    private final OrderService orderService;
+
+    private final NotificationService notificationService;
+
+    private final InMemorySink<Object> submittedOrders;
+
+    private final InMemorySource<Message<?>> incomingOrders;
+
+    private final InMemorySink<Object> checkedOrders;
+
+    private final InMemorySource<Message<?>> incomingCheckedOrders;
+
+    private final List<PlaceOrder> orders = new ArrayList<>(NUMBER_OF_ORDERS);
+
+    private int next;
+
+    public OrderPipelineDriver() {
+        orderService = Arc.container().instance(OrderService.class).get();
+        notificationService = Arc.container().instance(NotificationService.class).get();
+        InMemoryConnector connector = Arc.container().select(InMemoryConnector.class, Any.Literal.INSTANCE).get();
+        submittedOrders = connector.sink("outgoing-orders");
+        incomingOrders = connector.source("incoming-orders");
+        checkedOrders = connector.sink("outgoing-checked-orders");
+        incomingCheckedOrders = connector.source("incoming-checked-orders");
+        for (int i = 0; i < NUMBER_OF_ORDERS; i++) {
+            orders.add(i % 2 == 0
+                    ? TestDataGenerator.randomOrderGen.sample()
+                    : TestDataGenerator.randomUnavailableOrderGen.sample());
+        }
+    }
+
+    /**
+     * Submits the next order and relays it through the pipeline. Returns whether it has been decided.
+     */
+    @Override
+    public boolean getAsBoolean() {
+        PlaceOrder order = orders.get(next++ & (NUMBER_OF_ORDERS - 1));
+        orderService.submitOrder(order).await().indefinitely();
+        relay(submittedOrders, incomingOrders);
+        relay(checkedOrders, incomingCheckedOrders);
+        return notificationService.isApproved(order.orderId()) || notificationService.isDenied(order.orderId());
+    }
+
+    private static void relay(final InMemorySink<Object> sink, final InMemorySource<Message<?>> source) {
+        List<? extends Message<Object>> received = new ArrayList<>(sink.received());
+        sink.clear();
+        received.forEach(source::send);
+    }
+}
@@ -0,0 +1,57 @@
+package workshop.quarkus.reactive.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import workshop.quarkus.reactive.StockLedger;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Many threads reserving a handful of popular products. A single stripe corresponds to one
+ * compare-and-set counter per product and serves as the baseline for the striped variants.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(8)
+public class StockLedgerContentionBenchmark {
+
+    private static final long UNLIMITED = 1L << 56;
+
+    @Param({"1", "8", "32"})
+    int stripes;
+
+    @Param({"1", "16"})
+    int hotProducts;
+
+    private StockLedger ledger;
+
+    private String[] productIds;
+
+    @Setup
+    public void setUp() {
+        ledger = new StockLedger(stripes);
+        productIds = new String[hotProducts];
+        for (int i = 0; i < hotProducts; i++) {
+            productIds[i] = "product-" + i;
+            ledger.replenish(productIds[i], UNLIMITED);
+        }
+    }
+
+    @Benchmark
+    public boolean reserve() {
+        return ledger.reserve(productIds[ThreadLocalRandom.current().nextInt(hotProducts)], 1);
+    }
+}
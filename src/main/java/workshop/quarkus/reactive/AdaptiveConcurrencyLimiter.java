@@ -0,0 +1,137 @@
+package workshop.quarkus.reactive;
+
+import io.smallrye.mutiny.Uni;
+import io.smallrye.mutiny.subscription.UniEmitter;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Limits the number of concurrent tasks and adapts that limit to the latency of completed tasks
+ * (additive increase, multiplicative decrease). A task that completes within the latency threshold
+ * raises the limit by one, provided that at least half of the limit was in use; a task that fails or
+ * exceeds the threshold lowers the limit by the backoff ratio. The limit stays within
+ * {@code [minLimit, maxLimit]}.
+ * <p>
+ * Callers that find the limit exhausted wait for a permit in FIFO order. The number of waiters is not
+ * bounded here, so callers have to bound their own demand (e.g. by requesting at most
+ * {@code maxLimit} items upstream).
+ */
+public class AdaptiveConcurrencyLimiter {
+
+    private final int minLimit;
+
+    private final int maxLimit;
+
+    private final long latencyThresholdNanos;
+
+    private final double backoffRatio;
+
+    private final Deque<UniEmitter<? super Permit>> waiters = new ArrayDeque<>();
+
+    private int limit;
+
+    private int inFlight;
+
+    private long waits;
+
+    public AdaptiveConcurrencyLimiter(final int initialLimit,
+                                      final int minLimit,
+                                      final int maxLimit,
+                                      final Duration latencyThreshold,
+                                      final double backoffRatio) {
+        if (minLimit < 1 || maxLimit < minLimit) throw new IllegalArgumentException("The limits must satisfy 1 <= min <= max.");
+        if (backoffRatio <= 0.0 || backoffRatio >= 1.0) throw new IllegalArgumentException("The backoff ratio must lie in (0, 1).");
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.latencyThresholdNanos = latencyThreshold.toNanos();
+        this.backoffRatio = backoffRatio;
+        this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+    }
+
+    /**
+     * Emits a permit as soon as one is available. The permit has to be released exactly once.
+     */
+    public Uni<Permit> acquire() {
+        return Uni.createFrom().emitter(emitter -> {
+            final Permit permit;
+            synchronized (this) {
+                if (inFlight < limit) {
+                    inFlight++;
+                    permit = new Permit(System.nanoTime());
+                } else {
+                    waits++;
+                    waiters.addLast(emitter);
+                    permit = null;
+                }
+            }
+            if (permit != null) {
+                emitter.complete(permit);
+            } else {
+                emitter.onTermination(() -> {
+                    synchronized (this) {
+                        waiters.remove(emitter);
+                    }
+                });
+            }
+        });
+    }
+
+    public synchronized int limit() {
+        return limit;
+    }
+
+    public synchronized int inFlight() {
+        return inFlight;
+    }
+
+    public synchronized int queued() {
+        return waiters.size();
+    }
+
+    /**
+     * Number of acquisitions that found the limit exhausted and had to wait.
+     */
+    public synchronized long waits() {
+        return waits;
+    }
+
+    private void release(final Permit permit, final boolean succeeded) {
+        final long latencyNanos = System.nanoTime() - permit.acquiredAtNanos;
+        final List<UniEmitter<? super Permit>> granted = new ArrayList<>();
+        synchronized (this) {
+            if (!succeeded || latencyNanos > latencyThresholdNanos) {
+                limit = Math.max(minLimit, (int) (limit * backoffRatio));
+            } else if (inFlight * 2 >= limit) {
+                limit = Math.min(maxLimit, limit + 1);
+            }
+            inFlight--;
+            while (inFlight < limit && !waiters.isEmpty()) {
+                inFlight++;
+                granted.add(waiters.pollFirst());
+            }
+        }
+        final long now = System.nanoTime();
+        granted.forEach(waiter -> waiter.complete(new Permit(now)));
+    }
+
+    public final class Permit {
+
+        private final long acquiredAtNanos;
+
+        private boolean released;
+
+        private Permit(final long acquiredAtNanos) {
+            this.acquiredAtNanos = acquiredAtNanos;
+        }
+
+        public void release(final boolean succeeded) {
+            if (released) return;
+            released = true;
+            AdaptiveConcurrencyLimiter.this.release(this, succeeded);
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package workshop.quarkus.reactive;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.time.Duration;
+
+/**
+ * Remembers the last known stock level of products, so that orders for products that are known
+ * to be out of stock are denied without consulting the ledger. A cached level is only ever used to
+ * deny an order: approvals always go through a reservation on the ledger, which keeps the cache
+ * from overselling even while its entries are stale. Entries expire after the configured staleness
+ * window and are invalidated as soon as the product is replenished.
+ */
+@ApplicationScoped
+public class AvailabilityCache {
+
+    @Inject
+    StockLedger ledger;
+
+    @ConfigProperty(name = "inventory.availability-cache.enabled", defaultValue = "true")
+    boolean enabled;
+
+    @ConfigProperty(name = "inventory.availability-cache.maximum-size", defaultValue = "10000")
+    long maximumSize;
+
+    @ConfigProperty(name = "inventory.availability-cache.staleness", defaultValue = "PT5S")
+    Duration staleness;
+
+    private Cache<String, Long> stockLevelByProductId;
+
+    @PostConstruct
+    void createCache() {
+        stockLevelByProductId = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(staleness)
+                .recordStats()
+                .build();
+        ledger.onReplenishment(this::invalidate);
+    }
+
+    public boolean knownToBeUnavailable(final String productId, final int quantity) {
+        if (!enabled || productId == null) return false;
+        final Long stockLevel = stockLevelByProductId.getIfPresent(productId);
+        return stockLevel != null && stockLevel < quantity;
+    }
+
+    /**
+     * Caches the stock level of a product whose reservation failed. The level is read under the
+     * consolidation lock of the ledger, as a level read while another reservation consolidates the
+     * stripes of the product could be far too low and deny orders that the ledger would accept.
+     */
+    public void onReservationFailed(final String productId) {
+        if (!enabled || productId == null) return;
+        stockLevelByProductId.put(productId, ledger.settledStockLevel(productId));
+    }
+
+    public void invalidate(final String productId) {
+        stockLevelByProductId.invalidate(productId);
+    }
+
+    public void invalidateAll() {
+        stockLevelByProductId.invalidateAll();
+    }
+
+    public AvailabilityCacheStatistics statistics() {
+        final CacheStats stats = stockLevelByProductId.stats();
+        return new AvailabilityCacheStatistics(
+                stockLevelByProductId.estimatedSize(),
+                stats.hitCount(),
+                stats.missCount(),
+                stats.hitRate(),
+                stats.evictionCount());
+    }
+}
@@ -0,0 +1,4 @@
+package workshop.quarkus.reactive;
+
+public record AvailabilityCacheStatistics(long size, long hits, long misses, double hitRate, long evictions) {
+}
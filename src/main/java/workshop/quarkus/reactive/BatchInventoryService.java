@@ -0,0 +1,149 @@
+package workshop.quarkus.reactive;
+
+import io.quarkus.arc.properties.IfBuildProperty;
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.Uni;
+import io.smallrye.reactive.messaging.kafka.KafkaRecord;
+import io.smallrye.reactive.messaging.kafka.KafkaRecordBatch;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.reactive.messaging.Incoming;
+import org.eclipse.microprofile.reactive.messaging.Message;
+import org.eclipse.microprofile.reactive.messaging.Metadata;
+import org.eclipse.microprofile.reactive.messaging.Outgoing;
+import workshop.quarkus.reactive.event.Event;
+import workshop.quarkus.reactive.event.EventEnvelope;
+import workshop.quarkus.reactive.event.OrderSubmittedEvent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Consumes whole polls of {@code incoming-orders} at once. Requires {@code batch=true} on the
+ * incoming channel. All orders of a batch are checked in a single pass and the resulting events are
+ * emitted together; the incoming batch is acknowledged once all of them have been acknowledged. An
+ * order whose check fails is forwarded by the {@link OrderRetryRouter} on its own, and counts as
+ * acknowledged towards the batch once its forward has been acknowledged, so it neither holds up nor
+ * fails the other orders of the poll.
+ */
+@ApplicationScoped
+@IfBuildProperty(name = "inventory.consumption-mode", stringValue = "batch")
+public class BatchInventoryService {
+
+    @Inject
+    InventoryAvailabilityChecker checker;
+
+    @Inject
+    OrderRetryRouter retryRouter;
+
+    @Incoming("incoming-orders")
+    @Outgoing("outgoing-checked-orders")
+    public Multi<Message<Event>> checkAvailability(Message<List<OrderSubmittedEvent>> batch) {
+        final List<OrderSubmittedEvent> orders = new ArrayList<>(batch.getPayload().size());
+        final List<String> traceIds = new ArrayList<>(batch.getPayload().size());
+        final List<Metadata> sources = new ArrayList<>(batch.getPayload().size());
+        collectOrders(batch, orders, traceIds, sources);
+
+        if (orders.isEmpty()) {
+            return Uni.createFrom().completionStage(batch::ack).onItem().transformToMulti(ignored -> Multi.createFrom().empty());
+        }
+
+        final ReceivedMetadata received = ReceivedMetadata.of(batch);
+        final BatchAcknowledgement acknowledgement = new BatchAcknowledgement(batch, orders.size());
+        final List<Message<Event>> checkedOrders = new ArrayList<>(orders.size());
+        final List<Uni<Void>> reroutes = new ArrayList<>(0);
+
+        for (int i = 0; i < orders.size(); i++) {
+            final OrderSubmittedEvent order = orders.get(i);
+            final String traceId = traceIds.get(i);
+            final boolean available;
+            try {
+                available = checker.allLineItemsAvailable(order, traceId);
+            } catch (RuntimeException e) {
+                reroutes.add(retryRouter.reroute(Message.of(order, sources.get(i).with(new OrderMetadata(traceId)), acknowledgement::ack, acknowledgement::nack), e));
+                continue;
+            }
+            checkedOrders.add(Message.of(InventoryService.toCheckedEvent(order, available), Metadata.of(new OrderMetadata(traceId), InventoryService.checkedOrderMetadataOf(order), received))
+                    .withAck(acknowledgement::ack)
+                    .withNack(acknowledgement::nack));
+        }
+
+        final Multi<Message<Event>> checked = Multi.createFrom().iterable(checkedOrders);
+        if (reroutes.isEmpty()) return checked;
+        return Uni.join().all(reroutes).andCollectFailures().onItem().transformToMulti(ignored -> checked);
+    }
+
+    /**
+     * Collects the orders of the batch along with their trace IDs and the metadata of the records
+     * they came from, which a forward to the retry tiers needs. Records that have been skipped by
+     * the header filter of the channel carry no payload and are left out. Envelopes contribute all of
+     * their orders. A batch that does not consist of Kafka records only carries the trace ID of the
+     * batch as a whole; its orders are traced as children of the batch, as
+     * {@code <batch trace ID>/<position of the order>}.
+     */
+    @SuppressWarnings("unchecked")
+    private static void collectOrders(final Message<List<OrderSubmittedEvent>> batch, final List<OrderSubmittedEvent> orders, final List<String> traceIds, final List<Metadata> sources) {
+        if (batch instanceof KafkaRecordBatch<?, ?> records) {
+            for (KafkaRecord<?, ?> record : records.getRecords()) {
+                if (record.getPayload() == null) continue;
+                if (record.getPayload() instanceof EventEnvelope envelope) {
+                    collectOrders(envelope, record.getMetadata(), orders, traceIds, sources);
+                    continue;
+                }
+                orders.add(((KafkaRecord<?, OrderSubmittedEvent>) record).getPayload());
+                traceIds.add(InventoryService.traceIdOf(record));
+                sources.add(record.getMetadata());
+            }
+        } else {
+            final String batchTraceId = InventoryService.traceIdOf(batch);
+            int position = 0;
+            for (OrderSubmittedEvent order : batch.getPayload()) {
+                position++;
+                if (order == null) continue;
+                orders.add(order);
+                traceIds.add(batchTraceId.isEmpty() ? batchTraceId : batchTraceId + "/" + position);
+                sources.add(batch.getMetadata());
+            }
+        }
+    }
+
+    private static void collectOrders(final EventEnvelope envelope, final Metadata source, final List<OrderSubmittedEvent> orders, final List<String> traceIds, final List<Metadata> sources) {
+        for (EventEnvelope.Entry entry : envelope.getEntries()) {
+            if (!(entry.event() instanceof OrderSubmittedEvent order)) continue;
+            orders.add(order);
+            traceIds.add(entry.traceId());
+            sources.add(source);
+        }
+    }
+
+    private static class BatchAcknowledgement {
+
+        private final Message<?> batch;
+
+        private final AtomicInteger pending;
+
+        private final AtomicBoolean done = new AtomicBoolean(false);
+
+        BatchAcknowledgement(final Message<?> batch, final int size) {
+            this.batch = batch;
+            this.pending = new AtomicInteger(size);
+        }
+
+        CompletableFuture<Void> ack() {
+            if (pending.decrementAndGet() == 0 && done.compareAndSet(false, true)) {
+                return batch.ack().toCompletableFuture();
+            }
+            return CompletableFuture.completedFuture(null);
+        }
+
+        CompletableFuture<Void> nack(final Throwable reason) {
+            if (done.compareAndSet(false, true)) {
+                return batch.nack(reason).toCompletableFuture();
+            }
+            return CompletableFuture.completedFuture(null);
+        }
+    }
+}
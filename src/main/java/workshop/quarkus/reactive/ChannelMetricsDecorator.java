@@ -0,0 +1,106 @@
+package workshop.quarkus.reactive;
+
+import io.smallrye.mutiny.Multi;
+import io.smallrye.reactive.messaging.PublisherDecorator;
+import io.smallrye.reactive.messaging.SubscriberDecorator;
+import io.smallrye.reactive.messaging.kafka.KafkaRecord;
+import io.smallrye.reactive.messaging.kafka.KafkaRecordBatch;
+import io.smallrye.reactive.messaging.providers.MetadataInjectableMessage;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.reactive.messaging.Message;
+import workshop.quarkus.reactive.event.Event;
+import workshop.quarkus.reactive.event.EventEnvelope;
+import workshop.quarkus.reactive.event.OrderApprovedEvent;
+import workshop.quarkus.reactive.event.OrderDeniedEvent;
+
+import java.util.List;
+
+/**
+ * Counts the messages of every connector channel, once per message. Orders that arrive from the
+ * {@code orders} topic or one of its priority lanes get the time of their receipt as
+ * {@link ReceivedMetadata}, injected into the Kafka record instead of wrapping it, and their time
+ * spent in the topic is recorded. Batches are left as they are; the batch consumer takes the time of
+ * receipt itself. Checked orders that leave through {@value PipelineMetrics#OUTGOING_CHECKED_ORDERS}
+ * are recorded as decisions, with the latency from the receipt of the order they were derived from.
+ */
+@ApplicationScoped
+public class ChannelMetricsDecorator implements PublisherDecorator, SubscriberDecorator {
+
+    @Inject
+    PipelineMetrics metrics;
+
+    /**
+     * Applied before all other decorators, so that incoming messages are counted as they arrive and
+     * outgoing messages as they are emitted, before they are packed into envelopes.
+     */
+    @Override
+    public int getPriority() {
+        return PublisherDecorator.DEFAULT_PRIORITY - 200;
+    }
+
+    @Override
+    public Multi<? extends Message<?>> decorate(final Multi<? extends Message<?>> publisher, final String channelName, final boolean isConnector) {
+        if (!isConnector) return publisher;
+        if (!isOrdersChannel(channelName)) return publisher.invoke(message -> metrics.recordMessage(channelName));
+        return publisher.map(message -> {
+            metrics.recordMessage(channelName);
+            return withReceipt(message);
+        });
+    }
+
+    @Override
+    public Multi<? extends Message<?>> decorate(final Multi<? extends Message<?>> toBeSubscribed, final List<String> channelName, final boolean isConnector) {
+        if (!isConnector || channelName.isEmpty()) return toBeSubscribed;
+        final String channel = channelName.get(0);
+        final boolean checkedOrders = PipelineMetrics.OUTGOING_CHECKED_ORDERS.equals(channel);
+        return toBeSubscribed.invoke(message -> {
+            metrics.recordMessage(channel);
+            if (checkedOrders) recordDecision(message);
+        });
+    }
+
+    private void recordDecision(final Message<?> message) {
+        final boolean approved;
+        if (message.getPayload() instanceof OrderApprovedEvent) {
+            approved = true;
+        } else if (message.getPayload() instanceof OrderDeniedEvent) {
+            approved = false;
+        } else {
+            return;
+        }
+        final ReceivedMetadata received = message.getMetadata(ReceivedMetadata.class).orElse(null);
+        if (received != null) {
+            metrics.recordDecision(received.receivedAtNanos(), approved);
+        } else {
+            metrics.recordDecision(approved);
+        }
+    }
+
+    private Message<?> withReceipt(final Message<?> message) {
+        final long receivedAtMillis = System.currentTimeMillis();
+        if (message instanceof KafkaRecordBatch<?, ?> batch) {
+            for (KafkaRecord<?, ?> record : batch.getRecords()) {
+                metrics.recordTopicDwell(record.getTimestamp().toEpochMilli(), receivedAtMillis);
+            }
+            return message;
+        }
+        if (message instanceof KafkaRecord<?, ?> record) {
+            metrics.recordTopicDwell(record.getTimestamp().toEpochMilli(), receivedAtMillis);
+        } else if (message.getPayload() instanceof Event event && !(event instanceof EventEnvelope)) {
+            metrics.recordTopicDwell(event.getEventTime(), receivedAtMillis);
+        }
+        if (message instanceof MetadataInjectableMessage<?> record) {
+            record.injectMetadata(ReceivedMetadata.now());
+            return message;
+        }
+        return message.addMetadata(ReceivedMetadata.now());
+    }
+
+    private static boolean isOrdersChannel(final String channel) {
+        for (OrderPriority lane : OrderPriority.values()) {
+            if (lane.channel().equals(channel)) return true;
+        }
+        return false;
+    }
+}
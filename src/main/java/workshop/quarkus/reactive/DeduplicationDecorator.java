@@ -0,0 +1,76 @@
+package workshop.quarkus.reactive;
+
+import io.smallrye.mutiny.Multi;
+import io.smallrye.reactive.messaging.PublisherDecorator;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.Config;
+import org.eclipse.microprofile.reactive.messaging.Message;
+import org.jboss.logging.Logger;
+import workshop.quarkus.reactive.event.Event;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Suppresses redelivered events on incoming channels that enable deduplication:
+ * <pre>
+ * mp.messaging.incoming.[channel].deduplication.enabled=true
+ * mp.messaging.incoming.[channel].deduplication.expected-events=100000
+ * mp.messaging.incoming.[channel].deduplication.false-positive-rate=0.000001
+ * </pre>
+ * Every such channel gets its own {@link DuplicateFilter} keyed on {@link Event#getEventId()}.
+ * Duplicates are acknowledged without being passed on to the consuming method. An event ID is only
+ * recorded once its message has been acknowledged, so an event whose processing failed is not taken
+ * for a duplicate when it is redelivered. Messages that do not carry a single event (e.g. batches)
+ * are passed on unchanged.
+ */
+@ApplicationScoped
+public class DeduplicationDecorator implements PublisherDecorator {
+
+    private static final Logger LOG = Logger.getLogger(DeduplicationDecorator.class);
+
+    @Inject
+    Config config;
+
+    @Inject
+    PipelineMetrics metrics;
+
+    private final Map<String, DuplicateFilter> filters = new ConcurrentHashMap<>();
+
+    @Override
+    public Multi<? extends Message<?>> decorate(final Multi<? extends Message<?>> publisher, final String channelName, final boolean isConnector) {
+        final String prefix = "mp.messaging.incoming." + channelName + ".deduplication.";
+        if (!isConnector || !config.getOptionalValue(prefix + "enabled", Boolean.class).orElse(false)) return publisher;
+
+        final DuplicateFilter filter = new DuplicateFilter(
+                config.getOptionalValue(prefix + "expected-events", Integer.class).orElse(100_000),
+                config.getOptionalValue(prefix + "false-positive-rate", Double.class).orElse(0.000001));
+        filters.put(channelName, filter);
+        LOG.infof("Deduplicating events on channel %s using %d bytes and %d hash functions",
+                channelName, filter.memoryFootprintBytes(), filter.hashFunctions());
+
+        return publisher
+                .filter(message -> {
+                    if (!isDuplicate(filter, message)) return true;
+                    message.ack();
+                    metrics.recordDuplicate(channelName);
+                    return false;
+                })
+                .map(message -> recordOnAck(filter, message));
+    }
+
+    public long suppressed(final String channelName) {
+        final DuplicateFilter filter = filters.get(channelName);
+        return filter == null ? 0L : filter.suppressed();
+    }
+
+    private static boolean isDuplicate(final DuplicateFilter filter, final Message<?> message) {
+        return message.getPayload() instanceof Event event && filter.isDuplicate(event.getEventId());
+    }
+
+    private static Message<?> recordOnAck(final DuplicateFilter filter, final Message<?> message) {
+        if (!(message.getPayload() instanceof Event event) || event.getEventId() == null) return message;
+        return message.withAck(() -> message.ack().thenRun(() -> filter.record(event.getEventId())));
+    }
+}
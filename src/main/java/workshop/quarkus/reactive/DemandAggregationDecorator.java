@@ -0,0 +1,64 @@
+package workshop.quarkus.reactive;
+
+import io.smallrye.mutiny.Multi;
+import io.smallrye.reactive.messaging.PublisherDecorator;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.Config;
+import org.eclipse.microprofile.reactive.messaging.Message;
+import workshop.quarkus.reactive.event.OrderSubmittedEvent;
+
+import java.util.List;
+
+/**
+ * Aggregates the demand per product from the orders on incoming channels that enable it:
+ * <pre>
+ * mp.messaging.incoming.[channel].demand.enabled=true
+ * </pre>
+ * Every submitted order is recorded in the {@link DemandWindows} at its event time as it passes by,
+ * before it reaches the consuming method. Batches are recorded order by order.
+ */
+@ApplicationScoped
+public class DemandAggregationDecorator implements PublisherDecorator {
+
+    @Inject
+    Config config;
+
+    private final DemandWindows windows = new DemandWindows();
+
+    /**
+     * Applied after deduplication, so that redelivered orders are not counted twice.
+     */
+    @Override
+    public int getPriority() {
+        return PublisherDecorator.DEFAULT_PRIORITY + 100;
+    }
+
+    @Override
+    public Multi<? extends Message<?>> decorate(final Multi<? extends Message<?>> publisher, final String channelName, final boolean isConnector) {
+        if (!isConnector || !config.getOptionalValue("mp.messaging.incoming." + channelName + ".demand.enabled", Boolean.class).orElse(false)) {
+            return publisher;
+        }
+        return publisher.invoke(message -> {
+            if (message.getPayload() instanceof OrderSubmittedEvent order) {
+                record(order);
+            } else if (message.getPayload() instanceof List<?> batch) {
+                batch.forEach(element -> {
+                    if (element instanceof OrderSubmittedEvent order) record(order);
+                });
+            }
+        });
+    }
+
+    public DemandWindows.Demand demandOf(final String productId, final DemandWindows.Window window) {
+        return windows.demandOf(productId, window);
+    }
+
+    public List<DemandWindows.Demand> top(final DemandWindows.Window window, final int k) {
+        return windows.top(window, k);
+    }
+
+    private void record(final OrderSubmittedEvent order) {
+        windows.record(order.getProductId(), order.getQuantity() == null ? 0 : order.getQuantity(), order.getEventTime());
+    }
+}
@@ -0,0 +1,183 @@
+package workshop.quarkus.reactive;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps the number of orders and ordered units per product over sliding windows. Every window is a
+ * ring of time buckets with primitive counters plus running totals: an order is added to the bucket
+ * of its time and to the totals, and buckets that slide out of the window are subtracted from the
+ * totals and reused as time advances. Neither recording an order nor querying a window looks at past
+ * orders, so both take constant time per product.
+ * <p>
+ * A window covers its current bucket and the full buckets before it, so the figures of a window lag
+ * behind by at most one bucket. Orders older than the window are ignored, orders from the future are
+ * counted as if they happened now.
+ */
+public class DemandWindows {
+
+    public enum Window {
+
+        ONE_MINUTE("1m", Duration.ofMinutes(1), 12),
+        FIVE_MINUTES("5m", Duration.ofMinutes(5), 10),
+        ONE_HOUR("1h", Duration.ofHours(1), 12);
+
+        private final String label;
+
+        private final long bucketMillis;
+
+        private final int buckets;
+
+        Window(final String label, final Duration length, final int buckets) {
+            this.label = label;
+            this.bucketMillis = length.toMillis() / buckets;
+            this.buckets = buckets;
+        }
+
+        public String label() {
+            return label;
+        }
+
+        public static Window fromLabel(final String label) {
+            for (Window window : values()) {
+                if (window.label.equals(label)) return window;
+            }
+            throw new IllegalArgumentException("Unknown demand window " + label + ".");
+        }
+    }
+
+    private static final Window[] WINDOWS = Window.values();
+
+    private final Map<String, ProductDemand> demandByProductId = new ConcurrentHashMap<>();
+
+    public void record(final String productId, final int units, final long timestampMillis) {
+        record(productId, units, timestampMillis, System.currentTimeMillis());
+    }
+
+    void record(final String productId, final int units, final long timestampMillis, final long nowMillis) {
+        if (productId == null) return;
+        demandByProductId.compute(productId, (id, demand) -> {
+            final ProductDemand current = demand == null ? new ProductDemand() : demand;
+            current.add(Math.min(timestampMillis, nowMillis), Math.max(units, 0), nowMillis);
+            return current;
+        });
+    }
+
+    public Demand demandOf(final String productId, final Window window) {
+        return demandOf(productId, window, System.currentTimeMillis());
+    }
+
+    Demand demandOf(final String productId, final Window window, final long nowMillis) {
+        final ProductDemand demand = demandByProductId.get(productId);
+        return demand == null ? new Demand(productId, 0L, 0L) : demand.snapshot(productId, window, nowMillis);
+    }
+
+    /**
+     * The {@code k} products with the most ordered units within the given window, most ordered first.
+     * Products that have not been ordered within the longest window are dropped along the way.
+     */
+    public List<Demand> top(final Window window, final int k) {
+        return top(window, k, System.currentTimeMillis());
+    }
+
+    List<Demand> top(final Window window, final int k, final long nowMillis) {
+        if (k <= 0) return List.of();
+        final Comparator<Demand> byUnits = Comparator.comparingLong(Demand::units).thenComparingLong(Demand::orders);
+        final PriorityQueue<Demand> top = new PriorityQueue<>(k + 1, byUnits);
+        demandByProductId.forEach((productId, demand) -> {
+            final Demand current = demand.snapshot(productId, window, nowMillis);
+            if (current.orders() == 0L) {
+                demandByProductId.computeIfPresent(productId, (id, present) -> present.isIdle(nowMillis) ? null : present);
+                return;
+            }
+            top.offer(current);
+            if (top.size() > k) top.poll();
+        });
+        final List<Demand> ranked = new ArrayList<>(top);
+        ranked.sort(byUnits.reversed());
+        return ranked;
+    }
+
+    public int trackedProducts() {
+        return demandByProductId.size();
+    }
+
+    public record Demand(String productId, long orders, long units) {
+    }
+
+    /**
+     * Buckets of all windows of a product, laid out window after window in the same arrays.
+     */
+    private static class ProductDemand {
+
+        private static final int[] OFFSETS = new int[WINDOWS.length];
+
+        private static final int SLOTS;
+
+        static {
+            int slots = 0;
+            for (Window window : WINDOWS) {
+                OFFSETS[window.ordinal()] = slots;
+                slots += window.buckets;
+            }
+            SLOTS = slots;
+        }
+
+        private final long[] orders = new long[SLOTS];
+
+        private final long[] units = new long[SLOTS];
+
+        private final long[] totalOrders = new long[WINDOWS.length];
+
+        private final long[] totalUnits = new long[WINDOWS.length];
+
+        /* number of the newest bucket of each window, counted from the epoch */
+        private final long[] newestBucket = new long[WINDOWS.length];
+
+        synchronized void add(final long timestampMillis, final int quantity, final long nowMillis) {
+            for (Window window : WINDOWS) {
+                advance(window, nowMillis);
+                final long bucket = timestampMillis / window.bucketMillis;
+                if (newestBucket[window.ordinal()] - bucket >= window.buckets) continue;
+                final int slot = OFFSETS[window.ordinal()] + (int) (bucket % window.buckets);
+                orders[slot]++;
+                units[slot] += quantity;
+                totalOrders[window.ordinal()]++;
+                totalUnits[window.ordinal()] += quantity;
+            }
+        }
+
+        synchronized Demand snapshot(final String productId, final Window window, final long nowMillis) {
+            advance(window, nowMillis);
+            return new Demand(productId, totalOrders[window.ordinal()], totalUnits[window.ordinal()]);
+        }
+
+        synchronized boolean isIdle(final long nowMillis) {
+            final Window longest = WINDOWS[WINDOWS.length - 1];
+            advance(longest, nowMillis);
+            return totalOrders[longest.ordinal()] == 0L;
+        }
+
+        /*
+         * evicts the buckets that slid out of the window since it was last advanced, at most one ring's worth
+         */
+        private void advance(final Window window, final long nowMillis) {
+            final int index = window.ordinal();
+            final long bucket = nowMillis / window.bucketMillis;
+            final long expired = Math.min(bucket - newestBucket[index], window.buckets);
+            for (long i = 1; i <= expired; i++) {
+                final int slot = OFFSETS[index] + (int) ((newestBucket[index] + i) % window.buckets);
+                totalOrders[index] -= orders[slot];
+                totalUnits[index] -= units[slot];
+                orders[slot] = 0L;
+                units[slot] = 0L;
+            }
+            if (bucket > newestBucket[index]) newestBucket[index] = bucket;
+        }
+    }
+}
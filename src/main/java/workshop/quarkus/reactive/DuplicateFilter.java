@@ -0,0 +1,147 @@
+package workshop.quarkus.reactive;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Remembers recently seen event IDs in a fixed amount of memory. The filter consists of two Bloom
+ * filter generations: IDs are added to the current generation and looked up in both. Once the current
+ * generation holds {@code expectedEvents} IDs, the older generation is cleared and becomes the current
+ * one. Hence the filter always remembers at least the last {@code expectedEvents} IDs, and with a
+ * false-positive rate of at most {@code falsePositiveRate} per generation.
+ * <p>
+ * IDs are looked up and recorded separately, so that callers can record an ID only once its event
+ * has been processed. Lookups are lock-free. Deliveries of an ID before it has been recorded all
+ * pass, and IDs may be forgotten while a generation is being cleared; both only weaken deduplication
+ * and never drop an unseen ID other than through a false positive.
+ */
+public class DuplicateFilter {
+
+    private final int expectedEvents;
+
+    private final int hashFunctions;
+
+    private final int bitsPerGeneration;
+
+    private final AtomicLongArray[] generations;
+
+    private final AtomicInteger insertions = new AtomicInteger();
+
+    private final AtomicLong suppressed = new AtomicLong();
+
+    private final ReentrantLock rotationLock = new ReentrantLock();
+
+    private volatile int current = 0;
+
+    public DuplicateFilter(final int expectedEvents, final double falsePositiveRate) {
+        if (expectedEvents <= 0) throw new IllegalArgumentException("The expected number of events must be positive.");
+        if (falsePositiveRate <= 0.0 || falsePositiveRate >= 1.0) throw new IllegalArgumentException("The false-positive rate must lie in (0, 1).");
+        final double bits = -expectedEvents * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2));
+        this.expectedEvents = expectedEvents;
+        this.bitsPerGeneration = (int) Math.min(Integer.MAX_VALUE - 63, Math.ceil(bits / 64.0) * 64);
+        this.hashFunctions = Math.max(1, (int) Math.round(bits / expectedEvents * Math.log(2)));
+        this.generations = new AtomicLongArray[]{
+                new AtomicLongArray(bitsPerGeneration / 64),
+                new AtomicLongArray(bitsPerGeneration / 64)};
+    }
+
+    /**
+     * Returns {@code true} if the given event ID has (probably) been recorded before.
+     */
+    public boolean isDuplicate(final String eventId) {
+        if (eventId == null) return false;
+        final long h1 = hash(eventId);
+        final long h2 = mix(h1 ^ 0x9E3779B97F4A7C15L) | 1L;
+
+        final int generation = current;
+        if (contains(generations[generation], h1, h2) || contains(generations[1 - generation], h1, h2)) {
+            suppressed.incrementAndGet();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Remembers the given event ID, so that later deliveries of it are reported as duplicates.
+     */
+    public void record(final String eventId) {
+        if (eventId == null) return;
+        final long h1 = hash(eventId);
+        final long h2 = mix(h1 ^ 0x9E3779B97F4A7C15L) | 1L;
+
+        final int generation = current;
+        add(generations[generation], h1, h2);
+        if (insertions.incrementAndGet() >= expectedEvents) rotate(generation);
+    }
+
+    public long suppressed() {
+        return suppressed.get();
+    }
+
+    public long memoryFootprintBytes() {
+        return 2L * bitsPerGeneration / 8;
+    }
+
+    public int hashFunctions() {
+        return hashFunctions;
+    }
+
+    private boolean contains(final AtomicLongArray bits, final long h1, final long h2) {
+        long h = h1;
+        for (int i = 0; i < hashFunctions; i++) {
+            final int bit = (int) Long.remainderUnsigned(h, bitsPerGeneration);
+            if ((bits.get(bit >>> 6) & (1L << bit)) == 0) return false;
+            h += h2;
+        }
+        return true;
+    }
+
+    private void add(final AtomicLongArray bits, final long h1, final long h2) {
+        long h = h1;
+        for (int i = 0; i < hashFunctions; i++) {
+            final int bit = (int) Long.remainderUnsigned(h, bitsPerGeneration);
+            final int word = bit >>> 6;
+            final long mask = 1L << bit;
+            long value;
+            while (((value = bits.get(word)) & mask) == 0 && !bits.compareAndSet(word, value, value | mask)) {
+                Thread.onSpinWait();
+            }
+            h += h2;
+        }
+    }
+
+    private void rotate(final int generation) {
+        if (!rotationLock.tryLock()) return;
+        try {
+            if (current != generation) return;
+            final AtomicLongArray oldest = generations[1 - generation];
+            for (int i = 0; i < oldest.length(); i++) {
+                oldest.set(i, 0L);
+            }
+            insertions.set(0);
+            current = 1 - generation;
+        } finally {
+            rotationLock.unlock();
+        }
+    }
+
+    private static long hash(final String eventId) {
+        long h = 0xCBF29CE484222325L;
+        for (int i = 0; i < eventId.length(); i++) {
+            h ^= eventId.charAt(i);
+            h *= 0x100000001B3L;
+        }
+        return mix(h);
+    }
+
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,195 @@
+package workshop.quarkus.reactive;
+
+import io.smallrye.mutiny.Multi;
+import io.smallrye.reactive.messaging.PublisherDecorator;
+import io.smallrye.reactive.messaging.SubscriberDecorator;
+import io.smallrye.reactive.messaging.kafka.api.OutgoingKafkaRecordMetadata;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.eclipse.microprofile.config.Config;
+import org.eclipse.microprofile.reactive.messaging.Message;
+import org.eclipse.microprofile.reactive.messaging.Metadata;
+import workshop.quarkus.reactive.event.Event;
+import workshop.quarkus.reactive.event.EventEnvelope;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Packs the events of outgoing channels that enable envelopes into {@link EventEnvelope}s:
+ * <pre>
+ * mp.messaging.outgoing.[channel].envelope.enabled=true
+ * mp.messaging.outgoing.[channel].envelope.max-events=64
+ * mp.messaging.outgoing.[channel].envelope.max-delay=PT0.005S
+ * </pre>
+ * Messages are collected for at most {@code max-delay} or until {@code max-events} are pending, and
+ * those with the same destination, i.e. the same topic, partition, Kafka key and headers, are packed
+ * into one envelope that is sent with that destination. Messages routed to different topics, such as
+ * the priority lanes, are therefore never mixed. An envelope is acknowledged towards the producers of
+ * its events once Kafka acknowledged it. A message that has no other message with its destination to
+ * share an envelope with is sent as is.
+ * <p>
+ * On incoming channels, envelopes are unpacked into one message per event. The envelope is
+ * acknowledged once all of its events have been acknowledged, and negatively acknowledged as soon as
+ * one of them is, so the failure strategy of the channel applies to the envelope as a whole.
+ */
+@ApplicationScoped
+public class EnvelopeDecorator implements SubscriberDecorator, PublisherDecorator {
+
+    @Inject
+    Config config;
+
+    @Inject
+    PipelineMetrics metrics;
+
+    /**
+     * Applied before the other decorators, so that deduplication and the restoring of metadata see
+     * the unpacked events.
+     */
+    @Override
+    public int getPriority() {
+        return PublisherDecorator.DEFAULT_PRIORITY - 100;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Multi<? extends Message<?>> decorate(final Multi<? extends Message<?>> toBeSubscribed, final List<String> channelName, final boolean isConnector) {
+        if (!isConnector || channelName.isEmpty()) return toBeSubscribed;
+        final String prefix = "mp.messaging.outgoing." + channelName.get(0) + ".envelope.";
+        if (!config.getOptionalValue(prefix + "enabled", Boolean.class).orElse(false)) return toBeSubscribed;
+
+        final int maxEvents = config.getOptionalValue(prefix + "max-events", Integer.class).orElse(64);
+        final Duration maxDelay = config.getOptionalValue(prefix + "max-delay", Duration.class).orElse(Duration.ofMillis(5));
+        return ((Multi<Message<?>>) toBeSubscribed)
+                .group().intoLists().of(maxEvents, maxDelay)
+                .onItem().transformToIterable(EnvelopeDecorator::pack);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Multi<? extends Message<?>> decorate(final Multi<? extends Message<?>> publisher, final String channelName, final boolean isConnector) {
+        if (!isConnector) return publisher;
+        return ((Multi<Message<?>>) publisher).onItem().transformToIterable(message -> {
+            if (!(message.getPayload() instanceof EventEnvelope envelope)) return List.of(message);
+            if (envelope.getEntries().isEmpty()) {
+                message.ack();
+                metrics.recordDropped(channelName);
+                return List.of();
+            }
+            return unpack(message, envelope);
+        });
+    }
+
+    static List<Message<?>> pack(final List<Message<?>> messages) {
+        final Map<Destination, List<Message<?>>> byDestination = new LinkedHashMap<>();
+        final List<Message<?>> packed = new ArrayList<>(messages.size());
+        for (Message<?> message : messages) {
+            if (message.getPayload() instanceof Event && !(message.getPayload() instanceof EventEnvelope)) {
+                byDestination.computeIfAbsent(Destination.of(message), destination -> new ArrayList<>()).add(message);
+            } else {
+                packed.add(message);
+            }
+        }
+        byDestination.forEach((destination, same) -> packed.add(same.size() == 1 ? same.get(0) : envelopeOf(destination, same)));
+        return packed;
+    }
+
+    static List<Message<?>> unpack(final Message<?> message, final EventEnvelope envelope) {
+        final EnvelopeAcknowledgement acknowledgement = new EnvelopeAcknowledgement(message, envelope.getEntries().size());
+        final int count = envelope.getEntries().size();
+        final List<Message<?>> unpacked = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            final EventEnvelope.Entry entry = envelope.getEntries().get(i);
+            Metadata metadata = message.getMetadata().with(new Position(i, count));
+            if (entry.traceId() != null) metadata = metadata.with(new OrderMetadata(entry.traceId()));
+            unpacked.add(Message.of(entry.event(), metadata, acknowledgement::ack, acknowledgement::nack));
+        }
+        return unpacked;
+    }
+
+    private static Message<?> envelopeOf(final Destination destination, final List<Message<?>> messages) {
+        final List<EventEnvelope.Entry> entries = new ArrayList<>(messages.size());
+        for (Message<?> message : messages) {
+            final String traceId = message.getMetadata(OrderMetadata.class).map(OrderMetadata::traceId).orElse(null);
+            entries.add(new EventEnvelope.Entry(traceId, (Event) message.getPayload()));
+        }
+        return Message.of(new EventEnvelope(entries), destination.metadata(),
+                () -> CompletableFuture.allOf(messages.stream().map(message -> message.ack().toCompletableFuture()).toArray(CompletableFuture[]::new)),
+                reason -> CompletableFuture.allOf(messages.stream().map(message -> message.nack(reason).toCompletableFuture()).toArray(CompletableFuture[]::new)));
+    }
+
+    /**
+     * Where the producer sends a message to, as far as its {@link OutgoingKafkaRecordMetadata} overrides
+     * the defaults of the channel. {@link RecordHeaders} compare by content, so messages that carry
+     * equal headers share a destination.
+     */
+    private record Destination(String topic, int partition, Object key, Headers headers) {
+
+        static Destination of(final Message<?> message) {
+            return message.getMetadata(OutgoingKafkaRecordMetadata.class)
+                    .map(metadata -> new Destination(metadata.getTopic(), metadata.getPartition(), metadata.getKey(),
+                            metadata.getHeaders() == null || !metadata.getHeaders().iterator().hasNext()
+                                    ? null
+                                    : new RecordHeaders(metadata.getHeaders().toArray())))
+                    .orElse(new Destination(null, -1, null, null));
+        }
+
+        Metadata metadata() {
+            if (topic == null && partition < 0 && key == null && headers == null) return Metadata.empty();
+            final OutgoingKafkaRecordMetadata.OutgoingKafkaRecordMetadataBuilder<Object> builder = OutgoingKafkaRecordMetadata.builder();
+            if (topic != null) builder.withTopic(topic);
+            if (partition >= 0) builder.withPartition(partition);
+            if (key != null) builder.withKey(key);
+            if (headers != null) builder.withHeaders(new RecordHeaders(headers.toArray()));
+            return Metadata.of(builder.build());
+        }
+    }
+
+    /**
+     * Position of an unpacked event within its envelope. All events of an envelope share the metadata
+     * of the record that carried it, so consumers that track record offsets have to wait for the last
+     * event of an envelope before they consider its offset processed.
+     */
+    public record Position(int index, int count) {
+
+        public boolean isLast() {
+            return index == count - 1;
+        }
+    }
+
+    private static class EnvelopeAcknowledgement {
+
+        private final Message<?> envelope;
+
+        private final AtomicInteger pending;
+
+        private final AtomicBoolean done = new AtomicBoolean(false);
+
+        EnvelopeAcknowledgement(final Message<?> envelope, final int size) {
+            this.envelope = envelope;
+            this.pending = new AtomicInteger(size);
+        }
+
+        CompletableFuture<Void> ack() {
+            if (pending.decrementAndGet() == 0 && done.compareAndSet(false, true)) {
+                return envelope.ack().toCompletableFuture();
+            }
+            return CompletableFuture.completedFuture(null);
+        }
+
+        CompletableFuture<Void> nack(final Throwable reason) {
+            if (done.compareAndSet(false, true)) {
+                return envelope.nack(reason).toCompletableFuture();
+            }
+            return CompletableFuture.completedFuture(null);
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package workshop.quarkus.reactive;
+
+import io.quarkus.runtime.StartupEvent;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+import workshop.quarkus.reactive.event.Event;
+import workshop.quarkus.reactive.event.EventIdGenerator;
+
+@ApplicationScoped
+public class EventIdConfiguration {
+
+    private static final Logger LOG = Logger.getLogger(EventIdConfiguration.class);
+
+    @ConfigProperty(name = "event.id-generator", defaultValue = "ulid")
+    String idGenerator;
+
+    void onStart(@Observes final StartupEvent event) {
+        Event.useIdGenerator(EventIdGenerator.fromConfig(idGenerator));
+        LOG.infof("Generating event IDs as %s", Event.idGenerator());
+    }
+}
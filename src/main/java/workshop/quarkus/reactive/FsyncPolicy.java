@@ -0,0 +1,24 @@
+package workshop.quarkus.reactive;
+
+/**
+ * Determines when an order that has been appended to the {@link OutboxJournal} counts as submitted.
+ */
+public enum FsyncPolicy {
+
+    /**
+     * As soon as the order has been written to the mapped segment, i.e. to the page cache. Orders
+     * survive a crash of the application, but not of the machine.
+     */
+    NONE,
+
+    /**
+     * Once the next periodic flush of the journal has completed.
+     */
+    INTERVAL,
+
+    /**
+     * Once a flush that has been triggered by the append itself has completed. Concurrent appends
+     * share a flush.
+     */
+    ALWAYS
+}
@@ -0,0 +1,56 @@
+package workshop.quarkus.reactive;
+
+import io.smallrye.mutiny.Multi;
+import io.smallrye.reactive.messaging.PublisherDecorator;
+import io.smallrye.reactive.messaging.providers.MetadataInjectableMessage;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.reactive.messaging.Message;
+
+/**
+ * Sits between the incoming connectors and the consuming methods. Records whose payload has not been
+ * decoded because the {@link workshop.quarkus.reactive.event.HeaderFilter} of the channel rejected
+ * their headers are acknowledged and dropped here, and records that could not be deserialized are
+ * handed to the {@link OrderRetryRouter} for the dead-letter topic. All other messages get their
+ * {@link OrderMetadata} restored from the record headers.
+ */
+@ApplicationScoped
+public class IncomingRecordDecorator implements PublisherDecorator {
+
+    @Inject
+    PipelineMetrics metrics;
+
+    @Inject
+    OrderRetryRouter retryRouter;
+
+    @Override
+    public Multi<? extends Message<?>> decorate(final Multi<? extends Message<?>> publisher, final String channelName, final boolean isConnector) {
+        if (!isConnector) return publisher;
+        return publisher
+                .invoke(message -> {
+                    if (message.getPayload() != null) return;
+                    if (retryRouter.isDeserializationFailure(message)) {
+                        retryRouter.deadLetterUndecodable(message, channelName).subscribe().with(ignored -> {
+                        });
+                    } else {
+                        message.ack();
+                        metrics.recordDropped(channelName);
+                    }
+                })
+                .filter(message -> message.getPayload() != null)
+                .map(IncomingRecordDecorator::restoreOrderMetadata);
+    }
+
+    private static Message<?> restoreOrderMetadata(final Message<?> message) {
+        if (message.getMetadata(OrderMetadata.class).isPresent()) return message;
+        return OrderMetadataInterceptor.fromHeaders(message)
+                .<Message<?>>map(orderMetadata -> {
+                    if (message instanceof MetadataInjectableMessage<?> record) {
+                        record.injectMetadata(orderMetadata);
+                        return message;
+                    }
+                    return message.addMetadata(orderMetadata);
+                })
+                .orElse(message);
+    }
+}
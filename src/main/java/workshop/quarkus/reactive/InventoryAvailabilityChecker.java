@@ -1,11 +1,79 @@
 package workshop.quarkus.reactive;
 
+import jakarta.annotation.PostConstruct;
 import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import workshop.quarkus.reactive.event.OrderSubmittedEvent;
+
+import java.util.List;
 
 @ApplicationScoped
 public class InventoryAvailabilityChecker {
 
-    public boolean allLineItemsAvailable(final String traceId) {
-        return traceId.startsWith("X-");
+    @Inject
+    StockLedger ledger;
+
+    @Inject
+    AvailabilityCache cache;
+
+    @Inject
+    PipelineMetrics metrics;
+
+    @Inject
+    DemandAggregationDecorator demand;
+
+    @ConfigProperty(name = "inventory.demand-throttle.enabled", defaultValue = "false")
+    boolean throttleEnabled;
+
+    @ConfigProperty(name = "inventory.demand-throttle.window", defaultValue = "1m")
+    String throttleWindow;
+
+    @ConfigProperty(name = "inventory.demand-throttle.max-units", defaultValue = "1000")
+    long throttleMaxUnits;
+
+    private DemandWindows.Window window;
+
+    @PostConstruct
+    void resolveThrottleWindow() {
+        window = DemandWindows.Window.fromLabel(throttleWindow);
+    }
+
+    public boolean allLineItemsAvailable(final OrderSubmittedEvent order, final String traceId) {
+        if (!traceId.startsWith("X-")) return false;
+
+        final String productId = order.getProductId();
+        final int quantity = quantityOf(order);
+
+        if (isThrottled(productId)) return false;
+        if (cache.knownToBeUnavailable(productId, quantity)) return false;
+        if (ledger.reserve(productId, quantity)) return true;
+
+        cache.onReservationFailed(productId);
+        return false;
+    }
+
+    /**
+     * Whether orders for the given product are denied outright, because the demand for it within the
+     * throttle window (which includes the order at hand) exceeds the configured number of units. This
+     * keeps a hot product from draining its stock and from monopolizing the ledger.
+     */
+    private boolean isThrottled(final String productId) {
+        if (!throttleEnabled || productId == null) return false;
+        if (demand.demandOf(productId, window).units() <= throttleMaxUnits) return false;
+        metrics.recordThrottled();
+        return true;
+    }
+
+    public boolean[] allLineItemsAvailable(final List<OrderSubmittedEvent> orders, final List<String> traceIds) {
+        final boolean[] available = new boolean[orders.size()];
+        for (int i = 0; i < available.length; i++) {
+            available[i] = allLineItemsAvailable(orders.get(i), traceIds.get(i));
+        }
+        return available;
+    }
+
+    private static int quantityOf(final OrderSubmittedEvent order) {
+        return order.getQuantity() == null ? 0 : order.getQuantity();
     }
 }
@@ -0,0 +1,76 @@
+package workshop.quarkus.reactive;
+
+import jakarta.inject.Inject;
+import jakarta.ws.rs.BadRequestException;
+import jakarta.ws.rs.Consumes;
+import jakarta.ws.rs.DELETE;
+import jakarta.ws.rs.DefaultValue;
+import jakarta.ws.rs.GET;
+import jakarta.ws.rs.POST;
+import jakarta.ws.rs.Path;
+import jakarta.ws.rs.PathParam;
+import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.QueryParam;
+import jakarta.ws.rs.core.MediaType;
+
+import java.util.List;
+import java.util.Map;
+
+@Path("/inventory")
+@Produces(MediaType.APPLICATION_JSON)
+public class InventoryResource {
+
+    @Inject
+    StockLedger ledger;
+
+    @Inject
+    AvailabilityCache cache;
+
+    @Inject
+    DemandAggregationDecorator demand;
+
+    @GET
+    @Path("/stock")
+    public Map<String, Long> stockLevels() {
+        return ledger.stockLevels();
+    }
+
+    @GET
+    @Path("/stock/{productId}")
+    public long stockLevel(@PathParam("productId") String productId) {
+        return ledger.stockLevel(productId);
+    }
+
+    @POST
+    @Path("/stock")
+    @Consumes(MediaType.APPLICATION_JSON)
+    public void replenish(Map<String, Long> unitsByProductId) {
+        ledger.replenishAll(unitsByProductId);
+    }
+
+    @GET
+    @Path("/availability-cache")
+    public AvailabilityCacheStatistics availabilityCacheStatistics() {
+        return cache.statistics();
+    }
+
+    /**
+     * The {@code k} most demanded products within the given window ({@code 1m}, {@code 5m} or
+     * {@code 1h}) by ordered units.
+     */
+    @GET
+    @Path("/demand")
+    public List<DemandWindows.Demand> topDemand(@QueryParam("window") @DefaultValue("5m") String window, @QueryParam("k") @DefaultValue("10") int k) {
+        try {
+            return demand.top(DemandWindows.Window.fromLabel(window), k);
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException(e.getMessage());
+        }
+    }
+
+    @DELETE
+    @Path("/availability-cache")
+    public void invalidateAvailabilityCache() {
+        cache.invalidateAll();
+    }
+}
@@ -1,18 +1,70 @@
 package workshop.quarkus.reactive;
 
+import io.quarkus.arc.properties.IfBuildProperty;
 import io.smallrye.mutiny.Uni;
+import io.smallrye.reactive.messaging.kafka.api.OutgoingKafkaRecordMetadata;
 import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.header.internals.RecordHeaders;
 import org.eclipse.microprofile.reactive.messaging.Incoming;
+import org.eclipse.microprofile.reactive.messaging.Message;
 import org.eclipse.microprofile.reactive.messaging.Outgoing;
+import workshop.quarkus.reactive.event.Event;
+import workshop.quarkus.reactive.event.EventHeaders;
 import workshop.quarkus.reactive.event.OrderApprovedEvent;
+import workshop.quarkus.reactive.event.OrderDeniedEvent;
 import workshop.quarkus.reactive.event.OrderSubmittedEvent;
 
 @ApplicationScoped
+@IfBuildProperty(name = "inventory.consumption-mode", stringValue = "single", enableIfMissing = true)
 public class InventoryService {
 
+    @Inject
+    InventoryAvailabilityChecker checker;
+
+    @Inject
+    OrderRetryRouter retryRouter;
+
     @Incoming("incoming-orders")
     @Outgoing("outgoing-checked-orders")
-    public Uni<OrderApprovedEvent> checkAvailability(OrderSubmittedEvent event) {
-        return Uni.createFrom().nullItem();
+    public Uni<Message<Event>> checkAvailability(Message<OrderSubmittedEvent> message) {
+        try {
+            return Uni.createFrom().item(check(checker, message));
+        } catch (RuntimeException e) {
+            return retryRouter.reroute(message, e).replaceWith(Uni.createFrom().<Message<Event>>nullItem());
+        }
+    }
+
+    static Message<Event> check(final InventoryAvailabilityChecker checker, final Message<OrderSubmittedEvent> message) {
+        final boolean available = checker.allLineItemsAvailable(message.getPayload(), traceIdOf(message));
+        return message.withPayload(toCheckedEvent(message.getPayload(), available)).addMetadata(checkedOrderMetadataOf(message.getPayload()));
+    }
+
+    /**
+     * Keys checked orders by order ID, so that all checked orders of an order end up in the same
+     * partition and hence with the same shard of the status (see {@link OrderStatusShards}). As no
+     * two checked orders share a key, envelopes cannot pack them and are disabled on that channel.
+     * The event time of the order travels along in the {@link EventHeaders#ORDER_TIME} header, so
+     * that the notification service can time the pipeline end to end.
+     */
+    static OutgoingKafkaRecordMetadata<String> checkedOrderMetadataOf(final OrderSubmittedEvent event) {
+        final Headers headers = new RecordHeaders();
+        EventHeaders.put(headers, EventHeaders.ORDER_TIME, Long.toString(event.getEventTime()));
+        return OutgoingKafkaRecordMetadata.<String>builder().withKey(event.getOrderId()).withHeaders(headers).build();
+    }
+
+    static String traceIdOf(final Message<?> message) {
+        return message.getMetadata(OrderMetadata.class)
+                .or(() -> OrderMetadataInterceptor.fromHeaders(message))
+                .map(OrderMetadata::traceId)
+                .orElse("");
+    }
+
+    static Event toCheckedEvent(final OrderSubmittedEvent event, final boolean available) {
+        final long checkedOn = System.currentTimeMillis();
+        return available
+                ? new OrderApprovedEvent(event.getOrderId(), event.getCustomerId(), event.getProductId(), event.getQuantity(), true, checkedOn)
+                : new OrderDeniedEvent(event.getOrderId(), event.getCustomerId(), event.getProductId(), event.getQuantity(), false, checkedOn);
     }
-}
\ No newline at end of file
+}
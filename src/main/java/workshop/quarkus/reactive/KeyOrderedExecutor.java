@@ -0,0 +1,69 @@
+package workshop.quarkus.reactive;
+
+import org.jboss.logging.Logger;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Runs tasks concurrently while keeping tasks that share a key in submission order. Each key maps
+ * to the tail of a chain of futures; a new task for that key is appended to the chain, and the chain
+ * is dropped as soon as its last task has completed, so idle keys do not retain any memory.
+ * <p>
+ * Tasks run on virtual threads if the JVM supports them and on a fixed pool of platform threads
+ * otherwise.
+ */
+public class KeyOrderedExecutor implements AutoCloseable {
+
+    private static final Logger LOG = Logger.getLogger(KeyOrderedExecutor.class);
+
+    private final ConcurrentHashMap<String, CompletableFuture<?>> tailByKey = new ConcurrentHashMap<>();
+
+    private final ExecutorService executor;
+
+    public KeyOrderedExecutor(final int maxConcurrency) {
+        this.executor = newExecutor(maxConcurrency);
+    }
+
+    public <T> CompletableFuture<T> submit(final String key, final Supplier<T> task) {
+        @SuppressWarnings("unchecked")
+        final CompletableFuture<T>[] next = new CompletableFuture[1];
+        tailByKey.compute(key, (k, tail) -> {
+            next[0] = tail == null
+                    ? CompletableFuture.supplyAsync(task, executor)
+                    : tail.handle((result, failure) -> null).thenApplyAsync(ignored -> task.get(), executor);
+            return next[0];
+        });
+        next[0].whenComplete((result, failure) -> tailByKey.remove(key, next[0]));
+        return next[0];
+    }
+
+    public int pendingKeys() {
+        return tailByKey.size();
+    }
+
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+
+    private static ExecutorService newExecutor(final int maxConcurrency) {
+        try {
+            final ExecutorService virtualThreads = (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            LOG.info("Processing key-ordered tasks on virtual threads");
+            return virtualThreads;
+        } catch (ReflectiveOperationException e) {
+            LOG.infof("Virtual threads are not available, processing key-ordered tasks on %d platform threads", maxConcurrency);
+            final AtomicInteger threadNumber = new AtomicInteger();
+            return Executors.newFixedThreadPool(maxConcurrency, runnable -> {
+                final Thread thread = new Thread(runnable, "key-ordered-" + threadNumber.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+}
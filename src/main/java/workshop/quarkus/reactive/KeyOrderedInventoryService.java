@@ -0,0 +1,116 @@
+package workshop.quarkus.reactive;
+
+import io.quarkus.arc.properties.IfBuildProperty;
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.Uni;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.eclipse.microprofile.reactive.messaging.Incoming;
+import org.eclipse.microprofile.reactive.messaging.Message;
+import org.eclipse.microprofile.reactive.messaging.Outgoing;
+import workshop.quarkus.reactive.event.Event;
+import workshop.quarkus.reactive.event.OrderSubmittedEvent;
+
+import java.time.Duration;
+
+/**
+ * Checks orders from {@code incoming-orders} concurrently. Orders that share the same ordering key
+ * (the order ID or the customer ID) are still checked one after another. Checked orders are
+ * emitted and acknowledged as soon as they complete; the throttled commit strategy of the Kafka
+ * connector only commits an offset once every record before it has been acknowledged.
+ * <p>
+ * The number of concurrent checks is governed by an {@link AdaptiveConcurrencyLimiter}, so it follows
+ * the latency of the checks. An order takes its place behind its key first and only acquires a
+ * permit once the orders before it with the same key are done, so orders of a key cannot overtake
+ * each other while waiting for permits, and waiting behind a key does not count as latency of the
+ * check. At most {@code inventory.max-concurrency} orders are requested from the connector at any
+ * time; once those are either in flight or waiting, the connector pauses the consumer instead of
+ * buffering further records.
+ * <p>
+ * Orders whose check fails are handed to the {@link OrderRetryRouter}, so that they neither hold up
+ * the orders behind them nor stop the stream. An order that the router could not forward either is
+ * negatively acknowledged, and the {@code failure-strategy} of the channel decides what happens to
+ * its record.
+ */
+@ApplicationScoped
+@IfBuildProperty(name = "inventory.consumption-mode", stringValue = "key-ordered")
+public class KeyOrderedInventoryService {
+
+    @Inject
+    InventoryAvailabilityChecker checker;
+
+    @ConfigProperty(name = "inventory.max-concurrency", defaultValue = "16")
+    int maxConcurrency;
+
+    @ConfigProperty(name = "inventory.ordering-key", defaultValue = "order-id")
+    String orderingKey;
+
+    @ConfigProperty(name = "inventory.concurrency-limit.initial", defaultValue = "4")
+    int initialLimit;
+
+    @ConfigProperty(name = "inventory.concurrency-limit.min", defaultValue = "1")
+    int minLimit;
+
+    @ConfigProperty(name = "inventory.concurrency-limit.latency-threshold", defaultValue = "PT0.05S")
+    Duration latencyThreshold;
+
+    @ConfigProperty(name = "inventory.concurrency-limit.backoff-ratio", defaultValue = "0.9")
+    double backoffRatio;
+
+    @Inject
+    PipelineMetrics metrics;
+
+    @Inject
+    OrderRetryRouter retryRouter;
+
+    private KeyOrderedExecutor executor;
+
+    private AdaptiveConcurrencyLimiter limiter;
+
+    @PostConstruct
+    void createExecutor() {
+        executor = new KeyOrderedExecutor(maxConcurrency);
+        limiter = new AdaptiveConcurrencyLimiter(initialLimit, minLimit, maxConcurrency, latencyThreshold, backoffRatio);
+        metrics.registerConcurrencyLimiter("inventory-check", limiter);
+    }
+
+    @PreDestroy
+    void shutdownExecutor() {
+        executor.close();
+    }
+
+    @Incoming("incoming-orders")
+    @Outgoing("outgoing-checked-orders")
+    public Multi<Message<Event>> checkAvailability(Multi<Message<OrderSubmittedEvent>> messages) {
+        return messages
+                .onItem().transformToUni(message -> Uni.createFrom()
+                        .completionStage(() -> executor.submit(keyOf(message.getPayload()), () -> checkWithPermit(message)))
+                        .onFailure().recoverWithUni(failure -> retryRouter.reroute(message, failure)
+                                .replaceWith(Uni.createFrom().<Message<Event>>nullItem())))
+                .merge(maxConcurrency);
+    }
+
+    /*
+     * runs on the executor once the orders before it with the same key are done; blocking for the permit is fine there,
+     * as every permit is held by a running check
+     */
+    private Message<Event> checkWithPermit(final Message<OrderSubmittedEvent> message) {
+        final AdaptiveConcurrencyLimiter.Permit permit = limiter.acquire().await().indefinitely();
+        boolean succeeded = false;
+        try {
+            final Message<Event> checked = InventoryService.check(checker, message);
+            succeeded = true;
+            return checked;
+        } finally {
+            permit.release(succeeded);
+        }
+    }
+
+    private String keyOf(final OrderSubmittedEvent event) {
+        final String key = "customer-id".equals(orderingKey) ? event.getCustomerId() : event.getOrderId();
+        return key == null ? "" : key;
+    }
+}
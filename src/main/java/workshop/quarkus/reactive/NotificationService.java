@@ -1,43 +1,236 @@
 package workshop.quarkus.reactive;
 
+import io.smallrye.reactive.messaging.kafka.api.IncomingKafkaRecordMetadata;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.apache.kafka.common.TopicPartition;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
 import org.eclipse.microprofile.reactive.messaging.Incoming;
+import org.eclipse.microprofile.reactive.messaging.Message;
 import org.jboss.logging.Logger;
 import workshop.quarkus.reactive.event.Event;
+import workshop.quarkus.reactive.event.EventHeaders;
 import workshop.quarkus.reactive.event.OrderApprovedEvent;
 import workshop.quarkus.reactive.event.OrderDeniedEvent;
 
-import java.util.HashSet;
-import java.util.Set;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
 
+/**
+ * Tracks the status of checked orders and streams status changes to subscribers. If snapshots are
+ * enabled (which requires an absolute {@code notification.snapshot.directory}), the status store is
+ * written to an {@link OrderStatusSnapshot} periodically and on shutdown, together with the offsets
+ * of the last records of {@code checked-orders} that went into it. After a restart, the store is
+ * restored from the snapshot and {@link StatusSnapshotRebalanceListener} resumes consuming right
+ * after those offsets, so that only the records since the snapshot are replayed instead of the whole
+ * topic. Replaying a record that is already part of the snapshot is harmless, as it only sets the
+ * status it set before.
+ * <p>
+ * When several nodes consume {@code checked-orders}, each of them only tracks the orders in the
+ * partitions assigned to it, so {@link #statusOf(String)} and friends only answer for those. Use
+ * {@link OrderStatusShards} to query the status of any order.
+ */
 @ApplicationScoped
 public class NotificationService {
 
     private static final Logger LOG = Logger.getLogger(NotificationService.class);
 
-    private final Set<String> approvedOrdersByOrderId = new HashSet<>();
+    @Inject
+    PipelineMetrics metrics;
 
-    private final Set<String> deniedOrdersByOrderId = new HashSet<>();
+    @Inject
+    OrderStatusBroadcaster broadcaster;
+
+    @ConfigProperty(name = "notification.status-store.max-entries", defaultValue = "1000000")
+    int maxTrackedOrders;
+
+    @ConfigProperty(name = "notification.status-store.ttl", defaultValue = "PT24H")
+    Duration trackedOrderTtl;
+
+    @ConfigProperty(name = "notification.snapshot.enabled", defaultValue = "false")
+    boolean snapshotEnabled;
+
+    @ConfigProperty(name = "notification.snapshot.directory")
+    Optional<Path> snapshotDirectory;
+
+    @ConfigProperty(name = "notification.snapshot.interval", defaultValue = "PT30S")
+    Duration snapshotInterval;
+
+    /* offsets of the last records whose events have been applied to the status store */
+    private final Map<TopicPartition, Long> processedOffsets = new ConcurrentHashMap<>();
+
+    private final AtomicLong updates = new AtomicLong();
+
+    private OrderStatusStore orderStatuses;
+
+    private Thread snapshotter;
+
+    private volatile boolean running;
+
+    @PostConstruct
+    void createStatusStore() {
+        orderStatuses = new OrderStatusStore(maxTrackedOrders, trackedOrderTtl);
+        LOG.infof("Tracking the status of up to %d orders for %s using %d bytes (%.1f bytes per order)",
+                orderStatuses.maxEntries(), trackedOrderTtl, orderStatuses.memoryFootprintBytes(), orderStatuses.bytesPerTrackedOrder());
+        if (!snapshotEnabled) return;
+        if (snapshotDirectory.filter(Path::isAbsolute).isEmpty()) {
+            throw new IllegalStateException("notification.snapshot.enabled=true requires an absolute notification.snapshot.directory.");
+        }
+
+        restoreSnapshot();
+        running = true;
+        snapshotter = new Thread(this::snapshotLoop, "notification-status-snapshot");
+        snapshotter.setDaemon(true);
+        snapshotter.start();
+    }
+
+    @PreDestroy
+    void takeFinalSnapshot() {
+        if (!snapshotEnabled) return;
+        running = false;
+        LockSupport.unpark(snapshotter);
+        try {
+            snapshotter.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
 
     @Incoming("incoming-checked-orders")
-    public void notify(Event event) {
+    public CompletionStage<Void> notify(final Message<Event> message) {
+        apply(message.getPayload());
+        message.getMetadata(IncomingKafkaRecordMetadata.class).ifPresent(record -> {
+            final boolean lastOfRecord = message.getMetadata(EnvelopeDecorator.Position.class)
+                    .map(EnvelopeDecorator.Position::isLast)
+                    .orElse(true);
+            if (lastOfRecord) {
+                processedOffsets.merge(new TopicPartition(record.getTopic(), record.getPartition()), record.getOffset(), Math::max);
+            }
+            final long orderTime = EventHeaders.lastLongValue(record.getHeaders(), EventHeaders.ORDER_TIME, -1L);
+            if (orderTime >= 0L) metrics.recordEndToEnd(orderTime);
+        });
+        updates.incrementAndGet();
+        return message.ack();
+    }
+
+    private void apply(final Event event) {
+        if (event instanceof OrderApprovedEvent approved) {
+            onOrderApproved(approved);
+            recordNotification(approved.getCheckedOn());
+        } else if (event instanceof OrderDeniedEvent denied) {
+            onOrderDenied(denied);
+            recordNotification(denied.getCheckedOn());
+        } else {
+            metrics.recordError(PipelineMetrics.INCOMING_CHECKED_ORDERS);
+        }
     }
 
     private void onOrderApproved(final OrderApprovedEvent event) {
         LOG.info("Received an OrderApprovedEvent for order with ID " + event.getOrderId());
-        approvedOrdersByOrderId.add(event.getOrderId());
+        orderStatuses.put(event.getOrderId(), OrderStatus.APPROVED);
+        broadcaster.publish(event.getOrderId(), event::getCustomerId, OrderStatus.APPROVED);
     }
 
     private void onOrderDenied(final OrderDeniedEvent event) {
         LOG.info("Received an OrderDeniedEvent for order with ID " + event.getOrderId());
-        deniedOrdersByOrderId.add(event.getOrderId());
+        orderStatuses.put(event.getOrderId(), OrderStatus.DENIED);
+        broadcaster.publish(event.getOrderId(), event::getCustomerId, OrderStatus.DENIED);
+    }
+
+    private void recordNotification(final Long checkedOn) {
+        if (checkedOn != null) metrics.recordNotification(checkedOn);
+    }
+
+    public OrderStatus statusOf(final String orderId) {
+        return orderStatuses.get(orderId);
     }
 
     public boolean isApproved(final String orderId) {
-        return approvedOrdersByOrderId.contains(orderId);
+        return orderStatuses.get(orderId) == OrderStatus.APPROVED;
     }
 
     public boolean isDenied(final String orderId) {
-        return deniedOrdersByOrderId.contains(orderId);
+        return orderStatuses.get(orderId) == OrderStatus.DENIED;
+    }
+
+    /**
+     * Offsets of the last records of {@code checked-orders} that are reflected in the status store,
+     * including those of partitions that have been handed over to other nodes since.
+     */
+    public Map<TopicPartition, Long> processedOffsets() {
+        return Map.copyOf(processedOffsets);
+    }
+
+    /**
+     * Offsets of the last records of {@code checked-orders} that are reflected in the status store,
+     * starting with those of the restored snapshot. Empty unless snapshots are enabled.
+     */
+    public Map<TopicPartition, Long> resumeOffsets() {
+        return snapshotEnabled ? Map.copyOf(processedOffsets) : Map.of();
+    }
+
+    /**
+     * Writes a snapshot of the status store unless it has not changed since the last snapshot.
+     */
+    public void snapshot() {
+        final long updatesBefore = updates.get();
+        final Path file = snapshotFile();
+        try {
+            Files.createDirectories(file.getParent());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to create the snapshot directory " + file.getParent() + ".", e);
+        }
+        final long startedAt = System.nanoTime();
+        final OrderStatusSnapshot snapshot = OrderStatusSnapshot.write(file, processedOffsets, orderStatuses);
+        updates.compareAndSet(updatesBefore, 0L);
+        LOG.debugf("Wrote %s holding the status of %d orders in %d ms", file, snapshot.entries(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt));
+    }
+
+    private void restoreSnapshot() {
+        final Path file = snapshotFile();
+        final long startedAt = System.nanoTime();
+        try {
+            OrderStatusSnapshot.restore(file, orderStatuses).ifPresent(snapshot -> {
+                processedOffsets.putAll(snapshot.offsets());
+                LOG.infof("Restored the status of %d orders from the snapshot taken at %s in %d ms, resuming after offsets %s",
+                        orderStatuses.size(), snapshot.takenAt(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt), snapshot.offsets());
+            });
+        } catch (UncheckedIOException e) {
+            LOG.warnf(e, "Unable to restore the status snapshot, starting with an empty status store");
+        }
+    }
+
+    private void snapshotLoop() {
+        while (running) {
+            LockSupport.parkNanos(snapshotInterval.toNanos());
+            writeSnapshotIfUpdated();
+        }
+        writeSnapshotIfUpdated();
+    }
+
+    private void writeSnapshotIfUpdated() {
+        if (updates.get() == 0L) return;
+        try {
+            snapshot();
+        } catch (RuntimeException e) {
+            LOG.error("Unable to write the status snapshot", e);
+        }
+    }
+
+    private Path snapshotFile() {
+        return snapshotDirectory.orElseThrow().resolve("order-status.snapshot");
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,55 @@
+package workshop.quarkus.reactive;
+
+import io.smallrye.reactive.messaging.OutgoingInterceptor;
+import io.smallrye.reactive.messaging.kafka.api.IncomingKafkaRecordMetadata;
+import io.smallrye.reactive.messaging.kafka.api.OutgoingKafkaRecordMetadata;
+import jakarta.enterprise.context.ApplicationScoped;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.eclipse.microprofile.reactive.messaging.Message;
+import workshop.quarkus.reactive.event.EventHeaders;
+
+import java.util.Optional;
+
+/**
+ * Writes the {@link OrderMetadata} of outgoing messages into the headers of the Kafka record, so that
+ * it survives the trip through the topic. {@link #fromHeaders(Message)} reads it back on the
+ * incoming side.
+ */
+@ApplicationScoped
+public class OrderMetadataInterceptor implements OutgoingInterceptor {
+
+    @Override
+    public Message<?> onMessage(final Message<?> message) {
+        final Optional<OrderMetadata> orderMetadata = message.getMetadata(OrderMetadata.class);
+        if (orderMetadata.isEmpty() || orderMetadata.get().traceId() == null) return message;
+
+        final Optional<OutgoingKafkaRecordMetadata> existing = message.getMetadata(OutgoingKafkaRecordMetadata.class);
+        final Headers headers = new RecordHeaders();
+        existing.map(OutgoingKafkaRecordMetadata::getHeaders).ifPresent(present -> present.forEach(headers::add));
+        EventHeaders.put(headers, EventHeaders.TRACE_ID, orderMetadata.get().traceId());
+
+        final OutgoingKafkaRecordMetadata.OutgoingKafkaRecordMetadataBuilder<Object> builder = OutgoingKafkaRecordMetadata.builder()
+                .withHeaders(headers);
+        existing.ifPresent(present -> builder
+                .withKey(present.getKey())
+                .withTopic(present.getTopic())
+                .withPartition(present.getPartition())
+                .withTimestamp(present.getTimestamp()));
+        return message.addMetadata(builder.build());
+    }
+
+    @Override
+    public void onMessageAck(final Message<?> message) {
+    }
+
+    @Override
+    public void onMessageNack(final Message<?> message, final Throwable failure) {
+    }
+
+    static Optional<OrderMetadata> fromHeaders(final Message<?> message) {
+        return message.getMetadata(IncomingKafkaRecordMetadata.class)
+                .map(metadata -> EventHeaders.lastValue(metadata.getHeaders(), EventHeaders.TRACE_ID))
+                .map(OrderMetadata::new);
+    }
+}
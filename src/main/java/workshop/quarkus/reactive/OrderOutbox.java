@@ -0,0 +1,163 @@
+package workshop.quarkus.reactive;
+
+import io.quarkus.runtime.Startup;
+import io.smallrye.mutiny.Uni;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+import workshop.quarkus.reactive.event.OrderSubmittedEvent;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Decouples the submission of orders from the availability of the broker. If enabled, orders are
+ * appended to an {@link OutboxJournal} and count as submitted once the configured {@link FsyncPolicy}
+ * is met. A relay thread drains the journal into {@code outgoing-orders} in batches and acknowledges
+ * a batch in the journal once Kafka has acknowledged all of its records. Entries that have not been
+ * acknowledged before a shutdown or a crash are relayed again after the next start, so the relay
+ * delivers at least once; the event IDs are kept, so that consumers are able to deduplicate.
+ */
+@Startup
+@ApplicationScoped
+public class OrderOutbox {
+
+    private static final Logger LOG = Logger.getLogger(OrderOutbox.class);
+
+    @Inject
+    OrderService orderService;
+
+    @ConfigProperty(name = "order.outbox.enabled", defaultValue = "false")
+    boolean enabled;
+
+    @ConfigProperty(name = "order.outbox.directory", defaultValue = "outbox")
+    String directory;
+
+    @ConfigProperty(name = "order.outbox.segment-size", defaultValue = "16777216")
+    int segmentSize;
+
+    @ConfigProperty(name = "order.outbox.fsync", defaultValue = "interval")
+    FsyncPolicy fsyncPolicy;
+
+    @ConfigProperty(name = "order.outbox.fsync-interval", defaultValue = "PT0.01S")
+    Duration fsyncInterval;
+
+    @ConfigProperty(name = "order.outbox.relay.batch-size", defaultValue = "64")
+    int batchSize;
+
+    @ConfigProperty(name = "order.outbox.relay.retry-backoff", defaultValue = "PT1S")
+    Duration retryBackoff;
+
+    private final ConcurrentSkipListMap<Long, CompletableFuture<Void>> awaitingFlush = new ConcurrentSkipListMap<>();
+
+    private OutboxJournal journal;
+
+    private Thread flusher;
+
+    private Thread relay;
+
+    private volatile boolean running;
+
+    @PostConstruct
+    void start() {
+        if (!enabled) return;
+        journal = new OutboxJournal(Path.of(directory), segmentSize);
+        running = true;
+        flusher = startDaemon("order-outbox-flusher", this::flushLoop);
+        relay = startDaemon("order-outbox-relay", this::relayLoop);
+        LOG.infof("Relaying orders through the outbox journal in %s (%d entries pending, fsync policy %s)",
+                Path.of(directory).toAbsolutePath(), pendingEntries(), fsyncPolicy);
+    }
+
+    @PreDestroy
+    void stop() {
+        if (!enabled) return;
+        running = false;
+        LockSupport.unpark(flusher);
+        LockSupport.unpark(relay);
+        try {
+            flusher.join(1000);
+            relay.join(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        journal.close();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public Uni<Void> submit(final OrderSubmittedEvent event, final String traceId) {
+        return Uni.createFrom().completionStage(() -> {
+            final long sequence = journal.append(event, traceId);
+            LockSupport.unpark(relay);
+            if (fsyncPolicy == FsyncPolicy.NONE) return CompletableFuture.completedFuture(null);
+
+            final CompletableFuture<Void> flushed = new CompletableFuture<>();
+            awaitingFlush.put(sequence, flushed);
+            if (fsyncPolicy == FsyncPolicy.ALWAYS) LockSupport.unpark(flusher);
+            return flushed;
+        });
+    }
+
+    public long pendingEntries() {
+        return enabled ? journal.lastAppended() - journal.acknowledged() : 0L;
+    }
+
+    private void flushLoop() {
+        while (running || !awaitingFlush.isEmpty()) {
+            if (awaitingFlush.isEmpty()) {
+                LockSupport.parkNanos(fsyncInterval.toNanos());
+                continue;
+            }
+            try {
+                final long flushed = journal.force();
+                final var completed = awaitingFlush.headMap(flushed, true);
+                completed.values().forEach(future -> future.complete(null));
+                completed.clear();
+            } catch (RuntimeException e) {
+                LOG.error("Unable to flush the outbox journal", e);
+            }
+            if (fsyncPolicy == FsyncPolicy.INTERVAL) LockSupport.parkNanos(fsyncInterval.toNanos());
+        }
+    }
+
+    private void relayLoop() {
+        long relayed = journal.acknowledged();
+        while (running) {
+            final List<OutboxEntry> entries = journal.read(relayed, batchSize);
+            if (entries.isEmpty()) {
+                LockSupport.parkNanos(fsyncInterval.toNanos());
+                continue;
+            }
+            try {
+                Uni.join().all(entries.stream().map(this::send).toList()).andFailFast()
+                        .await().atMost(Duration.ofSeconds(30));
+                relayed = entries.get(entries.size() - 1).sequence();
+                journal.acknowledge(relayed);
+            } catch (RuntimeException e) {
+                LOG.warnf(e, "Unable to relay %d orders from the outbox journal, retrying in %s", entries.size(), retryBackoff);
+                LockSupport.parkNanos(retryBackoff.toNanos());
+            }
+        }
+    }
+
+    private static Thread startDaemon(final String name, final Runnable task) {
+        final Thread thread = new Thread(task, name);
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+
+    private Uni<Void> send(final OutboxEntry entry) {
+        return orderService.send(entry.event(), entry.traceId());
+    }
+}
@@ -0,0 +1,37 @@
+package workshop.quarkus.reactive;
+
+/**
+ * Lanes that orders travel in when priority lanes are enabled. Each lane has a topic of its own and
+ * is consumed through a channel of its own, so that a backlog in one lane does not hold up the
+ * records of another in Kafka.
+ */
+public enum OrderPriority {
+
+    HIGH("high", "orders-high", "incoming-orders-high"),
+    NORMAL("normal", "orders", "incoming-orders"),
+    LOW("low", "orders-low", "incoming-orders-low");
+
+    private final String label;
+
+    private final String topic;
+
+    private final String channel;
+
+    OrderPriority(final String label, final String topic, final String channel) {
+        this.label = label;
+        this.topic = topic;
+        this.channel = channel;
+    }
+
+    public String label() {
+        return label;
+    }
+
+    public String topic() {
+        return topic;
+    }
+
+    public String channel() {
+        return channel;
+    }
+}
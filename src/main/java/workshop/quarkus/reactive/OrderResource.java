@@ -0,0 +1,65 @@
+package workshop.quarkus.reactive;
+
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.smallrye.common.annotation.Blocking;
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.infrastructure.Infrastructure;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.Consumes;
+import jakarta.ws.rs.POST;
+import jakarta.ws.rs.Path;
+import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.core.MediaType;
+import org.jboss.resteasy.reactive.RestStreamElementType;
+import org.jboss.resteasy.reactive.common.util.RestMediaType;
+import workshop.quarkus.reactive.command.PlaceOrder;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+
+@Path("/orders")
+public class OrderResource {
+
+    @Inject
+    OrderService orderService;
+
+    @Inject
+    ObjectMapper mapper;
+
+    /**
+     * Accepts newline-delimited JSON {@link PlaceOrder} commands and streams back one result per
+     * order. The request body is parsed incrementally, so only orders that are in flight are held in
+     * memory. The parser is closed once the stream completes, fails or is cancelled.
+     */
+    @POST
+    @Path("/bulk")
+    @Blocking
+    @Consumes(RestMediaType.APPLICATION_NDJSON)
+    @Produces(RestMediaType.APPLICATION_NDJSON)
+    @RestStreamElementType(MediaType.APPLICATION_JSON)
+    public Multi<OrderSubmissionResult> submitOrders(InputStream body) {
+        final Multi<PlaceOrder> orders = Multi.createFrom()
+                .resource(() -> readOrders(body), parser -> Multi.createFrom().<PlaceOrder>iterable(() -> parser))
+                .withFinalizer(OrderResource::close)
+                .runSubscriptionOn(Infrastructure.getDefaultWorkerPool());
+        return orderService.submitOrders(orders);
+    }
+
+    private MappingIterator<PlaceOrder> readOrders(final InputStream body) {
+        try {
+            return mapper.readerFor(PlaceOrder.class).readValues(body);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to read bulk order submission.", e);
+        }
+    }
+
+    private static void close(final MappingIterator<PlaceOrder> parser) {
+        try {
+            parser.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to close bulk order submission.", e);
+        }
+    }
+}
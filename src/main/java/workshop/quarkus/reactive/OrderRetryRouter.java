@@ -0,0 +1,196 @@
+package workshop.quarkus.reactive;
+
+import io.smallrye.mutiny.Uni;
+import io.smallrye.reactive.messaging.MutinyEmitter;
+import io.smallrye.reactive.messaging.kafka.api.IncomingKafkaRecordMetadata;
+import io.smallrye.reactive.messaging.kafka.api.OutgoingKafkaRecordMetadata;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.eclipse.microprofile.config.Config;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.eclipse.microprofile.reactive.messaging.Channel;
+import org.eclipse.microprofile.reactive.messaging.Message;
+import org.eclipse.microprofile.reactive.messaging.Metadata;
+import org.jboss.logging.Logger;
+import workshop.quarkus.reactive.event.EventHeaders;
+import workshop.quarkus.reactive.event.JsonEventCodec;
+import workshop.quarkus.reactive.event.OrderSubmittedEvent;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Moves messages that could not be processed out of their partition, so that a single bad record
+ * does not hold up the records behind it:
+ * <pre>
+ * order.retry.delays=PT1S,PT10S,PT1M
+ * order.retry.max-attempts=4
+ * order.retry.topic-prefix=orders-retry-
+ * </pre>
+ * An order whose check failed for the n-th time is forwarded to retry tier n, i.e. to the topic
+ * {@code orders-retry-n}, and is due for its next attempt after the n-th delay; failures beyond the
+ * last tier stay in the last tier. Once an order has failed {@code max-attempts} times, it is
+ * forwarded to the dead-letter topic instead. So is every record that could not be deserialized at
+ * all, since retrying it would not help; channels that do not carry orders name their own topic for
+ * those records:
+ * <pre>
+ * mp.messaging.incoming.[channel].dead-letter.topic=checked-orders-dead-letter
+ * </pre>
+ * Forwarded records carry the cause of the last failure and the position of the original record in
+ * their headers.
+ * <p>
+ * A failed message is only acknowledged once its forward has been acknowledged, so its offset is not
+ * committed before the record is safe in the next topic. If the forward fails, the message is
+ * negatively acknowledged and the failure strategy of its channel applies.
+ */
+@ApplicationScoped
+public class OrderRetryRouter {
+
+    private static final Logger LOG = Logger.getLogger(OrderRetryRouter.class);
+
+    private static final String DESERIALIZATION_FAILURE_DATA = "deserialization-failure-data";
+
+    private static final String DESERIALIZATION_FAILURE_REASON = "deserialization-failure-reason";
+
+    private static final String DESERIALIZATION_FAILURE_CAUSE = "deserialization-failure-cause";
+
+    @Channel("outgoing-order-retries")
+    MutinyEmitter<OrderSubmittedEvent> retries;
+
+    @Channel("outgoing-dead-letters")
+    MutinyEmitter<byte[]> deadLetters;
+
+    @Inject
+    Config config;
+
+    @Inject
+    PipelineMetrics metrics;
+
+    @ConfigProperty(name = "order.retry.delays", defaultValue = "PT1S,PT10S,PT1M")
+    List<Duration> delays;
+
+    @ConfigProperty(name = "order.retry.max-attempts", defaultValue = "4")
+    int maxAttempts;
+
+    @ConfigProperty(name = "order.retry.topic-prefix", defaultValue = "orders-retry-")
+    String topicPrefix;
+
+    @PostConstruct
+    void registerTiers() {
+        metrics.registerRetryTiers(delays.size());
+    }
+
+    /**
+     * Forwards the given order to its next retry tier or to the dead-letter topic and acknowledges it
+     * afterwards. The returned {@code Uni} does not fail.
+     */
+    public Uni<Void> reroute(final Message<OrderSubmittedEvent> message, final Throwable failure) {
+        final int failedAttempts = RetryMetadata.of(message).failedAttempts() + 1;
+        final Headers headers = failureHeaders(message, failedAttempts, reasonOf(failure), failure.getClass().getName());
+        metrics.recordError(PipelineMetrics.INCOMING_ORDERS);
+        final Uni<Void> forwarded;
+        if (failedAttempts >= maxAttempts || delays.isEmpty()) {
+            LOG.warnf(failure, "Order %s failed %d times, forwarding it to the dead-letter topic", message.getPayload().getOrderId(), failedAttempts);
+            metrics.recordDeadLetter(PipelineMetrics.INCOMING_ORDERS);
+            forwarded = deadLetters.sendMessage(forward(message, encode(message.getPayload()), null, headers));
+        } else {
+            final int tier = Math.min(failedAttempts, delays.size()) - 1;
+            final long dueAt = System.currentTimeMillis() + delays.get(tier).toMillis();
+            EventHeaders.put(headers, EventHeaders.RETRY_DUE_AT, Long.toString(dueAt));
+            metrics.recordRetry(tier);
+            forwarded = retries.sendMessage(forward(message, message.getPayload(), topicPrefix + (tier + 1), headers)
+                    .addMetadata(new RetryMetadata(failedAttempts, dueAt)));
+        }
+        return acknowledgeAfter(forwarded, message);
+    }
+
+    /**
+     * Whether the given message stems from a record that the Kafka connector was unable to
+     * deserialize ({@code fail-on-deserialization-failure=false}).
+     */
+    public boolean isDeserializationFailure(final Message<?> message) {
+        return incomingHeadersOf(message).map(headers -> headers.lastHeader(DESERIALIZATION_FAILURE_REASON) != null).orElse(false);
+    }
+
+    /**
+     * Forwards the raw bytes of a record that could not be deserialized to the dead-letter topic of
+     * its channel and acknowledges it afterwards. The returned {@code Uni} does not fail.
+     */
+    public Uni<Void> deadLetterUndecodable(final Message<?> message, final String channel) {
+        final Headers incoming = incomingHeadersOf(message).orElseGet(RecordHeaders::new);
+        final Header data = incoming.lastHeader(DESERIALIZATION_FAILURE_DATA);
+        final String reason = EventHeaders.lastValue(incoming, DESERIALIZATION_FAILURE_REASON);
+        final String cause = EventHeaders.lastValue(incoming, DESERIALIZATION_FAILURE_CAUSE);
+        final Headers headers = failureHeaders(message, 1, reason == null ? "deserialization failed" : reason, cause == null ? "" : cause);
+        final String topic = config.getOptionalValue("mp.messaging.incoming." + channel + ".dead-letter.topic", String.class).orElse(null);
+        LOG.warnf("Unable to deserialize a record of channel %s, forwarding it to the dead-letter topic: %s", channel, reason);
+        metrics.recordDeadLetter(channel);
+        final byte[] payload = data == null || data.value() == null ? new byte[0] : data.value();
+        return acknowledgeAfter(deadLetters.sendMessage(forward(message, payload, topic, headers)), message);
+    }
+
+    private static <T> Message<T> forward(final Message<?> message, final T payload, final String topic, final Headers headers) {
+        final OutgoingKafkaRecordMetadata.OutgoingKafkaRecordMetadataBuilder<Object> builder = OutgoingKafkaRecordMetadata.builder()
+                .withHeaders(headers);
+        if (topic != null) builder.withTopic(topic);
+        if (payload instanceof OrderSubmittedEvent event && event.getOrderId() != null) builder.withKey(event.getOrderId());
+        Metadata metadata = Metadata.of(builder.build());
+        final Optional<OrderMetadata> orderMetadata = message.getMetadata(OrderMetadata.class).or(() -> OrderMetadataInterceptor.fromHeaders(message));
+        if (orderMetadata.isPresent()) metadata = metadata.with(orderMetadata.get());
+        return Message.of(payload, metadata);
+    }
+
+    private static Headers failureHeaders(final Message<?> message, final int failedAttempts, final String reason, final String cause) {
+        final Headers headers = new RecordHeaders();
+        EventHeaders.put(headers, EventHeaders.FAILED_ATTEMPTS, Integer.toString(failedAttempts));
+        EventHeaders.put(headers, EventHeaders.FAILURE_REASON, reason);
+        EventHeaders.put(headers, EventHeaders.FAILURE_CAUSE, cause);
+
+        final Optional<Headers> incoming = incomingHeadersOf(message);
+        if (incoming.map(present -> present.lastHeader(EventHeaders.ORIGIN_TOPIC) != null).orElse(false)) {
+            for (String name : new String[]{EventHeaders.ORIGIN_TOPIC, EventHeaders.ORIGIN_PARTITION, EventHeaders.ORIGIN_OFFSET}) {
+                final String value = EventHeaders.lastValue(incoming.get(), name);
+                if (value != null) EventHeaders.put(headers, name, value);
+            }
+        } else {
+            message.getMetadata(IncomingKafkaRecordMetadata.class).ifPresent(record -> {
+                EventHeaders.put(headers, EventHeaders.ORIGIN_TOPIC, record.getTopic());
+                EventHeaders.put(headers, EventHeaders.ORIGIN_PARTITION, Integer.toString(record.getPartition()));
+                EventHeaders.put(headers, EventHeaders.ORIGIN_OFFSET, Long.toString(record.getOffset()));
+            });
+        }
+        return headers;
+    }
+
+    private static Optional<Headers> incomingHeadersOf(final Message<?> message) {
+        return message.getMetadata(IncomingKafkaRecordMetadata.class).map(IncomingKafkaRecordMetadata::getHeaders);
+    }
+
+    private static Uni<Void> acknowledgeAfter(final Uni<Void> forwarded, final Message<?> message) {
+        return forwarded
+                .onItem().transformToUni(ignored -> Uni.createFrom().completionStage(message.ack()))
+                .onFailure().recoverWithUni(failure -> {
+                    LOG.error("Unable to forward a failed message", failure);
+                    return Uni.createFrom().completionStage(message.nack(failure));
+                });
+    }
+
+    private static String reasonOf(final Throwable failure) {
+        return failure.getMessage() == null ? failure.getClass().getSimpleName() : failure.getMessage();
+    }
+
+    private static byte[] encode(final OrderSubmittedEvent event) {
+        try {
+            return JsonEventCodec.encode(event);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to encode order " + event.getOrderId() + " for the dead-letter topic.", e);
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package workshop.quarkus.reactive;
+
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.Uni;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.eclipse.microprofile.reactive.messaging.Incoming;
+import org.eclipse.microprofile.reactive.messaging.Message;
+import org.eclipse.microprofile.reactive.messaging.Outgoing;
+import workshop.quarkus.reactive.event.Event;
+import workshop.quarkus.reactive.event.OrderSubmittedEvent;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Checks the orders of the retry tiers of the {@link OrderRetryRouter} once they are due. Waiting for
+ * an order does not block the consumer: up to {@code order.retry.max-pending} orders wait for their
+ * next attempt at the same time, so orders of a short tier are not held up by the orders of a long
+ * tier as long as that limit is not reached. An order that fails again is handed back to the router.
+ * Its decision is timed from the moment it became due (see {@link ReceivedMetadata}), so the delay of
+ * its tier does not count towards the latency of the inventory.
+ * <p>
+ * A record stays unacknowledged while its order waits, and the throttled commit strategy of the
+ * Kafka connector fails the channel once a record stays unacknowledged for longer than
+ * {@code throttled.unprocessed-record-max-age.ms}. An order waits for at most the longest delay,
+ * plus at most the longest delay again for a free slot among the pending orders, so the channel has
+ * to allow records to age more than twice the longest delay; the service refuses to start otherwise.
+ */
+@ApplicationScoped
+public class OrderRetryService {
+
+    @Inject
+    InventoryAvailabilityChecker checker;
+
+    @Inject
+    OrderRetryRouter retryRouter;
+
+    @ConfigProperty(name = "order.retry.max-pending", defaultValue = "256")
+    int maxPending;
+
+    @ConfigProperty(name = "order.retry.delays", defaultValue = "PT1S,PT10S,PT1M")
+    List<Duration> delays;
+
+    @ConfigProperty(name = "mp.messaging.incoming.incoming-order-retries.throttled.unprocessed-record-max-age.ms", defaultValue = "60000")
+    long maxRecordAgeMillis;
+
+    @PostConstruct
+    void checkMaxRecordAge() {
+        final long required = requiredMaxRecordAgeMillis(delays);
+        if (maxRecordAgeMillis > 0L && maxRecordAgeMillis <= required) {
+            throw new IllegalStateException("mp.messaging.incoming.incoming-order-retries.throttled.unprocessed-record-max-age.ms has to exceed "
+                    + required + " ms (twice the longest of order.retry.delays), but is " + maxRecordAgeMillis + " ms.");
+        }
+    }
+
+    /**
+     * The age up to which a record of a retry tier may stay unacknowledged while its order waits.
+     */
+    static long requiredMaxRecordAgeMillis(final List<Duration> delays) {
+        return 2L * delays.stream().mapToLong(Duration::toMillis).max().orElse(0L);
+    }
+
+    @Incoming("incoming-order-retries")
+    @Outgoing("outgoing-checked-orders")
+    public Multi<Message<Event>> retry(final Multi<Message<OrderSubmittedEvent>> messages) {
+        return messages
+                .onItem().transformToUni(message -> dueAt(RetryMetadata.of(message).dueAtMillis())
+                        .map(ignored -> InventoryService.check(checker, message.addMetadata(ReceivedMetadata.now())))
+                        .onFailure().recoverWithUni(failure -> retryRouter.reroute(message, failure)
+                                .replaceWith(Uni.createFrom().<Message<Event>>nullItem())))
+                .merge(maxPending);
+    }
+
+    private static Uni<Void> dueAt(final long dueAtMillis) {
+        final long remaining = dueAtMillis - System.currentTimeMillis();
+        if (remaining <= 0L) return Uni.createFrom().voidItem();
+        return Uni.createFrom().voidItem().onItem().delayIt().by(Duration.ofMillis(remaining));
+    }
+}
@@ -1,13 +1,116 @@
 package workshop.quarkus.reactive;
 
+import io.quarkus.runtime.StartupEvent;
+import io.smallrye.mutiny.Multi;
 import io.smallrye.mutiny.Uni;
+import io.smallrye.reactive.messaging.MutinyEmitter;
+import io.smallrye.reactive.messaging.kafka.api.OutgoingKafkaRecordMetadata;
 import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.eclipse.microprofile.reactive.messaging.Channel;
+import org.eclipse.microprofile.reactive.messaging.Message;
 import workshop.quarkus.reactive.command.PlaceOrder;
+import workshop.quarkus.reactive.event.EventHeaders;
+import workshop.quarkus.reactive.event.OrderSubmittedEvent;
 
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Submits orders to the {@code orders} topic. With priority lanes enabled, every order is tagged with
+ * its {@link OrderPriority} and sent to the topic of its lane instead: orders of premium customers
+ * travel in the high lane, bulk submissions in the low lane and all other orders in the normal lane.
+ * Orders that go through the outbox are relayed in the lane of their customer, as the outbox does not
+ * journal the priority.
+ */
 @ApplicationScoped
 public class OrderService {
 
+    static final String PRIORITIZED = "prioritized";
+
+    @Channel("outgoing-orders")
+    MutinyEmitter<OrderSubmittedEvent> orders;
+
+    @Inject
+    PipelineMetrics metrics;
+
+    @Inject
+    OrderOutbox outbox;
+
+    @ConfigProperty(name = "order.bulk.max-in-flight", defaultValue = "64")
+    int maxInFlight;
+
+    @ConfigProperty(name = "order.priority-lanes.enabled", defaultValue = "false")
+    boolean priorityLanes;
+
+    @ConfigProperty(name = "order.priority-lanes.premium-customers")
+    Optional<Set<String>> premiumCustomers;
+
+    @ConfigProperty(name = "inventory.consumption-mode", defaultValue = "single")
+    String consumptionMode;
+
+    /**
+     * Only the prioritized consumption mode consumes the high and low lanes, so in any other mode
+     * orders sent to these lanes would never be checked.
+     */
+    void onStart(@Observes final StartupEvent event) {
+        if (priorityLanes && !PRIORITIZED.equals(consumptionMode)) {
+            throw new IllegalStateException("order.priority-lanes.enabled requires inventory.consumption-mode=" + PRIORITIZED + ", not " + consumptionMode + ".");
+        }
+    }
+
     public Uni<Void> submitOrder(PlaceOrder order) {
-        return Uni.createFrom().voidItem();
+        return submitOrder(order, priorityOf(order.customerId()));
+    }
+
+    public Uni<Void> submitOrder(final PlaceOrder order, final OrderPriority priority) {
+        final long startedAt = System.nanoTime();
+        final OrderSubmittedEvent event = new OrderSubmittedEvent(order.orderId(), order.customerId(), order.productId(), order.quantity());
+        final Uni<Void> submission = outbox.isEnabled()
+                ? outbox.submit(event, order.traceId())
+                : send(event, order.traceId(), priority);
+        return submission
+                .onItem().invoke(() -> metrics.recordSubmission(startedAt))
+                .onFailure().invoke(() -> metrics.recordError(PipelineMetrics.OUTGOING_ORDERS));
+    }
+
+    Uni<Void> send(final OrderSubmittedEvent event, final String traceId) {
+        return send(event, traceId, priorityOf(event.getCustomerId()));
+    }
+
+    private Uni<Void> send(final OrderSubmittedEvent event, final String traceId, final OrderPriority priority) {
+        final Message<OrderSubmittedEvent> message = Message.of(event).addMetadata(new OrderMetadata(traceId));
+        return orders.sendMessage(priorityLanes ? message.addMetadata(laneOf(priority)) : message);
+    }
+
+    OrderPriority priorityOf(final String customerId) {
+        return premiumCustomers.map(premium -> premium.contains(customerId)).orElse(false) ? OrderPriority.HIGH : OrderPriority.NORMAL;
+    }
+
+    private static OutgoingKafkaRecordMetadata<?> laneOf(final OrderPriority priority) {
+        final Headers headers = new RecordHeaders();
+        EventHeaders.put(headers, EventHeaders.PRIORITY, priority.label());
+        return OutgoingKafkaRecordMetadata.builder()
+                .withTopic(priority.topic())
+                .withHeaders(headers)
+                .build();
+    }
+
+    /**
+     * Submits orders as they arrive, keeping at most {@code order.bulk.max-in-flight} sends
+     * unacknowledged at any time. Upstream is only asked for further orders once sends complete, so
+     * this never overflows the buffer of the {@code outgoing-orders} emitter as long as the limit
+     * stays below that buffer's size. Bulk submissions travel in the low priority lane.
+     */
+    public Multi<OrderSubmissionResult> submitOrders(Multi<PlaceOrder> orders) {
+        return orders
+                .onItem().transformToUni(order -> submitOrder(order, OrderPriority.LOW)
+                        .replaceWith(OrderSubmissionResult.accepted(order.orderId()))
+                        .onFailure().recoverWithItem(failure -> OrderSubmissionResult.rejected(order.orderId(), failure)))
+                .merge(maxInFlight);
     }
-}
\ No newline at end of file
+}
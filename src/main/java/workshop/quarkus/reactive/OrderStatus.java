@@ -0,0 +1,7 @@
+package workshop.quarkus.reactive;
+
+public enum OrderStatus {
+
+    APPROVED,
+    DENIED
+}
@@ -0,0 +1,91 @@
+package workshop.quarkus.reactive;
+
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.subscription.BackPressureStrategy;
+import io.smallrye.mutiny.subscription.MultiEmitter;
+import jakarta.enterprise.context.ApplicationScoped;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Fans out status changes to subscribers of a single order or of all orders of a customer.
+ * Subscribers are kept in registries keyed by order ID resp. customer ID, so publishing a status
+ * change only visits the subscribers that are interested in it, and an idle subscriber costs an entry
+ * in a registry rather than a thread.
+ * <p>
+ * Publishing never blocks the caller. A subscriber to an order only ever receives the latest status
+ * of that order, so pending updates are conflated. A subscriber to a customer receives every update,
+ * but is dropped once more than {@code order.status.stream.buffer-size} updates are pending for it.
+ */
+@ApplicationScoped
+public class OrderStatusBroadcaster {
+
+    private static final Logger LOG = Logger.getLogger(OrderStatusBroadcaster.class);
+
+    @ConfigProperty(name = "order.status.stream.buffer-size", defaultValue = "16")
+    int bufferSize;
+
+    private final Map<String, Set<MultiEmitter<? super OrderStatusUpdate>>> orderSubscribers = new ConcurrentHashMap<>();
+
+    private final Map<String, Set<MultiEmitter<? super OrderStatusUpdate>>> customerSubscribers = new ConcurrentHashMap<>();
+
+    /**
+     * Emits the current status of the order first if it is already known.
+     */
+    public Multi<OrderStatusUpdate> subscribeToOrder(final String orderId, final Supplier<OrderStatus> currentStatus) {
+        return Multi.createFrom().emitter(emitter -> {
+            register(orderSubscribers, orderId, emitter);
+            final OrderStatus status = currentStatus.get();
+            if (status != null) emitter.emit(new OrderStatusUpdate(orderId, null, status));
+        }, BackPressureStrategy.LATEST);
+    }
+
+    public Multi<OrderStatusUpdate> subscribeToCustomer(final String customerId) {
+        return Multi.createFrom().<OrderStatusUpdate>emitter(emitter -> register(customerSubscribers, customerId, emitter), BackPressureStrategy.ERROR)
+                .onOverflow().buffer(bufferSize)
+                .onFailure().invoke(failure -> LOG.debugf("Dropped a slow subscriber to the orders of customer %s: %s", customerId, failure.getMessage()));
+    }
+
+    /**
+     * The customer ID is only resolved if there is a subscriber to any customer, so that lazy views
+     * on checked orders are not materialized just to find out that nobody is interested.
+     */
+    public void publish(final String orderId, final Supplier<String> customerId, final OrderStatus status) {
+        final Set<MultiEmitter<? super OrderStatusUpdate>> byOrder = orderSubscribers.get(orderId);
+        if (byOrder == null && customerSubscribers.isEmpty()) return;
+
+        final String resolvedCustomerId = customerSubscribers.isEmpty() ? null : customerId.get();
+        final OrderStatusUpdate update = new OrderStatusUpdate(orderId, resolvedCustomerId, status);
+        if (byOrder != null) byOrder.forEach(emitter -> emitter.emit(update));
+        if (resolvedCustomerId == null) return;
+        final Set<MultiEmitter<? super OrderStatusUpdate>> byCustomer = customerSubscribers.get(resolvedCustomerId);
+        if (byCustomer != null) byCustomer.forEach(emitter -> emitter.emit(update));
+    }
+
+    public int subscriberCount() {
+        return count(orderSubscribers) + count(customerSubscribers);
+    }
+
+    private static void register(final Map<String, Set<MultiEmitter<? super OrderStatusUpdate>>> registry,
+                                 final String key,
+                                 final MultiEmitter<? super OrderStatusUpdate> emitter) {
+        registry.compute(key, (k, emitters) -> {
+            final Set<MultiEmitter<? super OrderStatusUpdate>> registered = emitters == null ? ConcurrentHashMap.newKeySet() : emitters;
+            registered.add(emitter);
+            return registered;
+        });
+        emitter.onTermination(() -> registry.computeIfPresent(key, (k, emitters) -> {
+            emitters.remove(emitter);
+            return emitters.isEmpty() ? null : emitters;
+        }));
+    }
+
+    private static int count(final Map<String, Set<MultiEmitter<? super OrderStatusUpdate>>> registry) {
+        return registry.values().stream().mapToInt(Set::size).sum();
+    }
+}
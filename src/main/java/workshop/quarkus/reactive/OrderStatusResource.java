@@ -0,0 +1,72 @@
+package workshop.quarkus.reactive;
+
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.Uni;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.GET;
+import jakarta.ws.rs.HeaderParam;
+import jakarta.ws.rs.Path;
+import jakarta.ws.rs.PathParam;
+import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.QueryParam;
+import jakarta.ws.rs.RedirectionException;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+import org.jboss.resteasy.reactive.RestStreamElementType;
+
+import java.net.URI;
+import java.util.Optional;
+
+/**
+ * Streams status changes as server-sent events. Streams are served from the event loop, so an idle
+ * client does not hold on to a thread.
+ * <p>
+ * When several nodes consume {@code checked-orders}, a subscription to an order is redirected to the
+ * node that owns it (see {@link OrderStatusShards}). The orders of a customer are spread over all
+ * partitions though, so a customer stream is local to its node: it only carries the status changes
+ * of the orders that the node owns, and clients that follow a customer subscribe to every node.
+ */
+@Path("/status")
+public class OrderStatusResource {
+
+    @Inject
+    NotificationService notificationService;
+
+    @Inject
+    OrderStatusBroadcaster broadcaster;
+
+    @Inject
+    OrderStatusShards shards;
+
+    @GET
+    @Path("/orders/{orderId}")
+    @Produces(MediaType.SERVER_SENT_EVENTS)
+    @RestStreamElementType(MediaType.APPLICATION_JSON)
+    public Multi<OrderStatusUpdate> orderStatus(@PathParam("orderId") String orderId, @QueryParam(OrderStatusShards.REDIRECTED_BY) String redirectedBy) {
+        final Optional<URI> owner = shards.streamLocationOf(orderId, redirectedBy);
+        if (owner.isPresent()) throw new RedirectionException(Response.Status.TEMPORARY_REDIRECT, owner.get());
+        return broadcaster.subscribeToOrder(orderId, () -> notificationService.statusOf(orderId));
+    }
+
+    /**
+     * Current status of the given order, forwarded to the node that owns the order if need be. Answers
+     * with {@code 204 No Content} if the order is unknown.
+     */
+    @GET
+    @Path("/orders/{orderId}/current")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Uni<OrderStatus> currentStatus(@PathParam("orderId") String orderId, @HeaderParam(OrderStatusShards.FORWARDED_BY) String forwardedBy) {
+        return shards.statusOf(orderId, forwardedBy);
+    }
+
+    /**
+     * Status changes of the orders of the given customer that this node owns.
+     */
+    @GET
+    @Path("/customers/{customerId}")
+    @Produces(MediaType.SERVER_SENT_EVENTS)
+    @RestStreamElementType(MediaType.APPLICATION_JSON)
+    public Multi<OrderStatusUpdate> customerStatus(@PathParam("customerId") String customerId) {
+        return broadcaster.subscribeToCustomer(customerId);
+    }
+}
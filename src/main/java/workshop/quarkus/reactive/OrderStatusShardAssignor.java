@@ -0,0 +1,147 @@
+package workshop.quarkus.reactive;
+
+import org.apache.kafka.clients.consumer.ConsumerGroupMetadata;
+import org.apache.kafka.clients.consumer.ConsumerPartitionAssignor;
+import org.apache.kafka.clients.consumer.RangeAssignor;
+import org.apache.kafka.common.Cluster;
+import org.apache.kafka.common.Configurable;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.config.ConfigException;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Assigns partitions like the {@link RangeAssignor}, but lets every member of the consumer group know
+ * which node owns which partition:
+ * <pre>
+ * mp.messaging.incoming.[channel].partition.assignment.strategy=workshop.quarkus.reactive.OrderStatusShardAssignor
+ * mp.messaging.incoming.[channel].shards.node-url=http://node-1:8080
+ * </pre>
+ * Each member sends the URL of its node along with its subscription. The group leader computes the
+ * assignment and hands the resulting ownership of all partitions to every member, together with the
+ * partitions whose owner changed as far as the leader knows. Members publish it to the
+ * {@link ShardDirectory} of their node.
+ */
+public class OrderStatusShardAssignor implements ConsumerPartitionAssignor, Configurable {
+
+    public static final String NODE_URL_CONFIG = "shards.node-url";
+
+    private final RangeAssignor delegate = new RangeAssignor();
+
+    private String nodeUrl;
+
+    @Override
+    public void configure(final Map<String, ?> configs) {
+        final Object configured = configs.get(NODE_URL_CONFIG);
+        if (configured == null || configured.toString().isBlank()) {
+            throw new ConfigException(NODE_URL_CONFIG, configured, "The URL of the node is required to share partition ownership.");
+        }
+        nodeUrl = configured.toString();
+    }
+
+    @Override
+    public String name() {
+        return "order-status-shards";
+    }
+
+    @Override
+    public ByteBuffer subscriptionUserData(final Set<String> topics) {
+        return ByteBuffer.wrap(nodeUrl.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public GroupAssignment assign(final Cluster metadata, final GroupSubscription groupSubscription) {
+        final Map<String, Subscription> subscriptions = groupSubscription.groupSubscription();
+        final Map<String, Integer> partitionCounts = new TreeMap<>();
+        subscriptions.values().forEach(subscription -> subscription.topics().forEach(topic -> {
+            final Integer partitions = metadata.partitionCountForTopic(topic);
+            if (partitions != null) partitionCounts.put(topic, partitions);
+        }));
+
+        final Map<String, List<TopicPartition>> assigned = delegate.assign(partitionCounts, subscriptions);
+        final Map<TopicPartition, String> owners = new HashMap<>();
+        assigned.forEach((member, partitions) -> {
+            final String owner = StandardCharsets.UTF_8.decode(subscriptions.get(member).userData().duplicate()).toString();
+            partitions.forEach(partition -> owners.put(partition, owner));
+        });
+        final ByteBuffer ownership = encode(owners, partitionCounts, ShardDirectory.forNode(nodeUrl).handedOver(owners));
+
+        final Map<String, Assignment> assignments = new HashMap<>();
+        assigned.forEach((member, partitions) -> assignments.put(member, new Assignment(partitions, ownership.duplicate())));
+        return new GroupAssignment(assignments);
+    }
+
+    @Override
+    public void onAssignment(final Assignment assignment, final ConsumerGroupMetadata metadata) {
+        if (assignment.userData() == null) return;
+        decode(assignment.userData().duplicate(), ShardDirectory.forNode(nodeUrl));
+    }
+
+    /*
+     * number of topics | ( topic | number of partitions | ( owner | handed over (1 byte) )* )*
+     * where strings are prefixed with their length (2 bytes) and unassigned partitions have an empty owner
+     */
+    static ByteBuffer encode(final Map<TopicPartition, String> owners, final Map<String, Integer> partitionCounts, final Set<TopicPartition> handedOver) {
+        int size = Integer.BYTES;
+        for (Map.Entry<String, Integer> topic : partitionCounts.entrySet()) {
+            size += Short.BYTES + utf8(topic.getKey()).length + Integer.BYTES;
+            for (int partition = 0; partition < topic.getValue(); partition++) {
+                size += Short.BYTES + utf8(owners.getOrDefault(new TopicPartition(topic.getKey(), partition), "")).length + 1;
+            }
+        }
+        final ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.putInt(partitionCounts.size());
+        partitionCounts.forEach((topic, partitions) -> {
+            putString(buffer, topic);
+            buffer.putInt(partitions);
+            for (int partition = 0; partition < partitions; partition++) {
+                final TopicPartition topicPartition = new TopicPartition(topic, partition);
+                putString(buffer, owners.getOrDefault(topicPartition, ""));
+                buffer.put((byte) (handedOver.contains(topicPartition) ? 1 : 0));
+            }
+        });
+        return buffer.flip();
+    }
+
+    static void decode(final ByteBuffer buffer, final ShardDirectory directory) {
+        final Map<TopicPartition, String> owners = new HashMap<>();
+        final Map<String, Integer> partitionCounts = new HashMap<>();
+        final Set<TopicPartition> handedOver = new HashSet<>();
+        final int topics = buffer.getInt();
+        for (int i = 0; i < topics; i++) {
+            final String topic = getString(buffer);
+            final int partitions = buffer.getInt();
+            partitionCounts.put(topic, partitions);
+            for (int partition = 0; partition < partitions; partition++) {
+                final String owner = getString(buffer);
+                final TopicPartition topicPartition = new TopicPartition(topic, partition);
+                if (!owner.isEmpty()) owners.put(topicPartition, owner);
+                if (buffer.get() == 1) handedOver.add(topicPartition);
+            }
+        }
+        directory.update(owners, partitionCounts, handedOver);
+    }
+
+    private static void putString(final ByteBuffer buffer, final String value) {
+        final byte[] bytes = utf8(value);
+        buffer.putShort((short) bytes.length);
+        buffer.put(bytes);
+    }
+
+    private static String getString(final ByteBuffer buffer) {
+        final byte[] bytes = new byte[buffer.getShort()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static byte[] utf8(final String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,134 @@
+package workshop.quarkus.reactive;
+
+import io.smallrye.mutiny.Uni;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.function.Function;
+
+/**
+ * Answers status queries for any order, no matter which node of the cluster consumes the partition of
+ * {@code checked-orders} that holds it:
+ * <pre>
+ * notification.shards.node-url=http://node-1:8080
+ * notification.shards.topic=checked-orders
+ * notification.shards.forward-timeout=PT2S
+ * </pre>
+ * The node URL has no default, as it differs from node to node. Each node only tracks the status of
+ * the orders in the partitions assigned to it. Queries for other
+ * orders are forwarded to their owner, as known to the {@link ShardDirectory} of the node, via
+ * {@code GET /status/orders/{orderId}/current}. Forwarded queries carry the URL of the forwarding
+ * node in the {@value #FORWARDED_BY} header and are always answered locally, so that nodes with
+ * diverging views of the ownership do not forward a query back and forth. The header is ignored
+ * unless it names a node of the cluster, so a client cannot suppress the forwarding of its query;
+ * proxies in front of the cluster should strip it nonetheless. As long as the directory does not
+ * know the topic, e.g. when the channel does not consume from Kafka, all queries are answered
+ * locally.
+ * <p>
+ * Subscriptions to the status stream of an order are redirected to its owner instead (see
+ * {@link #streamLocationOf(String, String)}), so that a node does not relay a long-lived stream for
+ * every subscriber.
+ */
+@ApplicationScoped
+public class OrderStatusShards {
+
+    public static final String FORWARDED_BY = "X-Order-Status-Forwarded";
+
+    public static final String REDIRECTED_BY = "redirected-by";
+
+    @Inject
+    NotificationService notificationService;
+
+    @ConfigProperty(name = "notification.shards.node-url")
+    String nodeUrl;
+
+    @ConfigProperty(name = "notification.shards.topic", defaultValue = "checked-orders")
+    String topic;
+
+    @ConfigProperty(name = "notification.shards.forward-timeout", defaultValue = "PT2S")
+    Duration forwardTimeout;
+
+    private ShardDirectory directory;
+
+    private Function<String, OrderStatus> localStatus;
+
+    private HttpClient client;
+
+    OrderStatusShards() {
+    }
+
+    OrderStatusShards(final ShardDirectory directory, final String topic, final Function<String, OrderStatus> localStatus, final Duration forwardTimeout) {
+        this.topic = topic;
+        this.forwardTimeout = forwardTimeout;
+        initialize(directory, localStatus);
+    }
+
+    @PostConstruct
+    void createClient() {
+        initialize(ShardDirectory.forNode(nodeUrl), notificationService::statusOf);
+    }
+
+    private void initialize(final ShardDirectory directory, final Function<String, OrderStatus> localStatus) {
+        this.directory = directory;
+        this.localStatus = localStatus;
+        this.client = HttpClient.newBuilder().connectTimeout(forwardTimeout).build();
+    }
+
+    public ShardDirectory directory() {
+        return directory;
+    }
+
+    /**
+     * Status of the given order, looked up locally if this node owns the order or if the query has
+     * been forwarded by another node of the cluster, and forwarded to the owner otherwise. Emits
+     * {@code null} if the owner does not know the order.
+     *
+     * @param forwardedBy value of the {@value #FORWARDED_BY} header, if any
+     */
+    public Uni<OrderStatus> statusOf(final String orderId, final String forwardedBy) {
+        final String owner = directory.ownerOf(topic, orderId);
+        if (directory.isMember(forwardedBy) || directory.isLocal(owner)) return Uni.createFrom().item(() -> localStatus.apply(orderId));
+
+        final HttpRequest request = HttpRequest.newBuilder(URI.create(owner + "/status/orders/" + URLEncoder.encode(orderId, StandardCharsets.UTF_8) + "/current"))
+                .header(FORWARDED_BY, directory.nodeUrl())
+                .timeout(forwardTimeout)
+                .GET()
+                .build();
+        return Uni.createFrom().completionStage(() -> client.sendAsync(request, HttpResponse.BodyHandlers.ofString()))
+                .map(response -> statusFrom(owner, response));
+    }
+
+    /**
+     * Location of the status stream of the given order on its owner, or empty if the stream is served
+     * by this node. The location names this node in the {@value #REDIRECTED_BY} query parameter and,
+     * like forwarded queries, redirected subscriptions are always served locally, so that nodes with
+     * diverging views of the ownership do not redirect a client back and forth.
+     *
+     * @param redirectedBy value of the {@value #REDIRECTED_BY} query parameter, if any
+     */
+    public Optional<URI> streamLocationOf(final String orderId, final String redirectedBy) {
+        final String owner = directory.ownerOf(topic, orderId);
+        if (directory.isMember(redirectedBy) || directory.isLocal(owner)) return Optional.empty();
+        return Optional.of(URI.create(owner + "/status/orders/" + URLEncoder.encode(orderId, StandardCharsets.UTF_8)
+                + "?" + REDIRECTED_BY + "=" + URLEncoder.encode(directory.nodeUrl(), StandardCharsets.UTF_8)));
+    }
+
+    private static OrderStatus statusFrom(final String owner, final HttpResponse<String> response) {
+        if (response.statusCode() == 204) return null;
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("The owner " + owner + " of the order answered the status query with HTTP " + response.statusCode() + ".");
+        }
+        final String body = response.body().strip();
+        return OrderStatus.valueOf(body.startsWith("\"") ? body.substring(1, body.length() - 1) : body);
+    }
+}
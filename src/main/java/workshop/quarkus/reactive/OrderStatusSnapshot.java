@@ -0,0 +1,169 @@
+package workshop.quarkus.reactive;
+
+import org.apache.kafka.common.TopicPartition;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.zip.CRC32C;
+
+/**
+ * Snapshot of an {@link OrderStatusStore} together with the consumer offsets up to which the store
+ * has processed its input. A snapshot file is laid out as follows:
+ *
+ * <pre>
+ * magic (4 bytes) | taken at (8 bytes) | number of offsets (4 bytes)
+ *   | ( topic length (2 bytes) | topic | partition (4 bytes) | offset (8 bytes) )*
+ *   | number of entries (4 bytes) | ( msb (8 bytes) | lsb (8 bytes) | expiry and status (8 bytes) )*
+ *   | checksum (4 bytes)
+ * </pre>
+ *
+ * where entries are kept in insertion order, the expiry is shifted left by one bit to make room for
+ * the status and the checksum (CRC32C) covers everything before it. The file is written and read
+ * through a memory mapping. It is written to a temporary file first and then moved over the previous
+ * snapshot, so that a crash while taking a snapshot leaves the previous one intact.
+ */
+public record OrderStatusSnapshot(Instant takenAt, Map<TopicPartition, Long> offsets, int entries) {
+
+    private static final int MAGIC = 0x4F535331;
+
+    private static final int ENTRY_BYTES = 3 * Long.BYTES;
+
+    /**
+     * Writes a snapshot of the given store. Writers of the store are blocked while its entries are
+     * copied into the mapping, but not while the snapshot is flushed to disk.
+     */
+    public static OrderStatusSnapshot write(final Path file, final Map<TopicPartition, Long> offsets, final OrderStatusStore store) {
+        final Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        final Map<TopicPartition, Long> processed = Map.copyOf(offsets);
+        final MappedSink sink;
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            sink = new MappedSink(channel, Instant.ofEpochMilli(System.currentTimeMillis()), processed);
+            store.export(sink);
+            sink.seal();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to write the status snapshot " + temporary + ".", e);
+        }
+        try {
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to replace the status snapshot " + file + ".", e);
+        }
+        return new OrderStatusSnapshot(sink.takenAt, processed, sink.entries);
+    }
+
+    /**
+     * Restores the entries of the given snapshot file into the given store, provided that the file
+     * exists. The checksum is verified before the store is touched, so that a corrupt snapshot leaves
+     * the store empty.
+     */
+    public static Optional<OrderStatusSnapshot> restore(final Path file, final OrderStatusStore store) {
+        if (!Files.isRegularFile(file)) return Optional.empty();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.capacity() < 2 * Integer.BYTES + Long.BYTES || buffer.getInt(0) != MAGIC) {
+                throw new IOException("File is not a status snapshot.");
+            }
+            final CRC32C checksum = new CRC32C();
+            checksum.update(buffer.slice(0, buffer.capacity() - Integer.BYTES));
+            if ((int) checksum.getValue() != buffer.getInt(buffer.capacity() - Integer.BYTES)) {
+                throw new IOException("Checksum of the status snapshot does not match.");
+            }
+
+            buffer.position(Integer.BYTES);
+            final Instant takenAt = Instant.ofEpochMilli(buffer.getLong());
+            final int partitions = buffer.getInt();
+            final Map<TopicPartition, Long> offsets = new HashMap<>(partitions * 2);
+            for (int i = 0; i < partitions; i++) {
+                final byte[] topic = new byte[buffer.getShort()];
+                buffer.get(topic);
+                offsets.put(new TopicPartition(new String(topic, StandardCharsets.UTF_8), buffer.getInt()), buffer.getLong());
+            }
+            final int entries = buffer.getInt();
+            for (int i = 0; i < entries; i++) {
+                final long msb = buffer.getLong();
+                final long lsb = buffer.getLong();
+                final long state = buffer.getLong();
+                store.restore(msb, lsb, state >>> 1, (state & 1) == 1 ? OrderStatus.APPROVED : OrderStatus.DENIED);
+            }
+            return Optional.of(new OrderStatusSnapshot(takenAt, Map.copyOf(offsets), entries));
+        } catch (IOException | RuntimeException e) {
+            throw new UncheckedIOException("Unable to restore the status snapshot " + file + ".",
+                    e instanceof IOException io ? io : new IOException(e));
+        }
+    }
+
+    private static int headerSize(final Map<TopicPartition, Long> offsets) {
+        int size = Integer.BYTES + Long.BYTES + Integer.BYTES + Integer.BYTES;
+        for (TopicPartition partition : offsets.keySet()) {
+            size += Short.BYTES + partition.topic().getBytes(StandardCharsets.UTF_8).length + Integer.BYTES + Long.BYTES;
+        }
+        return size;
+    }
+
+    private static class MappedSink implements OrderStatusStore.EntrySink {
+
+        private final FileChannel channel;
+
+        private final Instant takenAt;
+
+        private final Map<TopicPartition, Long> offsets;
+
+        private MappedByteBuffer buffer;
+
+        private int entries;
+
+        MappedSink(final FileChannel channel, final Instant takenAt, final Map<TopicPartition, Long> offsets) {
+            this.channel = channel;
+            this.takenAt = takenAt;
+            this.offsets = offsets;
+        }
+
+        @Override
+        public void size(final int entries) {
+            final long size = headerSize(offsets) + (long) entries * ENTRY_BYTES + Integer.BYTES;
+            try {
+                buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Unable to map the status snapshot.", e);
+            }
+            buffer.putInt(MAGIC);
+            buffer.putLong(takenAt.toEpochMilli());
+            buffer.putInt(offsets.size());
+            offsets.forEach((partition, offset) -> {
+                final byte[] topic = partition.topic().getBytes(StandardCharsets.UTF_8);
+                buffer.putShort((short) topic.length);
+                buffer.put(topic);
+                buffer.putInt(partition.partition());
+                buffer.putLong(offset);
+            });
+            buffer.putInt(entries);
+            this.entries = entries;
+        }
+
+        @Override
+        public void entry(final long msb, final long lsb, final long expiresAtMillis, final OrderStatus status) {
+            buffer.putLong(msb);
+            buffer.putLong(lsb);
+            buffer.putLong(expiresAtMillis << 1 | (status == OrderStatus.APPROVED ? 1 : 0));
+        }
+
+        void seal() {
+            final CRC32C checksum = new CRC32C();
+            checksum.update(buffer.slice(0, buffer.position()));
+            buffer.putInt((int) checksum.getValue());
+            buffer.force();
+        }
+    }
+}
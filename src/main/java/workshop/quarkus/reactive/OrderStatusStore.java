@@ -0,0 +1,307 @@
+package workshop.quarkus.reactive;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/**
+ * Keeps track of the status of recently checked orders. Order IDs are stored as two {@code long}
+ * values in an open-addressing table, so that tracking an order does not retain the original
+ * {@code String}. Canonical UUIDs are stored losslessly, any other order ID is reduced to a 128-bit
+ * hash.
+ * <p>
+ * The store is bounded in size and evicts entries in insertion order, either once they exceed
+ * their time-to-live or once the store is full. Writers are serialized, while readers never block:
+ * a slot's key is written before its state word is published, and the table is only ever replaced
+ * as a whole when tombstones have to be cleaned up.
+ */
+public class OrderStatusStore {
+
+    private static final long EMPTY = 0L;
+
+    private static final long TOMBSTONE = -1L;
+
+    private static final int STATUS_BITS = 2;
+
+    private static final long STATUS_MASK = (1L << STATUS_BITS) - 1;
+
+    private static final long MAX_EXPIRY = Long.MAX_VALUE >>> STATUS_BITS;
+
+    private final int maxEntries;
+
+    private final long ttlMillis;
+
+    private final LongSupplier clock;
+
+    private final ReentrantLock writeLock = new ReentrantLock();
+
+    private volatile Table table;
+
+    /* slot indices in insertion order, guarded by writeLock */
+    private final int[] insertionOrder;
+
+    private int head;
+
+    private int size;
+
+    public OrderStatusStore(final int maxEntries, final Duration ttl) {
+        this(maxEntries, ttl, System::currentTimeMillis);
+    }
+
+    OrderStatusStore(final int maxEntries, final Duration ttl, final LongSupplier clock) {
+        if (maxEntries < 1) throw new IllegalArgumentException("The status store must be able to hold at least one entry.");
+        this.maxEntries = maxEntries;
+        this.ttlMillis = Math.min(ttl.toMillis(), MAX_EXPIRY);
+        this.clock = clock;
+        this.insertionOrder = new int[maxEntries];
+        this.table = new Table(tableSizeFor(maxEntries));
+    }
+
+    public void put(final String orderId, final OrderStatus status) {
+        put(msbOf(orderId), lsbOf(orderId), status);
+    }
+
+    public OrderStatus get(final String orderId) {
+        return get(msbOf(orderId), lsbOf(orderId));
+    }
+
+    public void put(final long msb, final long lsb, final OrderStatus status) {
+        writeLock.lock();
+        try {
+            final long now = clock.getAsLong();
+            evictExpired(now);
+            insert(msb, lsb, status, now + ttlMillis);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Re-inserts an entry that was exported by {@link #export(EntrySink)}, keeping its original
+     * expiry. Entries have to be restored in the order in which they were exported, so that they are
+     * still evicted in insertion order; entries that have expired in the meantime are skipped.
+     */
+    public void restore(final long msb, final long lsb, final long expiresAtMillis, final OrderStatus status) {
+        writeLock.lock();
+        try {
+            final long now = clock.getAsLong();
+            evictExpired(now);
+            if (expiresAtMillis > now) insert(msb, lsb, status, expiresAtMillis);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Passes the size of the store and then all of its entries in insertion order to the given sink.
+     * Writers are blocked until the export is complete.
+     */
+    public void export(final EntrySink sink) {
+        writeLock.lock();
+        try {
+            evictExpired(clock.getAsLong());
+            sink.size(size);
+            final Table t = table;
+            for (int i = 0; i < size; i++) {
+                final int slot = insertionOrder[(head + i) % maxEntries];
+                final long state = t.states.get(slot);
+                sink.entry(t.keys[2 * slot], t.keys[2 * slot + 1], state >>> STATUS_BITS, decode(state));
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    public OrderStatus get(final long msb, final long lsb) {
+        final Table t = table;
+        int slot = t.indexOf(msb, lsb);
+        for (int probes = 0; probes < t.capacity(); probes++) {
+            final long state = t.states.get(slot);
+            if (state == EMPTY) return null;
+            if (state != TOMBSTONE && t.keys[2 * slot] == msb && t.keys[2 * slot + 1] == lsb) {
+                return (state >>> STATUS_BITS) > clock.getAsLong() ? decode(state) : null;
+            }
+            slot = (slot + 1) & t.mask;
+        }
+        return null;
+    }
+
+    public int size() {
+        writeLock.lock();
+        try {
+            return size;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    public int maxEntries() {
+        return maxEntries;
+    }
+
+    public long memoryFootprintBytes() {
+        final long slots = table.capacity();
+        return slots * (2 * Long.BYTES + Long.BYTES) + (long) maxEntries * Integer.BYTES;
+    }
+
+    public double bytesPerTrackedOrder() {
+        return (double) memoryFootprintBytes() / maxEntries;
+    }
+
+    private void insert(final long msb, final long lsb, final OrderStatus status, final long expiresAtMillis) {
+        Table t = table;
+        int slot = t.indexOf(msb, lsb);
+        while (true) {
+            final long state = t.states.get(slot);
+            if (state == EMPTY) break;
+            if (state != TOMBSTONE && t.keys[2 * slot] == msb && t.keys[2 * slot + 1] == lsb) {
+                t.states.set(slot, (state & ~STATUS_MASK) | encode(status));
+                return;
+            }
+            slot = (slot + 1) & t.mask;
+        }
+
+        if (size == maxEntries) {
+            evictOldest();
+        }
+
+        t.keys[2 * slot] = msb;
+        t.keys[2 * slot + 1] = lsb;
+        t.states.set(slot, (Math.min(expiresAtMillis, MAX_EXPIRY) << STATUS_BITS) | encode(status));
+        insertionOrder[(head + size) % maxEntries] = slot;
+        size++;
+        t.used++;
+
+        if (t.used > t.capacity() - (t.capacity() >> 2)) {
+            rehash();
+        }
+    }
+
+    private void evictExpired(final long now) {
+        final Table t = table;
+        while (size > 0 && (t.states.get(insertionOrder[head]) >>> STATUS_BITS) <= now) {
+            evictOldest();
+        }
+    }
+
+    private void evictOldest() {
+        table.states.set(insertionOrder[head], TOMBSTONE);
+        head = (head + 1) % maxEntries;
+        size--;
+    }
+
+    private void rehash() {
+        final Table old = table;
+        final Table fresh = new Table(old.capacity());
+        for (int i = 0; i < size; i++) {
+            final int position = (head + i) % maxEntries;
+            final int oldSlot = insertionOrder[position];
+            final long msb = old.keys[2 * oldSlot];
+            final long lsb = old.keys[2 * oldSlot + 1];
+            int slot = fresh.indexOf(msb, lsb);
+            while (fresh.states.get(slot) != EMPTY) {
+                slot = (slot + 1) & fresh.mask;
+            }
+            fresh.keys[2 * slot] = msb;
+            fresh.keys[2 * slot + 1] = lsb;
+            fresh.states.set(slot, old.states.get(oldSlot));
+            fresh.used++;
+            insertionOrder[position] = slot;
+        }
+        table = fresh;
+    }
+
+    private static long encode(final OrderStatus status) {
+        return status.ordinal() + 1;
+    }
+
+    private static OrderStatus decode(final long state) {
+        return (state & STATUS_MASK) == 1 ? OrderStatus.APPROVED : OrderStatus.DENIED;
+    }
+
+    private static int tableSizeFor(final int maxEntries) {
+        final long slots = Long.highestOneBit(Math.max(2L, (long) maxEntries * 2 - 1)) << 1;
+        if (slots > (1 << 30)) throw new IllegalArgumentException("The status store cannot hold " + maxEntries + " entries.");
+        return (int) slots;
+    }
+
+    static long msbOf(final String orderId) {
+        return isCanonicalUuid(orderId) ? parseHex(orderId, 0, 8) << 32 | parseHex(orderId, 9, 13) << 16 | parseHex(orderId, 14, 18) : hash(orderId, 0x9E3779B97F4A7C15L);
+    }
+
+    static long lsbOf(final String orderId) {
+        return isCanonicalUuid(orderId) ? parseHex(orderId, 19, 23) << 48 | parseHex(orderId, 24, 36) : hash(orderId, 0xC2B2AE3D27D4EB4FL);
+    }
+
+    private static boolean isCanonicalUuid(final String value) {
+        if (value.length() != 36) return false;
+        for (int i = 0; i < 36; i++) {
+            final char c = value.charAt(i);
+            if (i == 8 || i == 13 || i == 18 || i == 23) {
+                if (c != '-') return false;
+            } else if (Character.digit(c, 16) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static long parseHex(final String value, final int from, final int to) {
+        long result = 0;
+        for (int i = from; i < to; i++) {
+            result = (result << 4) | Character.digit(value.charAt(i), 16);
+        }
+        return result;
+    }
+
+    private static long hash(final String value, final long seed) {
+        long h = seed;
+        for (int i = 0; i < value.length(); i++) {
+            h = (h ^ value.charAt(i)) * 0x100000001B3L;
+        }
+        return mix(h);
+    }
+
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    public interface EntrySink {
+
+        void size(int entries);
+
+        void entry(long msb, long lsb, long expiresAtMillis, OrderStatus status);
+    }
+
+    private static class Table {
+
+        final long[] keys;
+
+        final AtomicLongArray states;
+
+        final int mask;
+
+        /* occupied slots including tombstones, guarded by writeLock */
+        int used;
+
+        Table(final int capacity) {
+            this.keys = new long[2 * capacity];
+            this.states = new AtomicLongArray(capacity);
+            this.mask = capacity - 1;
+        }
+
+        int capacity() {
+            return mask + 1;
+        }
+
+        int indexOf(final long msb, final long lsb) {
+            return (int) mix(msb ^ Long.rotateLeft(lsb, 32)) & mask;
+        }
+    }
+}
@@ -0,0 +1,4 @@
+package workshop.quarkus.reactive;
+
+public record OrderStatusUpdate(String orderId, String customerId, OrderStatus status) {
+}
@@ -0,0 +1,12 @@
+package workshop.quarkus.reactive;
+
+public record OrderSubmissionResult(String orderId, boolean accepted, String reason) {
+
+    public static OrderSubmissionResult accepted(final String orderId) {
+        return new OrderSubmissionResult(orderId, true, null);
+    }
+
+    public static OrderSubmissionResult rejected(final String orderId, final Throwable failure) {
+        return new OrderSubmissionResult(orderId, false, failure.getMessage());
+    }
+}
@@ -0,0 +1,6 @@
+package workshop.quarkus.reactive;
+
+import workshop.quarkus.reactive.event.OrderSubmittedEvent;
+
+public record OutboxEntry(long sequence, String traceId, OrderSubmittedEvent event) {
+}
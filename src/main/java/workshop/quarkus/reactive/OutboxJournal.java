@@ -0,0 +1,359 @@
+package workshop.quarkus.reactive;
+
+import workshop.quarkus.reactive.event.BinaryEventCodec;
+import workshop.quarkus.reactive.event.Event;
+import workshop.quarkus.reactive.event.OrderSubmittedEvent;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only journal of submitted orders on local disk. The journal is split into segments of a
+ * fixed size that are memory-mapped while they are in use. Every entry is laid out as
+ *
+ * <pre>
+ * length (4 bytes) | checksum (4 bytes) | sequence (8 bytes) | trace ID length (2 bytes) | trace ID | event
+ * </pre>
+ *
+ * where the event is written in its binary encoding and the checksum (CRC32C) covers everything after
+ * it. A segment is named after the sequence number of its first entry and ends at the first entry with
+ * a length of 0, a checksum that does not match or an unexpected sequence number. Hence a torn write
+ * at the end of the journal is discarded on recovery.
+ * <p>
+ * The sequence number of the last entry that has been relayed is kept in a separate checkpoint file.
+ * Entries after it are replayed after a restart; segments that only hold acknowledged entries are
+ * deleted. The journal supports a single writer and a single reader at a time.
+ */
+public class OutboxJournal implements AutoCloseable {
+
+    private static final int HEADER_BYTES = 2 * Integer.BYTES;
+
+    private static final String SEGMENT_PREFIX = "segment-";
+
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    private static final String CHECKPOINT = "acknowledged";
+
+    private final Path directory;
+
+    private final int segmentSize;
+
+    private final TreeMap<Long, Segment> segments = new TreeMap<>();
+
+    private final FileChannel checkpoint;
+
+    private Segment active;
+
+    private long nextSequence;
+
+    private volatile long lastAppended;
+
+    private volatile long acknowledged;
+
+    private Segment readSegment;
+
+    private int readPosition;
+
+    private long readSequence = -1L;
+
+    public OutboxJournal(final Path directory, final int segmentSize) {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        try {
+            Files.createDirectories(directory);
+            checkpoint = FileChannel.open(directory.resolve(CHECKPOINT), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            acknowledged = readCheckpoint();
+            recover();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to open the outbox journal in " + directory + ".", e);
+        }
+    }
+
+    /**
+     * Appends the given order to the journal and returns its sequence number. The entry is visible to
+     * the reader right away, but only durable once the journal has been {@link #force() forced}.
+     */
+    public synchronized long append(final OrderSubmittedEvent event, final String traceId) {
+        final byte[] eventBytes = BinaryEventCodec.encode(event);
+        final byte[] traceIdBytes = traceId == null ? new byte[0] : traceId.getBytes(StandardCharsets.UTF_8);
+        final int length = Long.BYTES + Short.BYTES + traceIdBytes.length + eventBytes.length;
+        if (HEADER_BYTES + length > segmentSize) {
+            throw new IllegalArgumentException("Entry of " + length + " bytes exceeds the segment size of " + segmentSize + " bytes.");
+        }
+        if (active.writePosition + HEADER_BYTES + length > segmentSize) roll();
+
+        final long sequence = nextSequence;
+        final ByteBuffer body = ByteBuffer.allocate(length);
+        body.putLong(sequence);
+        body.putShort((short) traceIdBytes.length);
+        body.put(traceIdBytes);
+        body.put(eventBytes);
+
+        final CRC32C checksum = new CRC32C();
+        checksum.update(body.array(), 0, length);
+
+        final MappedByteBuffer buffer = active.buffer;
+        final int position = active.writePosition;
+        buffer.put(position + HEADER_BYTES, body.array(), 0, length);
+        buffer.putInt(position + Integer.BYTES, (int) checksum.getValue());
+        buffer.putInt(position, length);
+
+        active.writePosition = position + HEADER_BYTES + length;
+        nextSequence = sequence + 1;
+        lastAppended = sequence;
+        return sequence;
+    }
+
+    /**
+     * Flushes all entries appended so far to disk and returns the sequence number of the last of them.
+     */
+    public long force() {
+        final Segment segment;
+        final long sequence;
+        synchronized (this) {
+            segment = active;
+            sequence = lastAppended;
+        }
+        segment.buffer.force();
+        return sequence;
+    }
+
+    /**
+     * Reads up to {@code maxEntries} entries that follow the entry with the given sequence number.
+     */
+    public List<OutboxEntry> read(final long afterSequence, final int maxEntries) {
+        final long last = lastAppended;
+        final List<OutboxEntry> entries = new ArrayList<>(Math.min(maxEntries, 64));
+        if (afterSequence >= last) return entries;
+
+        synchronized (this) {
+            if (readSequence != afterSequence) seek(afterSequence);
+        }
+        while (entries.size() < maxEntries && readSequence < last) {
+            if (readPosition + HEADER_BYTES > segmentSize || readSegment.buffer.getInt(readPosition) == 0) {
+                synchronized (this) {
+                    final Map.Entry<Long, Segment> next = segments.higherEntry(readSegment.firstSequence);
+                    if (next == null) break;
+                    readSegment = next.getValue();
+                    readPosition = 0;
+                }
+                continue;
+            }
+            final OutboxEntry entry = entryAt(readSegment.buffer, readPosition);
+            readPosition += HEADER_BYTES + readSegment.buffer.getInt(readPosition);
+            readSequence = entry.sequence();
+            entries.add(entry);
+        }
+        return entries;
+    }
+
+    /**
+     * Marks all entries up to the given sequence number as relayed and deletes the segments that only
+     * hold such entries.
+     */
+    public void acknowledge(final long sequence) {
+        if (sequence <= acknowledged) return;
+        try {
+            final ByteBuffer value = ByteBuffer.allocate(Long.BYTES).putLong(0, sequence);
+            checkpoint.write(value, 0);
+            checkpoint.force(false);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to write the checkpoint of the outbox journal.", e);
+        }
+        acknowledged = sequence;
+        truncate(sequence);
+    }
+
+    public long acknowledged() {
+        return acknowledged;
+    }
+
+    public long lastAppended() {
+        return lastAppended;
+    }
+
+    public synchronized int segmentCount() {
+        return segments.size();
+    }
+
+    @Override
+    public synchronized void close() {
+        try {
+            for (Segment segment : segments.values()) {
+                segment.buffer.force();
+                segment.channel.close();
+            }
+            segments.clear();
+            checkpoint.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to close the outbox journal.", e);
+        }
+    }
+
+    private synchronized void truncate(final long acknowledgedSequence) {
+        while (segments.size() > 1) {
+            final Map.Entry<Long, Segment> oldest = segments.firstEntry();
+            final Long successor = segments.higherKey(oldest.getKey());
+            if (successor == null || successor - 1 > acknowledgedSequence) return;
+            final Segment segment = oldest.getValue();
+            segments.remove(oldest.getKey());
+            if (readSegment == segment) readSequence = -1L;
+            try {
+                segment.channel.close();
+                Files.deleteIfExists(segment.path);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Unable to delete acknowledged segment " + segment.path + ".", e);
+            }
+        }
+    }
+
+    private void seek(final long afterSequence) {
+        final Map.Entry<Long, Segment> floor = segments.floorEntry(afterSequence + 1);
+        readSegment = floor != null ? floor.getValue() : segments.firstEntry().getValue();
+        readPosition = 0;
+        readSequence = readSegment.firstSequence - 1;
+        while (readSequence < afterSequence && readPosition + HEADER_BYTES <= segmentSize) {
+            final int length = readSegment.buffer.getInt(readPosition);
+            if (length == 0) break;
+            readSequence = readSegment.buffer.getLong(readPosition + HEADER_BYTES);
+            readPosition += HEADER_BYTES + length;
+        }
+        readSequence = Math.max(readSequence, afterSequence);
+    }
+
+    private void roll() {
+        active.buffer.force();
+        active = openSegment(nextSequence);
+        segments.put(active.firstSequence, active);
+    }
+
+    private void recover() throws IOException {
+        final List<Path> files;
+        try (Stream<Path> listing = Files.list(directory)) {
+            files = listing
+                    .filter(path -> path.getFileName().toString().startsWith(SEGMENT_PREFIX))
+                    .sorted()
+                    .toList();
+        }
+
+        long expected = -1L;
+        for (Path file : files) {
+            final Segment segment = openSegment(firstSequenceOf(file));
+            if (expected >= 0 && segment.firstSequence != expected) {
+                throw new IOException("Segment " + file + " does not continue the journal at sequence " + expected + ".");
+            }
+            segment.writePosition = scan(segment);
+            expected = segment.firstSequence + segment.entries;
+            segments.put(segment.firstSequence, segment);
+        }
+
+        if (segments.isEmpty()) {
+            nextSequence = acknowledged + 1;
+            active = openSegment(nextSequence);
+            segments.put(active.firstSequence, active);
+        } else {
+            active = segments.lastEntry().getValue();
+            nextSequence = expected;
+            zeroTail(active);
+        }
+        lastAppended = nextSequence - 1;
+        truncate(acknowledged);
+    }
+
+    private int scan(final Segment segment) {
+        int position = 0;
+        long expected = segment.firstSequence;
+        while (position + HEADER_BYTES <= segmentSize) {
+            final int length = segment.buffer.getInt(position);
+            if (length <= 0 || position + HEADER_BYTES + length > segmentSize) break;
+            final byte[] body = new byte[length];
+            segment.buffer.get(position + HEADER_BYTES, body);
+            final CRC32C checksum = new CRC32C();
+            checksum.update(body);
+            if ((int) checksum.getValue() != segment.buffer.getInt(position + Integer.BYTES)) break;
+            if (ByteBuffer.wrap(body).getLong() != expected) break;
+            position += HEADER_BYTES + length;
+            expected++;
+        }
+        segment.entries = expected - segment.firstSequence;
+        return position;
+    }
+
+    private void zeroTail(final Segment segment) {
+        final byte[] zeros = new byte[4096];
+        for (int position = segment.writePosition; position < segmentSize; position += zeros.length) {
+            segment.buffer.put(position, zeros, 0, Math.min(zeros.length, segmentSize - position));
+        }
+        segment.buffer.force();
+    }
+
+    private static OutboxEntry entryAt(final ByteBuffer buffer, final int position) {
+        final int length = buffer.getInt(position);
+        final ByteBuffer body = buffer.slice(position + HEADER_BYTES, length);
+        final long sequence = body.getLong();
+        final byte[] traceId = new byte[body.getShort()];
+        body.get(traceId);
+        final byte[] event = new byte[body.remaining()];
+        body.get(event);
+        final Event decoded = BinaryEventCodec.decode(event);
+        return new OutboxEntry(sequence, new String(traceId, StandardCharsets.UTF_8), (OrderSubmittedEvent) decoded);
+    }
+
+    private Segment openSegment(final long firstSequence) {
+        final Path path = directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, firstSequence, SEGMENT_SUFFIX));
+        try {
+            final FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+            return new Segment(path, firstSequence, channel, buffer);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to map segment " + path + " of the outbox journal.", e);
+        }
+    }
+
+    private long readCheckpoint() throws IOException {
+        if (checkpoint.size() < Long.BYTES) return 0L;
+        final ByteBuffer value = ByteBuffer.allocate(Long.BYTES);
+        checkpoint.read(value, 0);
+        return value.getLong(0);
+    }
+
+    private static long firstSequenceOf(final Path file) {
+        final String name = file.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    private static final class Segment {
+
+        private final Path path;
+
+        private final long firstSequence;
+
+        private final FileChannel channel;
+
+        private final MappedByteBuffer buffer;
+
+        private int writePosition;
+
+        private long entries;
+
+        Segment(final Path path, final long firstSequence, final FileChannel channel, final MappedByteBuffer buffer) {
+            this.path = path;
+            this.firstSequence = firstSequence;
+            this.channel = channel;
+            this.buffer = buffer;
+        }
+    }
+}
@@ -0,0 +1,237 @@
+package workshop.quarkus.reactive;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.Timer;
+import io.quarkus.runtime.Startup;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import workshop.quarkus.reactive.event.EventHeaders;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Latency histograms for the stages of the order pipeline, plus message and error counters per
+ * channel. Messages are counted by the {@link ChannelMetricsDecorator}. All meters are registered
+ * up front, so that recording on the hot path neither allocates tags nor looks up meters in the
+ * registry.
+ * <ul>
+ *     <li>{@code pipeline.stage.latency{stage=submit}}: from submitting an order until the
+ *     {@code orders} topic acknowledged it</li>
+ *     <li>{@code pipeline.stage.latency{stage=topic}}: time an order spent in the {@code orders}
+ *     topic (or one of its priority lanes), from the timestamp of its record (or its event time, if
+ *     it did not arrive as a Kafka record) until the inventory received it</li>
+ *     <li>{@code pipeline.stage.latency{stage=decision}}: from the receipt of an order by the
+ *     inventory until its checked order was emitted</li>
+ *     <li>{@code pipeline.stage.latency{stage=notification}}: from the inventory decision until
+ *     the notification service processed it</li>
+ *     <li>{@code pipeline.end-to-end.latency}: from the event time of an order until the
+ *     notification service processed its checked order, as carried in the
+ *     {@link EventHeaders#ORDER_TIME} header of the checked order. As the stages above, it compares
+ *     the wall clocks of different nodes where it spans them.</li>
+ *     <li>{@code pipeline.startup.first-message}: from the start of the process until the
+ *     notification service processed its first message, which allows to compare the JVM and the
+ *     native build</li>
+ *     <li>{@code pipeline.concurrency.limit}, {@code .in-flight} and {@code .queued}: state of the
+ *     adaptive concurrency limiter of a stage, if any (only the key-ordered inventory has one), and
+ *     {@code pipeline.concurrency.waits}: acquisitions that found the limit exhausted and waited</li>
+ *     <li>{@code pipeline.retry.rerouted{tier}} and {@code pipeline.retry.dead-letters{channel}}:
+ *     messages that failed and were forwarded to a retry tier resp. to the dead-letter topic</li>
+ *     <li>{@code pipeline.inventory.throttled}: orders denied because the demand for their product
+ *     exceeded the demand throttle</li>
+ * </ul>
+ */
+@Startup
+@ApplicationScoped
+public class PipelineMetrics {
+
+    public static final String OUTGOING_ORDERS = "outgoing-orders";
+
+    public static final String INCOMING_ORDERS = "incoming-orders";
+
+    public static final String OUTGOING_CHECKED_ORDERS = "outgoing-checked-orders";
+
+    public static final String INCOMING_CHECKED_ORDERS = "incoming-checked-orders";
+
+    private static final String[] CHANNELS = {OUTGOING_ORDERS, INCOMING_ORDERS, OUTGOING_CHECKED_ORDERS, INCOMING_CHECKED_ORDERS};
+
+    @Inject
+    MeterRegistry registry;
+
+    private Timer submitLatency;
+
+    private Timer topicLatency;
+
+    private Timer decisionLatency;
+
+    private Timer notificationLatency;
+
+    private Timer endToEndLatency;
+
+    private Counter approvedOrders;
+
+    private Counter deniedOrders;
+
+    private Counter throttledOrders;
+
+    private final AtomicLong firstMessageMillis = new AtomicLong();
+
+    private final Map<String, Counter> messagesByChannel = new HashMap<>();
+
+    private final Map<String, Counter> errorsByChannel = new HashMap<>();
+
+    private final Map<String, Counter> droppedByChannel = new HashMap<>();
+
+    private final Map<String, Counter> duplicatesByChannel = new HashMap<>();
+
+    private final Map<String, Counter> deadLettersByChannel = new HashMap<>();
+
+    private volatile Counter[] reroutedByTier = new Counter[0];
+
+    private final Map<OrderPriority, Timer> latencyByLane = new EnumMap<>(OrderPriority.class);
+
+    @PostConstruct
+    void registerMeters() {
+        submitLatency = stageTimer("submit");
+        topicLatency = stageTimer("topic");
+        decisionLatency = stageTimer("decision");
+        notificationLatency = stageTimer("notification");
+        endToEndLatency = latencyTimer(Timer.builder("pipeline.end-to-end.latency"));
+        approvedOrders = Counter.builder("pipeline.decisions").tag("decision", "approved").register(registry);
+        deniedOrders = Counter.builder("pipeline.decisions").tag("decision", "denied").register(registry);
+        throttledOrders = Counter.builder("pipeline.inventory.throttled").register(registry);
+        TimeGauge.builder("pipeline.startup.first-message", firstMessageMillis, TimeUnit.MILLISECONDS, AtomicLong::get).register(registry);
+        for (String channel : CHANNELS) {
+            messagesByChannel.put(channel, Counter.builder("pipeline.channel.messages").tag("channel", channel).register(registry));
+            errorsByChannel.put(channel, Counter.builder("pipeline.channel.errors").tag("channel", channel).register(registry));
+            droppedByChannel.put(channel, Counter.builder("pipeline.channel.dropped").tag("channel", channel).register(registry));
+            duplicatesByChannel.put(channel, Counter.builder("pipeline.channel.duplicates").tag("channel", channel).register(registry));
+            deadLettersByChannel.put(channel, Counter.builder("pipeline.retry.dead-letters").tag("channel", channel).register(registry));
+        }
+    }
+
+    public void recordSubmission(final long startedAtNanos) {
+        submitLatency.record(System.nanoTime() - startedAtNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordMessage(final String channel) {
+        final Counter messages = messagesByChannel.get(channel);
+        if (messages != null) messages.increment();
+    }
+
+    public void recordTopicDwell(final long producedAtMillis, final long receivedAtMillis) {
+        topicLatency.record(Math.max(0L, receivedAtMillis - producedAtMillis), TimeUnit.MILLISECONDS);
+    }
+
+    public void recordDecision(final long receivedAtNanos, final boolean approved) {
+        decisionLatency.record(System.nanoTime() - receivedAtNanos, TimeUnit.NANOSECONDS);
+        recordDecision(approved);
+    }
+
+    /**
+     * Counts a decision whose order carried no {@link ReceivedMetadata} to time it from.
+     */
+    public void recordDecision(final boolean approved) {
+        (approved ? approvedOrders : deniedOrders).increment();
+    }
+
+    public void recordThrottled() {
+        throttledOrders.increment();
+    }
+
+    public void recordNotification(final long checkedOnMillis) {
+        notificationLatency.record(Math.max(0L, System.currentTimeMillis() - checkedOnMillis), TimeUnit.MILLISECONDS);
+        if (firstMessageMillis.get() == 0L) firstMessageMillis.compareAndSet(0L, millisSinceProcessStart());
+    }
+
+    public void recordEndToEnd(final long orderTimeMillis) {
+        endToEndLatency.record(Math.max(0L, System.currentTimeMillis() - orderTimeMillis), TimeUnit.MILLISECONDS);
+    }
+
+    public void recordError(final String channel) {
+        final Counter errors = errorsByChannel.get(channel);
+        if (errors != null) errors.increment();
+    }
+
+    public void recordDropped(final String channel) {
+        final Counter dropped = droppedByChannel.get(channel);
+        if (dropped != null) dropped.increment();
+    }
+
+    public void recordDuplicate(final String channel) {
+        final Counter duplicates = duplicatesByChannel.get(channel);
+        if (duplicates != null) duplicates.increment();
+    }
+
+    public void recordRetry(final int tier) {
+        final Counter[] rerouted = reroutedByTier;
+        if (tier < rerouted.length) rerouted[tier].increment();
+    }
+
+    public void recordDeadLetter(final String channel) {
+        final Counter deadLetters = deadLettersByChannel.get(channel);
+        if (deadLetters != null) deadLetters.increment();
+    }
+
+    public void registerRetryTiers(final int tiers) {
+        final Counter[] rerouted = new Counter[tiers];
+        for (int tier = 0; tier < tiers; tier++) {
+            rerouted[tier] = Counter.builder("pipeline.retry.rerouted").tag("tier", String.valueOf(tier + 1)).register(registry);
+        }
+        reroutedByTier = rerouted;
+    }
+
+    public void recordLaneLatency(final OrderPriority lane, final long enqueuedAtNanos) {
+        final Timer latency = latencyByLane.get(lane);
+        if (latency != null) latency.record(System.nanoTime() - enqueuedAtNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void registerPriorityLane(final OrderPriority lane, final Supplier<Number> depth) {
+        Gauge.builder("pipeline.lane.depth", depth).tag("lane", lane.label()).register(registry);
+        latencyByLane.put(lane, Timer.builder("pipeline.lane.latency")
+                .tag("lane", lane.label())
+                .publishPercentiles(0.5, 0.9, 0.99, 0.999)
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.of(100, ChronoUnit.MICROS))
+                .maximumExpectedValue(Duration.ofMinutes(1))
+                .register(registry));
+    }
+
+    public void registerConcurrencyLimiter(final String stage, final AdaptiveConcurrencyLimiter limiter) {
+        Gauge.builder("pipeline.concurrency.limit", limiter, AdaptiveConcurrencyLimiter::limit).tag("stage", stage).register(registry);
+        Gauge.builder("pipeline.concurrency.in-flight", limiter, AdaptiveConcurrencyLimiter::inFlight).tag("stage", stage).register(registry);
+        Gauge.builder("pipeline.concurrency.queued", limiter, AdaptiveConcurrencyLimiter::queued).tag("stage", stage).register(registry);
+        FunctionCounter.builder("pipeline.concurrency.waits", limiter, AdaptiveConcurrencyLimiter::waits).tag("stage", stage).register(registry);
+    }
+
+    private static long millisSinceProcessStart() {
+        return ProcessHandle.current().info().startInstant()
+                .map(start -> Math.max(1L, Duration.between(start, Instant.now()).toMillis()))
+                .orElse(-1L);
+    }
+
+    private Timer stageTimer(final String stage) {
+        return latencyTimer(Timer.builder("pipeline.stage.latency").tag("stage", stage));
+    }
+
+    private Timer latencyTimer(final Timer.Builder builder) {
+        return builder
+                .publishPercentiles(0.5, 0.9, 0.99, 0.999)
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.of(100, ChronoUnit.MICROS))
+                .maximumExpectedValue(Duration.ofMinutes(1))
+                .register(registry);
+    }
+}
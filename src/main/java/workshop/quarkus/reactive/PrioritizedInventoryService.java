@@ -0,0 +1,107 @@
+package workshop.quarkus.reactive;
+
+import io.quarkus.arc.properties.IfBuildProperty;
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.Uni;
+import io.smallrye.mutiny.infrastructure.Infrastructure;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.eclipse.microprofile.reactive.messaging.Incoming;
+import org.eclipse.microprofile.reactive.messaging.Message;
+import org.eclipse.microprofile.reactive.messaging.Outgoing;
+import workshop.quarkus.reactive.event.Event;
+import workshop.quarkus.reactive.event.OrderSubmittedEvent;
+
+import java.util.List;
+
+/**
+ * Checks orders from the priority lanes ({@code incoming-orders-high}, {@code incoming-orders} and
+ * {@code incoming-orders-low}, see {@link OrderPriority}). At most {@code max-in-flight} orders are
+ * checked at any time; orders that find all slots taken wait in their lane, and free slots are handed
+ * to the waiting orders by a {@link WeightedFairLimiter} with the weights of the lanes. While all
+ * lanes are backlogged, the lanes get their share of the slots, so a flood of low priority orders
+ * only delays a high priority order by the checks ahead of it in its own lane, and low priority
+ * orders still get their share during a flood of high priority orders.
+ * <p>
+ * Every lane requests at most {@code capacity} orders from the connector at any time; once those are
+ * waiting or in flight, the connector pauses the consumer of that lane only.
+ * <p>
+ * The channels of the high and low lanes are only enabled along with {@code order.priority-lanes.enabled}.
+ */
+@ApplicationScoped
+@IfBuildProperty(name = "inventory.consumption-mode", stringValue = "prioritized")
+public class PrioritizedInventoryService {
+
+    private static final OrderPriority[] LANES = OrderPriority.values();
+
+    @Inject
+    InventoryAvailabilityChecker checker;
+
+    @Inject
+    PipelineMetrics metrics;
+
+    @Inject
+    OrderRetryRouter retryRouter;
+
+    @ConfigProperty(name = "order.priority-lanes.enabled", defaultValue = "false")
+    boolean priorityLanes;
+
+    @ConfigProperty(name = "inventory.priority-lanes.weights", defaultValue = "8,3,1")
+    List<Integer> weights;
+
+    @ConfigProperty(name = "inventory.priority-lanes.capacity", defaultValue = "64")
+    int capacity;
+
+    @ConfigProperty(name = "inventory.priority-lanes.max-in-flight", defaultValue = "16")
+    int maxInFlight;
+
+    private WeightedFairLimiter limiter;
+
+    @PostConstruct
+    void createLimiter() {
+        if (!priorityLanes) throw new IllegalStateException("inventory.consumption-mode=" + OrderService.PRIORITIZED + " requires order.priority-lanes.enabled=true.");
+        if (weights.size() != LANES.length) throw new IllegalArgumentException("inventory.priority-lanes.weights needs one weight per lane.");
+        limiter = new WeightedFairLimiter(weights, capacity, maxInFlight);
+        for (OrderPriority lane : LANES) {
+            metrics.registerPriorityLane(lane, () -> limiter.depth(lane.ordinal()));
+        }
+    }
+
+    @Incoming("incoming-orders-high")
+    @Outgoing("outgoing-checked-orders")
+    public Multi<Message<Event>> checkHighPriority(Multi<Message<OrderSubmittedEvent>> messages) {
+        return checkAvailability(OrderPriority.HIGH, messages);
+    }
+
+    @Incoming("incoming-orders")
+    @Outgoing("outgoing-checked-orders")
+    public Multi<Message<Event>> checkNormalPriority(Multi<Message<OrderSubmittedEvent>> messages) {
+        return checkAvailability(OrderPriority.NORMAL, messages);
+    }
+
+    @Incoming("incoming-orders-low")
+    @Outgoing("outgoing-checked-orders")
+    public Multi<Message<Event>> checkLowPriority(Multi<Message<OrderSubmittedEvent>> messages) {
+        return checkAvailability(OrderPriority.LOW, messages);
+    }
+
+    private Multi<Message<Event>> checkAvailability(final OrderPriority lane, final Multi<Message<OrderSubmittedEvent>> messages) {
+        return messages
+                .onItem().transformToUni(message -> {
+                    final long enqueuedAt = System.nanoTime();
+                    return limiter.acquire(lane.ordinal())
+                            .chain(permit -> Uni.createFrom().item(() -> InventoryService.check(checker, message))
+                                    .runSubscriptionOn(Infrastructure.getDefaultWorkerPool())
+                                    .onItemOrFailure().invoke(() -> {
+                                        permit.release();
+                                        metrics.recordLaneLatency(lane, enqueuedAt);
+                                    })
+                                    .onCancellation().invoke(permit::release))
+                            .onFailure().recoverWithUni(failure -> retryRouter.reroute(message, failure)
+                                    .replaceWith(Uni.createFrom().<Message<Event>>nullItem()));
+                })
+                .merge(capacity);
+    }
+}
@@ -0,0 +1,19 @@
+package workshop.quarkus.reactive;
+
+import org.eclipse.microprofile.reactive.messaging.Message;
+
+/**
+ * Time at which a message has been received from its channel, as taken by the
+ * {@link ChannelMetricsDecorator}. Travels along with the events that are derived from the message,
+ * so that the latency of a stage can be measured from the point where the stage received its input.
+ */
+public record ReceivedMetadata(long receivedAtNanos) {
+
+    static ReceivedMetadata now() {
+        return new ReceivedMetadata(System.nanoTime());
+    }
+
+    static ReceivedMetadata of(final Message<?> message) {
+        return message.getMetadata(ReceivedMetadata.class).orElseGet(ReceivedMetadata::now);
+    }
+}
@@ -0,0 +1,36 @@
+package workshop.quarkus.reactive;
+
+import io.smallrye.reactive.messaging.kafka.api.IncomingKafkaRecordMetadata;
+import org.eclipse.microprofile.reactive.messaging.Message;
+import workshop.quarkus.reactive.event.EventHeaders;
+
+import java.util.Optional;
+
+/**
+ * Number of times an order failed to be processed so far and the time at which its next attempt is
+ * due. Travels in the {@link EventHeaders#FAILED_ATTEMPTS} and {@link EventHeaders#RETRY_DUE_AT}
+ * headers of the records of the retry tiers.
+ */
+public record RetryMetadata(int failedAttempts, long dueAtMillis) {
+
+    static final RetryMetadata FIRST_ATTEMPT = new RetryMetadata(0, 0L);
+
+    static RetryMetadata of(final Message<?> message) {
+        return message.getMetadata(RetryMetadata.class)
+                .or(() -> fromHeaders(message))
+                .orElse(FIRST_ATTEMPT);
+    }
+
+    private static Optional<RetryMetadata> fromHeaders(final Message<?> message) {
+        return message.getMetadata(IncomingKafkaRecordMetadata.class)
+                .map(IncomingKafkaRecordMetadata::getHeaders)
+                .filter(headers -> headers.lastHeader(EventHeaders.FAILED_ATTEMPTS) != null)
+                .map(headers -> new RetryMetadata(
+                        Integer.parseInt(EventHeaders.lastValue(headers, EventHeaders.FAILED_ATTEMPTS)),
+                        parseLong(EventHeaders.lastValue(headers, EventHeaders.RETRY_DUE_AT))));
+    }
+
+    private static long parseLong(final String value) {
+        return value == null ? 0L : Long.parseLong(value);
+    }
+}
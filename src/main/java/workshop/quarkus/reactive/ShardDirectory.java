@@ -0,0 +1,106 @@
+package workshop.quarkus.reactive;
+
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.utils.Utils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Knows which node owns which partition of the consumed topics, as of the last rebalance of the
+ * consumer group. The directory of a node is filled in by the {@link OrderStatusShardAssignor} of its
+ * consumer, which Kafka instantiates on its own, so directories are looked up by the URL of their
+ * node.
+ * <p>
+ * Records are keyed by order ID, so the partition of an order is the one that Kafka's default
+ * partitioner picks for the key (murmur2 of its UTF-8 bytes modulo the number of partitions).
+ */
+public final class ShardDirectory {
+
+    private static final Map<String, ShardDirectory> DIRECTORIES = new ConcurrentHashMap<>();
+
+    private final String nodeUrl;
+
+    private volatile Ownership ownership = new Ownership(Map.of(), Map.of(), Set.of());
+
+    private ShardDirectory(final String nodeUrl) {
+        this.nodeUrl = nodeUrl;
+    }
+
+    public static ShardDirectory forNode(final String nodeUrl) {
+        return DIRECTORIES.computeIfAbsent(nodeUrl, ShardDirectory::new);
+    }
+
+    /**
+     * Partition that Kafka's default partitioner assigns to a record with the given key.
+     */
+    public static int partitionOf(final String key, final int partitions) {
+        return Utils.toPositive(Utils.murmur2(key.getBytes(StandardCharsets.UTF_8))) % partitions;
+    }
+
+    public String nodeUrl() {
+        return nodeUrl;
+    }
+
+    /**
+     * URL of the node that owns the partition of the given key, or {@code null} if the directory does
+     * not know the topic (yet), e.g. because the channel does not consume from Kafka.
+     */
+    public String ownerOf(final String topic, final String key) {
+        final Ownership current = ownership;
+        final Integer partitions = current.partitionCounts().get(topic);
+        if (partitions == null || partitions == 0) return null;
+        return current.owners().get(new TopicPartition(topic, partitionOf(key, partitions)));
+    }
+
+    public boolean isLocal(final String owner) {
+        return owner == null || owner.equals(nodeUrl);
+    }
+
+    /**
+     * Whether the given URL is the one of a node that owns partitions as of the last rebalance.
+     */
+    public boolean isMember(final String nodeUrl) {
+        return nodeUrl != null && ownership.owners().containsValue(nodeUrl);
+    }
+
+    public Map<TopicPartition, String> owners() {
+        return ownership.owners();
+    }
+
+    public Map<String, Integer> partitionCounts() {
+        return ownership.partitionCounts();
+    }
+
+    /**
+     * Whether the given partition has been owned by another node before the last rebalance. The new
+     * owner does not know the status of its orders yet, as it is kept by the previous owner only.
+     */
+    public boolean wasHandedOver(final TopicPartition partition) {
+        return ownership.handedOver().contains(partition);
+    }
+
+    void update(final Map<TopicPartition, String> owners, final Map<String, Integer> partitionCounts, final Set<TopicPartition> handedOver) {
+        ownership = new Ownership(Map.copyOf(owners), Map.copyOf(partitionCounts), Set.copyOf(handedOver));
+    }
+
+    /**
+     * Partitions of the given ownership whose owner differs from the one known to this directory.
+     * Partitions that had no owner before are not considered handed over.
+     */
+    Set<TopicPartition> handedOver(final Map<TopicPartition, String> owners) {
+        final Map<TopicPartition, String> previous = ownership.owners();
+        final Set<TopicPartition> handedOver = new HashSet<>();
+        owners.forEach((partition, owner) -> {
+            final String previousOwner = previous.get(partition);
+            if (previousOwner != null && !previousOwner.equals(owner)) handedOver.add(partition);
+        });
+        return handedOver;
+    }
+
+    private record Ownership(Map<TopicPartition, String> owners, Map<String, Integer> partitionCounts, Set<TopicPartition> handedOver) {
+    }
+}
@@ -0,0 +1,55 @@
+package workshop.quarkus.reactive;
+
+import io.smallrye.common.annotation.Identifier;
+import io.smallrye.reactive.messaging.kafka.KafkaConsumerRebalanceListener;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.common.TopicPartition;
+import org.jboss.logging.Logger;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Resumes consuming {@code checked-orders} right after the records that are already reflected in the
+ * status store of the {@link NotificationService}, instead of at the committed offsets of the consumer
+ * group. Partitions without such a record start at the committed offsets as usual.
+ * <p>
+ * A partition that has been handed over from another node (see {@link ShardDirectory#wasHandedOver})
+ * is consumed from the point up to which this node processed it when it last owned it, or from its
+ * beginning if it never did, as the status of its orders is only known to the previous owner.
+ */
+@ApplicationScoped
+@Identifier("notification-status-snapshot")
+public class StatusSnapshotRebalanceListener implements KafkaConsumerRebalanceListener {
+
+    private static final Logger LOG = Logger.getLogger(StatusSnapshotRebalanceListener.class);
+
+    @Inject
+    NotificationService notificationService;
+
+    @Inject
+    OrderStatusShards shards;
+
+    @Override
+    public void onPartitionsAssigned(final Consumer<?, ?> consumer, final Collection<TopicPartition> partitions) {
+        final Map<TopicPartition, Long> offsets = notificationService.resumeOffsets();
+        final Map<TopicPartition, Long> processedOffsets = notificationService.processedOffsets();
+        final List<TopicPartition> replayed = new ArrayList<>();
+        for (TopicPartition partition : partitions) {
+            final Long processed = shards.directory().wasHandedOver(partition) ? processedOffsets.get(partition) : offsets.get(partition);
+            if (processed != null) {
+                consumer.seek(partition, processed + 1);
+                LOG.debugf("Resuming %s at offset %d", partition, processed + 1);
+            } else if (shards.directory().wasHandedOver(partition)) {
+                replayed.add(partition);
+            }
+        }
+        if (replayed.isEmpty()) return;
+        consumer.seekToBeginning(replayed);
+        LOG.infof("Replaying %s to take over the status of their orders", replayed);
+    }
+}
@@ -0,0 +1,156 @@
+package workshop.quarkus.reactive;
+
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Consumer;
+
+/**
+ * Per-product stock levels. The stock of a product is spread over a number of stripes, each of
+ * which is updated by compare-and-set. A reservation first tries to take the whole quantity from
+ * the stripe the calling thread hashes to, then from the other stripes, so that threads reserving
+ * the same popular product rarely contend on the same memory location. Only if no single stripe
+ * holds enough units, the stripes of that product are consolidated under a per-product lock.
+ * <p>
+ * Products that have never been stocked are not managed by the ledger and are always available.
+ */
+@ApplicationScoped
+public class StockLedger {
+
+    /* distance between two stripes in longs, so that each stripe lives on its own cache line */
+    private static final int PADDING = 8;
+
+    private final ConcurrentHashMap<String, ProductStock> stockByProductId = new ConcurrentHashMap<>();
+
+    private final List<Consumer<String>> replenishmentListeners = new CopyOnWriteArrayList<>();
+
+    private final int stripes;
+
+    @Inject
+    public StockLedger(@ConfigProperty(name = "inventory.stock.stripes", defaultValue = "0") int stripes) {
+        this.stripes = nextPowerOfTwo(stripes > 0 ? stripes : Runtime.getRuntime().availableProcessors());
+    }
+
+    public boolean reserve(final String productId, final int quantity) {
+        final ProductStock stock = stockByProductId.get(productId);
+        if (stock == null) return true;
+        if (quantity <= 0) return true;
+        return stock.tryReserveFromStripes(quantity) || stock.tryReserveConsolidated(quantity);
+    }
+
+    public void replenish(final String productId, final long units) {
+        if (units < 0) throw new IllegalArgumentException("Stock cannot be replenished by a negative amount of units.");
+        stockByProductId.computeIfAbsent(productId, id -> new ProductStock(stripes)).add(units);
+        replenishmentListeners.forEach(listener -> listener.accept(productId));
+    }
+
+    public void onReplenishment(final Consumer<String> listener) {
+        replenishmentListeners.add(listener);
+    }
+
+    public void replenishAll(final Map<String, Long> unitsByProductId) {
+        unitsByProductId.forEach(this::replenish);
+    }
+
+    public boolean isTracked(final String productId) {
+        return stockByProductId.containsKey(productId);
+    }
+
+    public long stockLevel(final String productId) {
+        final ProductStock stock = stockByProductId.get(productId);
+        return stock == null ? 0L : stock.sum();
+    }
+
+    /**
+     * Stock level of the given product, read under the lock that consolidations hold, so that it does
+     * not observe the stripes that a consolidation has drained but not refilled yet. Reservations from
+     * single stripes still proceed meanwhile, so the level is no less current than the one of
+     * {@link #stockLevel(String)}, only never transiently low.
+     */
+    public long settledStockLevel(final String productId) {
+        final ProductStock stock = stockByProductId.get(productId);
+        return stock == null ? 0L : stock.settledSum();
+    }
+
+    public Map<String, Long> stockLevels() {
+        final Map<String, Long> levels = new TreeMap<>();
+        stockByProductId.forEach((productId, stock) -> levels.put(productId, stock.sum()));
+        return levels;
+    }
+
+    public int stripes() {
+        return stripes;
+    }
+
+    private static int nextPowerOfTwo(final int value) {
+        return value <= 1 ? 1 : Integer.highestOneBit(value - 1) << 1;
+    }
+
+    private static int homeStripe(final int mask) {
+        long h = Thread.currentThread().getId() * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+
+    private static class ProductStock {
+
+        private final AtomicLongArray units;
+
+        private final int mask;
+
+        ProductStock(final int stripes) {
+            this.units = new AtomicLongArray(stripes * PADDING);
+            this.mask = stripes - 1;
+        }
+
+        boolean tryReserveFromStripes(final int quantity) {
+            final int home = homeStripe(mask);
+            for (int i = 0; i <= mask; i++) {
+                final int index = ((home + i) & mask) * PADDING;
+                long available = units.get(index);
+                while (available >= quantity) {
+                    if (units.compareAndSet(index, available, available - quantity)) return true;
+                    available = units.get(index);
+                }
+            }
+            return false;
+        }
+
+        synchronized boolean tryReserveConsolidated(final int quantity) {
+            long total = 0;
+            for (int i = 0; i <= mask; i++) {
+                total += units.getAndSet(i * PADDING, 0L);
+            }
+            final boolean reserved = total >= quantity;
+            add(reserved ? total - quantity : total);
+            return reserved;
+        }
+
+        void add(final long amount) {
+            final int stripes = mask + 1;
+            final long share = amount / stripes;
+            final int home = homeStripe(mask);
+            for (int i = 0; i <= mask; i++) {
+                units.addAndGet(i * PADDING, i == home ? share + amount % stripes : share);
+            }
+        }
+
+        synchronized long settledSum() {
+            return sum();
+        }
+
+        long sum() {
+            long total = 0;
+            for (int i = 0; i <= mask; i++) {
+                total += units.get(i * PADDING);
+            }
+            return total;
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package workshop.quarkus.reactive;
+
+import io.smallrye.mutiny.Uni;
+import io.smallrye.mutiny.subscription.UniEmitter;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Limits the number of concurrent tasks across several lanes. Callers that find all slots taken wait
+ * in the lane they acquire for, and released slots are handed to the waiters in the weighted fair
+ * order of a {@link WeightedFairScheduler}.
+ * <p>
+ * A waiter that gets cancelled gives its slot back: if it is still waiting, it is skipped once it is
+ * its turn; if a permit was already handed to it, the permit is released again.
+ */
+public class WeightedFairLimiter {
+
+    private final WeightedFairScheduler<Waiter> scheduler;
+
+    private final int maxInFlight;
+
+    private int inFlight;
+
+    public WeightedFairLimiter(final List<Integer> weights, final int capacity, final int maxInFlight) {
+        if (maxInFlight < 1) throw new IllegalArgumentException("At least one task has to be allowed in flight.");
+        this.scheduler = new WeightedFairScheduler<>(weights, capacity);
+        this.maxInFlight = maxInFlight;
+    }
+
+    /**
+     * Emits a permit as soon as a slot is free and it is the turn of the given lane. Fails if the lane
+     * already holds {@code capacity} waiters. The permit has to be released; releasing it more than
+     * once has no effect.
+     */
+    public Uni<Permit> acquire(final int lane) {
+        final Waiter waiter = new Waiter();
+        return Uni.createFrom().<Permit>emitter(emitter -> {
+            waiter.emitter = emitter;
+            final boolean granted;
+            synchronized (this) {
+                if (inFlight < maxInFlight && scheduler.isEmpty()) {
+                    inFlight++;
+                    waiter.granted = true;
+                } else if (!scheduler.offer(lane, waiter)) {
+                    emitter.fail(new IllegalStateException("Lane " + lane + " is full."));
+                    return;
+                }
+                granted = waiter.granted;
+            }
+            if (granted) emitter.complete(waiter.permit);
+        }).onCancellation().invoke(() -> cancel(waiter));
+    }
+
+    public synchronized int inFlight() {
+        return inFlight;
+    }
+
+    public synchronized int depth(final int lane) {
+        return scheduler.depth(lane);
+    }
+
+    private void release() {
+        Waiter next;
+        synchronized (this) {
+            do {
+                next = scheduler.poll();
+            } while (next != null && next.cancelled);
+            if (next == null) {
+                inFlight--;
+            } else {
+                next.granted = true;
+            }
+        }
+        if (next != null) next.emitter.complete(next.permit);
+    }
+
+    /*
+     * a cancelled waiter never uses the slot that may have been handed to it already, so that slot is passed on
+     */
+    private void cancel(final Waiter waiter) {
+        final boolean granted;
+        synchronized (this) {
+            waiter.cancelled = true;
+            granted = waiter.granted;
+        }
+        if (granted) waiter.permit.release();
+    }
+
+    public final class Permit {
+
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        public void release() {
+            if (released.compareAndSet(false, true)) WeightedFairLimiter.this.release();
+        }
+    }
+
+    /* guarded by the limiter, except for the permit */
+    private class Waiter {
+
+        private final Permit permit = new Permit();
+
+        private UniEmitter<? super Permit> emitter;
+
+        private boolean granted;
+
+        private boolean cancelled;
+    }
+}
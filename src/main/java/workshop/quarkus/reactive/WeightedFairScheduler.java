@@ -0,0 +1,95 @@
+package workshop.quarkus.reactive;
+
+import java.util.ArrayDeque;
+import java.util.List;
+
+/**
+ * Queues items in lanes of bounded capacity and hands them out in weighted fair order (stride
+ * scheduling): every lane carries a virtual pass that advances by the inverse of its weight whenever
+ * one of its items is handed out, and the next item is taken from the non-empty lane with the lowest
+ * pass. While all lanes are backlogged, each lane gets a share of the items proportional to its
+ * weight, so a flood in one lane neither delays the items of a heavier lane beyond their share nor
+ * starves a lighter one. A lane that has been idle rejoins at the current virtual time instead of
+ * cashing in the turns it skipped, so it cannot monopolize the scheduler afterwards.
+ * <p>
+ * Instances are not thread-safe; callers have to synchronize.
+ */
+public class WeightedFairScheduler<T> {
+
+    private final Lane<T>[] lanes;
+
+    private double virtualTime;
+
+    @SuppressWarnings("unchecked")
+    public WeightedFairScheduler(final List<Integer> weights, final int capacity) {
+        if (weights.isEmpty()) throw new IllegalArgumentException("At least one lane is required.");
+        if (capacity < 1) throw new IllegalArgumentException("The capacity of a lane must be positive.");
+        lanes = new Lane[weights.size()];
+        for (int i = 0; i < lanes.length; i++) {
+            if (weights.get(i) < 1) throw new IllegalArgumentException("The weight of a lane must be positive.");
+            lanes[i] = new Lane<>(1.0 / weights.get(i), capacity);
+        }
+    }
+
+    /**
+     * Queues the given item in the given lane, unless the lane is full.
+     */
+    public boolean offer(final int lane, final T item) {
+        final Lane<T> target = lanes[lane];
+        if (target.queue.size() == target.capacity) return false;
+        if (target.queue.isEmpty()) target.pass = Math.max(target.pass, virtualTime);
+        target.queue.addLast(item);
+        return true;
+    }
+
+    /**
+     * Takes the next item in weighted fair order, or returns {@code null} if all lanes are empty.
+     */
+    public T poll() {
+        final int lane = peekLane();
+        if (lane == -1) return null;
+        final Lane<T> next = lanes[lane];
+        virtualTime = next.pass;
+        next.pass += next.stride;
+        return next.queue.pollFirst();
+    }
+
+    /**
+     * Lane of the item that {@link #poll()} would take next, or {@code -1} if all lanes are empty.
+     */
+    public int peekLane() {
+        int next = -1;
+        for (int i = 0; i < lanes.length; i++) {
+            if (!lanes[i].queue.isEmpty() && (next == -1 || lanes[i].pass < lanes[next].pass)) next = i;
+        }
+        return next;
+    }
+
+    public int depth(final int lane) {
+        return lanes[lane].queue.size();
+    }
+
+    public int lanes() {
+        return lanes.length;
+    }
+
+    public boolean isEmpty() {
+        return peekLane() == -1;
+    }
+
+    private static class Lane<T> {
+
+        private final ArrayDeque<T> queue = new ArrayDeque<>();
+
+        private final double stride;
+
+        private final int capacity;
+
+        private double pass;
+
+        Lane(final double stride, final int capacity) {
+            this.stride = stride;
+            this.capacity = capacity;
+        }
+    }
+}
@@ -0,0 +1,255 @@
+package workshop.quarkus.reactive.event;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Schema-based binary representation of the Event protocol. A record is laid out as follows:
+ *
+ * <pre>
+ * type tag (1 byte) | eventId | eventTime (8 bytes) | orderId | customerId | productId
+ *   | presence flags (1 byte) | quantity (4 bytes)
+ *   [ | itemsAvailable (1 byte) | checkedOn (8 bytes) ]   -- only for checked orders
+ * </pre>
+ *
+ * Strings are prefixed with their UTF-8 length + 1 as an unsigned varint; a prefix of 0 denotes
+ * {@code null}. Event IDs that are {@link Ulid}s are written as their 16 raw bytes instead, which is
+ * marked by setting {@link #COMPACT_EVENT_ID} on the type tag. The presence flags mark which of the boxed numeric fields are non-null. Type tags
+ * never collide with the first byte of a JSON document, which allows readers to tell both formats
+ * apart.
+ */
+public final class BinaryEventCodec {
+
+    static final int COMPACT_EVENT_ID = 0x10;
+
+    private static final int QUANTITY_PRESENT = 1;
+
+    private static final int ITEMS_AVAILABLE_PRESENT = 1 << 1;
+
+    private static final int CHECKED_ON_PRESENT = 1 << 2;
+
+    private static final VarHandle INT = MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.BIG_ENDIAN);
+
+    private static final VarHandle LONG = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+
+    private BinaryEventCodec() {
+    }
+
+    public static boolean isBinary(final byte[] bytes) {
+        return bytes != null && bytes.length > 0 && EventType.isTag(typeTagOf(bytes[0]));
+    }
+
+    public static byte[] encode(final Event event) {
+        final EventType type = EventType.of(event);
+        return switch (type) {
+            case ORDER_SUBMITTED -> {
+                final OrderSubmittedEvent e = (OrderSubmittedEvent) event;
+                yield encode(type, e.getEventId(), e.getEventTime(), e.getOrderId(), e.getCustomerId(), e.getProductId(), e.getQuantity(), null, null);
+            }
+            case ORDER_APPROVED -> {
+                final OrderApprovedEvent e = (OrderApprovedEvent) event;
+                yield encode(type, e.getEventId(), e.getEventTime(), e.getOrderId(), e.getCustomerId(), e.getProductId(), e.getQuantity(), e.getItemsAvailable(), e.getCheckedOn());
+            }
+            case ORDER_DENIED -> {
+                final OrderDeniedEvent e = (OrderDeniedEvent) event;
+                yield encode(type, e.getEventId(), e.getEventTime(), e.getOrderId(), e.getCustomerId(), e.getProductId(), e.getQuantity(), e.getItemsAvailable(), e.getCheckedOn());
+            }
+        };
+    }
+
+    private static byte[] encode(final EventType type,
+                                 final String eventId,
+                                 final long eventTime,
+                                 final String orderId,
+                                 final String customerId,
+                                 final String productId,
+                                 final Integer quantity,
+                                 final Boolean itemsAvailable,
+                                 final Long checkedOn) {
+        final boolean compactEventId = Ulid.isUlid(eventId);
+        final byte[] eventIdBytes = compactEventId ? null : utf8(eventId);
+        final byte[] orderIdBytes = utf8(orderId);
+        final byte[] customerIdBytes = utf8(customerId);
+        final byte[] productIdBytes = utf8(productId);
+        final boolean checked = type != EventType.ORDER_SUBMITTED;
+
+        final int size = 1
+                + (compactEventId ? 2 * Long.BYTES : sizeOf(eventIdBytes)) + Long.BYTES
+                + sizeOf(orderIdBytes) + sizeOf(customerIdBytes) + sizeOf(productIdBytes)
+                + 1 + Integer.BYTES
+                + (checked ? 1 + Long.BYTES : 0);
+
+        int flags = 0;
+        if (quantity != null) flags |= QUANTITY_PRESENT;
+        if (itemsAvailable != null) flags |= ITEMS_AVAILABLE_PRESENT;
+        if (checkedOn != null) flags |= CHECKED_ON_PRESENT;
+
+        final ByteBuffer buffer = ByteBuffer.allocate(size);
+        if (compactEventId) {
+            buffer.put((byte) (type.tag() | COMPACT_EVENT_ID));
+            buffer.putLong(Ulid.mostSignificantBits(eventId));
+            buffer.putLong(Ulid.leastSignificantBits(eventId));
+        } else {
+            buffer.put(type.tag());
+            putString(buffer, eventIdBytes);
+        }
+        buffer.putLong(eventTime);
+        putString(buffer, orderIdBytes);
+        putString(buffer, customerIdBytes);
+        putString(buffer, productIdBytes);
+        buffer.put((byte) flags);
+        buffer.putInt(quantity != null ? quantity : 0);
+        if (checked) {
+            buffer.put((byte) (itemsAvailable != null && itemsAvailable ? 1 : 0));
+            buffer.putLong(checkedOn != null ? checkedOn : 0L);
+        }
+        return buffer.array();
+    }
+
+    public static Event decode(final byte[] bytes) {
+        final ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        final byte tag = buffer.get();
+        final EventType type = EventType.fromTag(typeTagOf(tag));
+        final String eventId = getEventId(buffer, tag);
+        final long eventTime = buffer.getLong();
+        final String orderId = getString(buffer);
+        final String customerId = getString(buffer);
+        final String productId = getString(buffer);
+        final int flags = buffer.get();
+        final int quantityValue = buffer.getInt();
+        final Integer quantity = (flags & QUANTITY_PRESENT) != 0 ? quantityValue : null;
+
+        if (type == EventType.ORDER_SUBMITTED) {
+            return new OrderSubmittedEvent(eventId, eventTime, orderId, customerId, productId, quantity);
+        }
+
+        final boolean itemsAvailableValue = buffer.get() != 0;
+        final long checkedOnValue = buffer.getLong();
+        final Boolean itemsAvailable = (flags & ITEMS_AVAILABLE_PRESENT) != 0 ? itemsAvailableValue : null;
+        final Long checkedOn = (flags & CHECKED_ON_PRESENT) != 0 ? checkedOnValue : null;
+
+        return type == EventType.ORDER_APPROVED
+                ? new OrderApprovedEvent(eventId, eventTime, orderId, customerId, productId, quantity, itemsAvailable, checkedOn)
+                : new OrderDeniedEvent(eventId, eventTime, orderId, customerId, productId, quantity, itemsAvailable, checkedOn);
+    }
+
+    /**
+     * Decodes a checked order into the given target without allocating. Returns {@code false} and
+     * leaves the target untouched if the record holds an order that has not been checked yet.
+     */
+    public static boolean decodeInto(final byte[] bytes, final CheckedOrder target) {
+        final byte tag = bytes[0];
+        final EventType type = EventType.fromTag(typeTagOf(tag));
+        if (type == EventType.ORDER_SUBMITTED) return false;
+
+        target.reset(type == EventType.ORDER_APPROVED);
+        int position = 1;
+        if ((tag & COMPACT_EVENT_ID) != 0) {
+            target.compactEventId((long) LONG.get(bytes, position), (long) LONG.get(bytes, position + Long.BYTES));
+            position += 2 * Long.BYTES;
+        } else {
+            position = slice(bytes, position, target.eventIdText());
+        }
+        target.eventTime((long) LONG.get(bytes, position));
+        position = slice(bytes, position + Long.BYTES, target.orderIdText());
+        position = slice(bytes, position, target.customerIdText());
+        position = slice(bytes, position, target.productIdText());
+        final int flags = bytes[position];
+        if ((flags & QUANTITY_PRESENT) != 0) target.quantity((int) INT.get(bytes, position + 1));
+        position += 1 + Integer.BYTES;
+        if ((flags & ITEMS_AVAILABLE_PRESENT) != 0) target.itemsAvailable(bytes[position] != 0);
+        if ((flags & CHECKED_ON_PRESENT) != 0) target.checkedOn((long) LONG.get(bytes, position + 1));
+        return true;
+    }
+
+    private static int slice(final byte[] bytes, int position, final CheckedOrder.Text text) {
+        int prefix = 0;
+        int shift = 0;
+        byte b;
+        do {
+            if (shift > 28) throw new IllegalArgumentException("Malformed varint in event record.");
+            b = bytes[position++];
+            prefix |= (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        if (prefix == 0) return position;
+        text.slice(bytes, position, prefix - 1);
+        return position + prefix - 1;
+    }
+
+    static byte[] utf8(final String value) {
+        return value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    static int sizeOf(final byte[] value) {
+        return value == null ? 1 : varIntSize(value.length + 1) + value.length;
+    }
+
+    static void putString(final ByteBuffer buffer, final byte[] value) {
+        if (value == null) {
+            buffer.put((byte) 0);
+            return;
+        }
+        putVarInt(buffer, value.length + 1);
+        buffer.put(value);
+    }
+
+    static byte typeTagOf(final byte tag) {
+        return (byte) (tag & ~COMPACT_EVENT_ID);
+    }
+
+    static String getEventId(final ByteBuffer buffer, final byte tag) {
+        return (tag & COMPACT_EVENT_ID) != 0 ? Ulid.toString(buffer.getLong(), buffer.getLong()) : getString(buffer);
+    }
+
+    static void skipString(final ByteBuffer buffer) {
+        final int prefix = getVarInt(buffer);
+        if (prefix > 0) buffer.position(buffer.position() + prefix - 1);
+    }
+
+    static boolean hasCheckedOn(final int flags) {
+        return (flags & CHECKED_ON_PRESENT) != 0;
+    }
+
+    static String getString(final ByteBuffer buffer) {
+        final int prefix = getVarInt(buffer);
+        if (prefix == 0) return null;
+        final int length = prefix - 1;
+        final String value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + length);
+        return value;
+    }
+
+    static int varIntSize(int value) {
+        int size = 1;
+        while ((value & ~0x7F) != 0) {
+            value >>>= 7;
+            size++;
+        }
+        return size;
+    }
+
+    static void putVarInt(final ByteBuffer buffer, int value) {
+        while ((value & ~0x7F) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    static int getVarInt(final ByteBuffer buffer) {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            if (shift > 28) throw new IllegalArgumentException("Malformed varint in event record.");
+            b = buffer.get();
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+}
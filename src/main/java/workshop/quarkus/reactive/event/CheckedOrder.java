@@ -0,0 +1,209 @@
+package workshop.quarkus.reactive.event;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Allocation-lean representation of a checked order, i.e. of the payload of an
+ * {@link OrderApprovedEvent} or an {@link OrderDeniedEvent}, which only differ in their type. The
+ * decision is kept as a discriminator, numeric fields are kept as primitives together with presence
+ * flags, and an event ID that is a {@link Ulid} is kept as its two {@code long} halves.
+ * <p>
+ * Instances are mutable and owned by a consumer, which decodes record after record into the same
+ * instance with {@link EventDeserializer#deserializeInto(byte[], CheckedOrder)}. Decoding a binary
+ * record does not allocate: string fields are kept as slices of the record bytes and are only turned
+ * into {@code String}s when they are accessed. Hence an instance must not be retained beyond the
+ * processing of a record, and the record bytes must not be modified meanwhile; use {@link #toEvent()}
+ * to obtain an event that can be retained.
+ */
+public final class CheckedOrder {
+
+    private final Text eventId = new Text();
+
+    private final Text orderId = new Text();
+
+    private final Text customerId = new Text();
+
+    private final Text productId = new Text();
+
+    private boolean approved;
+
+    private boolean compactEventId;
+
+    private long eventIdMsb;
+
+    private long eventIdLsb;
+
+    private long eventTime;
+
+    private boolean hasQuantity;
+
+    private int quantity;
+
+    private boolean hasItemsAvailable;
+
+    private boolean itemsAvailable;
+
+    private boolean hasCheckedOn;
+
+    private long checkedOn;
+
+    public boolean isApproved() {
+        return approved;
+    }
+
+    public EventType type() {
+        return approved ? EventType.ORDER_APPROVED : EventType.ORDER_DENIED;
+    }
+
+    public String eventId() {
+        if (compactEventId && eventId.value == null) eventId.set(Ulid.toString(eventIdMsb, eventIdLsb));
+        return eventId.toString();
+    }
+
+    public long eventTime() {
+        return eventTime;
+    }
+
+    public String orderId() {
+        return orderId.toString();
+    }
+
+    public String customerId() {
+        return customerId.toString();
+    }
+
+    public String productId() {
+        return productId.toString();
+    }
+
+    public boolean hasQuantity() {
+        return hasQuantity;
+    }
+
+    public int quantity() {
+        return quantity;
+    }
+
+    public boolean hasItemsAvailable() {
+        return hasItemsAvailable;
+    }
+
+    public boolean itemsAvailable() {
+        return itemsAvailable;
+    }
+
+    public boolean hasCheckedOn() {
+        return hasCheckedOn;
+    }
+
+    public long checkedOn() {
+        return checkedOn;
+    }
+
+    /**
+     * Materializes the checked order as an {@link OrderApprovedEvent} resp. an {@link OrderDeniedEvent}.
+     */
+    public Event toEvent() {
+        final Integer boxedQuantity = hasQuantity ? quantity : null;
+        final Boolean boxedItemsAvailable = hasItemsAvailable ? itemsAvailable : null;
+        final Long boxedCheckedOn = hasCheckedOn ? checkedOn : null;
+        return approved
+                ? new OrderApprovedEvent(eventId(), eventTime, orderId(), customerId(), productId(), boxedQuantity, boxedItemsAvailable, boxedCheckedOn)
+                : new OrderDeniedEvent(eventId(), eventTime, orderId(), customerId(), productId(), boxedQuantity, boxedItemsAvailable, boxedCheckedOn);
+    }
+
+    void reset(final boolean approved) {
+        this.approved = approved;
+        this.compactEventId = false;
+        this.hasQuantity = false;
+        this.hasItemsAvailable = false;
+        this.hasCheckedOn = false;
+        this.quantity = 0;
+        this.itemsAvailable = false;
+        this.checkedOn = 0L;
+        this.eventTime = 0L;
+        eventId.clear();
+        orderId.clear();
+        customerId.clear();
+        productId.clear();
+    }
+
+    void compactEventId(final long msb, final long lsb) {
+        compactEventId = true;
+        eventIdMsb = msb;
+        eventIdLsb = lsb;
+    }
+
+    void eventTime(final long eventTime) {
+        this.eventTime = eventTime;
+    }
+
+    void quantity(final int quantity) {
+        this.hasQuantity = true;
+        this.quantity = quantity;
+    }
+
+    void itemsAvailable(final boolean itemsAvailable) {
+        this.hasItemsAvailable = true;
+        this.itemsAvailable = itemsAvailable;
+    }
+
+    void checkedOn(final long checkedOn) {
+        this.hasCheckedOn = true;
+        this.checkedOn = checkedOn;
+    }
+
+    Text eventIdText() {
+        return eventId;
+    }
+
+    Text orderIdText() {
+        return orderId;
+    }
+
+    Text customerIdText() {
+        return customerId;
+    }
+
+    Text productIdText() {
+        return productId;
+    }
+
+    /**
+     * A string field that is either a slice of the record bytes or, once accessed or if it was decoded
+     * from JSON, a {@code String}.
+     */
+    static final class Text {
+
+        private byte[] bytes;
+
+        private int offset;
+
+        private int length;
+
+        private String value;
+
+        void slice(final byte[] bytes, final int offset, final int length) {
+            this.bytes = bytes;
+            this.offset = offset;
+            this.length = length;
+            this.value = null;
+        }
+
+        void set(final String value) {
+            this.bytes = null;
+            this.value = value;
+        }
+
+        void clear() {
+            bytes = null;
+            value = null;
+        }
+
+        @Override
+        public String toString() {
+            if (value == null && bytes != null) value = new String(bytes, offset, length, StandardCharsets.UTF_8);
+            return value;
+        }
+    }
+}
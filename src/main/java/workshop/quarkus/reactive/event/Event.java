@@ -4,10 +4,6 @@ import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.annotation.JsonSubTypes;
 import com.fasterxml.jackson.annotation.JsonTypeInfo;
 
-import java.time.Clock;
-import java.time.Instant;
-import java.util.UUID;
-
 @JsonTypeInfo(use = JsonTypeInfo.Id.NAME, include = JsonTypeInfo.As.PROPERTY, property = "@type")
 @JsonSubTypes({
         @JsonSubTypes.Type(value = OrderSubmittedEvent.class, name = "order-submitted-event"),
@@ -16,6 +12,8 @@ import java.util.UUID;
 })
 abstract public class Event {
 
+    private static volatile EventIdGenerator idGenerator = EventIdGenerator.ULID;
+
     private final String eventId;
 
     private final long eventTime;
@@ -38,11 +36,19 @@ abstract public class Event {
         return eventTime;
     }
 
+    public static void useIdGenerator(final EventIdGenerator generator) {
+        idGenerator = generator;
+    }
+
+    public static EventIdGenerator idGenerator() {
+        return idGenerator;
+    }
+
     private static String generateEventId() {
-        return UUID.randomUUID().toString();
+        return idGenerator.nextId();
     }
 
     private static long now() {
-        return Instant.now(Clock.systemUTC()).toEpochMilli();
+        return System.currentTimeMillis();
     }
 }
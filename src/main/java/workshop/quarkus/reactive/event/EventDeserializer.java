@@ -1,25 +1,108 @@
 package workshop.quarkus.reactive.event;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.jsontype.BasicPolymorphicTypeValidator;
-import com.fasterxml.jackson.databind.jsontype.PolymorphicTypeValidator;
 import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.header.Headers;
 import org.apache.kafka.common.serialization.Deserializer;
 
+import java.util.Map;
+
 public class EventDeserializer implements Deserializer<Event> {
 
-    private final ObjectMapper mapper;
+    public static final String VIEW_CONFIG = "event.view";
+
+    private HeaderFilter filter = HeaderFilter.acceptAll();
+
+    private EventView view = EventView.EAGER;
 
     public EventDeserializer() {
-        final PolymorphicTypeValidator validator = BasicPolymorphicTypeValidator.builder().build();
-        mapper = new ObjectMapper();
-        mapper.activateDefaultTyping(validator, ObjectMapper.DefaultTyping.NON_FINAL);
     }
 
+    public EventDeserializer(final HeaderFilter filter) {
+        this.filter = filter;
+    }
+
+    public EventDeserializer(final EventView view) {
+        this.view = view;
+    }
+
+    @Override
+    public void configure(Map<String, ?> configs, boolean isKey) {
+        filter = HeaderFilter.fromConfig(configs);
+        view = EventView.fromConfig(configs.get(VIEW_CONFIG));
+    }
+
+    /**
+     * Returns {@code null} without decoding the payload if the headers of the record are rejected by
+     * the configured {@link HeaderFilter}.
+     */
+    @Override
+    public Event deserialize(String s, Headers headers, byte[] bytes) {
+        if (!filter.accepts(headers)) return null;
+        return deserialize(s, bytes);
+    }
+
+    /**
+     * Envelopes are returned as an {@link EventEnvelope} that only holds the entries accepted by the
+     * configured {@link HeaderFilter}.
+     */
     @Override
     public Event deserialize(String s, byte[] bytes) {
+        if (EventEnvelope.isEnvelope(bytes)) {
+            try {
+                return EventEnvelope.decode(bytes, filter, this::read);
+            } catch (SerializationException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new SerializationException("Unable to unpack event envelope.", e);
+            }
+        }
+        return read(bytes);
+    }
+
+    /**
+     * Decodes a checked order into the given consumer-owned instance instead of allocating an event.
+     * Returns {@code false} if the headers of the record are rejected by the configured
+     * {@link HeaderFilter} or if the record holds an order that has not been checked yet; the target
+     * is left untouched in both cases.
+     */
+    public boolean deserializeInto(final Headers headers, final byte[] bytes, final CheckedOrder target) {
+        if (!filter.accepts(headers)) return false;
+        return deserializeInto(bytes, target);
+    }
+
+    /**
+     * Envelopes hold several events and cannot be decoded into a single instance; they have to be
+     * deserialized with {@link #deserialize(String, byte[])}.
+     */
+    public boolean deserializeInto(final byte[] bytes, final CheckedOrder target) {
+        if (EventEnvelope.isEnvelope(bytes)) throw new SerializationException("Event envelopes cannot be decoded into a single checked order.");
+        try {
+            if (BinaryEventCodec.isBinary(bytes)) {
+                return BinaryEventCodec.decodeInto(bytes, target);
+            }
+            return JsonEventCodec.decodeInto(bytes, target);
+        } catch (Exception e) {
+            throw new SerializationException("Unable to deserialize record payload into a checked order.", e);
+        }
+    }
+
+    private Event read(final byte[] bytes) {
+        if (view == EventView.LAZY) {
+            try {
+                return LazyEvents.read(bytes, JsonEventCodec.FACTORY, this::decode);
+            } catch (Exception e) {
+                throw new SerializationException("Unable to read record payload into a lazy view on the Event protocol.", e);
+            }
+        }
+        return decode(bytes);
+    }
+
+    private Event decode(final byte[] bytes) {
         try {
-            return mapper.readValue(bytes, Event.class);
+            if (BinaryEventCodec.isBinary(bytes)) {
+                return BinaryEventCodec.decode(bytes);
+            }
+            return JsonEventCodec.decode(bytes);
         } catch (Exception e) {
             throw new SerializationException("Unable to deserialize record payload into sub-type of the Event protocol.", e);
         }
@@ -0,0 +1,89 @@
+package workshop.quarkus.reactive.event;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Packs several events into a single record. An envelope is a container for transport only: it
+ * is unpacked into its entries before any consumer sees it and carries neither an event ID nor an
+ * event time of its own. The record is laid out as follows:
+ *
+ * <pre>
+ * envelope tag (1 byte) | number of entries (varint)
+ *   | ( traceId | length of event (varint) | event in the binary representation )*
+ * </pre>
+ *
+ * Strings follow the conventions of {@link BinaryEventCodec}. Entries are always written in the
+ * binary representation, as the envelope is a binary format anyway, and runs of structurally
+ * identical entries compress well with the compression of the producer. The envelope tag never
+ * collides with the type tag of a single event nor with the first byte of a JSON document.
+ */
+public final class EventEnvelope extends Event {
+
+    static final byte ENVELOPE_TAG = 0x20;
+
+    private final List<Entry> entries;
+
+    public EventEnvelope(final List<Entry> entries) {
+        super(null, 0L);
+        this.entries = List.copyOf(entries);
+    }
+
+    public List<Entry> getEntries() {
+        return entries;
+    }
+
+    public static boolean isEnvelope(final byte[] bytes) {
+        return bytes != null && bytes.length > 0 && bytes[0] == ENVELOPE_TAG;
+    }
+
+    public static byte[] encode(final EventEnvelope envelope) {
+        final List<byte[]> traceIds = new ArrayList<>(envelope.entries.size());
+        final List<byte[]> events = new ArrayList<>(envelope.entries.size());
+        int size = 1 + BinaryEventCodec.varIntSize(envelope.entries.size());
+        for (Entry entry : envelope.entries) {
+            final byte[] traceId = BinaryEventCodec.utf8(entry.traceId());
+            final byte[] event = BinaryEventCodec.encode(entry.event());
+            traceIds.add(traceId);
+            events.add(event);
+            size += BinaryEventCodec.sizeOf(traceId) + BinaryEventCodec.varIntSize(event.length) + event.length;
+        }
+
+        final ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.put(ENVELOPE_TAG);
+        BinaryEventCodec.putVarInt(buffer, envelope.entries.size());
+        for (int i = 0; i < events.size(); i++) {
+            BinaryEventCodec.putString(buffer, traceIds.get(i));
+            BinaryEventCodec.putVarInt(buffer, events.get(i).length);
+            buffer.put(events.get(i));
+        }
+        return buffer.array();
+    }
+
+    /**
+     * Decodes the entries that the given filter accepts. Entries are rejected on their type tag and
+     * trace ID, i.e. before the event itself is decoded.
+     */
+    public static EventEnvelope decode(final byte[] bytes, final HeaderFilter filter, final Function<byte[], Event> decoder) {
+        final ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        if (buffer.get() != ENVELOPE_TAG) throw new IllegalArgumentException("Record is not an event envelope.");
+        final int count = BinaryEventCodec.getVarInt(buffer);
+        final List<Entry> entries = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            final String traceId = BinaryEventCodec.getString(buffer);
+            final int length = BinaryEventCodec.getVarInt(buffer);
+            final int offset = buffer.position();
+            buffer.position(offset + length);
+            final EventType type = EventType.fromTag(BinaryEventCodec.typeTagOf(bytes[offset]));
+            if (!filter.accepts(type, traceId)) continue;
+            entries.add(new Entry(traceId, decoder.apply(Arrays.copyOfRange(bytes, offset, offset + length))));
+        }
+        return new EventEnvelope(entries);
+    }
+
+    public record Entry(String traceId, Event event) {
+    }
+}
@@ -0,0 +1,14 @@
+package workshop.quarkus.reactive.event;
+
+import java.util.Locale;
+
+public enum EventFormat {
+
+    JSON,
+    BINARY;
+
+    public static EventFormat fromConfig(final Object value) {
+        if (value == null) return JSON;
+        return EventFormat.valueOf(value.toString().trim().toUpperCase(Locale.ROOT));
+    }
+}
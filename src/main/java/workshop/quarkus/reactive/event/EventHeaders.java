@@ -0,0 +1,75 @@
+package workshop.quarkus.reactive.event;
+
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.Headers;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Names and helpers for the Kafka record headers that travel alongside the Event protocol. Headers
+ * are small enough to be inspected before the payload of a record is decoded.
+ */
+public final class EventHeaders {
+
+    public static final String EVENT_TYPE = "event-type";
+
+    public static final String TRACE_ID = "trace-id";
+
+    public static final String EVENT_COUNT = "event-count";
+
+    public static final String ENVELOPE_TYPE = "event-envelope";
+
+    public static final String FAILED_ATTEMPTS = "failed-attempts";
+
+    public static final String RETRY_DUE_AT = "retry-due-at";
+
+    public static final String FAILURE_REASON = "failure-reason";
+
+    public static final String FAILURE_CAUSE = "failure-cause";
+
+    public static final String ORIGIN_TOPIC = "origin-topic";
+
+    public static final String ORIGIN_PARTITION = "origin-partition";
+
+    public static final String ORIGIN_OFFSET = "origin-offset";
+
+    public static final String PRIORITY = "priority";
+
+    public static final String ORDER_TIME = "order-time";
+
+    private EventHeaders() {
+    }
+
+    public static void put(final Headers headers, final String name, final String value) {
+        headers.remove(name);
+        headers.add(name, value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static String lastValue(final Headers headers, final String name) {
+        if (headers == null) return null;
+        final Header header = headers.lastHeader(name);
+        if (header == null || header.value() == null) return null;
+        return new String(header.value(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Reads the last value of a header that holds a decimal number without decoding it into a string
+     * first, for headers that are read for every record. Returns {@code absent} if there is no such
+     * header or its value is not a number.
+     */
+    public static long lastLongValue(final Headers headers, final String name, final long absent) {
+        if (headers == null) return absent;
+        final Header header = headers.lastHeader(name);
+        final byte[] value = header == null ? null : header.value();
+        if (value == null || value.length == 0 || value.length > 18) return absent;
+        final boolean negative = value[0] == '-';
+        if (negative && value.length == 1) return absent;
+        long result = 0L;
+        for (int i = negative ? 1 : 0; i < value.length; i++) {
+            final int digit = value[i] - '0';
+            if (digit < 0 || digit > 9) return absent;
+            result = result * 10 + digit;
+        }
+        return negative ? -result : result;
+    }
+}
@@ -0,0 +1,30 @@
+package workshop.quarkus.reactive.event;
+
+import java.util.Locale;
+
+/**
+ * Generates the IDs of events that are created without an explicit ID. {@link #ULID} is the default;
+ * {@link #UUID} restores random UUIDs (which draw from a shared {@code SecureRandom}).
+ */
+public enum EventIdGenerator {
+
+    ULID {
+        @Override
+        public String nextId() {
+            return Ulid.next();
+        }
+    },
+    UUID {
+        @Override
+        public String nextId() {
+            return java.util.UUID.randomUUID().toString();
+        }
+    };
+
+    public abstract String nextId();
+
+    public static EventIdGenerator fromConfig(final Object value) {
+        if (value == null) return ULID;
+        return EventIdGenerator.valueOf(value.toString().trim().toUpperCase(Locale.ROOT));
+    }
+}
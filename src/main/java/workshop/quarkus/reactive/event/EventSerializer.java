@@ -1,20 +1,39 @@
 package workshop.quarkus.reactive.event;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.jsontype.BasicPolymorphicTypeValidator;
-import com.fasterxml.jackson.databind.jsontype.PolymorphicTypeValidator;
 import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.header.Headers;
 import org.apache.kafka.common.serialization.Serializer;
 
+import java.io.IOException;
+import java.util.Map;
+
 public class EventSerializer implements Serializer<Event> {
 
-    private final ObjectMapper mapper;
+    public static final String CODEC_CONFIG = "event.codec";
+
+    private EventFormat format = EventFormat.JSON;
 
     public EventSerializer() {
-        final PolymorphicTypeValidator validator = BasicPolymorphicTypeValidator.builder().build();
-        mapper = new ObjectMapper();
-        mapper.activateDefaultTyping(validator, ObjectMapper.DefaultTyping.NON_FINAL);
+    }
+
+    public EventSerializer(final EventFormat format) {
+        this.format = format;
+    }
+
+    @Override
+    public void configure(Map<String, ?> configs, boolean isKey) {
+        format = EventFormat.fromConfig(configs.get(CODEC_CONFIG));
+    }
+
+    @Override
+    public byte[] serialize(String s, Headers headers, Event event) {
+        if (event instanceof EventEnvelope envelope) {
+            EventHeaders.put(headers, EventHeaders.EVENT_TYPE, EventHeaders.ENVELOPE_TYPE);
+            EventHeaders.put(headers, EventHeaders.EVENT_COUNT, Integer.toString(envelope.getEntries().size()));
+        } else if (event != null) {
+            EventHeaders.put(headers, EventHeaders.EVENT_TYPE, EventType.of(event).typeName());
+        }
+        return serialize(s, event);
     }
 
     @Override
@@ -22,9 +41,25 @@ public class EventSerializer implements Serializer<Event> {
 
         if (event == null) throw new SerializationException("Given record payload must not be null.");
 
+        if (event instanceof EventEnvelope envelope) {
+            try {
+                return EventEnvelope.encode(envelope);
+            } catch (Exception e) {
+                throw new SerializationException("Unable to serialize event envelope to byte[].", e);
+            }
+        }
+
+        if (format == EventFormat.BINARY) {
+            try {
+                return BinaryEventCodec.encode(event);
+            } catch (Exception e) {
+                throw new SerializationException("Unable to serialize record payload to byte[].", e);
+            }
+        }
+
         try {
-            return mapper.writeValueAsBytes(event);
-        } catch (JsonProcessingException e) {
+            return JsonEventCodec.encode(event);
+        } catch (IOException e) {
             throw new SerializationException("Unable to serialize record payload to byte[].", e);
         }
     }
@@ -0,0 +1,52 @@
+package workshop.quarkus.reactive.event;
+
+public enum EventType {
+
+    ORDER_SUBMITTED((byte) 1, "order-submitted-event"),
+    ORDER_APPROVED((byte) 2, "order-approved-event"),
+    ORDER_DENIED((byte) 3, "order-denied-event");
+
+    private final byte tag;
+
+    private final String typeName;
+
+    EventType(final byte tag, final String typeName) {
+        this.tag = tag;
+        this.typeName = typeName;
+    }
+
+    public byte tag() {
+        return tag;
+    }
+
+    public String typeName() {
+        return typeName;
+    }
+
+    public static EventType of(final Event event) {
+        if (event instanceof OrderSubmittedEvent) return ORDER_SUBMITTED;
+        if (event instanceof OrderApprovedEvent) return ORDER_APPROVED;
+        if (event instanceof OrderDeniedEvent) return ORDER_DENIED;
+        throw new IllegalArgumentException("Unsupported sub-type of the Event protocol: " + event.getClass().getName());
+    }
+
+    public static EventType fromTag(final byte tag) {
+        return switch (tag) {
+            case 1 -> ORDER_SUBMITTED;
+            case 2 -> ORDER_APPROVED;
+            case 3 -> ORDER_DENIED;
+            default -> throw new IllegalArgumentException("Unknown event type tag " + tag + ".");
+        };
+    }
+
+    public static EventType fromTypeName(final String typeName) {
+        for (EventType type : values()) {
+            if (type.typeName.equals(typeName)) return type;
+        }
+        throw new IllegalArgumentException("Unknown event type name " + typeName + ".");
+    }
+
+    public static boolean isTag(final byte tag) {
+        return tag >= 1 && tag <= 3;
+    }
+}
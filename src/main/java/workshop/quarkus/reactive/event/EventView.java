@@ -0,0 +1,20 @@
+package workshop.quarkus.reactive.event;
+
+import java.util.Locale;
+
+/**
+ * Selects how {@link EventDeserializer} materializes records on a channel. {@code EAGER} decodes the
+ * full event right away. {@code LAZY} only reads the type and the key fields of a record and decodes
+ * the rest on first access; a record that is malformed beyond its key fields therefore only fails
+ * once one of the remaining fields is accessed.
+ */
+public enum EventView {
+
+    EAGER,
+    LAZY;
+
+    public static EventView fromConfig(final Object value) {
+        if (value == null) return EAGER;
+        return EventView.valueOf(value.toString().trim().toUpperCase(Locale.ROOT));
+    }
+}
@@ -0,0 +1,85 @@
+package workshop.quarkus.reactive.event;
+
+import org.apache.kafka.common.header.Headers;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Decides from the headers of a record alone whether its payload is worth decoding. Configured per
+ * channel with
+ * <ul>
+ *     <li>{@code event.accept-types}: comma-separated type names (e.g. {@code order-submitted-event})
+ *     of the events that a channel consumes</li>
+ *     <li>{@code event.required-trace-id-prefix}: prefix that the trace ID of a record must carry</li>
+ * </ul>
+ * Records without the respective header are always accepted, so that records of producers that do
+ * not write headers yet still go through. {@link EventEnvelope}s are always accepted as well; their
+ * entries are filtered one by one through {@link #accepts(EventType, String)} instead.
+ */
+public final class HeaderFilter {
+
+    public static final String ACCEPT_TYPES_CONFIG = "event.accept-types";
+
+    public static final String REQUIRED_TRACE_ID_PREFIX_CONFIG = "event.required-trace-id-prefix";
+
+    private static final HeaderFilter ACCEPT_ALL = new HeaderFilter(EnumSet.allOf(EventType.class), null);
+
+    private final Set<EventType> acceptedTypes;
+
+    private final String requiredTraceIdPrefix;
+
+    public HeaderFilter(final Set<EventType> acceptedTypes, final String requiredTraceIdPrefix) {
+        this.acceptedTypes = Collections.unmodifiableSet(EnumSet.copyOf(acceptedTypes));
+        this.requiredTraceIdPrefix = requiredTraceIdPrefix;
+    }
+
+    public static HeaderFilter acceptAll() {
+        return ACCEPT_ALL;
+    }
+
+    public static HeaderFilter fromConfig(final Map<String, ?> configs) {
+        final Object types = configs.get(ACCEPT_TYPES_CONFIG);
+        final Object prefix = configs.get(REQUIRED_TRACE_ID_PREFIX_CONFIG);
+        if (types == null && prefix == null) return ACCEPT_ALL;
+
+        final Set<EventType> acceptedTypes = EnumSet.noneOf(EventType.class);
+        if (types == null) {
+            acceptedTypes.addAll(EnumSet.allOf(EventType.class));
+        } else {
+            Arrays.stream(types.toString().split(","))
+                    .map(String::trim)
+                    .filter(name -> !name.isEmpty())
+                    .forEach(name -> acceptedTypes.add(EventType.fromTypeName(name)));
+        }
+        return new HeaderFilter(acceptedTypes, prefix == null ? null : prefix.toString());
+    }
+
+    public boolean accepts(final Headers headers) {
+        if (headers == null) return true;
+
+        final String typeName = EventHeaders.lastValue(headers, EventHeaders.EVENT_TYPE);
+        if (EventHeaders.ENVELOPE_TYPE.equals(typeName)) return true;
+        if (typeName != null && !accepts(typeName)) return false;
+
+        return acceptsTraceId(EventHeaders.lastValue(headers, EventHeaders.TRACE_ID));
+    }
+
+    public boolean accepts(final EventType type, final String traceId) {
+        return acceptedTypes.contains(type) && acceptsTraceId(traceId);
+    }
+
+    private boolean acceptsTraceId(final String traceId) {
+        return requiredTraceIdPrefix == null || traceId == null || traceId.startsWith(requiredTraceIdPrefix);
+    }
+
+    private boolean accepts(final String typeName) {
+        for (EventType type : acceptedTypes) {
+            if (type.typeName().equals(typeName)) return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,185 @@
+package workshop.quarkus.reactive.event;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.util.ByteArrayBuilder;
+
+import java.io.IOException;
+
+/**
+ * JSON representation of the Event protocol that is written and read with the Jackson streaming API
+ * instead of data binding. It produces the same documents as an {@code ObjectMapper} with the
+ * annotations on {@link Event}:
+ *
+ * <pre>
+ * {"@type":"order-approved-event","orderId":..,"customerId":..,"productId":..,"quantity":..,
+ *  "itemsAvailable":..,"checkedOn":..,"eventId":..,"eventTime":..}
+ * </pre>
+ *
+ * Since neither direction introspects the event classes, the codec needs no warm-up of bean
+ * serializers and no reflection configuration in a native image. The reader accepts fields in any
+ * order and skips unknown fields; absent fields are decoded as {@code null} resp. {@code 0}.
+ */
+public final class JsonEventCodec {
+
+    static final JsonFactory FACTORY = new JsonFactory();
+
+    private JsonEventCodec() {
+    }
+
+    public static byte[] encode(final Event event) throws IOException {
+        final EventType type = EventType.of(event);
+        try (ByteArrayBuilder buffer = new ByteArrayBuilder(256);
+             JsonGenerator generator = FACTORY.createGenerator(buffer)) {
+            generator.writeStartObject();
+            generator.writeStringField("@type", type.typeName());
+            switch (type) {
+                case ORDER_SUBMITTED -> {
+                    final OrderSubmittedEvent e = (OrderSubmittedEvent) event;
+                    writeOrder(generator, e.getOrderId(), e.getCustomerId(), e.getProductId(), e.getQuantity());
+                }
+                case ORDER_APPROVED -> {
+                    final OrderApprovedEvent e = (OrderApprovedEvent) event;
+                    writeOrder(generator, e.getOrderId(), e.getCustomerId(), e.getProductId(), e.getQuantity());
+                    writeCheck(generator, e.getItemsAvailable(), e.getCheckedOn());
+                }
+                case ORDER_DENIED -> {
+                    final OrderDeniedEvent e = (OrderDeniedEvent) event;
+                    writeOrder(generator, e.getOrderId(), e.getCustomerId(), e.getProductId(), e.getQuantity());
+                    writeCheck(generator, e.getItemsAvailable(), e.getCheckedOn());
+                }
+            }
+            generator.writeStringField("eventId", event.getEventId());
+            generator.writeNumberField("eventTime", event.getEventTime());
+            generator.writeEndObject();
+            generator.flush();
+            return buffer.toByteArray();
+        }
+    }
+
+    public static Event decode(final byte[] bytes) throws IOException {
+        EventType type = null;
+        String eventId = null;
+        long eventTime = 0L;
+        String orderId = null;
+        String customerId = null;
+        String productId = null;
+        Integer quantity = null;
+        Boolean itemsAvailable = null;
+        Long checkedOn = null;
+
+        try (JsonParser parser = FACTORY.createParser(bytes)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) throw new IOException("Record is not a JSON object.");
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                final String field = parser.getCurrentName();
+                final boolean isNull = parser.nextToken() == JsonToken.VALUE_NULL;
+                switch (field) {
+                    case "@type" -> type = EventType.fromTypeName(parser.getText());
+                    case "eventId" -> eventId = isNull ? null : parser.getText();
+                    case "eventTime" -> eventTime = isNull ? 0L : parser.getLongValue();
+                    case "orderId" -> orderId = isNull ? null : parser.getText();
+                    case "customerId" -> customerId = isNull ? null : parser.getText();
+                    case "productId" -> productId = isNull ? null : parser.getText();
+                    case "quantity" -> quantity = isNull ? null : parser.getIntValue();
+                    case "itemsAvailable" -> itemsAvailable = isNull ? null : parser.getBooleanValue();
+                    case "checkedOn" -> checkedOn = isNull ? null : parser.getLongValue();
+                    default -> parser.skipChildren();
+                }
+            }
+        }
+        if (type == null) throw new IOException("Record does not carry a type discriminator.");
+        return switch (type) {
+            case ORDER_SUBMITTED -> new OrderSubmittedEvent(eventId, eventTime, orderId, customerId, productId, quantity);
+            case ORDER_APPROVED -> new OrderApprovedEvent(eventId, eventTime, orderId, customerId, productId, quantity, itemsAvailable, checkedOn);
+            case ORDER_DENIED -> new OrderDeniedEvent(eventId, eventTime, orderId, customerId, productId, quantity, itemsAvailable, checkedOn);
+        };
+    }
+
+    /**
+     * Decodes a checked order into the given target. Returns {@code false} and leaves the target
+     * untouched if the document holds an order that has not been checked yet. Unlike its binary
+     * counterpart, this allocates the strings of the document.
+     */
+    public static boolean decodeInto(final byte[] bytes, final CheckedOrder target) throws IOException {
+        EventType type = null;
+        String eventId = null;
+        long eventTime = 0L;
+        String orderId = null;
+        String customerId = null;
+        String productId = null;
+        int quantity = 0;
+        boolean hasQuantity = false;
+        boolean itemsAvailable = false;
+        boolean hasItemsAvailable = false;
+        long checkedOn = 0L;
+        boolean hasCheckedOn = false;
+
+        try (JsonParser parser = FACTORY.createParser(bytes)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) throw new IOException("Record is not a JSON object.");
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                final String field = parser.getCurrentName();
+                final boolean isNull = parser.nextToken() == JsonToken.VALUE_NULL;
+                switch (field) {
+                    case "@type" -> type = EventType.fromTypeName(parser.getText());
+                    case "eventId" -> eventId = isNull ? null : parser.getText();
+                    case "eventTime" -> eventTime = isNull ? 0L : parser.getLongValue();
+                    case "orderId" -> orderId = isNull ? null : parser.getText();
+                    case "customerId" -> customerId = isNull ? null : parser.getText();
+                    case "productId" -> productId = isNull ? null : parser.getText();
+                    case "quantity" -> {
+                        hasQuantity = !isNull;
+                        if (hasQuantity) quantity = parser.getIntValue();
+                    }
+                    case "itemsAvailable" -> {
+                        hasItemsAvailable = !isNull;
+                        if (hasItemsAvailable) itemsAvailable = parser.getBooleanValue();
+                    }
+                    case "checkedOn" -> {
+                        hasCheckedOn = !isNull;
+                        if (hasCheckedOn) checkedOn = parser.getLongValue();
+                    }
+                    default -> parser.skipChildren();
+                }
+            }
+        }
+        if (type == null) throw new IOException("Record does not carry a type discriminator.");
+        if (type == EventType.ORDER_SUBMITTED) return false;
+
+        target.reset(type == EventType.ORDER_APPROVED);
+        target.eventIdText().set(eventId);
+        target.eventTime(eventTime);
+        target.orderIdText().set(orderId);
+        target.customerIdText().set(customerId);
+        target.productIdText().set(productId);
+        if (hasQuantity) target.quantity(quantity);
+        if (hasItemsAvailable) target.itemsAvailable(itemsAvailable);
+        if (hasCheckedOn) target.checkedOn(checkedOn);
+        return true;
+    }
+
+    private static void writeOrder(final JsonGenerator generator,
+                                   final String orderId,
+                                   final String customerId,
+                                   final String productId,
+                                   final Integer quantity) throws IOException {
+        generator.writeStringField("orderId", orderId);
+        generator.writeStringField("customerId", customerId);
+        generator.writeStringField("productId", productId);
+        generator.writeFieldName("quantity");
+        if (quantity == null) generator.writeNull();
+        else generator.writeNumber(quantity);
+    }
+
+    private static void writeCheck(final JsonGenerator generator,
+                                   final Boolean itemsAvailable,
+                                   final Long checkedOn) throws IOException {
+        generator.writeFieldName("itemsAvailable");
+        if (itemsAvailable == null) generator.writeNull();
+        else generator.writeBoolean(itemsAvailable);
+        generator.writeFieldName("checkedOn");
+        if (checkedOn == null) generator.writeNull();
+        else generator.writeNumber(checkedOn);
+    }
+}
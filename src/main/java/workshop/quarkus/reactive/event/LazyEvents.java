@@ -0,0 +1,225 @@
+package workshop.quarkus.reactive.event;
+
+import com.fasterxml.jackson.annotation.JsonTypeName;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.function.Function;
+
+/**
+ * Lazy views on the records of the Event protocol. A view reads the type discriminator, the event
+ * ID, the order ID and, for checked orders, {@code checkedOn} directly from the record bytes. All
+ * other fields are decoded from the retained bytes when one of them is accessed for the first time.
+ * <p>
+ * Views are sub-types of the regular event classes, so consumers that dispatch on the type of an
+ * event work on them without any changes.
+ */
+final class LazyEvents {
+
+    private LazyEvents() {
+    }
+
+    static Event read(final byte[] bytes, final JsonFactory jsonFactory, final Function<byte[], Event> decoder) throws IOException {
+        final KeyFields keyFields = BinaryEventCodec.isBinary(bytes) ? readBinary(bytes) : readJson(bytes, jsonFactory);
+        final Payload payload = new Payload(bytes, decoder);
+        return switch (keyFields.type) {
+            case ORDER_SUBMITTED -> new LazyOrderSubmittedEvent(keyFields.eventId, keyFields.orderId, payload);
+            case ORDER_APPROVED -> new LazyOrderApprovedEvent(keyFields.eventId, keyFields.orderId, keyFields.checkedOn, payload);
+            case ORDER_DENIED -> new LazyOrderDeniedEvent(keyFields.eventId, keyFields.orderId, keyFields.checkedOn, payload);
+        };
+    }
+
+    static boolean isMaterialized(final Event event) {
+        if (event instanceof LazyOrderSubmittedEvent lazy) return lazy.payload.materialized != null;
+        if (event instanceof LazyOrderApprovedEvent lazy) return lazy.payload.materialized != null;
+        if (event instanceof LazyOrderDeniedEvent lazy) return lazy.payload.materialized != null;
+        return true;
+    }
+
+    private static KeyFields readBinary(final byte[] bytes) {
+        final ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        final byte tag = buffer.get();
+        final EventType type = EventType.fromTag(BinaryEventCodec.typeTagOf(tag));
+        final String eventId = BinaryEventCodec.getEventId(buffer, tag);
+        buffer.position(buffer.position() + Long.BYTES);
+        final String orderId = BinaryEventCodec.getString(buffer);
+        if (type == EventType.ORDER_SUBMITTED) return new KeyFields(type, eventId, orderId, null);
+
+        BinaryEventCodec.skipString(buffer);
+        BinaryEventCodec.skipString(buffer);
+        final int flags = buffer.get();
+        buffer.position(buffer.position() + Integer.BYTES + 1);
+        final long checkedOn = buffer.getLong();
+        return new KeyFields(type, eventId, orderId, BinaryEventCodec.hasCheckedOn(flags) ? checkedOn : null);
+    }
+
+    private static KeyFields readJson(final byte[] bytes, final JsonFactory jsonFactory) throws IOException {
+        EventType type = null;
+        String eventId = null;
+        String orderId = null;
+        Long checkedOn = null;
+        boolean eventIdSeen = false;
+        boolean orderIdSeen = false;
+        boolean checkedOnSeen = false;
+
+        try (JsonParser parser = jsonFactory.createParser(bytes)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) throw new IOException("Record is not a JSON object.");
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                final String field = parser.getCurrentName();
+                final JsonToken value = parser.nextToken();
+                switch (field) {
+                    case "@type" -> type = EventType.fromTypeName(parser.getText());
+                    case "eventId" -> {
+                        eventId = value == JsonToken.VALUE_NULL ? null : parser.getText();
+                        eventIdSeen = true;
+                    }
+                    case "orderId" -> {
+                        orderId = value == JsonToken.VALUE_NULL ? null : parser.getText();
+                        orderIdSeen = true;
+                    }
+                    case "checkedOn" -> {
+                        checkedOn = value == JsonToken.VALUE_NULL ? null : parser.getLongValue();
+                        checkedOnSeen = true;
+                    }
+                    default -> parser.skipChildren();
+                }
+                if (type != null && eventIdSeen && orderIdSeen && (checkedOnSeen || type == EventType.ORDER_SUBMITTED)) break;
+            }
+        }
+        if (type == null) throw new IOException("Record does not carry a type discriminator.");
+        return new KeyFields(type, eventId, orderId, checkedOn);
+    }
+
+    private record KeyFields(EventType type, String eventId, String orderId, Long checkedOn) {
+    }
+
+    private static final class Payload {
+
+        private final byte[] bytes;
+
+        private final Function<byte[], Event> decoder;
+
+        private volatile Event materialized;
+
+        Payload(final byte[] bytes, final Function<byte[], Event> decoder) {
+            this.bytes = bytes;
+            this.decoder = decoder;
+        }
+
+        @SuppressWarnings("unchecked")
+        <T extends Event> T get() {
+            Event event = materialized;
+            if (event == null) {
+                event = decoder.apply(bytes);
+                materialized = event;
+            }
+            return (T) event;
+        }
+    }
+
+    @JsonTypeName("order-submitted-event")
+    static final class LazyOrderSubmittedEvent extends OrderSubmittedEvent {
+
+        private final Payload payload;
+
+        LazyOrderSubmittedEvent(final String eventId, final String orderId, final Payload payload) {
+            super(eventId, 0L, orderId, null, null, null);
+            this.payload = payload;
+        }
+
+        @Override
+        public long getEventTime() {
+            return payload.<OrderSubmittedEvent>get().getEventTime();
+        }
+
+        @Override
+        public String getCustomerId() {
+            return payload.<OrderSubmittedEvent>get().getCustomerId();
+        }
+
+        @Override
+        public String getProductId() {
+            return payload.<OrderSubmittedEvent>get().getProductId();
+        }
+
+        @Override
+        public Integer getQuantity() {
+            return payload.<OrderSubmittedEvent>get().getQuantity();
+        }
+    }
+
+    @JsonTypeName("order-approved-event")
+    static final class LazyOrderApprovedEvent extends OrderApprovedEvent {
+
+        private final Payload payload;
+
+        LazyOrderApprovedEvent(final String eventId, final String orderId, final Long checkedOn, final Payload payload) {
+            super(eventId, 0L, orderId, null, null, null, null, checkedOn);
+            this.payload = payload;
+        }
+
+        @Override
+        public long getEventTime() {
+            return payload.<OrderApprovedEvent>get().getEventTime();
+        }
+
+        @Override
+        public String getCustomerId() {
+            return payload.<OrderApprovedEvent>get().getCustomerId();
+        }
+
+        @Override
+        public String getProductId() {
+            return payload.<OrderApprovedEvent>get().getProductId();
+        }
+
+        @Override
+        public Integer getQuantity() {
+            return payload.<OrderApprovedEvent>get().getQuantity();
+        }
+
+        @Override
+        public Boolean getItemsAvailable() {
+            return payload.<OrderApprovedEvent>get().getItemsAvailable();
+        }
+    }
+
+    @JsonTypeName("order-denied-event")
+    static final class LazyOrderDeniedEvent extends OrderDeniedEvent {
+
+        private final Payload payload;
+
+        LazyOrderDeniedEvent(final String eventId, final String orderId, final Long checkedOn, final Payload payload) {
+            super(eventId, 0L, orderId, null, null, null, null, checkedOn);
+            this.payload = payload;
+        }
+
+        @Override
+        public long getEventTime() {
+            return payload.<OrderDeniedEvent>get().getEventTime();
+        }
+
+        @Override
+        public String getCustomerId() {
+            return payload.<OrderDeniedEvent>get().getCustomerId();
+        }
+
+        @Override
+        public String getProductId() {
+            return payload.<OrderDeniedEvent>get().getProductId();
+        }
+
+        @Override
+        public Integer getQuantity() {
+            return payload.<OrderDeniedEvent>get().getQuantity();
+        }
+
+        @Override
+        public Boolean getItemsAvailable() {
+            return payload.<OrderDeniedEvent>get().getItemsAvailable();
+        }
+    }
+}
@@ -32,6 +32,23 @@ public class OrderDeniedEvent extends Event {
         this.checkedOn = checkedOn;
     }
 
+    public OrderDeniedEvent(final String eventId,
+                            final long eventTime,
+                            final String orderId,
+                            final String customerId,
+                            final String productId,
+                            final Integer quantity,
+                            final Boolean itemsAvailable,
+                            final Long checkedOn) {
+        super(eventId, eventTime);
+        this.orderId = orderId;
+        this.customerId = customerId;
+        this.productId = productId;
+        this.quantity = quantity;
+        this.itemsAvailable = itemsAvailable;
+        this.checkedOn = checkedOn;
+    }
+
     public String getOrderId() {
         return orderId;
     }
@@ -24,6 +24,19 @@ public class OrderSubmittedEvent extends Event {
         this.quantity = quantity;
     }
 
+    public OrderSubmittedEvent(final String eventId,
+                               final long eventTime,
+                               final String orderId,
+                               final String customerId,
+                               final String productId,
+                               final Integer quantity) {
+        super(eventId, eventTime);
+        this.orderId = orderId;
+        this.customerId = customerId;
+        this.productId = productId;
+        this.quantity = quantity;
+    }
+
     public String getOrderId() {
         return orderId;
     }
@@ -0,0 +1,123 @@
+package workshop.quarkus.reactive.event;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Time-ordered 128-bit identifiers in the format of ULIDs: a 48-bit timestamp in milliseconds since
+ * the epoch followed by 80 random bits, rendered as 26 characters of Crockford's base32.
+ * <p>
+ * Every thread generates from its own state, so that generation neither locks nor draws from a
+ * shared {@code SecureRandom}. Within a thread, identifiers are strictly monotonic: identifiers that
+ * are generated within the same millisecond (or while the clock goes backwards) increment the random
+ * part of their predecessor. Across threads, identifiers are ordered by their millisecond.
+ */
+public final class Ulid {
+
+    public static final int LENGTH = 26;
+
+    private static final byte[] ENCODING = "0123456789ABCDEFGHJKMNPQRSTVWXYZ".getBytes(StandardCharsets.US_ASCII);
+
+    private static final byte[] DECODING = new byte[128];
+
+    private static final long RANDOM_HIGH_MASK = 0xFFFFL;
+
+    private static final ThreadLocal<State> STATE = ThreadLocal.withInitial(State::new);
+
+    static {
+        Arrays.fill(DECODING, (byte) -1);
+        for (int i = 0; i < ENCODING.length; i++) {
+            DECODING[ENCODING[i]] = (byte) i;
+        }
+    }
+
+    private Ulid() {
+    }
+
+    public static String next() {
+        final State state = STATE.get();
+        state.advance(System.currentTimeMillis());
+        return toString(state.msb, state.lsb);
+    }
+
+    public static long timestampOf(final String ulid) {
+        return mostSignificantBits(ulid) >>> 16;
+    }
+
+    /**
+     * Whether the given value is a ULID in its canonical form, i.e. in upper case, as only those
+     * survive a round trip through {@link #mostSignificantBits} and {@link #leastSignificantBits}.
+     */
+    public static boolean isUlid(final String value) {
+        if (value == null || value.length() != LENGTH || value.charAt(0) > '7') return false;
+        for (int i = 0; i < LENGTH; i++) {
+            final char c = value.charAt(i);
+            if (c >= DECODING.length || DECODING[c] < 0) return false;
+        }
+        return true;
+    }
+
+    public static long mostSignificantBits(final String ulid) {
+        long msb = 0L;
+        long lsb = 0L;
+        for (int i = 0; i < LENGTH; i++) {
+            msb = (msb << 5) | (lsb >>> 59);
+            lsb = (lsb << 5) | DECODING[ulid.charAt(i)];
+        }
+        return msb;
+    }
+
+    public static long leastSignificantBits(final String ulid) {
+        long lsb = 0L;
+        for (int i = 0; i < LENGTH; i++) {
+            lsb = (lsb << 5) | DECODING[ulid.charAt(i)];
+        }
+        return lsb;
+    }
+
+    public static String toString(final long msb, final long lsb) {
+        final byte[] chars = new byte[LENGTH];
+        for (int i = 0; i < LENGTH; i++) {
+            final int shift = 125 - 5 * i;
+            final long bits;
+            if (shift >= 64) {
+                bits = msb >>> (shift - 64);
+            } else if (shift > 59) {
+                bits = (lsb >>> shift) | (msb << (64 - shift));
+            } else {
+                bits = lsb >>> shift;
+            }
+            chars[i] = ENCODING[(int) (bits & 0x1F)];
+        }
+        return new String(chars, StandardCharsets.ISO_8859_1);
+    }
+
+    private static final class State {
+
+        private long lastMillis = Long.MIN_VALUE;
+
+        private long msb;
+
+        private long lsb;
+
+        void advance(final long now) {
+            if (now > lastMillis) {
+                final ThreadLocalRandom random = ThreadLocalRandom.current();
+                lastMillis = now;
+                msb = (now << 16) | (random.nextLong() & RANDOM_HIGH_MASK);
+                lsb = random.nextLong();
+                return;
+            }
+            lsb++;
+            if (lsb != 0L) return;
+            if ((msb & RANDOM_HIGH_MASK) != RANDOM_HIGH_MASK) {
+                msb++;
+                return;
+            }
+            // the random part of this millisecond is exhausted, borrow from the next one
+            lastMillis++;
+            msb = lastMillis << 16;
+        }
+    }
+}
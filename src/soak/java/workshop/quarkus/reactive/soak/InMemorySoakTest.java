@@ -0,0 +1,72 @@
+package workshop.quarkus.reactive.soak;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.quarkus.test.common.QuarkusTestResource;
+import io.quarkus.test.junit.QuarkusTest;
+import io.smallrye.reactive.messaging.memory.InMemoryConnector;
+import io.smallrye.reactive.messaging.memory.InMemorySink;
+import io.smallrye.reactive.messaging.memory.InMemorySource;
+import jakarta.enterprise.inject.Any;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.reactive.messaging.Message;
+import org.jboss.logging.Logger;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import workshop.quarkus.reactive.InMemoryChannelsTestResource;
+import workshop.quarkus.reactive.OrderService;
+import workshop.quarkus.reactive.OrderStatusBroadcaster;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Soaks the pipeline over the in-memory connector. The in-memory sinks are not wired to their
+ * sources, so the harness relays records from {@code outgoing-orders} to {@code incoming-orders} and
+ * from {@code outgoing-checked-orders} to {@code incoming-checked-orders}, as the Kafka topics would.
+ */
+@QuarkusTest
+@QuarkusTestResource(value = InMemoryChannelsTestResource.class)
+public class InMemorySoakTest {
+
+    private static final Logger LOG = Logger.getLogger(InMemorySoakTest.class);
+
+    @Inject
+    @Any
+    InMemoryConnector connector;
+
+    @Inject
+    OrderService orderService;
+
+    @Inject
+    OrderStatusBroadcaster broadcaster;
+
+    @Inject
+    MeterRegistry registry;
+
+    @Test
+    @DisplayName("The pipeline should sustain the offered load without losing or duplicating orders")
+    void soak() {
+
+        InMemorySink<Object> submittedOrders = connector.sink("outgoing-orders");
+        InMemorySource<Message<?>> incomingOrders = connector.source("incoming-orders");
+        InMemorySink<Object> checkedOrders = connector.sink("outgoing-checked-orders");
+        InMemorySource<Message<?>> incomingCheckedOrders = connector.source("incoming-checked-orders");
+
+        LoadHarness harness = new LoadHarness(orderService, broadcaster, registry, () -> {
+            relay(submittedOrders, incomingOrders);
+            relay(checkedOrders, incomingCheckedOrders);
+        });
+        SoakReport report = harness.run(SoakSettings.fromSystemProperties());
+        LOG.info(report.format());
+
+        assertThat(report.violations()).isEmpty();
+    }
+
+    private static void relay(final InMemorySink<Object> sink, final InMemorySource<Message<?>> source) {
+        List<? extends Message<Object>> received = new ArrayList<>(sink.received());
+        sink.clear();
+        received.forEach(source::send);
+    }
+}
@@ -0,0 +1,67 @@
+package workshop.quarkus.reactive.soak;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.quarkus.test.junit.QuarkusTest;
+import io.quarkus.test.junit.QuarkusTestProfile;
+import io.quarkus.test.junit.TestProfile;
+import jakarta.inject.Inject;
+import org.jboss.logging.Logger;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import workshop.quarkus.reactive.OrderService;
+import workshop.quarkus.reactive.OrderStatusBroadcaster;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Soaks the pipeline through Kafka. Unless {@code kafka.bootstrap.servers} is given, Quarkus Dev
+ * Services start a local broker in a container, which requires Docker. Enable with
+ * {@code -Dsoak.kafka=true}.
+ */
+@QuarkusTest
+@TestProfile(KafkaSoakTest.KafkaChannels.class)
+@EnabledIfSystemProperty(named = "soak.kafka", matches = "true")
+public class KafkaSoakTest {
+
+    private static final Logger LOG = Logger.getLogger(KafkaSoakTest.class);
+
+    public static class KafkaChannels implements QuarkusTestProfile {
+
+        @Override
+        public Map<String, String> getConfigOverrides() {
+            final Map<String, String> overrides = new HashMap<>();
+            for (String channel : new String[]{"incoming-orders", "incoming-orders-high", "incoming-orders-low", "incoming-checked-orders", "incoming-order-retries"}) {
+                overrides.put("mp.messaging.incoming." + channel + ".connector", "smallrye-kafka");
+            }
+            for (String channel : new String[]{"outgoing-orders", "outgoing-checked-orders", "outgoing-order-retries", "outgoing-dead-letters"}) {
+                overrides.put("mp.messaging.outgoing." + channel + ".connector", "smallrye-kafka");
+            }
+            return overrides;
+        }
+    }
+
+    @Inject
+    OrderService orderService;
+
+    @Inject
+    OrderStatusBroadcaster broadcaster;
+
+    @Inject
+    MeterRegistry registry;
+
+    @Test
+    @DisplayName("The pipeline should sustain the offered load through Kafka without losing or duplicating orders")
+    void soak() {
+
+        LoadHarness harness = new LoadHarness(orderService, broadcaster, registry, () -> {
+        });
+        SoakReport report = harness.run(SoakSettings.fromSystemProperties());
+        LOG.info(report.format());
+
+        assertThat(report.violations()).isEmpty();
+    }
+}
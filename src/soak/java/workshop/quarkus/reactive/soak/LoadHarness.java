@@ -0,0 +1,163 @@
+package workshop.quarkus.reactive.soak;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.HdrHistogram.ConcurrentHistogram;
+import workshop.quarkus.reactive.OrderService;
+import workshop.quarkus.reactive.OrderStatusBroadcaster;
+import workshop.quarkus.reactive.PipelineMetrics;
+import workshop.quarkus.reactive.TestDataGenerator;
+import workshop.quarkus.reactive.command.PlaceOrder;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Drives orders at a fixed rate through {@link OrderService} and observes their completion through
+ * the status stream of the {@link OrderStatusBroadcaster}, i.e. once the notification service has
+ * processed the decision on an order.
+ * <p>
+ * The rate is open-loop: the latency of an order is measured from the time it was scheduled to be
+ * submitted, not from the time the harness got around to submitting it, so that a stalled pipeline
+ * shows up in the latency percentiles instead of silently lowering the offered load. The given relay
+ * is invoked from the submitting thread between submissions; it has to move records from outgoing to
+ * incoming channels if no broker does that.
+ */
+public class LoadHarness {
+
+    private static final long MAX_LATENCY_MICROS = TimeUnit.MINUTES.toMicros(5);
+
+    private final OrderService orderService;
+
+    private final OrderStatusBroadcaster broadcaster;
+
+    private final MeterRegistry registry;
+
+    private final Runnable relay;
+
+    private final Map<String, Long> pending = new ConcurrentHashMap<>();
+
+    private final ConcurrentHistogram latencyMicros = new ConcurrentHistogram(MAX_LATENCY_MICROS, 3);
+
+    private final AtomicLong completed = new AtomicLong();
+
+    private final AtomicLong rejected = new AtomicLong();
+
+    private final AtomicLong lastCompletionNanos = new AtomicLong();
+
+    public LoadHarness(final OrderService orderService,
+                       final OrderStatusBroadcaster broadcaster,
+                       final MeterRegistry registry,
+                       final Runnable relay) {
+        this.orderService = orderService;
+        this.broadcaster = broadcaster;
+        this.registry = registry;
+        this.relay = relay;
+    }
+
+    /**
+     * Runs the warm-up first, whose orders do not count towards the report.
+     */
+    public SoakReport run(final SoakSettings settings) {
+        if (!settings.warmup().isZero()) {
+            drive(settings.warmup(), settings);
+            pending.clear();
+            latencyMicros.reset();
+            completed.set(0L);
+            rejected.set(0L);
+        }
+
+        final double notificationsBefore = notifications();
+        final double suppressedBefore = suppressedRedeliveries();
+        final long heapBefore = usedHeapAfterGc();
+        final long startedAt = System.nanoTime();
+        final long submitted = drive(settings.duration(), settings);
+
+        final long lost = pending.size();
+        pending.clear();
+        final long elapsed = Math.max(0L, lastCompletionNanos.get() - startedAt);
+        return new SoakReport(
+                settings,
+                submitted,
+                completed.get(),
+                rejected.get(),
+                lost,
+                Math.max(0L, (long) (notifications() - notificationsBefore) - completed.get()),
+                (long) (suppressedRedeliveries() - suppressedBefore),
+                Duration.ofNanos(elapsed),
+                latencyMicros,
+                heapBefore,
+                usedHeapAfterGc());
+    }
+
+    private long drive(final Duration duration, final SoakSettings settings) {
+        final long intervalNanos = 1_000_000_000L / settings.ordersPerSecond();
+        final long startedAt = System.nanoTime();
+        final long endsAt = startedAt + duration.toNanos();
+        long submitted = 0;
+        long now;
+        while ((now = System.nanoTime()) < endsAt) {
+            final long due = (now - startedAt) / intervalNanos + 1;
+            while (submitted < due) {
+                submit(nextOrder(settings.unavailableRatio()), startedAt + submitted * intervalNanos);
+                submitted++;
+            }
+            relay.run();
+            LockSupport.parkNanos(Math.min(intervalNanos, TimeUnit.MILLISECONDS.toNanos(1)));
+        }
+
+        final long drainDeadline = System.nanoTime() + settings.drainTimeout().toNanos();
+        while (!pending.isEmpty() && System.nanoTime() < drainDeadline) {
+            relay.run();
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+        }
+        return submitted;
+    }
+
+    private void submit(final PlaceOrder order, final long scheduledAt) {
+        pending.put(order.orderId(), scheduledAt);
+        broadcaster.subscribeToOrder(order.orderId(), () -> null)
+                .select().first()
+                .subscribe().with(update -> complete(update.orderId()));
+        orderService.submitOrder(order).subscribe().with(
+                ignored -> {
+                },
+                failure -> {
+                    if (pending.remove(order.orderId()) != null) rejected.incrementAndGet();
+                });
+    }
+
+    private void complete(final String orderId) {
+        final Long scheduledAt = pending.remove(orderId);
+        if (scheduledAt == null) return;
+        final long now = System.nanoTime();
+        latencyMicros.recordValue(Math.min(MAX_LATENCY_MICROS, TimeUnit.NANOSECONDS.toMicros(now - scheduledAt)));
+        lastCompletionNanos.accumulateAndGet(now, Math::max);
+        completed.incrementAndGet();
+    }
+
+    private static PlaceOrder nextOrder(final double unavailableRatio) {
+        return ThreadLocalRandom.current().nextDouble() < unavailableRatio
+                ? TestDataGenerator.randomUnavailableOrderGen.sample()
+                : TestDataGenerator.randomOrderGen.sample();
+    }
+
+    private double notifications() {
+        return registry.get("pipeline.channel.messages").tag("channel", PipelineMetrics.INCOMING_CHECKED_ORDERS).counter().count();
+    }
+
+    private double suppressedRedeliveries() {
+        return registry.get("pipeline.channel.duplicates").counters().stream().mapToDouble(Counter::count).sum();
+    }
+
+    private static long usedHeapAfterGc() {
+        System.gc();
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+}
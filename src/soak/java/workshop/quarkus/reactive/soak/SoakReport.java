@@ -0,0 +1,73 @@
+package workshop.quarkus.reactive.soak;
+
+import org.HdrHistogram.Histogram;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+public record SoakReport(SoakSettings settings,
+                         long submitted,
+                         long completed,
+                         long rejected,
+                         long lost,
+                         long duplicateNotifications,
+                         long suppressedRedeliveries,
+                         Duration elapsed,
+                         Histogram latencyMicros,
+                         long heapBeforeBytes,
+                         long heapAfterBytes) {
+
+    public double throughput() {
+        return elapsed.isZero() ? 0.0 : completed * 1_000_000_000.0 / elapsed.toNanos();
+    }
+
+    public double latencyMillis(final double percentile) {
+        return latencyMicros.getValueAtPercentile(percentile) / 1000.0;
+    }
+
+    public long heapGrowthBytes() {
+        return heapAfterBytes - heapBeforeBytes;
+    }
+
+    /**
+     * Lost and duplicated orders are always violations; the other thresholds only apply if they are set.
+     */
+    public List<String> violations() {
+        final List<String> violations = new ArrayList<>();
+        if (lost > 0) violations.add(lost + " orders were lost");
+        if (duplicateNotifications > 0) violations.add(duplicateNotifications + " orders were notified more than once");
+        if (throughput() < settings.ordersPerSecond() * settings.minThroughputRatio()) {
+            violations.add(String.format(Locale.ROOT, "sustained throughput of %.1f orders/s is below %.0f%% of the offered %d orders/s",
+                    throughput(), settings.minThroughputRatio() * 100, settings.ordersPerSecond()));
+        }
+        if (settings.maxP99Millis() != null && latencyMillis(99) > settings.maxP99Millis()) {
+            violations.add(String.format(Locale.ROOT, "p99 latency of %.2f ms exceeds %.2f ms", latencyMillis(99), settings.maxP99Millis()));
+        }
+        if (settings.maxHeapGrowthBytes() != null && heapGrowthBytes() > settings.maxHeapGrowthBytes()) {
+            violations.add(String.format(Locale.ROOT, "heap grew by %d KiB, more than %d KiB", heapGrowthBytes() / 1024, settings.maxHeapGrowthBytes() / 1024));
+        }
+        return violations;
+    }
+
+    public String format() {
+        return String.format(Locale.ROOT, """
+                        Soak run: %s at %d orders/s (%.0f%% unavailable) after a warm-up of %s
+                          submitted:                %d
+                          completed:                %d
+                          rejected:                 %d
+                          lost:                     %d
+                          duplicate notifications:  %d
+                          suppressed redeliveries:  %d
+                          sustained throughput:     %.1f orders/s
+                          latency p50/p90/p99/p99.9/max: %.2f / %.2f / %.2f / %.2f / %.2f ms
+                          heap after GC:            %d KiB -> %d KiB (%+d KiB)
+                        """,
+                settings.duration(), settings.ordersPerSecond(), settings.unavailableRatio() * 100, settings.warmup(),
+                submitted, completed, rejected, lost, duplicateNotifications, suppressedRedeliveries,
+                throughput(),
+                latencyMillis(50), latencyMillis(90), latencyMillis(99), latencyMillis(99.9), latencyMicros.getMaxValue() / 1000.0,
+                heapBeforeBytes / 1024, heapAfterBytes / 1024, heapGrowthBytes() / 1024);
+    }
+}
@@ -0,0 +1,35 @@
+package workshop.quarkus.reactive.soak;
+
+import java.time.Duration;
+import java.util.function.Function;
+
+/**
+ * Settings of a soak run, taken from system properties (see the {@code soak} profile in the POM).
+ * Thresholds that are not set are not enforced.
+ */
+public record SoakSettings(Duration warmup,
+                           Duration duration,
+                           int ordersPerSecond,
+                           double unavailableRatio,
+                           Duration drainTimeout,
+                           Double maxP99Millis,
+                           Long maxHeapGrowthBytes,
+                           double minThroughputRatio) {
+
+    public static SoakSettings fromSystemProperties() {
+        return new SoakSettings(
+                Duration.parse(System.getProperty("soak.warmup", "PT10S")),
+                Duration.parse(System.getProperty("soak.duration", "PT30S")),
+                Integer.parseInt(System.getProperty("soak.rate", "500")),
+                Double.parseDouble(System.getProperty("soak.unavailable-ratio", "0.2")),
+                Duration.parse(System.getProperty("soak.drain-timeout", "PT10S")),
+                optional("soak.max-p99-millis", Double::valueOf),
+                optional("soak.max-heap-growth-mb", value -> Long.parseLong(value) * 1024 * 1024),
+                Double.parseDouble(System.getProperty("soak.min-throughput-ratio", "0.95")));
+    }
+
+    private static <T> T optional(final String name, final Function<String, T> parse) {
+        final String value = System.getProperty(name, "");
+        return value.isBlank() ? null : parse.apply(value.trim());
+    }
+}
@@ -0,0 +1,70 @@
+package workshop.quarkus.reactive;
+
+import io.smallrye.mutiny.helpers.test.UniAssertSubscriber;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class AdaptiveConcurrencyLimiterTest {
+
+    @Test
+    @DisplayName("The limit should grow while tasks complete fast and the limit is in use")
+    void limitGrowsWhileLatencyIsLow() {
+
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(2, 1, 8, Duration.ofSeconds(10), 0.5);
+
+        for (int round = 0; round < 10; round++) {
+            List<AdaptiveConcurrencyLimiter.Permit> permits = new ArrayList<>();
+            for (int i = 0; i < limiter.limit(); i++) {
+                permits.add(limiter.acquire().await().indefinitely());
+            }
+            permits.forEach(permit -> permit.release(true));
+        }
+
+        assertThat(limiter.limit()).isEqualTo(8);
+        assertThat(limiter.inFlight()).isZero();
+    }
+
+    @Test
+    @DisplayName("The limit should shrink multiplicatively on slow or failed tasks, but not below the minimum")
+    void limitShrinksOnSlowOrFailedTasks() {
+
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(8, 2, 8, Duration.ZERO, 0.5);
+
+        limiter.acquire().await().indefinitely().release(true);
+        assertThat(limiter.limit()).isEqualTo(4);
+
+        limiter.acquire().await().indefinitely().release(false);
+        limiter.acquire().await().indefinitely().release(false);
+        assertThat(limiter.limit()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Acquisitions beyond the limit should wait in FIFO order until permits are released")
+    void waitersAreGrantedInOrder() {
+
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(1, 1, 1, Duration.ofSeconds(10), 0.5);
+        AdaptiveConcurrencyLimiter.Permit first = limiter.acquire().await().indefinitely();
+
+        UniAssertSubscriber<AdaptiveConcurrencyLimiter.Permit> second = limiter.acquire().subscribe().withSubscriber(UniAssertSubscriber.create());
+        UniAssertSubscriber<AdaptiveConcurrencyLimiter.Permit> third = limiter.acquire().subscribe().withSubscriber(UniAssertSubscriber.create());
+
+        assertThat(limiter.queued()).isEqualTo(2);
+        assertThat(limiter.waits()).isEqualTo(2);
+        second.assertNotTerminated();
+
+        first.release(true);
+        second.assertCompleted();
+        third.assertNotTerminated();
+
+        third.cancel();
+        second.getItem().release(true);
+        assertThat(limiter.queued()).isZero();
+        assertThat(limiter.inFlight()).isZero();
+    }
+}
@@ -0,0 +1,161 @@
+package workshop.quarkus.reactive;
+
+import io.quarkus.arc.ClientProxy;
+import io.quarkus.test.common.QuarkusTestResource;
+import io.quarkus.test.junit.QuarkusMock;
+import io.quarkus.test.junit.QuarkusTest;
+import io.quarkus.test.junit.QuarkusTestProfile;
+import io.quarkus.test.junit.TestProfile;
+import io.smallrye.reactive.messaging.memory.InMemoryConnector;
+import io.smallrye.reactive.messaging.memory.InMemorySink;
+import io.smallrye.reactive.messaging.memory.InMemorySource;
+import jakarta.enterprise.inject.Any;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.reactive.messaging.Message;
+import org.eclipse.microprofile.reactive.messaging.Metadata;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import workshop.quarkus.reactive.command.PlaceOrder;
+import workshop.quarkus.reactive.event.Event;
+import workshop.quarkus.reactive.event.OrderApprovedEvent;
+import workshop.quarkus.reactive.event.OrderDeniedEvent;
+import workshop.quarkus.reactive.event.OrderSubmittedEvent;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static workshop.quarkus.reactive.TestDataGenerator.toOrderSubmittedEvent;
+
+@QuarkusTest
+@TestProfile(BatchInventoryServiceTest.BatchConsumption.class)
+@QuarkusTestResource(value = InMemoryChannelsTestResource.class)
+public class BatchInventoryServiceTest {
+
+    public static class BatchConsumption implements QuarkusTestProfile {
+
+        @Override
+        public Map<String, String> getConfigOverrides() {
+            return Map.of("inventory.consumption-mode", "batch");
+        }
+    }
+
+    @AfterEach
+    void clearChannels() {
+        connector.sink("outgoing-checked-orders").clear();
+        connector.sink("outgoing-order-retries").clear();
+    }
+
+    @Inject
+    @Any
+    InMemoryConnector connector;
+
+    @Inject
+    InventoryAvailabilityChecker checker;
+
+    @Test
+    @DisplayName("A batch of admissible orders should yield one approval per order and be acknowledged once")
+    void approvesWholeBatch() {
+
+        InMemorySource<Message<List<OrderSubmittedEvent>>> submittedOrders = connector.source("incoming-orders");
+        InMemorySink<Event> checkedOrders = connector.sink("outgoing-checked-orders");
+
+        PlaceOrder first = TestDataGenerator.randomOrderGen.sample();
+        PlaceOrder second = TestDataGenerator.randomOrderGen.sample();
+        PlaceOrder third = TestDataGenerator.randomOrderGen.sample();
+        AtomicInteger acks = new AtomicInteger();
+
+        Message<List<OrderSubmittedEvent>> batch = Message.of(
+                List.of(toOrderSubmittedEvent(first), toOrderSubmittedEvent(second), toOrderSubmittedEvent(third)),
+                Metadata.of(new OrderMetadata(first.traceId())),
+                () -> {
+                    acks.incrementAndGet();
+                    return CompletableFuture.completedFuture(null);
+                });
+
+        submittedOrders.send(batch);
+
+        assertThat(checkedOrders.received()).hasSize(3);
+        assertThat(checkedOrders.received()).allMatch(message -> message.getPayload() instanceof OrderApprovedEvent);
+        assertThat(acks.get()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("A batch of orders with unavailable line items should yield one denial per order")
+    void deniesWholeBatch() {
+
+        InMemorySource<Message<List<OrderSubmittedEvent>>> submittedOrders = connector.source("incoming-orders");
+        InMemorySink<Event> checkedOrders = connector.sink("outgoing-checked-orders");
+
+        PlaceOrder first = TestDataGenerator.randomUnavailableOrderGen.sample();
+        PlaceOrder second = TestDataGenerator.randomUnavailableOrderGen.sample();
+
+        submittedOrders.send(Message.of(
+                List.of(toOrderSubmittedEvent(first), toOrderSubmittedEvent(second)),
+                Metadata.of(new OrderMetadata(first.traceId()))));
+
+        assertThat(checkedOrders.received()).hasSize(2);
+        assertThat(checkedOrders.received()).allMatch(message -> message.getPayload() instanceof OrderDeniedEvent);
+    }
+
+    @Test
+    @DisplayName("Orders of a batch that carries a single trace ID should be traced as children of the batch")
+    void tracesOrdersAsChildrenOfTheBatch() {
+
+        InMemorySource<Message<List<OrderSubmittedEvent>>> submittedOrders = connector.source("incoming-orders");
+        InMemorySink<Event> checkedOrders = connector.sink("outgoing-checked-orders");
+
+        PlaceOrder first = TestDataGenerator.randomOrderGen.sample();
+        PlaceOrder second = TestDataGenerator.randomOrderGen.sample();
+
+        submittedOrders.send(Message.of(
+                List.of(toOrderSubmittedEvent(first), toOrderSubmittedEvent(second)),
+                Metadata.of(new OrderMetadata(first.traceId()))));
+
+        assertThat(checkedOrders.received())
+                .map(message -> message.getMetadata(OrderMetadata.class).map(OrderMetadata::traceId).orElse(null))
+                .containsExactly(first.traceId() + "/1", first.traceId() + "/2");
+    }
+
+    @Test
+    @DisplayName("An order whose check fails should be forwarded to the retry tiers while the other orders of its batch are emitted")
+    void reroutesFailingOrderOfBatch() {
+
+        InMemorySource<Message<List<OrderSubmittedEvent>>> submittedOrders = connector.source("incoming-orders");
+        InMemorySink<Event> checkedOrders = connector.sink("outgoing-checked-orders");
+        InMemorySink<OrderSubmittedEvent> retries = connector.sink("outgoing-order-retries");
+
+        PlaceOrder first = TestDataGenerator.randomOrderGen.sample();
+        PlaceOrder failing = TestDataGenerator.randomOrderGen.sample();
+        PlaceOrder third = TestDataGenerator.randomOrderGen.sample();
+        AtomicInteger acks = new AtomicInteger();
+
+        final InventoryAvailabilityChecker delegate = ClientProxy.unwrap(checker);
+        QuarkusMock.installMockForType(new InventoryAvailabilityChecker() {
+            @Override
+            public boolean allLineItemsAvailable(final OrderSubmittedEvent order, final String traceId) {
+                if (order.getOrderId().equals(failing.orderId())) throw new IllegalStateException("inventory unavailable");
+                return delegate.allLineItemsAvailable(order, traceId);
+            }
+        }, InventoryAvailabilityChecker.class);
+
+        submittedOrders.send(Message.of(
+                List.of(toOrderSubmittedEvent(first), toOrderSubmittedEvent(failing), toOrderSubmittedEvent(third)),
+                Metadata.of(new OrderMetadata(first.traceId())),
+                () -> {
+                    acks.incrementAndGet();
+                    return CompletableFuture.completedFuture(null);
+                }));
+
+        assertThat(checkedOrders.received())
+                .map(message -> ((OrderApprovedEvent) message.getPayload()).getOrderId())
+                .containsExactly(first.orderId(), third.orderId());
+        assertThat(retries.received()).singleElement()
+                .satisfies(retry -> assertThat(retry.getPayload().getOrderId()).isEqualTo(failing.orderId()))
+                .satisfies(retry -> assertThat(retry.getMetadata(OrderMetadata.class)).map(OrderMetadata::traceId).contains(first.traceId() + "/2"));
+        assertThat(acks.get()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,69 @@
+package workshop.quarkus.reactive;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static workshop.quarkus.reactive.DemandWindows.Window.FIVE_MINUTES;
+import static workshop.quarkus.reactive.DemandWindows.Window.ONE_HOUR;
+import static workshop.quarkus.reactive.DemandWindows.Window.ONE_MINUTE;
+
+public class DemandWindowsTest {
+
+    /* aligned to the buckets of all windows */
+    private static final long START = Duration.ofDays(20_000).toMillis();
+
+    @Test
+    @DisplayName("Orders should slide out of each window once it has moved past their bucket")
+    void ordersSlideOutOfTheirWindows() {
+        DemandWindows windows = new DemandWindows();
+
+        windows.record("p-1", 3, START, START);
+        windows.record("p-1", 2, START + 30_000, START + 30_000);
+
+        assertThat(windows.demandOf("p-1", ONE_MINUTE, START + 30_000)).isEqualTo(new DemandWindows.Demand("p-1", 2, 5));
+        assertThat(windows.demandOf("p-1", ONE_MINUTE, START + 60_000)).isEqualTo(new DemandWindows.Demand("p-1", 1, 2));
+        assertThat(windows.demandOf("p-1", FIVE_MINUTES, START + 60_000)).isEqualTo(new DemandWindows.Demand("p-1", 2, 5));
+        assertThat(windows.demandOf("p-1", ONE_MINUTE, START + 90_000)).isEqualTo(new DemandWindows.Demand("p-1", 0, 0));
+        assertThat(windows.demandOf("p-1", FIVE_MINUTES, START + 300_000)).isEqualTo(new DemandWindows.Demand("p-1", 1, 2));
+        assertThat(windows.demandOf("p-1", ONE_HOUR, START + 300_000)).isEqualTo(new DemandWindows.Demand("p-1", 2, 5));
+        assertThat(windows.demandOf("p-1", ONE_HOUR, START + Duration.ofHours(2).toMillis())).isEqualTo(new DemandWindows.Demand("p-1", 0, 0));
+    }
+
+    @Test
+    @DisplayName("Late orders should be counted in the bucket of their time, as long as it is still within the window")
+    void lateOrdersAreCountedInTheirBucket() {
+        DemandWindows windows = new DemandWindows();
+        long now = START + Duration.ofMinutes(10).toMillis();
+
+        windows.record("p-1", 1, now - 20_000, now);
+        windows.record("p-1", 4, now - Duration.ofMinutes(3).toMillis(), now);
+        windows.record("p-1", 8, now - Duration.ofHours(3).toMillis(), now);
+        windows.record("p-1", 16, now + 60_000, now);
+
+        assertThat(windows.demandOf("p-1", ONE_MINUTE, now)).isEqualTo(new DemandWindows.Demand("p-1", 2, 17));
+        assertThat(windows.demandOf("p-1", FIVE_MINUTES, now)).isEqualTo(new DemandWindows.Demand("p-1", 3, 21));
+        assertThat(windows.demandOf("p-1", ONE_HOUR, now)).isEqualTo(new DemandWindows.Demand("p-1", 3, 21));
+        assertThat(windows.demandOf("p-1", ONE_MINUTE, now + 45_000)).isEqualTo(new DemandWindows.Demand("p-1", 1, 16));
+    }
+
+    @Test
+    @DisplayName("The top products of a window should be ranked by units, and idle products should be dropped")
+    void topProductsAreRankedByUnits() {
+        DemandWindows windows = new DemandWindows();
+
+        for (int product = 1; product <= 20; product++) {
+            windows.record("p-" + product, product, START, START);
+        }
+        windows.record("p-3", 50, START + 50_000, START + 50_000);
+
+        assertThat(windows.top(ONE_HOUR, 3, START + 60_000)).extracting(DemandWindows.Demand::productId).containsExactly("p-3", "p-20", "p-19");
+        assertThat(windows.top(ONE_MINUTE, 3, START + 60_000)).containsExactly(new DemandWindows.Demand("p-3", 1, 50));
+        assertThat(windows.top(ONE_MINUTE, 3, START + Duration.ofMinutes(59).toMillis())).isEmpty();
+        assertThat(windows.trackedProducts()).isEqualTo(20);
+        assertThat(windows.top(ONE_MINUTE, 3, START + Duration.ofHours(2).toMillis())).isEmpty();
+        assertThat(windows.trackedProducts()).isZero();
+    }
+}
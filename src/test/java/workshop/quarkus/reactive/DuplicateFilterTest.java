@@ -0,0 +1,63 @@
+package workshop.quarkus.reactive;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import workshop.quarkus.reactive.event.Ulid;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class DuplicateFilterTest {
+
+    @Test
+    @DisplayName("An event ID should be reported as duplicate once it has been recorded")
+    void detectsDuplicates() {
+
+        DuplicateFilter filter = new DuplicateFilter(1_000, 0.000001);
+        String eventId = Ulid.next();
+
+        assertThat(filter.isDuplicate(eventId)).isFalse();
+        assertThat(filter.isDuplicate(eventId)).isFalse();
+        filter.record(eventId);
+        assertThat(filter.isDuplicate(eventId)).isTrue();
+        assertThat(filter.isDuplicate(eventId)).isTrue();
+        assertThat(filter.suppressed()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("The filter should remember at least the most recent generation of event IDs while its memory stays fixed")
+    void remembersRecentIdsWithinFixedMemory() {
+
+        DuplicateFilter filter = new DuplicateFilter(1_000, 0.000001);
+        long footprint = filter.memoryFootprintBytes();
+        List<String> recent = new ArrayList<>();
+
+        for (int i = 0; i < 10_500; i++) {
+            String eventId = Ulid.next();
+            filter.record(eventId);
+            if (i >= 9_500) recent.add(eventId);
+        }
+
+        assertThat(recent).allMatch(filter::isDuplicate);
+        assertThat(filter.memoryFootprintBytes()).isEqualTo(footprint);
+    }
+
+    @Test
+    @DisplayName("Unseen event IDs should rarely be mistaken for duplicates")
+    void falsePositiveRateIsBounded() {
+
+        DuplicateFilter filter = new DuplicateFilter(10_000, 0.001);
+        for (int i = 0; i < 10_000; i++) {
+            filter.record(Ulid.next());
+        }
+
+        int falsePositives = 0;
+        for (int i = 0; i < 100_000; i++) {
+            if (filter.isDuplicate(Ulid.next())) falsePositives++;
+        }
+
+        assertThat(falsePositives).isLessThan(500);
+    }
+}
@@ -0,0 +1,131 @@
+package workshop.quarkus.reactive;
+
+import io.quarkus.test.common.QuarkusTestResource;
+import io.quarkus.test.junit.QuarkusTest;
+import io.quarkus.test.junit.QuarkusTestProfile;
+import io.quarkus.test.junit.TestProfile;
+import io.smallrye.mutiny.Uni;
+import io.smallrye.reactive.messaging.memory.InMemoryConnector;
+import io.smallrye.reactive.messaging.memory.InMemorySink;
+import io.smallrye.reactive.messaging.kafka.api.OutgoingKafkaRecordMetadata;
+import io.smallrye.reactive.messaging.memory.InMemorySource;
+import jakarta.enterprise.inject.Any;
+import jakarta.inject.Inject;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.eclipse.microprofile.reactive.messaging.Message;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import workshop.quarkus.reactive.command.PlaceOrder;
+import workshop.quarkus.reactive.event.EventEnvelope;
+import workshop.quarkus.reactive.event.EventHeaders;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+@QuarkusTest
+@TestProfile(EnvelopeDecoratorTest.EnvelopesEnabled.class)
+@QuarkusTestResource(value = InMemoryChannelsTestResource.class)
+public class EnvelopeDecoratorTest {
+
+    public static class EnvelopesEnabled implements QuarkusTestProfile {
+
+        @Override
+        public Map<String, String> getConfigOverrides() {
+            return Map.of(
+                    "mp.messaging.outgoing.outgoing-orders.envelope.enabled", "true",
+                    "mp.messaging.outgoing.outgoing-orders.envelope.max-events", "16",
+                    "mp.messaging.outgoing.outgoing-orders.envelope.max-delay", "PT0.1S");
+        }
+    }
+
+    @Inject
+    @Any
+    InMemoryConnector connector;
+
+    @Inject
+    OrderService orderService;
+
+    @Inject
+    NotificationService notificationService;
+
+    @AfterEach
+    void clearChannels() {
+        connector.sink("outgoing-orders").clear();
+    }
+
+    @Test
+    @DisplayName("Orders that are submitted together should be packed into envelopes and acknowledged once the envelope is")
+    void ordersArePacked() {
+
+        InMemorySink<Object> orders = connector.sink("outgoing-orders");
+        List<PlaceOrder> placedOrders = Stream.generate(TestDataGenerator.randomOrderGen::sample).limit(32).toList();
+
+        Uni.join().all(placedOrders.stream().map(orderService::submitOrder).toList()).andFailFast()
+                .await().atMost(Duration.ofSeconds(5));
+
+        assertThat(orders.received()).hasSizeLessThan(placedOrders.size());
+        assertThat(orders.received()).extracting(Message::getPayload).allMatch(payload -> payload instanceof EventEnvelope);
+        assertThat(orders.received().stream()
+                .flatMap(message -> ((EventEnvelope) message.getPayload()).getEntries().stream())
+                .map(EventEnvelope.Entry::traceId))
+                .containsExactlyElementsOf(placedOrders.stream().map(PlaceOrder::traceId).toList());
+    }
+
+    @Test
+    @DisplayName("Orders in different priority lanes should be packed into envelopes per lane that keep the topic and headers of the lane")
+    void lanesArePackedSeparately() {
+
+        List<Message<?>> messages = Stream.of(OrderPriority.HIGH, OrderPriority.NORMAL, OrderPriority.LOW, OrderPriority.HIGH, OrderPriority.NORMAL, OrderPriority.LOW)
+                .<Message<?>>map(priority -> {
+                    PlaceOrder order = TestDataGenerator.randomOrderGen.sample();
+                    Headers headers = new RecordHeaders();
+                    EventHeaders.put(headers, EventHeaders.PRIORITY, priority.label());
+                    return Message.of(TestDataGenerator.toOrderSubmittedEvent(order))
+                            .addMetadata(new OrderMetadata(order.traceId()))
+                            .addMetadata(OutgoingKafkaRecordMetadata.builder().withTopic(priority.topic()).withHeaders(headers).build());
+                })
+                .toList();
+
+        List<Message<?>> envelopes = EnvelopeDecorator.pack(messages);
+
+        assertThat(envelopes).hasSize(3);
+        assertThat(envelopes).extracting(Message::getPayload).allMatch(payload -> ((EventEnvelope) payload).getEntries().size() == 2);
+        assertThat(envelopes).map(envelope -> envelope.getMetadata(OutgoingKafkaRecordMetadata.class).orElseThrow())
+                .extracting(OutgoingKafkaRecordMetadata::getTopic, metadata -> EventHeaders.lastValue(metadata.getHeaders(), EventHeaders.PRIORITY), OutgoingKafkaRecordMetadata::getKey)
+                .containsExactly(
+                        tuple(OrderPriority.HIGH.topic(), OrderPriority.HIGH.label(), null),
+                        tuple(OrderPriority.NORMAL.topic(), OrderPriority.NORMAL.label(), null),
+                        tuple(OrderPriority.LOW.topic(), OrderPriority.LOW.label(), null));
+    }
+
+    @Test
+    @DisplayName("An incoming envelope should be unpacked and acknowledged once all of its events have been processed")
+    void envelopesAreUnpacked() {
+
+        InMemorySource<Message<EventEnvelope>> checkedOrders = connector.source("incoming-checked-orders");
+        PlaceOrder approved = TestDataGenerator.randomOrderGen.sample();
+        PlaceOrder denied = TestDataGenerator.randomUnavailableOrderGen.sample();
+        AtomicInteger acknowledgements = new AtomicInteger();
+
+        checkedOrders.send(Message.of(new EventEnvelope(List.of(
+                        new EventEnvelope.Entry(approved.traceId(), TestDataGenerator.toOrderApprovedEvent(approved)),
+                        new EventEnvelope.Entry(denied.traceId(), TestDataGenerator.toOrderDeniedEvent(denied)))),
+                () -> {
+                    acknowledgements.incrementAndGet();
+                    return CompletableFuture.completedFuture(null);
+                }));
+
+        assertThat(notificationService.isApproved(approved.orderId())).isTrue();
+        assertThat(notificationService.isDenied(denied.orderId())).isTrue();
+        assertThat(acknowledgements).hasValue(1);
+    }
+}
@@ -13,9 +13,9 @@ public class InMemoryChannelsTestResource implements QuarkusTestResourceLifecycl
         resetConnectorConfiguration();
 
         // switch all incoming channels to in-memory-realized channels
-        InMemoryConnector.switchIncomingChannelsToInMemory("incoming-orders", "incoming-checked-orders");
+        InMemoryConnector.switchIncomingChannelsToInMemory("incoming-orders", "incoming-orders-high", "incoming-orders-low", "incoming-checked-orders", "incoming-order-retries");
         // switch all outgoing channels to in-memory-realized channels
-        InMemoryConnector.switchOutgoingChannelsToInMemory("outgoing-orders", "outgoing-checked-orders");
+        InMemoryConnector.switchOutgoingChannelsToInMemory("outgoing-orders", "outgoing-checked-orders", "outgoing-order-retries", "outgoing-dead-letters");
 
         return Collections.emptyMap();
     }
@@ -0,0 +1,144 @@
+package workshop.quarkus.reactive;
+
+import io.quarkus.test.common.QuarkusTestResource;
+import io.quarkus.test.junit.QuarkusTest;
+import io.smallrye.mutiny.Multi;
+import io.smallrye.reactive.messaging.kafka.api.IncomingKafkaRecordMetadata;
+import io.smallrye.reactive.messaging.kafka.api.OutgoingKafkaRecordMetadata;
+import io.smallrye.reactive.messaging.memory.InMemoryConnector;
+import io.smallrye.reactive.messaging.memory.InMemorySink;
+import jakarta.enterprise.inject.Any;
+import jakarta.inject.Inject;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.apache.kafka.common.record.TimestampType;
+import org.eclipse.microprofile.reactive.messaging.Message;
+import org.eclipse.microprofile.reactive.messaging.Metadata;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import workshop.quarkus.reactive.command.PlaceOrder;
+import workshop.quarkus.reactive.event.EventHeaders;
+import workshop.quarkus.reactive.event.OrderSubmittedEvent;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@QuarkusTest
+@QuarkusTestResource(value = InMemoryChannelsTestResource.class)
+public class IncomingRecordDecoratorTest {
+
+    @Inject
+    IncomingRecordDecorator decorator;
+
+    @Inject
+    @Any
+    InMemoryConnector connector;
+
+    @Test
+    @DisplayName("The OrderMetadata of an incoming record should be restored from its headers")
+    void restoresOrderMetadata() {
+
+        PlaceOrder order = TestDataGenerator.randomOrderGen.sample();
+        Message<OrderSubmittedEvent> record = record(TestDataGenerator.toOrderSubmittedEvent(order), "X-1234", () -> CompletableFuture.completedFuture(null));
+
+        List<? extends Message<?>> decorated = decorate(record);
+
+        assertThat(decorated).hasSize(1);
+        assertThat(decorated.get(0).getMetadata(OrderMetadata.class)).map(OrderMetadata::traceId).contains("X-1234");
+    }
+
+    @Test
+    @DisplayName("Records that have been skipped by the header filter should be acknowledged and dropped")
+    void dropsSkippedRecords() {
+
+        AtomicBoolean acknowledged = new AtomicBoolean(false);
+        Message<OrderSubmittedEvent> skipped = record(null, "X-1234", () -> {
+            acknowledged.set(true);
+            return CompletableFuture.completedFuture(null);
+        });
+
+        assertThat(decorate(skipped)).isEmpty();
+        assertThat(acknowledged).isTrue();
+    }
+
+    @Test
+    @DisplayName("Records that could not be deserialized should be forwarded to the dead-letter topic as they are and acknowledged")
+    void deadLettersUndecodableRecords() {
+
+        AtomicBoolean acknowledged = new AtomicBoolean(false);
+        byte[] data = "{not an order".getBytes(StandardCharsets.UTF_8);
+        Message<OrderSubmittedEvent> undecodable = undecodable("orders", "incoming-orders", data, () -> {
+            acknowledged.set(true);
+            return CompletableFuture.completedFuture(null);
+        });
+        InMemorySink<byte[]> deadLetters = connector.sink("outgoing-dead-letters");
+        deadLetters.clear();
+
+        assertThat(decorate(undecodable, "incoming-orders")).isEmpty();
+        assertThat(deadLetters.received()).hasSize(1);
+        assertThat(deadLetters.received().get(0).getPayload()).isEqualTo(data);
+        OutgoingKafkaRecordMetadata<?> metadata = deadLetters.received().get(0).getMetadata(OutgoingKafkaRecordMetadata.class).orElseThrow();
+        assertThat(metadata.getTopic()).isNull();
+        assertThat(EventHeaders.lastValue(metadata.getHeaders(), EventHeaders.FAILURE_REASON)).isEqualTo("Unexpected end of input");
+        assertThat(acknowledged).isTrue();
+        deadLetters.clear();
+    }
+
+    @Test
+    @DisplayName("Checked orders that could not be deserialized should be forwarded to their own dead-letter topic")
+    void deadLettersUndecodableCheckedOrdersApart() {
+
+        byte[] data = "{not a checked order".getBytes(StandardCharsets.UTF_8);
+        Message<OrderSubmittedEvent> undecodable = undecodable("checked-orders", "incoming-checked-orders", data, () -> CompletableFuture.completedFuture(null));
+        InMemorySink<byte[]> deadLetters = connector.sink("outgoing-dead-letters");
+        deadLetters.clear();
+
+        assertThat(decorate(undecodable, "incoming-checked-orders")).isEmpty();
+        assertThat(deadLetters.received()).singleElement().satisfies(deadLetter -> {
+            OutgoingKafkaRecordMetadata<?> metadata = deadLetter.getMetadata(OutgoingKafkaRecordMetadata.class).orElseThrow();
+            assertThat(deadLetter.getPayload()).isEqualTo(data);
+            assertThat(metadata.getTopic()).isEqualTo("checked-orders-dead-letter");
+            assertThat(EventHeaders.lastValue(metadata.getHeaders(), EventHeaders.ORIGIN_TOPIC)).isEqualTo("checked-orders");
+        });
+        deadLetters.clear();
+    }
+
+    private List<? extends Message<?>> decorate(final Message<?> message) {
+        return decorate(message, "incoming-orders");
+    }
+
+    private List<? extends Message<?>> decorate(final Message<?> message, final String channel) {
+        return decorator.decorate(Multi.createFrom().item(message), channel, true)
+                .collect().asList()
+                .await().indefinitely();
+    }
+
+    private static Message<OrderSubmittedEvent> undecodable(final String topic,
+                                                            final String channel,
+                                                            final byte[] data,
+                                                            final Supplier<CompletionStage<Void>> ack) {
+        RecordHeaders headers = new RecordHeaders();
+        headers.add("deserialization-failure-reason", "Unexpected end of input".getBytes(StandardCharsets.UTF_8));
+        headers.add("deserialization-failure-data", data);
+        ConsumerRecord<String, OrderSubmittedEvent> consumerRecord = new ConsumerRecord<>(
+                topic, 0, 0L, 0L, TimestampType.CREATE_TIME, 0, 0, null, null, headers, Optional.empty());
+        return Message.of(null, Metadata.of(new IncomingKafkaRecordMetadata<>(consumerRecord, channel)), ack);
+    }
+
+    private static Message<OrderSubmittedEvent> record(final OrderSubmittedEvent event,
+                                                       final String traceId,
+                                                       final Supplier<CompletionStage<Void>> ack) {
+        RecordHeaders headers = new RecordHeaders();
+        EventHeaders.put(headers, EventHeaders.TRACE_ID, traceId);
+        ConsumerRecord<String, OrderSubmittedEvent> consumerRecord = new ConsumerRecord<>(
+                "orders", 0, 0L, 0L, TimestampType.CREATE_TIME, 0, 0, null, event, headers, Optional.empty());
+        return Message.of(event, Metadata.of(new IncomingKafkaRecordMetadata<>(consumerRecord, "incoming-orders")), ack);
+    }
+}
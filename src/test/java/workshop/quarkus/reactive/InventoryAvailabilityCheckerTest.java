@@ -0,0 +1,59 @@
+package workshop.quarkus.reactive;
+
+import io.quarkus.test.common.QuarkusTestResource;
+import io.quarkus.test.junit.QuarkusTest;
+import jakarta.inject.Inject;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import workshop.quarkus.reactive.event.OrderSubmittedEvent;
+
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@QuarkusTest
+@QuarkusTestResource(value = InMemoryChannelsTestResource.class)
+public class InventoryAvailabilityCheckerTest {
+
+    @Inject
+    InventoryAvailabilityChecker checker;
+
+    @Inject
+    StockLedger ledger;
+
+    @Inject
+    AvailabilityCache cache;
+
+    @Test
+    @DisplayName("Orders should reserve stock and be denied once the product is sold out")
+    void reservesStock() {
+        String productId = UUID.randomUUID().toString();
+        ledger.replenish(productId, 5);
+
+        assertThat(checker.allLineItemsAvailable(order(productId, 3), "X-1")).isTrue();
+        assertThat(checker.allLineItemsAvailable(order(productId, 3), "X-2")).isFalse();
+        assertThat(checker.allLineItemsAvailable(order(productId, 2), "X-3")).isTrue();
+        assertThat(ledger.stockLevel(productId)).isZero();
+    }
+
+    @Test
+    @DisplayName("Sold out products should be denied from the cache until they are replenished")
+    void cachesSoldOutProducts() {
+        String productId = UUID.randomUUID().toString();
+        ledger.replenish(productId, 1);
+        checker.allLineItemsAvailable(order(productId, 1), "X-1");
+
+        assertThat(checker.allLineItemsAvailable(order(productId, 1), "X-2")).isFalse();
+        long hits = cache.statistics().hits();
+        assertThat(checker.allLineItemsAvailable(order(productId, 1), "X-3")).isFalse();
+        assertThat(cache.statistics().hits()).isEqualTo(hits + 1);
+
+        ledger.replenish(productId, 1);
+
+        assertThat(checker.allLineItemsAvailable(order(productId, 1), "X-4")).isTrue();
+    }
+
+    private static OrderSubmittedEvent order(final String productId, final int quantity) {
+        return new OrderSubmittedEvent(UUID.randomUUID().toString(), UUID.randomUUID().toString(), productId, quantity);
+    }
+}
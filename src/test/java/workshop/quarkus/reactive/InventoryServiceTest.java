@@ -1,7 +1,10 @@
 package workshop.quarkus.reactive;
 
+import io.quarkus.arc.ClientProxy;
 import io.quarkus.test.common.QuarkusTestResource;
+import io.quarkus.test.junit.QuarkusMock;
 import io.quarkus.test.junit.QuarkusTest;
+import io.smallrye.mutiny.Uni;
 import io.smallrye.reactive.messaging.memory.InMemoryConnector;
 import io.smallrye.reactive.messaging.memory.InMemorySink;
 import io.smallrye.reactive.messaging.memory.InMemorySource;
@@ -17,6 +20,10 @@ import workshop.quarkus.reactive.event.OrderApprovedEvent;
 import workshop.quarkus.reactive.event.OrderDeniedEvent;
 import workshop.quarkus.reactive.event.OrderSubmittedEvent;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import static org.assertj.core.api.Assertions.assertThat;
 import static workshop.quarkus.reactive.TestDataGenerator.toOrderSubmittedEvent;
 
@@ -33,6 +40,15 @@ public class InventoryServiceTest {
     @Any
     InMemoryConnector connector;
 
+    @Inject
+    DemandAggregationDecorator demand;
+
+    @Inject
+    DeduplicationDecorator deduplication;
+
+    @Inject
+    InventoryAvailabilityChecker checker;
+
     @Test
     @DisplayName("Task 2.2: For every received order that is admissible, an OrderCheckedEvent should be published")
     void test_task_2_2() {
@@ -72,4 +88,60 @@ public class InventoryServiceTest {
 
         assertThat(deniedEvent.getItemsAvailable()).isFalse();
     }
+
+    @Test
+    @DisplayName("The demand for a product should be aggregated from the orders that pass by")
+    void demandIsAggregated() {
+
+        InMemorySource<Message<OrderSubmittedEvent>> submittedOrders = connector.source("incoming-orders");
+
+        PlaceOrder order = TestDataGenerator.randomOrderGen.sample();
+        OrderSubmittedEvent event = toOrderSubmittedEvent(order);
+        DemandWindows.Demand before = demand.demandOf(event.getProductId(), DemandWindows.Window.ONE_MINUTE);
+
+        submittedOrders.send(Message.of(event).withMetadata(Metadata.of(new OrderMetadata(order.traceId()))));
+
+        assertThat(demand.demandOf(event.getProductId(), DemandWindows.Window.ONE_MINUTE))
+                .isEqualTo(new DemandWindows.Demand(event.getProductId(), before.orders() + 1, before.units() + event.getQuantity()));
+    }
+
+    @Test
+    @DisplayName("An order whose processing failed should not be taken for a duplicate when it is redelivered")
+    void failedOrderIsNotSuppressedOnRedelivery() {
+
+        PlaceOrder order = TestDataGenerator.randomOrderGen.sample();
+        AtomicBoolean failing = new AtomicBoolean(true);
+        InventoryAvailabilityChecker delegate = ClientProxy.unwrap(checker);
+        QuarkusMock.installMockForType(new InventoryAvailabilityChecker() {
+            @Override
+            public boolean allLineItemsAvailable(final OrderSubmittedEvent submitted, final String traceId) {
+                if (failing.getAndSet(false)) throw new IllegalStateException("inventory unavailable");
+                return delegate.allLineItemsAvailable(submitted, traceId);
+            }
+        }, InventoryAvailabilityChecker.class);
+        QuarkusMock.installMockForType(new OrderRetryRouter() {
+            @Override
+            public Uni<Void> reroute(final Message<OrderSubmittedEvent> message, final Throwable failure) {
+                return Uni.createFrom().completionStage(message.nack(failure));
+            }
+        }, OrderRetryRouter.class);
+
+        InMemorySource<Message<OrderSubmittedEvent>> submittedOrders = connector.source("incoming-orders");
+        InMemorySink<OrderApprovedEvent> checkedOrders = connector.sink("outgoing-checked-orders");
+        OrderSubmittedEvent event = toOrderSubmittedEvent(order);
+        AtomicInteger nacks = new AtomicInteger();
+        long suppressedBefore = deduplication.suppressed("incoming-orders");
+
+        submittedOrders.send(Message.of(event).withMetadata(Metadata.of(new OrderMetadata(order.traceId()))).withNack(failure -> {
+            nacks.incrementAndGet();
+            return CompletableFuture.completedFuture(null);
+        }));
+        submittedOrders.send(Message.of(event).withMetadata(Metadata.of(new OrderMetadata(order.traceId()))));
+        submittedOrders.send(Message.of(event).withMetadata(Metadata.of(new OrderMetadata(order.traceId()))));
+
+        assertThat(nacks).hasValue(1);
+        assertThat(checkedOrders.received()).hasSize(1);
+        assertThat(checkedOrders.received().get(0).getPayload().getOrderId()).isEqualTo(order.orderId());
+        assertThat(deduplication.suppressed("incoming-orders")).isEqualTo(suppressedBefore + 1);
+    }
 }
@@ -0,0 +1,79 @@
+package workshop.quarkus.reactive;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class KeyOrderedExecutorTest {
+
+    @Test
+    @DisplayName("Tasks that share a key should complete in submission order")
+    void keepsOrderPerKey() {
+        Map<String, List<Integer>> completedByKey = new ConcurrentHashMap<>();
+        List<CompletableFuture<Integer>> results = new ArrayList<>();
+
+        try (KeyOrderedExecutor executor = new KeyOrderedExecutor(8)) {
+            for (int i = 0; i < 1_000; i++) {
+                final String key = "key-" + (i % 7);
+                final int sequenceNumber = i;
+                results.add(executor.submit(key, () -> {
+                    completedByKey.computeIfAbsent(key, k -> new CopyOnWriteArrayList<>()).add(sequenceNumber);
+                    return sequenceNumber;
+                }));
+            }
+            CompletableFuture.allOf(results.toArray(CompletableFuture[]::new)).join();
+
+            assertThat(completedByKey).hasSize(7);
+            completedByKey.values().forEach(sequenceNumbers -> assertThat(sequenceNumbers).isSorted());
+            assertThat(executor.pendingKeys()).isZero();
+        }
+    }
+
+    @Test
+    @DisplayName("Tasks with different keys should run concurrently")
+    void runsDistinctKeysConcurrently() throws Exception {
+        CountDownLatch bothStarted = new CountDownLatch(2);
+
+        try (KeyOrderedExecutor executor = new KeyOrderedExecutor(2)) {
+            CompletableFuture<Boolean> first = executor.submit("a", () -> awaitQuietly(bothStarted));
+            CompletableFuture<Boolean> second = executor.submit("b", () -> awaitQuietly(bothStarted));
+
+            assertThat(first.get(5, TimeUnit.SECONDS)).isTrue();
+            assertThat(second.get(5, TimeUnit.SECONDS)).isTrue();
+        }
+    }
+
+    @Test
+    @DisplayName("A failing task should not prevent later tasks with the same key from running")
+    void continuesAfterFailure() {
+        try (KeyOrderedExecutor executor = new KeyOrderedExecutor(2)) {
+            CompletableFuture<Integer> failing = executor.submit("a", () -> {
+                throw new IllegalStateException("boom");
+            });
+            CompletableFuture<Integer> next = executor.submit("a", () -> 42);
+
+            assertThat(next.join()).isEqualTo(42);
+            assertThat(failing).isCompletedExceptionally();
+        }
+    }
+
+    private static boolean awaitQuietly(final CountDownLatch latch) {
+        latch.countDown();
+        try {
+            return latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
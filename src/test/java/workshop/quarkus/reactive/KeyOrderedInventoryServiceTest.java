@@ -0,0 +1,182 @@
+package workshop.quarkus.reactive;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.quarkus.arc.ClientProxy;
+import io.quarkus.test.common.QuarkusTestResource;
+import io.quarkus.test.junit.QuarkusMock;
+import io.quarkus.test.junit.QuarkusTest;
+import io.quarkus.test.junit.QuarkusTestProfile;
+import io.quarkus.test.junit.TestProfile;
+import io.smallrye.reactive.messaging.memory.InMemoryConnector;
+import io.smallrye.reactive.messaging.memory.InMemorySink;
+import io.smallrye.mutiny.Uni;
+import io.smallrye.reactive.messaging.memory.InMemorySource;
+import jakarta.enterprise.inject.Any;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.Config;
+import org.eclipse.microprofile.reactive.messaging.Message;
+import org.eclipse.microprofile.reactive.messaging.Metadata;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import workshop.quarkus.reactive.command.PlaceOrder;
+import workshop.quarkus.reactive.event.Event;
+import workshop.quarkus.reactive.event.OrderApprovedEvent;
+import workshop.quarkus.reactive.event.OrderDeniedEvent;
+import workshop.quarkus.reactive.event.OrderSubmittedEvent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static workshop.quarkus.reactive.TestDataGenerator.toOrderSubmittedEvent;
+
+@QuarkusTest
+@TestProfile(KeyOrderedInventoryServiceTest.KeyOrderedConsumption.class)
+@QuarkusTestResource(value = InMemoryChannelsTestResource.class)
+public class KeyOrderedInventoryServiceTest {
+
+    public static class KeyOrderedConsumption implements QuarkusTestProfile {
+
+        @Override
+        public Map<String, String> getConfigOverrides() {
+            return Map.of("inventory.consumption-mode", "key-ordered");
+        }
+    }
+
+    @AfterEach
+    void clearChannels() {
+        connector.sink("outgoing-checked-orders").clear();
+    }
+
+    @Inject
+    @Any
+    InMemoryConnector connector;
+
+    @Inject
+    MeterRegistry registry;
+
+    @Inject
+    Config config;
+
+    @Inject
+    InventoryAvailabilityChecker checker;
+
+    @Inject
+    OrderRetryRouter retryRouter;
+
+    @Test
+    @DisplayName("Orders checked concurrently should still yield one approval or denial per order")
+    void checksOrdersConcurrently() throws InterruptedException {
+
+        InMemorySource<Message<OrderSubmittedEvent>> submittedOrders = connector.source("incoming-orders");
+        InMemorySink<Event> checkedOrders = connector.sink("outgoing-checked-orders");
+
+        List<PlaceOrder> orders = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            orders.add(i % 2 == 0 ? TestDataGenerator.randomOrderGen.sample() : TestDataGenerator.randomUnavailableOrderGen.sample());
+        }
+
+        CountDownLatch checked = new CountDownLatch(orders.size());
+        orders.forEach(order -> submittedOrders.send(messageOf(order).withAck(() -> {
+            checked.countDown();
+            return CompletableFuture.completedFuture(null);
+        })));
+
+        assertThat(checked.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(checkedOrders.received()).hasSize(50);
+        assertThat(checkedOrders.received().stream().filter(message -> message.getPayload() instanceof OrderApprovedEvent)).hasSize(25);
+        assertThat(checkedOrders.received().stream().filter(message -> message.getPayload() instanceof OrderDeniedEvent)).hasSize(25);
+        assertThat(registry.get("pipeline.concurrency.limit").tag("stage", "inventory-check").gauge().value()).isBetween(1.0, 16.0);
+        assertThat(registry.get("pipeline.concurrency.in-flight").tag("stage", "inventory-check").gauge().value()).isZero();
+    }
+
+    @Test
+    @DisplayName("An order that could neither be checked nor forwarded should be nacked and skipped, without holding up the orders behind it")
+    void unforwardableOrderIsSkipped() throws InterruptedException {
+
+        PlaceOrder failing = TestDataGenerator.randomOrderGen.sample();
+        PlaceOrder healthy = TestDataGenerator.randomOrderGen.sample();
+        InventoryAvailabilityChecker delegate = ClientProxy.unwrap(checker);
+        QuarkusMock.installMockForType(new InventoryAvailabilityChecker() {
+            @Override
+            public boolean allLineItemsAvailable(final OrderSubmittedEvent order, final String traceId) {
+                if (order.getOrderId().equals(failing.orderId())) throw new IllegalStateException("inventory unavailable");
+                return delegate.allLineItemsAvailable(order, traceId);
+            }
+        }, InventoryAvailabilityChecker.class);
+        QuarkusMock.installMockForType(new OrderRetryRouter() {
+            @Override
+            public Uni<Void> reroute(final Message<OrderSubmittedEvent> message, final Throwable failure) {
+                return Uni.createFrom().completionStage(message.nack(new IllegalStateException("retry topic unavailable", failure)));
+            }
+        }, OrderRetryRouter.class);
+
+        InMemorySource<Message<OrderSubmittedEvent>> submittedOrders = connector.source("incoming-orders");
+        InMemorySink<Event> checkedOrders = connector.sink("outgoing-checked-orders");
+        CountDownLatch nacked = new CountDownLatch(1);
+        CountDownLatch checked = new CountDownLatch(1);
+
+        submittedOrders.send(messageOf(failing).withNack(failure -> {
+            nacked.countDown();
+            return CompletableFuture.completedFuture(null);
+        }));
+        submittedOrders.send(messageOf(healthy).withAck(() -> {
+            checked.countDown();
+            return CompletableFuture.completedFuture(null);
+        }));
+
+        assertThat(nacked.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(checked.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(checkedOrders.received()).extracting(message -> ((OrderApprovedEvent) message.getPayload()).getOrderId()).containsExactly(healthy.orderId());
+        assertThat(config.getValue("mp.messaging.incoming.incoming-orders.failure-strategy", String.class)).isEqualTo("ignore");
+    }
+
+    @Test
+    @DisplayName("Orders with the same key should be checked in the order they arrived, even while the limit is exhausted")
+    void keepsOrderPerKeyUnderContention() throws InterruptedException {
+
+        PlaceOrder repeated = TestDataGenerator.randomOrderGen.sample();
+        List<Integer> checkedQuantities = new CopyOnWriteArrayList<>();
+        InventoryAvailabilityChecker delegate = ClientProxy.unwrap(checker);
+        QuarkusMock.installMockForType(new InventoryAvailabilityChecker() {
+            @Override
+            public boolean allLineItemsAvailable(final OrderSubmittedEvent order, final String traceId) {
+                if (order.getOrderId().equals(repeated.orderId())) {
+                    checkedQuantities.add(order.getQuantity());
+                } else {
+                    // slower than inventory.concurrency-limit.latency-threshold, so the limit shrinks and orders wait for permits
+                    LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(60));
+                }
+                return delegate.allLineItemsAvailable(order, traceId);
+            }
+        }, InventoryAvailabilityChecker.class);
+
+        InMemorySource<Message<OrderSubmittedEvent>> submittedOrders = connector.source("incoming-orders");
+        CountDownLatch checked = new CountDownLatch(60);
+        for (int i = 0; i < 30; i++) {
+            PlaceOrder other = TestDataGenerator.randomOrderGen.sample();
+            OrderSubmittedEvent sameKey = new OrderSubmittedEvent(repeated.orderId(), repeated.customerId(), repeated.productId(), i + 1);
+            for (Message<OrderSubmittedEvent> message : List.of(messageOf(other), Message.of(sameKey, Metadata.of(new OrderMetadata(repeated.traceId()))))) {
+                submittedOrders.send(message.withAck(() -> {
+                    checked.countDown();
+                    return CompletableFuture.completedFuture(null);
+                }));
+            }
+        }
+
+        assertThat(checked.await(10, TimeUnit.SECONDS)).isTrue();
+        assertThat(checkedQuantities).hasSize(30).isSorted();
+        assertThat(registry.get("pipeline.concurrency.waits").tag("stage", "inventory-check").functionCounter().count()).isPositive();
+    }
+
+    private static Message<OrderSubmittedEvent> messageOf(final PlaceOrder order) {
+        return Message.of(toOrderSubmittedEvent(order)).withMetadata(Metadata.of(new OrderMetadata(order.traceId())));
+    }
+}
@@ -2,6 +2,7 @@ package workshop.quarkus.reactive;
 
 import io.quarkus.test.common.QuarkusTestResource;
 import io.quarkus.test.junit.QuarkusTest;
+import io.smallrye.mutiny.helpers.test.AssertSubscriber;
 import io.smallrye.reactive.messaging.memory.InMemoryConnector;
 import io.smallrye.reactive.messaging.memory.InMemorySource;
 import jakarta.enterprise.inject.Any;
@@ -24,6 +25,12 @@ public class NotificationServiceTest {
     @Inject
     NotificationService notificationService;
 
+    @Inject
+    DeduplicationDecorator deduplication;
+
+    @Inject
+    OrderStatusBroadcaster broadcaster;
+
     @Test
     @DisplayName("Task 3.3: Signal an OrderApprovedEvent to the user")
     void test_3_3_available() {
@@ -51,4 +58,36 @@ public class NotificationServiceTest {
 
         assertThat(notificationService.isDenied(order.orderId())).isTrue();
     }
+
+    @Test
+    @DisplayName("A redelivered checked order should be suppressed before it reaches the notification service")
+    void redeliveredEventIsSuppressed() {
+
+        InMemorySource<Event> checkedOrders = connector.source("incoming-checked-orders");
+
+        PlaceOrder order = TestDataGenerator.randomOrderGen.sample();
+        Event event = TestDataGenerator.toOrderApprovedEvent(order);
+        long suppressedBefore = deduplication.suppressed("incoming-checked-orders");
+
+        checkedOrders.send(event);
+        checkedOrders.send(event);
+
+        assertThat(notificationService.isApproved(order.orderId())).isTrue();
+        assertThat(deduplication.suppressed("incoming-checked-orders")).isEqualTo(suppressedBefore + 1);
+    }
+
+    @Test
+    @DisplayName("Subscribers to a customer should be notified about status changes of its orders")
+    void statusChangesAreStreamed() {
+
+        InMemorySource<Event> checkedOrders = connector.source("incoming-checked-orders");
+        PlaceOrder order = TestDataGenerator.randomOrderGen.sample();
+        AssertSubscriber<OrderStatusUpdate> subscriber = broadcaster.subscribeToCustomer(order.customerId())
+                .subscribe().withSubscriber(AssertSubscriber.create(Long.MAX_VALUE));
+
+        checkedOrders.send(TestDataGenerator.toOrderApprovedEvent(order));
+
+        assertThat(subscriber.getItems()).containsExactly(new OrderStatusUpdate(order.orderId(), order.customerId(), OrderStatus.APPROVED));
+        subscriber.cancel();
+    }
 }
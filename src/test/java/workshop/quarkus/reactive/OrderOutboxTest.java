@@ -0,0 +1,78 @@
+package workshop.quarkus.reactive;
+
+import io.quarkus.test.common.QuarkusTestResource;
+import io.quarkus.test.junit.QuarkusTest;
+import io.quarkus.test.junit.QuarkusTestProfile;
+import io.quarkus.test.junit.TestProfile;
+import io.smallrye.reactive.messaging.memory.InMemoryConnector;
+import io.smallrye.reactive.messaging.memory.InMemorySink;
+import jakarta.enterprise.inject.Any;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.reactive.messaging.Message;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import workshop.quarkus.reactive.command.PlaceOrder;
+import workshop.quarkus.reactive.event.OrderSubmittedEvent;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@QuarkusTest
+@TestProfile(OrderOutboxTest.OutboxEnabled.class)
+@QuarkusTestResource(value = InMemoryChannelsTestResource.class)
+public class OrderOutboxTest {
+
+    public static class OutboxEnabled implements QuarkusTestProfile {
+
+        @Override
+        public Map<String, String> getConfigOverrides() {
+            return Map.of(
+                    "order.outbox.enabled", "true",
+                    "order.outbox.directory", "target/outbox-" + System.nanoTime(),
+                    "order.outbox.fsync", "always");
+        }
+    }
+
+    @AfterEach
+    void clearChannels() {
+        connector.sink("outgoing-orders").clear();
+    }
+
+    @Inject
+    @Any
+    InMemoryConnector connector;
+
+    @Inject
+    OrderService orderService;
+
+    @Inject
+    OrderOutbox outbox;
+
+    @Test
+    @DisplayName("Orders submitted through the outbox should be relayed to outgoing-orders along with their trace IDs")
+    void ordersAreRelayed() throws InterruptedException {
+        InMemorySink<OrderSubmittedEvent> orders = connector.sink("outgoing-orders");
+
+        List<PlaceOrder> placedOrders = Stream.generate(TestDataGenerator.randomOrderGen::sample).limit(200).toList();
+        placedOrders.forEach(order -> orderService.submitOrder(order).await().atMost(Duration.ofSeconds(5)));
+
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (orders.received().size() < placedOrders.size() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+
+        assertThat(orders.received()).extracting(Message::getPayload).extracting(OrderSubmittedEvent::getOrderId)
+                .containsExactlyElementsOf(placedOrders.stream().map(PlaceOrder::orderId).toList());
+        assertThat(orders.received()).extracting(message -> message.getMetadata(OrderMetadata.class).map(OrderMetadata::traceId).orElse(null))
+                .containsExactlyElementsOf(placedOrders.stream().map(PlaceOrder::traceId).toList());
+        while (outbox.pendingEntries() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(outbox.pendingEntries()).isZero();
+    }
+}
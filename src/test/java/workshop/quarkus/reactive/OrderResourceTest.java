@@ -0,0 +1,84 @@
+package workshop.quarkus.reactive;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.quarkus.test.common.QuarkusTestResource;
+import io.quarkus.test.common.http.TestHTTPResource;
+import io.quarkus.test.junit.QuarkusTest;
+import io.smallrye.reactive.messaging.memory.InMemoryConnector;
+import io.smallrye.reactive.messaging.memory.InMemorySink;
+import jakarta.enterprise.inject.Any;
+import jakarta.inject.Inject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import workshop.quarkus.reactive.command.PlaceOrder;
+import workshop.quarkus.reactive.event.OrderSubmittedEvent;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@QuarkusTest
+@QuarkusTestResource(value = InMemoryChannelsTestResource.class)
+public class OrderResourceTest {
+
+    @Inject
+    @Any
+    InMemoryConnector connector;
+
+    @Inject
+    ObjectMapper mapper;
+
+    @TestHTTPResource("/orders/bulk")
+    URI bulk;
+
+    private final HttpClient client = HttpClient.newHttpClient();
+
+    @AfterEach
+    void clearChannels() {
+        connector.sink("outgoing-orders").clear();
+    }
+
+    @Test
+    @DisplayName("A bulk submission over HTTP should stream back one result per newline-delimited order")
+    void submitsNewlineDelimitedOrders() throws Exception {
+        InMemorySink<OrderSubmittedEvent> orders = connector.sink("outgoing-orders");
+        List<PlaceOrder> placedOrders = Stream.generate(TestDataGenerator.randomOrderGen::sample).limit(50).toList();
+        StringBuilder body = new StringBuilder();
+        for (PlaceOrder order : placedOrders) {
+            body.append(mapper.writeValueAsString(order)).append('\n');
+        }
+
+        HttpResponse<Stream<String>> response = client.send(HttpRequest.newBuilder(bulk)
+                        .header("Content-Type", "application/x-ndjson")
+                        .header("Accept", "application/x-ndjson")
+                        .timeout(Duration.ofSeconds(10))
+                        .POST(HttpRequest.BodyPublishers.ofString(body.toString()))
+                        .build(),
+                HttpResponse.BodyHandlers.ofLines());
+
+        List<OrderSubmissionResult> results = new ArrayList<>();
+        response.body().filter(line -> !line.isBlank()).forEach(line -> results.add(readResult(line)));
+        assertThat(response.statusCode()).isEqualTo(200);
+        assertThat(response.headers().firstValue("Content-Type")).hasValueSatisfying(type -> assertThat(type).startsWith("application/x-ndjson"));
+        assertThat(results).hasSize(50).allMatch(OrderSubmissionResult::accepted);
+        assertThat(results).extracting(OrderSubmissionResult::orderId)
+                .containsExactlyInAnyOrderElementsOf(placedOrders.stream().map(PlaceOrder::orderId).toList());
+        assertThat(orders.received()).hasSize(50);
+    }
+
+    private OrderSubmissionResult readResult(final String line) {
+        try {
+            return mapper.readValue(line, OrderSubmissionResult.class);
+        } catch (Exception e) {
+            throw new IllegalStateException("Unexpected result line: " + line, e);
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package workshop.quarkus.reactive;
+
+import io.quarkus.arc.ClientProxy;
+import io.quarkus.test.common.QuarkusTestResource;
+import io.quarkus.test.junit.QuarkusMock;
+import io.quarkus.test.junit.QuarkusTest;
+import io.smallrye.reactive.messaging.kafka.api.OutgoingKafkaRecordMetadata;
+import io.smallrye.reactive.messaging.memory.InMemoryConnector;
+import io.smallrye.reactive.messaging.memory.InMemorySink;
+import io.smallrye.reactive.messaging.memory.InMemorySource;
+import jakarta.enterprise.inject.Any;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.reactive.messaging.Message;
+import org.eclipse.microprofile.reactive.messaging.Metadata;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import workshop.quarkus.reactive.command.PlaceOrder;
+import workshop.quarkus.reactive.event.Event;
+import workshop.quarkus.reactive.event.EventHeaders;
+import workshop.quarkus.reactive.event.JsonEventCodec;
+import workshop.quarkus.reactive.event.OrderApprovedEvent;
+import workshop.quarkus.reactive.event.OrderSubmittedEvent;
+
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@QuarkusTest
+@QuarkusTestResource(value = InMemoryChannelsTestResource.class)
+public class OrderRetryTest {
+
+    @Inject
+    @Any
+    InMemoryConnector connector;
+
+    @Inject
+    InventoryAvailabilityChecker checker;
+
+    private final Map<String, AtomicInteger> remainingFailures = new ConcurrentHashMap<>();
+
+    @BeforeEach
+    void installFailingChecker() {
+        final InventoryAvailabilityChecker delegate = ClientProxy.unwrap(checker);
+        QuarkusMock.installMockForType(new InventoryAvailabilityChecker() {
+            @Override
+            public boolean allLineItemsAvailable(final OrderSubmittedEvent order, final String traceId) {
+                final AtomicInteger failures = remainingFailures.get(order.getOrderId());
+                if (failures != null && failures.getAndDecrement() > 0) throw new IllegalStateException("inventory unavailable");
+                return delegate.allLineItemsAvailable(order, traceId);
+            }
+        }, InventoryAvailabilityChecker.class);
+    }
+
+    @AfterEach
+    void clearChannels() {
+        connector.sink("outgoing-checked-orders").clear();
+        connector.sink("outgoing-order-retries").clear();
+        connector.sink("outgoing-dead-letters").clear();
+    }
+
+    @Test
+    @DisplayName("A failing order should be retried from the delay topics while the orders behind it keep flowing")
+    void failingOrderIsRetriedFromDelayTopics() throws Exception {
+
+        InMemorySource<Message<OrderSubmittedEvent>> orders = connector.source("incoming-orders");
+        InMemorySink<Event> checkedOrders = connector.sink("outgoing-checked-orders");
+        InMemorySink<OrderSubmittedEvent> retries = connector.sink("outgoing-order-retries");
+        PlaceOrder failing = TestDataGenerator.randomOrderGen.sample();
+        PlaceOrder healthy = TestDataGenerator.randomOrderGen.sample();
+        remainingFailures.put(failing.orderId(), new AtomicInteger(2));
+
+        orders.send(messageOf(failing));
+        orders.send(messageOf(healthy));
+
+        assertThat(checkedOrders.received()).extracting(this::orderIdOf).containsExactly(healthy.orderId());
+        assertThat(retries.received()).hasSize(1);
+        assertThat(topicOf(retries.received().get(0))).isEqualTo("orders-retry-1");
+        assertThat(retries.received().get(0).getMetadata(RetryMetadata.class)).map(RetryMetadata::failedAttempts).contains(1);
+
+        awaitAcknowledgement(relay(retries.received().get(0)));
+
+        assertThat(retries.received()).hasSize(2);
+        assertThat(topicOf(retries.received().get(1))).isEqualTo("orders-retry-2");
+
+        awaitAcknowledgement(relay(retries.received().get(1)));
+
+        assertThat(checkedOrders.received()).hasSize(2);
+
+        assertThat(checkedOrders.received().get(1).getPayload()).isInstanceOf(OrderApprovedEvent.class);
+        assertThat(orderIdOf(checkedOrders.received().get(1))).isEqualTo(failing.orderId());
+        assertThat(checkedOrders.received().get(1).getMetadata(OrderMetadata.class)).map(OrderMetadata::traceId).contains(failing.traceId());
+    }
+
+    @Test
+    @DisplayName("An order that keeps failing should end up in the dead-letter topic along with the cause of its failure")
+    void exhaustedOrderIsDeadLettered() throws Exception {
+
+        InMemorySource<Message<OrderSubmittedEvent>> orders = connector.source("incoming-orders");
+        InMemorySink<OrderSubmittedEvent> retries = connector.sink("outgoing-order-retries");
+        InMemorySink<byte[]> deadLetters = connector.sink("outgoing-dead-letters");
+        PlaceOrder failing = TestDataGenerator.randomOrderGen.sample();
+        remainingFailures.put(failing.orderId(), new AtomicInteger(Integer.MAX_VALUE));
+
+        orders.send(messageOf(failing));
+        for (int attempt = 1; attempt < 4; attempt++) {
+            assertThat(retries.received()).hasSize(attempt);
+            awaitAcknowledgement(relay(retries.received().get(attempt - 1)));
+        }
+
+        assertThat(deadLetters.received()).hasSize(1);
+        Message<byte[]> deadLetter = deadLetters.received().get(0);
+        OutgoingKafkaRecordMetadata<?> metadata = deadLetter.getMetadata(OutgoingKafkaRecordMetadata.class).orElseThrow();
+        assertThat(retries.received()).hasSize(3).extracting(OrderRetryTest::topicOf)
+                .containsExactly("orders-retry-1", "orders-retry-2", "orders-retry-2");
+        assertThat(((OrderSubmittedEvent) JsonEventCodec.decode(deadLetter.getPayload())).getOrderId()).isEqualTo(failing.orderId());
+        assertThat(EventHeaders.lastValue(metadata.getHeaders(), EventHeaders.FAILED_ATTEMPTS)).isEqualTo("4");
+        assertThat(EventHeaders.lastValue(metadata.getHeaders(), EventHeaders.FAILURE_REASON)).isEqualTo("inventory unavailable");
+        assertThat(EventHeaders.lastValue(metadata.getHeaders(), EventHeaders.FAILURE_CAUSE)).isEqualTo(IllegalStateException.class.getName());
+    }
+
+    @Test
+    @DisplayName("The retry consumer should subscribe to every tier and let records wait longer than twice the longest delay")
+    void retryConsumerOutlastsTheDelays() throws Exception {
+
+        Properties properties = new Properties();
+        try (InputStream in = OrderRetryTest.class.getClassLoader().getResourceAsStream("application.properties")) {
+            properties.load(in);
+        }
+        List<Duration> delays = Stream.of(properties.getProperty("order.retry.delays").split(",")).map(Duration::parse).toList();
+        String prefix = properties.getProperty("order.retry.topic-prefix");
+        Pattern tiers = Pattern.compile(properties.getProperty("mp.messaging.incoming.incoming-order-retries.topic").replace("${order.retry.topic-prefix}", prefix));
+        long maxRecordAge = Long.parseLong(properties.getProperty("mp.messaging.incoming.incoming-order-retries.throttled.unprocessed-record-max-age.ms"));
+
+        assertThat(properties.getProperty("mp.messaging.incoming.incoming-order-retries.pattern")).isEqualTo("true");
+        assertThat(IntStream.rangeClosed(1, delays.size() + 1).mapToObj(tier -> prefix + tier)).allMatch(topic -> tiers.matcher(topic).matches());
+        assertThat(tiers.matcher("orders-dead-letter").matches()).isFalse();
+        assertThat(maxRecordAge).isGreaterThan(OrderRetryService.requiredMaxRecordAgeMillis(delays));
+    }
+
+    /*
+     * a retried order is only acknowledged once its result or its next forward has been received by a sink
+     */
+    private CountDownLatch relay(final Message<OrderSubmittedEvent> retry) {
+        InMemorySource<Message<OrderSubmittedEvent>> retries = connector.source("incoming-order-retries");
+        CountDownLatch acknowledged = new CountDownLatch(1);
+        retries.send(Message.of(retry.getPayload(), Metadata.from(retry.getMetadata()), () -> {
+            acknowledged.countDown();
+            return CompletableFuture.completedFuture(null);
+        }));
+        return acknowledged;
+    }
+
+    private static Message<OrderSubmittedEvent> messageOf(final PlaceOrder order) {
+        return Message.of(TestDataGenerator.toOrderSubmittedEvent(order), Metadata.of(new OrderMetadata(order.traceId())));
+    }
+
+    private String orderIdOf(final Message<Event> message) {
+        return message.getPayload() instanceof OrderApprovedEvent approved ? approved.getOrderId() : null;
+    }
+
+    private static String topicOf(final Message<?> message) {
+        return message.getMetadata(OutgoingKafkaRecordMetadata.class).map(OutgoingKafkaRecordMetadata::getTopic).orElse(null);
+    }
+
+    private static void awaitAcknowledgement(final CountDownLatch acknowledged) throws InterruptedException {
+        assertThat(acknowledged.await(5, TimeUnit.SECONDS)).isTrue();
+    }
+}
@@ -2,6 +2,8 @@ package workshop.quarkus.reactive;
 
 import io.quarkus.test.common.QuarkusTestResource;
 import io.quarkus.test.junit.QuarkusTest;
+import io.smallrye.mutiny.Multi;
+import io.smallrye.reactive.messaging.kafka.api.OutgoingKafkaRecordMetadata;
 import io.smallrye.reactive.messaging.memory.InMemoryConnector;
 import io.smallrye.reactive.messaging.memory.InMemorySink;
 import jakarta.enterprise.inject.Any;
@@ -11,11 +13,16 @@ import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import workshop.quarkus.reactive.command.PlaceOrder;
+import workshop.quarkus.reactive.event.EventHeaders;
 import workshop.quarkus.reactive.event.OrderSubmittedEvent;
 
+import java.time.Duration;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 @QuarkusTest
 @QuarkusTestResource(value = InMemoryChannelsTestResource.class)
@@ -66,4 +73,53 @@ public class OrderServiceTest {
                 .flatMap(meta -> meta.get(OrderMetadata.class).stream())
                 .allMatch(meta -> meta.traceId() != null)).isTrue();
     }
+
+    @Test
+    @DisplayName("Submitting a stream of orders should publish every order and report a result for each of them")
+    void submitOrders() {
+        InMemorySink<OrderSubmittedEvent> orders = connector.sink("outgoing-orders");
+
+        List<PlaceOrder> placedOrders = Stream.generate(TestDataGenerator.randomOrderGen::sample).limit(500).toList();
+
+        List<OrderSubmissionResult> results = orderService.submitOrders(Multi.createFrom().iterable(placedOrders))
+                .collect().asList()
+                .await().atMost(Duration.ofSeconds(10));
+
+        assertThat(results).hasSize(500).allMatch(OrderSubmissionResult::accepted);
+        assertThat(results).extracting(OrderSubmissionResult::orderId)
+                .containsExactlyInAnyOrderElementsOf(placedOrders.stream().map(PlaceOrder::orderId).toList());
+        assertThat(orders.received()).hasSize(500);
+    }
+
+    @Test
+    @DisplayName("The trace ID of an OrderSubmittedEvent should be written into the headers of its Kafka record")
+    void traceIdTravelsAsHeader() {
+        InMemorySink<OrderSubmittedEvent> orders = connector.sink("outgoing-orders");
+
+        PlaceOrder order = TestDataGenerator.randomOrderGen.sample();
+
+        orderService.submitOrder(order).subscribe().asCompletionStage().join();
+
+        Message<OrderSubmittedEvent> message = orders.received().get(0);
+        String traceId = message.getMetadata(OrderMetadata.class).map(OrderMetadata::traceId).orElseThrow();
+
+        assertThat(message.getMetadata(OutgoingKafkaRecordMetadata.class))
+                .map(metadata -> EventHeaders.lastValue(metadata.getHeaders(), EventHeaders.TRACE_ID))
+                .contains(traceId);
+    }
+
+    @Test
+    @DisplayName("Priority lanes should refuse to start unless the prioritized consumption mode consumes them")
+    void priorityLanesRequirePrioritizedConsumption() {
+        OrderService service = new OrderService();
+        service.priorityLanes = true;
+        service.consumptionMode = "single";
+
+        assertThatThrownBy(() -> service.onStart(null))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("inventory.consumption-mode=prioritized");
+
+        service.consumptionMode = OrderService.PRIORITIZED;
+        service.onStart(null);
+    }
 }
@@ -0,0 +1,60 @@
+package workshop.quarkus.reactive;
+
+import io.smallrye.mutiny.helpers.test.AssertSubscriber;
+import io.smallrye.mutiny.subscription.BackPressureFailure;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class OrderStatusBroadcasterTest {
+
+    private final OrderStatusBroadcaster broadcaster = new OrderStatusBroadcaster();
+
+    @Test
+    @DisplayName("A subscriber to an order should receive the current status first and only the latest of the pending updates")
+    void orderUpdatesAreConflated() {
+
+        AssertSubscriber<OrderStatusUpdate> subscriber = broadcaster.subscribeToOrder("o-1", () -> OrderStatus.APPROVED)
+                .subscribe().withSubscriber(AssertSubscriber.create(1));
+
+        broadcaster.publish("o-1", () -> "c-1", OrderStatus.DENIED);
+        broadcaster.publish("o-1", () -> "c-1", OrderStatus.APPROVED);
+        broadcaster.publish("o-2", () -> "c-1", OrderStatus.DENIED);
+        subscriber.request(5);
+
+        assertThat(subscriber.getItems()).extracting(OrderStatusUpdate::status).containsExactly(OrderStatus.APPROVED, OrderStatus.APPROVED);
+        subscriber.cancel();
+        assertThat(broadcaster.subscriberCount()).isZero();
+    }
+
+    @Test
+    @DisplayName("A slow subscriber to a customer should be dropped instead of holding back the publisher")
+    void slowCustomerSubscriberIsDropped() {
+
+        broadcaster.bufferSize = 4;
+        AssertSubscriber<OrderStatusUpdate> slow = broadcaster.subscribeToCustomer("c-1")
+                .subscribe().withSubscriber(AssertSubscriber.create(0));
+        AssertSubscriber<OrderStatusUpdate> fast = broadcaster.subscribeToCustomer("c-1")
+                .subscribe().withSubscriber(AssertSubscriber.create(Long.MAX_VALUE));
+
+        for (int i = 0; i < 10; i++) {
+            broadcaster.publish("o-" + i, () -> "c-1", OrderStatus.APPROVED);
+        }
+
+        slow.assertFailedWith(BackPressureFailure.class);
+        assertThat(fast.getItems()).hasSize(10);
+        assertThat(broadcaster.subscriberCount()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("The customer ID should not be resolved if nobody subscribed to a customer")
+    void customerIdIsResolvedOnDemand() {
+
+        broadcaster.subscribeToOrder("o-1", () -> null).subscribe().withSubscriber(AssertSubscriber.create(1));
+
+        broadcaster.publish("o-1", () -> {
+            throw new AssertionError("The customer ID must not be resolved.");
+        }, OrderStatus.APPROVED);
+    }
+}
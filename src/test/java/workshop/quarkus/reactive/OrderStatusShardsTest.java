@@ -0,0 +1,434 @@
+package workshop.quarkus.reactive;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.quarkus.test.common.QuarkusTestResource;
+import io.quarkus.test.junit.QuarkusTest;
+import io.smallrye.common.annotation.Identifier;
+import io.smallrye.reactive.messaging.kafka.api.IncomingKafkaRecordMetadata;
+import io.smallrye.reactive.messaging.memory.InMemoryConnector;
+import io.smallrye.reactive.messaging.memory.InMemorySource;
+import jakarta.enterprise.inject.Any;
+import jakarta.inject.Inject;
+import org.apache.kafka.clients.consumer.ConsumerGroupMetadata;
+import org.apache.kafka.clients.consumer.ConsumerPartitionAssignor;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.MockConsumer;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.clients.consumer.OffsetResetStrategy;
+import org.apache.kafka.common.Cluster;
+import org.apache.kafka.common.Node;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+import org.eclipse.microprofile.reactive.messaging.Message;
+import org.eclipse.microprofile.reactive.messaging.Metadata;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import workshop.quarkus.reactive.command.PlaceOrder;
+import workshop.quarkus.reactive.event.Event;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs the application as one node of a cluster next to in-process peers. Every node positions its
+ * consumer with a {@link StatusSnapshotRebalanceListener} on a {@link MockConsumer} and answers status
+ * queries with an {@link OrderStatusResource}; the application does so over its real HTTP endpoint.
+ */
+@QuarkusTest
+@QuarkusTestResource(value = InMemoryChannelsTestResource.class)
+public class OrderStatusShardsTest {
+
+    private static final String TOPIC = "checked-orders";
+
+    /* shared by the tests, as the application keeps the offsets it processed across them */
+    private static final StandInBroker BROKER = new StandInBroker(6);
+
+    @Inject
+    @Any
+    InMemoryConnector connector;
+
+    @Inject
+    OrderStatusShards shards;
+
+    @Inject
+    @Identifier("notification-status-snapshot")
+    StatusSnapshotRebalanceListener rebalanceListener;
+
+    @Inject
+    PipelineMetrics metrics;
+
+    @Inject
+    OrderStatusBroadcaster broadcaster;
+
+    private final HttpClient client = HttpClient.newHttpClient();
+
+    private final List<StatusNode> nodes = new ArrayList<>();
+
+    @AfterEach
+    void stopNodes() {
+        nodes.forEach(StatusNode::stop);
+        shards.directory().update(Map.of(), Map.of(), Set.of());
+    }
+
+    @Test
+    @DisplayName("Every node should answer status queries for all orders by forwarding them to the owner of their partition")
+    void queriesAreForwardedToTheOwner() throws IOException {
+
+        ApplicationNode application = join(new ApplicationNode());
+        PeerNode first = join(new PeerNode());
+        PeerNode second = join(new PeerNode());
+        BROKER.rebalance(nodes);
+        Map<String, OrderStatus> statuses = publishOrders(60);
+
+        for (StatusNode node : nodes) {
+            assertThat(node.shards.directory().owners()).isEqualTo(application.shards.directory().owners());
+            statuses.forEach((orderId, status) -> assertThat(node.query(orderId, null)).isEqualTo(status));
+        }
+        statuses.keySet().forEach(orderId -> assertThat(nodes).filteredOn(node -> node.localStatus(orderId) != null).hasSize(1));
+        assertThat(first.answeredForwards + second.answeredForwards).isPositive();
+        assertThat(application.query(UUID.randomUUID().toString(), null)).isNull();
+
+        String orderId = orderOwnedBy(first);
+        BROKER.publish(orderId, OrderStatus.APPROVED, nodes);
+        assertThat(application.query(orderId, "http://client.example")).isEqualTo(OrderStatus.APPROVED);
+        assertThat(application.query(orderId, second.url)).isNull();
+    }
+
+    @Test
+    @DisplayName("A node should take over the status of the orders in the partitions handed over to it, and resume where it left off when they are handed back")
+    void ownershipIsHandedOverOnRebalance() throws IOException {
+
+        ApplicationNode application = join(new ApplicationNode());
+        BROKER.rebalance(nodes);
+        Map<String, OrderStatus> statuses = publishOrders(60);
+
+        PeerNode peer = join(new PeerNode());
+        BROKER.rebalance(nodes);
+
+        assertThat(peer.assigned).isNotEmpty().allMatch(partition -> peer.shards.directory().wasHandedOver(partition));
+        assertThat(peer.positionsOnAssignment).allSatisfy((partition, position) -> assertThat(position).isZero());
+        assertThat(application.assigned).noneMatch(partition -> application.shards.directory().wasHandedOver(partition));
+        assertThat(application.positionsOnAssignment).allSatisfy((partition, position) -> assertThat(position).isEqualTo(BROKER.endOffset(partition)));
+        for (StatusNode node : nodes) {
+            statuses.forEach((orderId, status) -> assertThat(node.query(orderId, null)).isEqualTo(status));
+        }
+
+        String orderId = orderOwnedBy(peer);
+        TopicPartition partition = new TopicPartition(TOPIC, ShardDirectory.partitionOf(orderId, BROKER.partitions));
+        long handedOverAt = BROKER.endOffset(partition);
+        BROKER.publish(orderId, OrderStatus.DENIED, nodes);
+        assertThat(application.query(orderId, null)).isEqualTo(OrderStatus.DENIED);
+        assertThat(application.localStatus(orderId)).isNull();
+
+        nodes.remove(peer);
+        peer.stop();
+        BROKER.rebalance(nodes);
+
+        assertThat(application.shards.directory().wasHandedOver(partition)).isTrue();
+        assertThat(application.positionsOnAssignment.get(partition)).isEqualTo(handedOverAt);
+        assertThat(application.localStatus(orderId)).isEqualTo(OrderStatus.DENIED);
+    }
+
+    @Test
+    @DisplayName("A subscription to the status stream of an order should be redirected to its owner, which serves it locally")
+    void streamsAreRedirectedToTheOwner() throws Exception {
+
+        ApplicationNode application = join(new ApplicationNode());
+        PeerNode peer = join(new PeerNode());
+        BROKER.rebalance(nodes);
+        String orderId = orderOwnedBy(peer);
+
+        HttpResponse<Void> response = client.send(HttpRequest.newBuilder(URI.create(application.url + "/status/orders/" + orderId))
+                .header("Accept", "text/event-stream")
+                .GET()
+                .build(), HttpResponse.BodyHandlers.discarding());
+
+        assertThat(response.statusCode()).isEqualTo(307);
+        assertThat(response.headers().firstValue("Location")).contains(peer.url + "/status/orders/" + orderId
+                + "?" + OrderStatusShards.REDIRECTED_BY + "=" + URLEncoder.encode(application.url, StandardCharsets.UTF_8));
+        assertThat(peer.shards.streamLocationOf(orderId, null)).isEmpty();
+        assertThat(peer.shards.streamLocationOf(orderOwnedBy(application), application.url)).isEmpty();
+        assertThat(peer.shards.streamLocationOf(orderOwnedBy(application), null)).isPresent();
+    }
+
+    private <N extends StatusNode> N join(final N node) {
+        nodes.add(node);
+        return node;
+    }
+
+    private Map<String, OrderStatus> publishOrders(final int orders) {
+        final Map<String, OrderStatus> statuses = new LinkedHashMap<>();
+        for (int i = 0; i < orders; i++) {
+            final String orderId = UUID.randomUUID().toString();
+            final OrderStatus status = i % 3 == 0 ? OrderStatus.DENIED : OrderStatus.APPROVED;
+            BROKER.publish(orderId, status, nodes);
+            statuses.put(orderId, status);
+        }
+        return statuses;
+    }
+
+    private static String orderOwnedBy(final StatusNode node) {
+        while (true) {
+            final String orderId = UUID.randomUUID().toString();
+            if (node.assigned.contains(new TopicPartition(TOPIC, ShardDirectory.partitionOf(orderId, BROKER.partitions)))) return orderId;
+        }
+    }
+
+    /**
+     * A node of the notification service: a consumer positioned by the rebalance listener of the node,
+     * a shard assignor and the shards the status queries of the node go through.
+     */
+    private abstract class StatusNode {
+
+        final String url;
+
+        final OrderStatusShardAssignor assignor = new OrderStatusShardAssignor();
+
+        final OrderStatusShards shards;
+
+        final StatusSnapshotRebalanceListener listener;
+
+        MockConsumer<String, Event> consumer;
+
+        Set<TopicPartition> assigned = Set.of();
+
+        Map<TopicPartition, Long> positionsOnAssignment = Map.of();
+
+        StatusNode(final String url, final OrderStatusShards shards, final StatusSnapshotRebalanceListener listener) {
+            this.url = url;
+            this.shards = shards;
+            this.listener = listener;
+            assignor.configure(Map.of(OrderStatusShardAssignor.NODE_URL_CONFIG, url));
+        }
+
+        abstract void deliver(Message<Event> record);
+
+        abstract OrderStatus localStatus(String orderId);
+
+        abstract OrderStatus query(String orderId, String forwardedBy);
+
+        void stop() {
+        }
+
+        /*
+         * positions a fresh consumer like Kafka does after a rebalance, with the committed offsets of the group at the end of the log
+         */
+        void onPartitionsAssigned(final Set<TopicPartition> partitions) {
+            consumer = new MockConsumer<>(OffsetResetStrategy.EARLIEST);
+            consumer.subscribe(List.of(TOPIC));
+            consumer.rebalance(partitions);
+            final Map<TopicPartition, Long> beginning = new HashMap<>();
+            final Map<TopicPartition, OffsetAndMetadata> committed = new HashMap<>();
+            for (TopicPartition partition : partitions) {
+                beginning.put(partition, 0L);
+                committed.put(partition, new OffsetAndMetadata(BROKER.endOffset(partition)));
+            }
+            consumer.updateBeginningOffsets(beginning);
+            consumer.commitSync(committed);
+            listener.onPartitionsAssigned(consumer, partitions);
+            assigned = partitions;
+            final Map<TopicPartition, Long> positions = new HashMap<>();
+            partitions.forEach(partition -> positions.put(partition, consumer.position(partition)));
+            positionsOnAssignment = positions;
+        }
+
+        void poll() {
+            for (TopicPartition partition : assigned) {
+                final List<Message<Event>> records = BROKER.log.get(partition);
+                for (long offset = consumer.position(partition); offset < records.size(); offset++) {
+                    deliver(records.get((int) offset));
+                }
+                consumer.seek(partition, records.size());
+            }
+        }
+    }
+
+    /**
+     * The application itself, reached over its HTTP endpoint. Queries that name the application as
+     * the forwarding node are answered from its own status store.
+     */
+    private class ApplicationNode extends StatusNode {
+
+        private final InMemorySource<Message<Event>> checkedOrders = connector.source("incoming-checked-orders");
+
+        ApplicationNode() {
+            super(OrderStatusShardsTest.this.shards.directory().nodeUrl(), OrderStatusShardsTest.this.shards, rebalanceListener);
+        }
+
+        @Override
+        void deliver(final Message<Event> record) {
+            checkedOrders.send(record);
+        }
+
+        @Override
+        OrderStatus localStatus(final String orderId) {
+            return query(orderId, url);
+        }
+
+        @Override
+        OrderStatus query(final String orderId, final String forwardedBy) {
+            final HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(url + "/status/orders/" + orderId + "/current")).GET();
+            if (forwardedBy != null) request.header(OrderStatusShards.FORWARDED_BY, forwardedBy);
+            try {
+                final HttpResponse<String> response = client.send(request.build(), HttpResponse.BodyHandlers.ofString());
+                if (response.statusCode() == 204) return null;
+                assertThat(response.statusCode()).isEqualTo(200);
+                return OrderStatus.valueOf(response.body().replace("\"", ""));
+            } catch (IOException e) {
+                throw new AssertionError(e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new AssertionError(e);
+            }
+        }
+    }
+
+    /**
+     * An in-process peer with a notification service, shards and a status resource of its own, served
+     * on an HTTP endpoint that only takes care of the transport.
+     */
+    private class PeerNode extends StatusNode {
+
+        final HttpServer server;
+
+        final NotificationService notificationService;
+
+        final OrderStatusResource resource = new OrderStatusResource();
+
+        int answeredForwards;
+
+        PeerNode() throws IOException {
+            this(HttpServer.create(new InetSocketAddress("localhost", 0), 0), "/" + UUID.randomUUID(), new NotificationService());
+        }
+
+        private PeerNode(final HttpServer server, final String context, final NotificationService notificationService) {
+            super("http://localhost:" + server.getAddress().getPort() + context,
+                    new OrderStatusShards(ShardDirectory.forNode("http://localhost:" + server.getAddress().getPort() + context), TOPIC, notificationService::statusOf, Duration.ofSeconds(2)),
+                    new StatusSnapshotRebalanceListener());
+            this.server = server;
+            this.notificationService = notificationService;
+            notificationService.metrics = metrics;
+            notificationService.broadcaster = broadcaster;
+            notificationService.maxTrackedOrders = 1024;
+            notificationService.trackedOrderTtl = Duration.ofMinutes(5);
+            notificationService.createStatusStore();
+            listener.notificationService = notificationService;
+            listener.shards = shards;
+            resource.shards = shards;
+            server.createContext(context + "/status/orders/", this::answer);
+            server.start();
+        }
+
+        private void answer(final HttpExchange exchange) throws IOException {
+            final String path = exchange.getRequestURI().getPath();
+            final String orderId = path.substring(path.indexOf("/status/orders/") + "/status/orders/".length(), path.length() - "/current".length());
+            final String forwardedBy = exchange.getRequestHeaders().getFirst(OrderStatusShards.FORWARDED_BY);
+            if (forwardedBy != null) answeredForwards++;
+            final OrderStatus status = resource.currentStatus(orderId, forwardedBy).await().indefinitely();
+            if (status == null) {
+                exchange.sendResponseHeaders(204, -1);
+            } else {
+                final byte[] body = ("\"" + status + "\"").getBytes(StandardCharsets.UTF_8);
+                exchange.sendResponseHeaders(200, body.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(body);
+                }
+            }
+            exchange.close();
+        }
+
+        @Override
+        void deliver(final Message<Event> record) {
+            notificationService.notify(record).toCompletableFuture().join();
+        }
+
+        @Override
+        OrderStatus localStatus(final String orderId) {
+            return notificationService.statusOf(orderId);
+        }
+
+        @Override
+        OrderStatus query(final String orderId, final String forwardedBy) {
+            return resource.currentStatus(orderId, forwardedBy).await().indefinitely();
+        }
+
+        @Override
+        void stop() {
+            server.stop(0);
+        }
+    }
+
+    /**
+     * Stands in for the Kafka broker: keeps a log per partition, partitions published records by
+     * their key and plays the group coordinator, which lets the first member compute the assignment.
+     */
+    private static class StandInBroker {
+
+        final int partitions;
+
+        final Map<TopicPartition, List<Message<Event>>> log = new HashMap<>();
+
+        StandInBroker(final int partitions) {
+            this.partitions = partitions;
+            for (int partition = 0; partition < partitions; partition++) {
+                log.put(new TopicPartition(TOPIC, partition), new ArrayList<>());
+            }
+        }
+
+        long endOffset(final TopicPartition partition) {
+            return log.get(partition).size();
+        }
+
+        void publish(final String orderId, final OrderStatus status, final List<? extends StatusNode> members) {
+            final PlaceOrder order = new PlaceOrder(orderId, "customer", "product", 1, "X-" + orderId);
+            final Event event = status == OrderStatus.APPROVED ? TestDataGenerator.toOrderApprovedEvent(order) : TestDataGenerator.toOrderDeniedEvent(order);
+            final List<Message<Event>> records = log.get(new TopicPartition(TOPIC, ShardDirectory.partitionOf(orderId, partitions)));
+            final ConsumerRecord<String, Event> record = new ConsumerRecord<>(TOPIC, ShardDirectory.partitionOf(orderId, partitions), records.size(), orderId, event);
+            records.add(Message.of(event, Metadata.of(new IncomingKafkaRecordMetadata<>(record, "incoming-checked-orders"))));
+            members.forEach(StatusNode::poll);
+        }
+
+        void rebalance(final List<? extends StatusNode> members) {
+            final Map<String, ConsumerPartitionAssignor.Subscription> subscriptions = new HashMap<>();
+            for (StatusNode member : members) {
+                subscriptions.put(member.url, new ConsumerPartitionAssignor.Subscription(List.of(TOPIC), member.assignor.subscriptionUserData(Set.of(TOPIC))));
+            }
+            final ConsumerPartitionAssignor.GroupAssignment assignment = members.get(0).assignor
+                    .assign(cluster(), new ConsumerPartitionAssignor.GroupSubscription(subscriptions));
+            for (StatusNode member : members) {
+                final ConsumerPartitionAssignor.Assignment memberAssignment = assignment.groupAssignment().get(member.url);
+                member.assignor.onAssignment(memberAssignment, new ConsumerGroupMetadata("notification"));
+                member.onPartitionsAssigned(Set.copyOf(memberAssignment.partitions()));
+                member.poll();
+            }
+        }
+
+        private Cluster cluster() {
+            final Node node = new Node(0, "localhost", 9092);
+            final List<PartitionInfo> partitionInfos = new ArrayList<>();
+            for (int partition = 0; partition < partitions; partition++) {
+                partitionInfos.add(new PartitionInfo(TOPIC, partition, node, new Node[]{node}, new Node[]{node}));
+            }
+            return new Cluster("stand-in", List.of(node), partitionInfos, Set.of(), Set.of());
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package workshop.quarkus.reactive;
+
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class OrderStatusSnapshotTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    @DisplayName("A restored snapshot should hold the statuses and offsets of the original store")
+    void roundTrip() {
+        OrderStatusStore original = new OrderStatusStore(1_000, Duration.ofMinutes(1));
+        List<String> orderIds = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            String orderId = i % 10 == 0 ? "order-" + i : UUID.randomUUID().toString();
+            orderIds.add(orderId);
+            original.put(orderId, i % 3 == 0 ? OrderStatus.DENIED : OrderStatus.APPROVED);
+        }
+        Map<TopicPartition, Long> offsets = Map.of(new TopicPartition("checked-orders", 0), 41L, new TopicPartition("checked-orders", 1), 7L);
+        Path file = directory.resolve("order-status.snapshot");
+
+        OrderStatusSnapshot written = OrderStatusSnapshot.write(file, offsets, original);
+        OrderStatusStore restored = new OrderStatusStore(1_000, Duration.ofMinutes(1));
+        OrderStatusSnapshot read = OrderStatusSnapshot.restore(file, restored).orElseThrow();
+
+        assertThat(read).isEqualTo(written);
+        assertThat(read.offsets()).isEqualTo(offsets);
+        assertThat(read.entries()).isEqualTo(500);
+        assertThat(restored.size()).isEqualTo(500);
+        for (String orderId : orderIds) {
+            assertThat(restored.get(orderId)).isEqualTo(original.get(orderId));
+        }
+        assertThat(file).hasSize(4 + 8 + 4 + 2 * (2 + 14 + 4 + 8) + 4 + 500 * 24 + 4);
+    }
+
+    @Test
+    @DisplayName("Restored entries should keep their expiry and their insertion order")
+    void expiryAndOrderSurviveTheSnapshot() {
+        AtomicLong clock = new AtomicLong(1_000L);
+        OrderStatusStore original = new OrderStatusStore(3, Duration.ofMillis(100), clock::get);
+        original.put("first", OrderStatus.APPROVED);
+        clock.addAndGet(50L);
+        original.put("second", OrderStatus.DENIED);
+        original.put("third", OrderStatus.APPROVED);
+        Path file = directory.resolve("order-status.snapshot");
+        OrderStatusSnapshot.write(file, Map.of(), original);
+
+        clock.addAndGet(60L);
+        OrderStatusStore restored = new OrderStatusStore(3, Duration.ofMillis(100), clock::get);
+        OrderStatusSnapshot.restore(file, restored);
+        restored.put("fourth", OrderStatus.DENIED);
+
+        assertThat(restored.get("first")).isNull();
+        assertThat(restored.get("second")).isEqualTo(OrderStatus.DENIED);
+        assertThat(restored.get("third")).isEqualTo(OrderStatus.APPROVED);
+        assertThat(restored.get("fourth")).isEqualTo(OrderStatus.DENIED);
+
+        restored.put("fifth", OrderStatus.APPROVED);
+
+        assertThat(restored.get("second")).isNull();
+    }
+
+    @Test
+    @DisplayName("A corrupt snapshot should be rejected before the store is touched")
+    void corruptSnapshotIsRejected() throws Exception {
+        OrderStatusStore original = new OrderStatusStore(16, Duration.ofMinutes(1));
+        original.put(UUID.randomUUID().toString(), OrderStatus.APPROVED);
+        Path file = directory.resolve("order-status.snapshot");
+        OrderStatusSnapshot.write(file, Map.of(new TopicPartition("checked-orders", 0), 1L), original);
+        byte[] bytes = Files.readAllBytes(file);
+        bytes[bytes.length - 10] ^= 1;
+        Files.write(file, bytes);
+        OrderStatusStore restored = new OrderStatusStore(16, Duration.ofMinutes(1));
+
+        assertThatThrownBy(() -> OrderStatusSnapshot.restore(file, restored)).isInstanceOf(UncheckedIOException.class);
+        assertThat(restored.size()).isZero();
+        assertThat(OrderStatusSnapshot.restore(directory.resolve("missing.snapshot"), restored)).isEmpty();
+    }
+}
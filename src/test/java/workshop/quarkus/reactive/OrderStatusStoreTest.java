@@ -0,0 +1,113 @@
+package workshop.quarkus.reactive;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class OrderStatusStoreTest {
+
+    @Test
+    @DisplayName("The status of an order should be retrievable by its ID")
+    void putAndGet() {
+        OrderStatusStore store = new OrderStatusStore(16, Duration.ofMinutes(1));
+        String approved = UUID.randomUUID().toString();
+        String denied = "order-without-uuid";
+
+        store.put(approved, OrderStatus.APPROVED);
+        store.put(denied, OrderStatus.DENIED);
+
+        assertThat(store.get(approved)).isEqualTo(OrderStatus.APPROVED);
+        assertThat(store.get(denied)).isEqualTo(OrderStatus.DENIED);
+        assertThat(store.get(UUID.randomUUID().toString())).isNull();
+        assertThat(store.size()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("UUIDs should be stored as their two long components")
+    void uuidsAreStoredLosslessly() {
+        UUID orderId = UUID.randomUUID();
+
+        assertThat(OrderStatusStore.msbOf(orderId.toString())).isEqualTo(orderId.getMostSignificantBits());
+        assertThat(OrderStatusStore.lsbOf(orderId.toString())).isEqualTo(orderId.getLeastSignificantBits());
+    }
+
+    @Test
+    @DisplayName("The oldest entries should be evicted once the store is full")
+    void evictsOldestEntriesWhenFull() {
+        OrderStatusStore store = new OrderStatusStore(100, Duration.ofMinutes(1));
+        List<String> orderIds = new ArrayList<>();
+
+        for (int i = 0; i < 1_000; i++) {
+            String orderId = UUID.randomUUID().toString();
+            orderIds.add(orderId);
+            store.put(orderId, OrderStatus.APPROVED);
+        }
+
+        assertThat(store.size()).isEqualTo(100);
+        assertThat(orderIds.subList(0, 900)).allMatch(orderId -> store.get(orderId) == null);
+        assertThat(orderIds.subList(900, 1_000)).allMatch(orderId -> store.get(orderId) == OrderStatus.APPROVED);
+    }
+
+    @Test
+    @DisplayName("Entries should expire after their time-to-live")
+    void expiresEntries() {
+        AtomicLong now = new AtomicLong(1_000L);
+        OrderStatusStore store = new OrderStatusStore(16, Duration.ofSeconds(10), now::get);
+        String orderId = UUID.randomUUID().toString();
+
+        store.put(orderId, OrderStatus.DENIED);
+        now.addAndGet(9_999L);
+        assertThat(store.get(orderId)).isEqualTo(OrderStatus.DENIED);
+
+        now.addAndGet(1L);
+        assertThat(store.get(orderId)).isNull();
+
+        store.put(UUID.randomUUID().toString(), OrderStatus.APPROVED);
+        assertThat(store.size()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Concurrent writers should not lose updates")
+    void concurrentWriters() throws Exception {
+        OrderStatusStore store = new OrderStatusStore(100_000, Duration.ofMinutes(1));
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<List<String>>> results = new ArrayList<>();
+
+        for (int t = 0; t < 4; t++) {
+            results.add(executor.submit(() -> {
+                List<String> orderIds = new ArrayList<>();
+                for (int i = 0; i < 10_000; i++) {
+                    String orderId = UUID.randomUUID().toString();
+                    store.put(orderId, OrderStatus.APPROVED);
+                    orderIds.add(orderId);
+                }
+                return orderIds;
+            }));
+        }
+
+        for (Future<List<String>> result : results) {
+            assertThat(result.get()).allMatch(orderId -> store.get(orderId) == OrderStatus.APPROVED);
+        }
+        executor.shutdown();
+        assertThat(store.size()).isEqualTo(40_000);
+    }
+
+    @Test
+    @DisplayName("The memory footprint per tracked order should be reported")
+    void reportsMemoryFootprint() {
+        OrderStatusStore store = new OrderStatusStore(1_000, Duration.ofMinutes(1));
+
+        assertThat(store.memoryFootprintBytes()).isEqualTo(2_048L * 24 + 1_000L * 4);
+        assertThat(store.bytesPerTrackedOrder()).isLessThan(60.0);
+    }
+}
@@ -0,0 +1,125 @@
+package workshop.quarkus.reactive;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import workshop.quarkus.reactive.command.PlaceOrder;
+import workshop.quarkus.reactive.event.OrderSubmittedEvent;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class OutboxJournalTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    @DisplayName("Journaled orders should be read back in order along with their trace IDs")
+    void appendAndRead() {
+
+        try (OutboxJournal journal = new OutboxJournal(directory, 4096)) {
+            List<OrderSubmittedEvent> events = appendOrders(journal, 10);
+
+            List<OutboxEntry> entries = journal.read(0L, 100);
+
+            assertThat(entries).extracting(OutboxEntry::sequence).containsExactly(1L, 2L, 3L, 4L, 5L, 6L, 7L, 8L, 9L, 10L);
+            assertThat(entries).extracting(OutboxEntry::traceId).allMatch(traceId -> traceId.startsWith("X-"));
+            assertThat(entries).extracting(OutboxEntry::event).usingRecursiveFieldByFieldElementComparator().containsExactlyElementsOf(events);
+            assertThat(journal.read(4L, 3)).extracting(OutboxEntry::sequence).containsExactly(5L, 6L, 7L);
+        }
+    }
+
+    @Test
+    @DisplayName("Orders that have not been acknowledged should be replayed after a restart")
+    void replayAfterRestart() {
+
+        List<OrderSubmittedEvent> events;
+        try (OutboxJournal journal = new OutboxJournal(directory, 4096)) {
+            events = appendOrders(journal, 10);
+            journal.acknowledge(6L);
+        }
+
+        try (OutboxJournal journal = new OutboxJournal(directory, 4096)) {
+            List<OutboxEntry> replayed = journal.read(journal.acknowledged(), 100);
+
+            assertThat(journal.acknowledged()).isEqualTo(6L);
+            assertThat(replayed).extracting(OutboxEntry::sequence).containsExactly(7L, 8L, 9L, 10L);
+            assertThat(replayed).extracting(OutboxEntry::event).usingRecursiveFieldByFieldElementComparator().containsExactlyElementsOf(events.subList(6, 10));
+            assertThat(journal.append(events.get(0), "X-again")).isEqualTo(11L);
+        }
+    }
+
+    @Test
+    @DisplayName("Segments should be deleted once all of their orders have been acknowledged")
+    void truncateAcknowledgedSegments() throws IOException {
+
+        try (OutboxJournal journal = new OutboxJournal(directory, 1024)) {
+            appendOrders(journal, 100);
+            int segments = journal.segmentCount();
+
+            journal.acknowledge(journal.lastAppended() - 1);
+
+            assertThat(segments).isGreaterThan(2);
+            assertThat(journal.segmentCount()).isEqualTo(1);
+            assertThat(segmentFiles()).hasSize(1);
+            assertThat(journal.read(journal.acknowledged(), 100)).extracting(OutboxEntry::sequence).containsExactly(journal.lastAppended());
+        }
+    }
+
+    @Test
+    @DisplayName("A torn write at the end of the journal should be discarded on recovery")
+    void discardTornWrite() throws IOException {
+
+        try (OutboxJournal journal = new OutboxJournal(directory, 4096)) {
+            appendOrders(journal, 3);
+        }
+        try (OutboxJournal journal = new OutboxJournal(directory, 4096)) {
+            appendOrders(journal, 1);
+        }
+        Path segment = segmentFiles().get(0);
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[]{0x7F}), offsetOfEntry(segment, 4) + 20);
+        }
+
+        try (OutboxJournal journal = new OutboxJournal(directory, 4096)) {
+            assertThat(journal.lastAppended()).isEqualTo(3L);
+            assertThat(journal.read(0L, 100)).hasSize(3);
+        }
+    }
+
+    private static List<OrderSubmittedEvent> appendOrders(final OutboxJournal journal, final int count) {
+        List<OrderSubmittedEvent> events = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            PlaceOrder order = TestDataGenerator.randomOrderGen.sample();
+            OrderSubmittedEvent event = TestDataGenerator.toOrderSubmittedEvent(order);
+            journal.append(event, order.traceId());
+            events.add(event);
+        }
+        return events;
+    }
+
+    private List<Path> segmentFiles() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.getFileName().toString().startsWith("segment-")).sorted().toList();
+        }
+    }
+
+    private static int offsetOfEntry(final Path segment, final int sequence) throws IOException {
+        ByteBuffer bytes = ByteBuffer.wrap(Files.readAllBytes(segment));
+        int position = 0;
+        for (int i = 1; i < sequence; i++) {
+            position += 8 + bytes.getInt(position);
+        }
+        return position;
+    }
+}
@@ -0,0 +1,141 @@
+package workshop.quarkus.reactive;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.quarkus.test.common.QuarkusTestResource;
+import io.quarkus.test.junit.QuarkusTest;
+import io.smallrye.reactive.messaging.kafka.api.IncomingKafkaRecordMetadata;
+import io.smallrye.reactive.messaging.kafka.api.OutgoingKafkaRecordMetadata;
+import io.smallrye.reactive.messaging.memory.InMemoryConnector;
+import io.smallrye.reactive.messaging.memory.InMemorySource;
+import jakarta.enterprise.inject.Any;
+import jakarta.inject.Inject;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.apache.kafka.common.record.TimestampType;
+import org.eclipse.microprofile.reactive.messaging.Message;
+import org.eclipse.microprofile.reactive.messaging.Metadata;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import workshop.quarkus.reactive.command.PlaceOrder;
+import workshop.quarkus.reactive.event.Event;
+import workshop.quarkus.reactive.event.EventHeaders;
+import workshop.quarkus.reactive.event.OrderSubmittedEvent;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@QuarkusTest
+@QuarkusTestResource(value = InMemoryChannelsTestResource.class)
+public class PipelineMetricsTest {
+
+    @Inject
+    @Any
+    InMemoryConnector connector;
+
+    @Inject
+    MeterRegistry registry;
+
+    @AfterEach
+    void clearChannels() {
+        connector.sink("outgoing-checked-orders").clear();
+    }
+
+    @Test
+    @DisplayName("Processing a checked order should record the latency of the notification stage")
+    void notificationLatencyIsRecorded() {
+
+        Timer notificationLatency = registry.get("pipeline.stage.latency").tag("stage", "notification").timer();
+        long before = notificationLatency.count();
+
+        InMemorySource<Event> checkedOrders = connector.source("incoming-checked-orders");
+        PlaceOrder order = TestDataGenerator.randomOrderGen.sample();
+
+        checkedOrders.send(TestDataGenerator.toOrderApprovedEvent(order));
+
+        assertThat(notificationLatency.count()).isEqualTo(before + 1);
+        assertThat(registry.get("pipeline.channel.messages").tag("channel", PipelineMetrics.INCOMING_CHECKED_ORDERS).counter().count())
+                .isGreaterThanOrEqualTo(1.0);
+        assertThat(registry.get("pipeline.startup.first-message").timeGauge().value()).isPositive();
+    }
+
+    @Test
+    @DisplayName("The decision latency should be measured from the receipt of an order, and every message should be counted once per channel")
+    void decisionIsTimedFromReceipt() {
+
+        Timer decisionLatency = registry.get("pipeline.stage.latency").tag("stage", "decision").timer();
+        long decisionsBefore = decisionLatency.count();
+        double timeBefore = decisionLatency.totalTime(TimeUnit.MILLISECONDS);
+        double incomingBefore = messages(PipelineMetrics.INCOMING_ORDERS);
+        double outgoingBefore = messages(PipelineMetrics.OUTGOING_CHECKED_ORDERS);
+
+        InMemorySource<Message<OrderSubmittedEvent>> submittedOrders = connector.source("incoming-orders");
+        PlaceOrder order = TestDataGenerator.randomOrderGen.sample();
+        long anHourAgo = System.currentTimeMillis() - Duration.ofHours(1).toMillis();
+        OrderSubmittedEvent event = new OrderSubmittedEvent(UUID.randomUUID().toString(), anHourAgo, order.orderId(), order.customerId(), order.productId(), order.quantity());
+
+        submittedOrders.send(Message.of(event).withMetadata(Metadata.of(new OrderMetadata(order.traceId()))));
+
+        assertThat(connector.sink("outgoing-checked-orders").received()).hasSize(1);
+        assertThat(decisionLatency.count()).isEqualTo(decisionsBefore + 1);
+        assertThat(decisionLatency.totalTime(TimeUnit.MILLISECONDS) - timeBefore).isLessThan(Duration.ofMinutes(1).toMillis());
+        assertThat(messages(PipelineMetrics.INCOMING_ORDERS)).isEqualTo(incomingBefore + 1);
+        assertThat(messages(PipelineMetrics.OUTGOING_CHECKED_ORDERS)).isEqualTo(outgoingBefore + 1);
+    }
+
+    @Test
+    @DisplayName("The time an order spent in the topic should be recorded on receipt, and its checked order should carry the time of the order")
+    void topicDwellIsRecorded() {
+
+        Timer topicLatency = registry.get("pipeline.stage.latency").tag("stage", "topic").timer();
+        long before = topicLatency.count();
+        double timeBefore = topicLatency.totalTime(TimeUnit.MILLISECONDS);
+
+        InMemorySource<Message<OrderSubmittedEvent>> submittedOrders = connector.source("incoming-orders");
+        PlaceOrder order = TestDataGenerator.randomOrderGen.sample();
+        long anHourAgo = System.currentTimeMillis() - Duration.ofHours(1).toMillis();
+        OrderSubmittedEvent event = new OrderSubmittedEvent(UUID.randomUUID().toString(), anHourAgo, order.orderId(), order.customerId(), order.productId(), order.quantity());
+
+        submittedOrders.send(Message.of(event).withMetadata(Metadata.of(new OrderMetadata(order.traceId()))));
+
+        assertThat(topicLatency.count()).isEqualTo(before + 1);
+        assertThat(topicLatency.totalTime(TimeUnit.MILLISECONDS) - timeBefore).isGreaterThanOrEqualTo(Duration.ofHours(1).toMillis());
+        assertThat(connector.sink("outgoing-checked-orders").received()).singleElement()
+                .extracting(message -> message.getMetadata(OutgoingKafkaRecordMetadata.class).orElseThrow().getHeaders())
+                .extracting(headers -> EventHeaders.lastLongValue(headers, EventHeaders.ORDER_TIME, -1L))
+                .isEqualTo(anHourAgo);
+    }
+
+    @Test
+    @DisplayName("Processing a checked order should record the end-to-end latency from the time of its order")
+    void endToEndLatencyIsRecorded() {
+
+        Timer endToEndLatency = registry.get("pipeline.end-to-end.latency").timer();
+        long before = endToEndLatency.count();
+        double timeBefore = endToEndLatency.totalTime(TimeUnit.MILLISECONDS);
+
+        InMemorySource<Message<Event>> checkedOrders = connector.source("incoming-checked-orders");
+        PlaceOrder order = TestDataGenerator.randomOrderGen.sample();
+        long aMinuteAgo = System.currentTimeMillis() - Duration.ofMinutes(1).toMillis();
+        Headers headers = new RecordHeaders();
+        EventHeaders.put(headers, EventHeaders.ORDER_TIME, Long.toString(aMinuteAgo));
+        Event checkedOrder = TestDataGenerator.toOrderApprovedEvent(order);
+        ConsumerRecord<String, Event> record = new ConsumerRecord<>("pipeline-metrics-test", 0, 0L, System.currentTimeMillis(), TimestampType.CREATE_TIME,
+                -1, -1, order.orderId(), checkedOrder, headers, Optional.empty());
+
+        checkedOrders.send(Message.of(checkedOrder).withMetadata(Metadata.of(new IncomingKafkaRecordMetadata<>(record, "incoming-checked-orders", 0))));
+
+        assertThat(endToEndLatency.count()).isEqualTo(before + 1);
+        assertThat(endToEndLatency.totalTime(TimeUnit.MILLISECONDS) - timeBefore).isGreaterThanOrEqualTo(Duration.ofMinutes(1).toMillis());
+    }
+
+    private double messages(final String channel) {
+        return registry.get("pipeline.channel.messages").tag("channel", channel).counter().count();
+    }
+}
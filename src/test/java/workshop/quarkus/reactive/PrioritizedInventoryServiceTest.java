@@ -0,0 +1,156 @@
+package workshop.quarkus.reactive;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.quarkus.arc.ClientProxy;
+import io.quarkus.test.common.QuarkusTestResource;
+import io.quarkus.test.junit.QuarkusMock;
+import io.quarkus.test.junit.QuarkusTest;
+import io.quarkus.test.junit.QuarkusTestProfile;
+import io.quarkus.test.junit.TestProfile;
+import io.smallrye.mutiny.Multi;
+import io.smallrye.reactive.messaging.kafka.api.OutgoingKafkaRecordMetadata;
+import io.smallrye.reactive.messaging.memory.InMemoryConnector;
+import io.smallrye.reactive.messaging.memory.InMemorySink;
+import io.smallrye.reactive.messaging.memory.InMemorySource;
+import jakarta.enterprise.inject.Any;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.reactive.messaging.Message;
+import org.eclipse.microprofile.reactive.messaging.Metadata;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import workshop.quarkus.reactive.command.PlaceOrder;
+import workshop.quarkus.reactive.event.Event;
+import workshop.quarkus.reactive.event.EventHeaders;
+import workshop.quarkus.reactive.event.OrderApprovedEvent;
+import workshop.quarkus.reactive.event.OrderDeniedEvent;
+import workshop.quarkus.reactive.event.OrderSubmittedEvent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static workshop.quarkus.reactive.TestDataGenerator.toOrderSubmittedEvent;
+
+@QuarkusTest
+@TestProfile(PrioritizedInventoryServiceTest.PrioritizedConsumption.class)
+@QuarkusTestResource(value = InMemoryChannelsTestResource.class)
+public class PrioritizedInventoryServiceTest {
+
+    private static final String PREMIUM_CUSTOMER = "premium-customer";
+
+    public static class PrioritizedConsumption implements QuarkusTestProfile {
+
+        @Override
+        public Map<String, String> getConfigOverrides() {
+            return Map.of(
+                    "inventory.consumption-mode", "prioritized",
+                    "inventory.priority-lanes.max-in-flight", "1",
+                    "order.priority-lanes.enabled", "true",
+                    "order.priority-lanes.premium-customers", PREMIUM_CUSTOMER);
+        }
+    }
+
+    @Inject
+    @Any
+    InMemoryConnector connector;
+
+    @Inject
+    InventoryAvailabilityChecker checker;
+
+    @Inject
+    OrderService orderService;
+
+    @Inject
+    MeterRegistry registry;
+
+    @BeforeEach
+    void installSlowChecker() {
+        final InventoryAvailabilityChecker delegate = ClientProxy.unwrap(checker);
+        QuarkusMock.installMockForType(new InventoryAvailabilityChecker() {
+            @Override
+            public boolean allLineItemsAvailable(final OrderSubmittedEvent order, final String traceId) {
+                try {
+                    Thread.sleep(2);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return delegate.allLineItemsAvailable(order, traceId);
+            }
+        }, InventoryAvailabilityChecker.class);
+    }
+
+    @AfterEach
+    void clearChannels() {
+        connector.sink("outgoing-orders").clear();
+        connector.sink("outgoing-checked-orders").clear();
+    }
+
+    @Test
+    @DisplayName("Orders should be sent to the topic of their priority lane and tagged with their priority")
+    void ordersAreRoutedToTheirLane() {
+        InMemorySink<OrderSubmittedEvent> orders = connector.sink("outgoing-orders");
+        PlaceOrder premium = TestDataGenerator.randomOrderGen.sample();
+        premium = new PlaceOrder(premium.orderId(), PREMIUM_CUSTOMER, premium.productId(), premium.quantity(), premium.traceId());
+
+        orderService.submitOrder(premium).await().indefinitely();
+        orderService.submitOrder(TestDataGenerator.randomOrderGen.sample()).await().indefinitely();
+        orderService.submitOrders(Multi.createFrom().item(TestDataGenerator.randomOrderGen.sample())).collect().asList().await().indefinitely();
+
+        assertThat(orders.received()).extracting(PrioritizedInventoryServiceTest::topicOf).containsExactly("orders-high", "orders", "orders-low");
+        assertThat(orders.received()).extracting(PrioritizedInventoryServiceTest::priorityOf).containsExactly("high", "normal", "low");
+        assertThat(orders.received().get(0).getMetadata(OutgoingKafkaRecordMetadata.class))
+                .map(metadata -> EventHeaders.lastValue(metadata.getHeaders(), EventHeaders.TRACE_ID))
+                .contains(premium.traceId());
+    }
+
+    @Test
+    @DisplayName("High priority orders should overtake a flood of low priority orders, which should all be checked nonetheless")
+    void highPriorityOrdersOvertakeFlood() throws InterruptedException {
+        InMemorySource<Message<OrderSubmittedEvent>> lowPriority = connector.source("incoming-orders-low");
+        InMemorySource<Message<OrderSubmittedEvent>> highPriority = connector.source("incoming-orders-high");
+        InMemorySink<Event> checkedOrders = connector.sink("outgoing-checked-orders");
+
+        for (int i = 0; i < 100; i++) {
+            lowPriority.send(messageOf(TestDataGenerator.randomOrderGen.sample()));
+        }
+        List<String> highPriorityOrderIds = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            PlaceOrder order = TestDataGenerator.randomOrderGen.sample();
+            highPriorityOrderIds.add(order.orderId());
+            highPriority.send(messageOf(order));
+        }
+
+        for (int attempts = 0; attempts < 200 && checkedOrders.received().size() < 105; attempts++) {
+            Thread.sleep(50);
+        }
+
+        List<String> checkedOrderIds = checkedOrders.received().stream().map(PrioritizedInventoryServiceTest::orderIdOf).toList();
+        assertThat(checkedOrderIds).hasSize(105);
+        assertThat(highPriorityOrderIds).allSatisfy(orderId -> assertThat(checkedOrderIds.indexOf(orderId)).isLessThan(20));
+        assertThat(registry.get("pipeline.lane.depth").tag("lane", "low").gauge().value()).isZero();
+        assertThat(registry.get("pipeline.lane.latency").tag("lane", "high").timer().count()).isEqualTo(5);
+        assertThat(registry.get("pipeline.lane.latency").tag("lane", "high").timer().max(TimeUnit.MILLISECONDS))
+                .isLessThan(registry.get("pipeline.lane.latency").tag("lane", "low").timer().max(TimeUnit.MILLISECONDS));
+    }
+
+    private static Message<OrderSubmittedEvent> messageOf(final PlaceOrder order) {
+        return Message.of(toOrderSubmittedEvent(order)).withMetadata(Metadata.of(new OrderMetadata(order.traceId())));
+    }
+
+    private static String orderIdOf(final Message<Event> message) {
+        if (message.getPayload() instanceof OrderApprovedEvent approved) return approved.getOrderId();
+        return message.getPayload() instanceof OrderDeniedEvent denied ? denied.getOrderId() : null;
+    }
+
+    private static String topicOf(final Message<?> message) {
+        return message.getMetadata(OutgoingKafkaRecordMetadata.class).map(OutgoingKafkaRecordMetadata::getTopic).orElse(null);
+    }
+
+    private static String priorityOf(final Message<?> message) {
+        return message.getMetadata(OutgoingKafkaRecordMetadata.class).map(metadata -> EventHeaders.lastValue(metadata.getHeaders(), EventHeaders.PRIORITY)).orElse(null);
+    }
+}
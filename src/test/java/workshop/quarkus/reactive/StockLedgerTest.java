@@ -0,0 +1,114 @@
+package workshop.quarkus.reactive;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class StockLedgerTest {
+
+    @Test
+    @DisplayName("Reservations should succeed as long as there are enough units in stock")
+    void reservesUntilOutOfStock() {
+        StockLedger ledger = new StockLedger(4);
+        ledger.replenish("p-1", 10);
+
+        assertThat(ledger.reserve("p-1", 4)).isTrue();
+        assertThat(ledger.reserve("p-1", 4)).isTrue();
+        assertThat(ledger.reserve("p-1", 4)).isFalse();
+        assertThat(ledger.reserve("p-1", 2)).isTrue();
+        assertThat(ledger.stockLevel("p-1")).isZero();
+    }
+
+    @Test
+    @DisplayName("A reservation should be able to draw from units that are spread over several stripes")
+    void consolidatesStripes() {
+        StockLedger ledger = new StockLedger(8);
+        ledger.replenish("p-1", 8);
+
+        assertThat(ledger.reserve("p-1", 7)).isTrue();
+        assertThat(ledger.stockLevel("p-1")).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Products that have never been stocked should not be managed by the ledger")
+    void untrackedProductsAreAvailable() {
+        StockLedger ledger = new StockLedger(4);
+
+        assertThat(ledger.isTracked("p-1")).isFalse();
+        assertThat(ledger.reserve("p-1", 1_000)).isTrue();
+    }
+
+    @Test
+    @DisplayName("Stock levels should be replenished in bulk and reported per product")
+    void replenishesInBulk() {
+        StockLedger ledger = new StockLedger(4);
+
+        ledger.replenishAll(Map.of("p-1", 5L, "p-2", 7L));
+        ledger.replenish("p-1", 3);
+
+        assertThat(ledger.stockLevels()).isEqualTo(Map.of("p-1", 8L, "p-2", 7L));
+    }
+
+    @Test
+    @DisplayName("Concurrent reservations of the same product should never oversell it")
+    void neverOversells() throws Exception {
+        StockLedger ledger = new StockLedger(8);
+        ledger.replenish("p-1", 10_000);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<Integer>> results = new ArrayList<>();
+
+        for (int t = 0; t < 8; t++) {
+            results.add(executor.submit(() -> {
+                int reserved = 0;
+                for (int i = 0; i < 1_000; i++) {
+                    if (ledger.reserve("p-1", 3)) reserved += 3;
+                }
+                return reserved;
+            }));
+        }
+
+        int reserved = 0;
+        for (Future<Integer> result : results) {
+            reserved += result.get();
+        }
+        executor.shutdown();
+
+        assertThat(reserved).isEqualTo(9_999);
+        assertThat(ledger.stockLevel("p-1")).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("The settled stock level should never observe the stripes that a consolidation has drained")
+    void settledStockLevelIgnoresConsolidations() throws Exception {
+        StockLedger ledger = new StockLedger(8);
+        ledger.replenish("p-1", 800);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        AtomicBoolean running = new AtomicBoolean(true);
+
+        /* reservations that exceed the stock consolidate the stripes without taking any units */
+        Future<?> consolidations = executor.submit(() -> {
+            while (running.get()) {
+                ledger.reserve("p-1", 1_000);
+            }
+        });
+
+        try {
+            for (int i = 0; i < 100_000; i++) {
+                assertThat(ledger.settledStockLevel("p-1")).isEqualTo(800);
+            }
+        } finally {
+            running.set(false);
+            consolidations.get();
+            executor.shutdown();
+        }
+    }
+}
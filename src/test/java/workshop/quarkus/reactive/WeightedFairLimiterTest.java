@@ -0,0 +1,118 @@
+package workshop.quarkus.reactive;
+
+import io.smallrye.mutiny.helpers.test.UniAssertSubscriber;
+import io.smallrye.mutiny.subscription.UniSubscriber;
+import io.smallrye.mutiny.subscription.UniSubscription;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class WeightedFairLimiterTest {
+
+    @Test
+    @DisplayName("Released permits should go to the waiting lanes in weighted fair order")
+    void permitsAreHandedOutByWeight() {
+
+        WeightedFairLimiter limiter = new WeightedFairLimiter(List.of(2, 1), 8, 1);
+        WeightedFairLimiter.Permit first = limiter.acquire(1).await().indefinitely();
+
+        List<UniAssertSubscriber<WeightedFairLimiter.Permit>> light = new ArrayList<>();
+        List<UniAssertSubscriber<WeightedFairLimiter.Permit>> heavy = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            light.add(limiter.acquire(1).subscribe().withSubscriber(UniAssertSubscriber.create()));
+            heavy.add(limiter.acquire(0).subscribe().withSubscriber(UniAssertSubscriber.create()));
+        }
+        assertThat(limiter.depth(0)).isEqualTo(2);
+
+        first.release();
+        heavy.get(0).assertCompleted();
+        heavy.get(0).getItem().release();
+        light.get(0).assertCompleted();
+        heavy.get(1).assertNotTerminated();
+
+        light.get(0).getItem().release();
+        light.get(0).getItem().release();
+        heavy.get(1).assertCompleted();
+        light.get(1).assertNotTerminated();
+    }
+
+    @Test
+    @DisplayName("A cancelled waiter should give its slot back, whether it was still waiting or had been granted a permit")
+    void cancelledWaitersGiveTheirSlotBack() {
+
+        WeightedFairLimiter limiter = new WeightedFairLimiter(List.of(1), 8, 1);
+        WeightedFairLimiter.Permit first = limiter.acquire(0).await().indefinitely();
+
+        UniAssertSubscriber<WeightedFairLimiter.Permit> cancelled = limiter.acquire(0).subscribe().withSubscriber(UniAssertSubscriber.create());
+        UniAssertSubscriber<WeightedFairLimiter.Permit> waiting = limiter.acquire(0).subscribe().withSubscriber(UniAssertSubscriber.create());
+        cancelled.cancel();
+        first.release();
+
+        waiting.assertCompleted();
+        assertThat(limiter.depth(0)).isZero();
+        waiting.getItem().release();
+        assertThat(limiter.inFlight()).isZero();
+    }
+
+    @Test
+    @DisplayName("Waiters cancelled concurrently with releases should never leak a slot")
+    void concurrentCancellationsDoNotLeakSlots() {
+
+        WeightedFairLimiter limiter = new WeightedFairLimiter(List.of(3, 1), 10_000, 2);
+        ForkJoinPool pool = new ForkJoinPool(4);
+
+        for (int i = 0; i < 2_000; i++) {
+            final int lane = i % 2;
+            pool.execute(() -> {
+                ReleasingSubscriber waiter = new ReleasingSubscriber(pool);
+                limiter.acquire(lane).subscribe().withSubscriber(waiter);
+                if (lane == 0) pool.execute(waiter::cancel);
+            });
+        }
+
+        assertThat(pool.awaitQuiescence(10, TimeUnit.SECONDS)).isTrue();
+        pool.shutdown();
+        assertThat(limiter.inFlight()).isZero();
+        assertThat(limiter.depth(0) + limiter.depth(1)).isZero();
+        assertThat(limiter.acquire(0).await().atMost(Duration.ofSeconds(1))).isNotNull();
+    }
+
+    /**
+     * Releases the permit it receives on the pool, so that releases do not recurse into each other.
+     */
+    private static class ReleasingSubscriber implements UniSubscriber<WeightedFairLimiter.Permit> {
+
+        private final ForkJoinPool pool;
+
+        private volatile UniSubscription subscription;
+
+        ReleasingSubscriber(final ForkJoinPool pool) {
+            this.pool = pool;
+        }
+
+        @Override
+        public void onSubscribe(final UniSubscription subscription) {
+            this.subscription = subscription;
+        }
+
+        @Override
+        public void onItem(final WeightedFairLimiter.Permit permit) {
+            pool.execute(permit::release);
+        }
+
+        @Override
+        public void onFailure(final Throwable failure) {
+        }
+
+        void cancel() {
+            subscription.cancel();
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package workshop.quarkus.reactive;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class WeightedFairSchedulerTest {
+
+    @Test
+    @DisplayName("Backlogged lanes should be served in proportion to their weights")
+    void backloggedLanesGetTheirShare() {
+        WeightedFairScheduler<String> scheduler = new WeightedFairScheduler<>(List.of(8, 3, 1), 1000);
+        for (int i = 0; i < 1000; i++) {
+            scheduler.offer(0, "high");
+            scheduler.offer(1, "normal");
+            scheduler.offer(2, "low");
+        }
+
+        List<String> served = poll(scheduler, 1200);
+
+        assertThat(served.stream().filter("high"::equals)).hasSize(800);
+        assertThat(served.stream().filter("normal"::equals)).hasSize(300);
+        assertThat(served.stream().filter("low"::equals)).hasSize(100);
+        assertThat(served.subList(0, 12)).contains("low");
+    }
+
+    @Test
+    @DisplayName("A lane that was idle should rejoin at the current virtual time instead of catching up on the turns it skipped")
+    void idleLaneRejoinsAtVirtualTime() {
+        WeightedFairScheduler<String> scheduler = new WeightedFairScheduler<>(List.of(1, 1), 1000);
+        for (int i = 0; i < 100; i++) {
+            scheduler.offer(1, "busy");
+        }
+        poll(scheduler, 50);
+        for (int i = 0; i < 10; i++) {
+            scheduler.offer(0, "idle");
+        }
+
+        List<String> served = poll(scheduler, 20);
+
+        assertThat(served.stream().filter("idle"::equals)).hasSize(10);
+        assertThat(served.subList(0, 4)).containsOnly("idle", "busy").contains("busy");
+    }
+
+    @Test
+    @DisplayName("A lane should refuse items beyond its capacity without affecting the other lanes")
+    void lanesAreBounded() {
+        WeightedFairScheduler<String> scheduler = new WeightedFairScheduler<>(List.of(2, 1), 2);
+
+        assertThat(scheduler.offer(1, "a")).isTrue();
+        assertThat(scheduler.offer(1, "b")).isTrue();
+        assertThat(scheduler.offer(1, "c")).isFalse();
+        assertThat(scheduler.offer(0, "d")).isTrue();
+        assertThat(scheduler.depth(1)).isEqualTo(2);
+        assertThat(scheduler.peekLane()).isZero();
+
+        assertThat(poll(scheduler, 4)).containsExactly("d", "a", "b");
+        assertThat(scheduler.isEmpty()).isTrue();
+        assertThat(scheduler.poll()).isNull();
+    }
+
+    private static List<String> poll(final WeightedFairScheduler<String> scheduler, final int items) {
+        final List<String> served = new ArrayList<>();
+        for (int i = 0; i < items && !scheduler.isEmpty(); i++) {
+            served.add(scheduler.poll());
+        }
+        return served;
+    }
+}
@@ -0,0 +1,230 @@
+package workshop.quarkus.reactive.event;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.jsontype.BasicPolymorphicTypeValidator;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import workshop.quarkus.reactive.TestDataGenerator;
+import workshop.quarkus.reactive.command.PlaceOrder;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class EventCodecTest {
+
+    private final EventSerializer jsonSerializer = new EventSerializer(EventFormat.JSON);
+
+    private final EventSerializer binarySerializer = new EventSerializer(EventFormat.BINARY);
+
+    private final EventDeserializer deserializer = new EventDeserializer();
+
+    @Test
+    @DisplayName("Every sub-type of the Event protocol should survive a round trip through the binary codec")
+    void binaryRoundTrip() {
+
+        PlaceOrder order = TestDataGenerator.randomOrderGen.sample();
+
+        for (Event event : new Event[]{
+                TestDataGenerator.toOrderSubmittedEvent(order),
+                TestDataGenerator.toOrderApprovedEvent(order),
+                TestDataGenerator.toOrderDeniedEvent(order)}) {
+
+            byte[] bytes = binarySerializer.serialize("orders", event);
+
+            assertThat(BinaryEventCodec.isBinary(bytes)).isTrue();
+            assertThat(deserializer.deserialize("orders", bytes)).usingRecursiveComparison().isEqualTo(event);
+        }
+    }
+
+    @Test
+    @DisplayName("The binary codec should preserve absent values of optional fields")
+    void binaryRoundTripWithNullFields() {
+
+        OrderDeniedEvent event = new OrderDeniedEvent("e-1", 42L, "o-1", null, "p-1", null, null, 7L);
+
+        Event decoded = deserializer.deserialize("checked-orders", binarySerializer.serialize("checked-orders", event));
+
+        assertThat(decoded).usingRecursiveComparison().isEqualTo(event);
+    }
+
+    @Test
+    @DisplayName("JSON payloads should still decode so that channels can be migrated one at a time")
+    void jsonStillDecodes() {
+
+        PlaceOrder order = TestDataGenerator.randomOrderGen.sample();
+        OrderApprovedEvent event = TestDataGenerator.toOrderApprovedEvent(order);
+
+        byte[] json = jsonSerializer.serialize("checked-orders", event);
+
+        assertThat(BinaryEventCodec.isBinary(json)).isFalse();
+        assertThat(deserializer.deserialize("checked-orders", json)).usingRecursiveComparison().isEqualTo(event);
+    }
+
+    @Test
+    @DisplayName("The binary representation should be smaller than its JSON counterpart")
+    void binaryIsSmallerThanJson() {
+
+        PlaceOrder order = TestDataGenerator.randomOrderGen.sample();
+        OrderApprovedEvent event = TestDataGenerator.toOrderApprovedEvent(order);
+
+        assertThat(binarySerializer.serialize("checked-orders", event).length)
+                .isLessThan(jsonSerializer.serialize("checked-orders", event).length);
+    }
+
+    @Test
+    @DisplayName("The serializer should announce the type of an event in the record headers")
+    void serializerWritesEventTypeHeader() {
+
+        PlaceOrder order = TestDataGenerator.randomOrderGen.sample();
+        RecordHeaders headers = new RecordHeaders();
+
+        jsonSerializer.serialize("checked-orders", headers, TestDataGenerator.toOrderDeniedEvent(order));
+
+        assertThat(EventHeaders.lastValue(headers, EventHeaders.EVENT_TYPE)).isEqualTo(EventType.ORDER_DENIED.typeName());
+    }
+
+    @Test
+    @DisplayName("Records rejected by the header filter should be skipped without decoding their payload")
+    void headerFilterSkipsDecoding() {
+
+        EventDeserializer filtering = new EventDeserializer(HeaderFilter.fromConfig(Map.of(
+                HeaderFilter.ACCEPT_TYPES_CONFIG, "order-submitted-event",
+                HeaderFilter.REQUIRED_TRACE_ID_PREFIX_CONFIG, "X-")));
+        byte[] undecodable = "not an event".getBytes(StandardCharsets.UTF_8);
+
+        RecordHeaders wrongType = new RecordHeaders();
+        EventHeaders.put(wrongType, EventHeaders.EVENT_TYPE, EventType.ORDER_APPROVED.typeName());
+        RecordHeaders wrongTraceId = new RecordHeaders();
+        EventHeaders.put(wrongTraceId, EventHeaders.TRACE_ID, "untraced");
+
+        assertThat(filtering.deserialize("orders", wrongType, undecodable)).isNull();
+        assertThat(filtering.deserialize("orders", wrongTraceId, undecodable)).isNull();
+
+        PlaceOrder order = TestDataGenerator.randomOrderGen.sample();
+        OrderSubmittedEvent event = TestDataGenerator.toOrderSubmittedEvent(order);
+        RecordHeaders headers = new RecordHeaders();
+        byte[] bytes = binarySerializer.serialize("orders", headers, event);
+        EventHeaders.put(headers, EventHeaders.TRACE_ID, "X-1234");
+
+        assertThat(filtering.deserialize("orders", headers, bytes)).usingRecursiveComparison().isEqualTo(event);
+        assertThat(filtering.deserialize("orders", new RecordHeaders(), bytes)).usingRecursiveComparison().isEqualTo(event);
+    }
+
+    @Test
+    @DisplayName("A lazy view should expose the key fields of a checked order without decoding the rest of the record")
+    void lazyViewReadsKeyFieldsOnly() {
+
+        EventDeserializer lazy = new EventDeserializer(EventView.LAZY);
+        PlaceOrder order = TestDataGenerator.randomOrderGen.sample();
+        OrderDeniedEvent event = TestDataGenerator.toOrderDeniedEvent(order);
+
+        for (EventSerializer serializer : new EventSerializer[]{jsonSerializer, binarySerializer}) {
+
+            Event view = lazy.deserialize("checked-orders", serializer.serialize("checked-orders", event));
+
+            assertThat(view).isInstanceOf(OrderDeniedEvent.class);
+            assertThat(((OrderDeniedEvent) view).getOrderId()).isEqualTo(event.getOrderId());
+            assertThat(((OrderDeniedEvent) view).getCheckedOn()).isEqualTo(event.getCheckedOn());
+            assertThat(LazyEvents.isMaterialized(view)).isFalse();
+
+            assertThat(((OrderDeniedEvent) view).getCustomerId()).isEqualTo(event.getCustomerId());
+            assertThat(view.getEventId()).isEqualTo(event.getEventId());
+            assertThat(LazyEvents.isMaterialized(view)).isTrue();
+        }
+    }
+
+    @Test
+    @DisplayName("The streaming JSON codec should stay compatible with records written through Jackson data binding")
+    void jsonCodecMatchesDataBinding() throws Exception {
+
+        ObjectMapper mapper = new ObjectMapper();
+        mapper.activateDefaultTyping(BasicPolymorphicTypeValidator.builder().build(), ObjectMapper.DefaultTyping.NON_FINAL);
+        PlaceOrder order = TestDataGenerator.randomOrderGen.sample();
+
+        for (Event event : new Event[]{
+                TestDataGenerator.toOrderSubmittedEvent(order),
+                TestDataGenerator.toOrderApprovedEvent(order),
+                new OrderDeniedEvent("e-1", 42L, "o-1", null, "p-1", null, null, null)}) {
+
+            byte[] bytes = jsonSerializer.serialize("orders", event);
+
+            assertThat(bytes).isEqualTo(mapper.writeValueAsBytes(event));
+            assertThat(deserializer.deserialize("orders", mapper.writeValueAsBytes(event))).usingRecursiveComparison().isEqualTo(event);
+            assertThat(mapper.readValue(bytes, Event.class)).usingRecursiveComparison().isEqualTo(event);
+        }
+    }
+
+    @Test
+    @DisplayName("An envelope should carry its events and trace IDs, and skip entries that the header filter rejects without decoding them")
+    void envelopeRoundTrip() {
+
+        EventDeserializer filtering = new EventDeserializer(HeaderFilter.fromConfig(Map.of(
+                HeaderFilter.ACCEPT_TYPES_CONFIG, "order-approved-event,order-denied-event",
+                HeaderFilter.REQUIRED_TRACE_ID_PREFIX_CONFIG, "X-")));
+        PlaceOrder order = TestDataGenerator.randomOrderGen.sample();
+        OrderApprovedEvent approved = TestDataGenerator.toOrderApprovedEvent(order);
+        EventEnvelope envelope = new EventEnvelope(List.of(
+                new EventEnvelope.Entry("X-1", approved),
+                new EventEnvelope.Entry("X-2", TestDataGenerator.toOrderSubmittedEvent(order)),
+                new EventEnvelope.Entry("Y-3", TestDataGenerator.toOrderDeniedEvent(order))));
+        RecordHeaders headers = new RecordHeaders();
+
+        byte[] bytes = jsonSerializer.serialize("checked-orders", headers, envelope);
+        Event decoded = filtering.deserialize("checked-orders", headers, bytes);
+
+        assertThat(EventHeaders.lastValue(headers, EventHeaders.EVENT_TYPE)).isEqualTo(EventHeaders.ENVELOPE_TYPE);
+        assertThat(EventHeaders.lastValue(headers, EventHeaders.EVENT_COUNT)).isEqualTo("3");
+        assertThat(decoded).isInstanceOf(EventEnvelope.class);
+        assertThat(((EventEnvelope) decoded).getEntries()).singleElement().satisfies(entry -> {
+            assertThat(entry.traceId()).isEqualTo("X-1");
+            assertThat(entry.event()).usingRecursiveComparison().isEqualTo(approved);
+        });
+    }
+
+    @Test
+    @DisplayName("Checked orders in either representation should decode into a reused instance")
+    void checkedOrdersDecodeIntoReusedInstance() {
+
+        PlaceOrder order = TestDataGenerator.randomOrderGen.sample();
+        CheckedOrder checkedOrder = new CheckedOrder();
+
+        for (EventSerializer serializer : new EventSerializer[]{jsonSerializer, binarySerializer}) {
+            for (Event event : new Event[]{
+                    TestDataGenerator.toOrderApprovedEvent(order),
+                    TestDataGenerator.toOrderDeniedEvent(order),
+                    new OrderDeniedEvent("e-1", 42L, "o-1", null, "p-1", null, null, 7L)}) {
+
+                assertThat(deserializer.deserializeInto(serializer.serialize("checked-orders", event), checkedOrder)).isTrue();
+                assertThat(checkedOrder.isApproved()).isEqualTo(event instanceof OrderApprovedEvent);
+                assertThat(checkedOrder.toEvent()).usingRecursiveComparison().isEqualTo(event);
+            }
+
+            byte[] submitted = serializer.serialize("orders", TestDataGenerator.toOrderSubmittedEvent(order));
+            assertThat(deserializer.deserializeInto(submitted, checkedOrder)).isFalse();
+            assertThat(checkedOrder.orderId()).isEqualTo("o-1");
+        }
+    }
+
+    @Test
+    @DisplayName("Plain JSON checked orders should decode into a reused instance, unless the header filter rejects the record")
+    void jsonCheckedOrderDecodesIntoReusedInstance() {
+
+        EventDeserializer filtering = new EventDeserializer(HeaderFilter.fromConfig(Map.of(
+                HeaderFilter.ACCEPT_TYPES_CONFIG, "order-approved-event,order-denied-event")));
+        CheckedOrder checkedOrder = new CheckedOrder();
+        byte[] approved = ("{\"@type\":\"order-approved-event\",\"orderId\":\"o-7\",\"customerId\":\"c-7\",\"productId\":\"p-7\","
+                + "\"quantity\":3,\"itemsAvailable\":true,\"checkedOn\":9,\"eventId\":\"e-7\",\"eventTime\":5}").getBytes(StandardCharsets.UTF_8);
+        RecordHeaders submittedType = new RecordHeaders();
+        EventHeaders.put(submittedType, EventHeaders.EVENT_TYPE, EventType.ORDER_SUBMITTED.typeName());
+
+        assertThat(filtering.deserializeInto(new RecordHeaders(), approved, checkedOrder)).isTrue();
+        assertThat(checkedOrder.toEvent()).usingRecursiveComparison()
+                .isEqualTo(new OrderApprovedEvent("e-7", 5L, "o-7", "c-7", "p-7", 3, true, 9L));
+        assertThat(filtering.deserializeInto(submittedType, "not an event".getBytes(StandardCharsets.UTF_8), checkedOrder)).isFalse();
+        assertThat(checkedOrder.orderId()).isEqualTo("o-7");
+    }
+}
@@ -0,0 +1,68 @@
+package workshop.quarkus.reactive.event;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class UlidTest {
+
+    @Test
+    @DisplayName("IDs generated by the same thread should be strictly increasing, even within the same millisecond")
+    void monotonicWithinThread() {
+
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < 100_000; i++) {
+            ids.add(Ulid.next());
+        }
+
+        for (int i = 1; i < ids.size(); i++) {
+            assertThat(ids.get(i)).isGreaterThan(ids.get(i - 1));
+        }
+    }
+
+    @Test
+    @DisplayName("An ID should carry its creation time and survive a round trip through its 128-bit form")
+    void roundTrip() {
+
+        long before = System.currentTimeMillis();
+        String id = Ulid.next();
+        long after = System.currentTimeMillis();
+
+        assertThat(Ulid.isUlid(id)).isTrue();
+        assertThat(Ulid.timestampOf(id)).isBetween(before, after + 1);
+        assertThat(Ulid.toString(Ulid.mostSignificantBits(id), Ulid.leastSignificantBits(id))).isEqualTo(id);
+    }
+
+    @Test
+    @DisplayName("The binary codec should write ULID event IDs in their compact form and keep other IDs as they are")
+    void compactBinaryEventId() {
+
+        EventSerializer serializer = new EventSerializer(EventFormat.BINARY);
+        EventDeserializer deserializer = new EventDeserializer();
+
+        OrderSubmittedEvent ulid = new OrderSubmittedEvent(Ulid.next(), 42L, "o-1", "c-1", "p-1", 1);
+        OrderSubmittedEvent uuid = new OrderSubmittedEvent(EventIdGenerator.UUID.nextId(), 42L, "o-1", "c-1", "p-1", 1);
+
+        byte[] compact = serializer.serialize("orders", ulid);
+
+        assertThat(compact.length).isLessThan(serializer.serialize("orders", uuid).length);
+        assertThat(deserializer.deserialize("orders", compact)).usingRecursiveComparison().isEqualTo(ulid);
+        assertThat(deserializer.deserialize("orders", serializer.serialize("orders", uuid))).usingRecursiveComparison().isEqualTo(uuid);
+    }
+
+    @Test
+    @DisplayName("The binary codec should keep event IDs that are ULIDs in lower case as they are")
+    void lowerCaseBinaryEventId() {
+
+        EventSerializer serializer = new EventSerializer(EventFormat.BINARY);
+        EventDeserializer deserializer = new EventDeserializer();
+        OrderSubmittedEvent event = new OrderSubmittedEvent(Ulid.next().toLowerCase(), 42L, "o-1", "c-1", "p-1", 1);
+
+        assertThat(Ulid.isUlid(event.getEventId())).isFalse();
+        assertThat(deserializer.deserialize("orders", serializer.serialize("orders", event))).usingRecursiveComparison().isEqualTo(event);
+    }
+}